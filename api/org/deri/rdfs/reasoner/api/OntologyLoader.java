@@ -0,0 +1,53 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.api;
+
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
+import org.openrdf.rio.StatementHandler;
+
+/**
+ * Registers the statements of an ontology at a reasoner while they are 
+ * handed over, e.g. by a parser. The statements are converted and 
+ * registered at the built-in reasoner in batches, neither a graph nor the 
+ * rules of the whole ontology are kept in memory.
+ * <p>
+ * The statements are checked batch by batch, so a problem might only be 
+ * reported by a later statement or when the loader is closed. The loader 
+ * then deregisters the ontology, which only a loader can be opened for 
+ * while it isn't registered yet, so that only the batches registered 
+ * before are removed. It doesn't accept any further statements. The last 
+ * batch is only registered when the loader is closed.
+ * </p>
+ */
+public interface OntologyLoader extends StatementHandler {
+
+	/**
+	 * Registers the remaining statements. Afterwards the loader doesn't 
+	 * accept any further statements.
+	 * 
+	 * @throws ExternalToolException if the statements can't be registered
+	 * @throws NonStandardRDFSUseException if the reasoner checks the 
+	 * 			statements, and they include non-standard use of the RDFS 
+	 * 			vocabulary
+	 */
+	public void close() 
+			throws ExternalToolException, NonStandardRDFSUseException;
+
+}
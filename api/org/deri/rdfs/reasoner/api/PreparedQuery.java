@@ -0,0 +1,46 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.api;
+
+import java.util.Set;
+
+import org.omwg.logicalexpression.LogicalExpression;
+import org.omwg.ontology.Variable;
+
+/**
+ * A query compiled by a reasoner, which can be executed repeatedly without 
+ * being converted again. Its variables can be bound to constants at each 
+ * execution.
+ * <p>
+ * A prepared query can only be executed by the reasoner which prepared it.
+ * </p>
+ */
+public interface PreparedQuery {
+
+	/**
+	 * @return the query this query was prepared from
+	 */
+	public LogicalExpression getQuery();
+
+	/**
+	 * @return the free variables of the query
+	 */
+	public Set<Variable> getVariables();
+
+}
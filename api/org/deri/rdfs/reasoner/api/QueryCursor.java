@@ -0,0 +1,51 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.api;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Variable;
+
+/**
+ * A cursor over the variable bindings of the results of a query. The
+ * bindings are computed and converted while the cursor is advanced, so
+ * the results don't have to be kept in memory all at once.
+ * <p>
+ * IRIS computes the tuples of a result when the cursor is opened, up to
+ * offset plus limit of them, and only converts them while the cursor is
+ * advanced. Only a limited cursor of IRIS is bounded in memory, an
+ * unlimited one holds all tuples of the result.
+ * </p>
+ * <p>
+ * A cursor only reflects the ontologies registered when it was opened. If
+ * an ontology is registered or deregistered afterwards, the cursor may
+ * throw a {@link java.util.ConcurrentModificationException}.
+ * </p>
+ */
+public interface QueryCursor extends Iterator<Map<Variable, Term>> {
+
+	/**
+	 * Releases the resources held by the cursor. Afterwards the cursor
+	 * doesn't return any further results.
+	 */
+	public void close();
+
+}
@@ -18,6 +18,9 @@
  */
 package org.deri.rdfs.reasoner.api;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,6 +60,33 @@ public interface Reasoner {
 	public void registerOntology(Graph ontology, String ontologyURI) 
 			throws ExternalToolException, NonStandardRDFSUseException;
 
+	/**
+	 * Opens a loader registering an ontology statement by statement, e.g. 
+	 * while it is parsed. The statements are converted and registered in 
+	 * batches, without building a graph of the whole ontology first.
+	 * 
+	 * @param ontologyURI the URI of the ontology, which must not be 
+	 * 			registered yet
+	 * @return the loader, which must be closed after the last statement
+	 * @throws NonStandardRDFSUseException
+	 * @throws IllegalArgumentException if the ontology is registered 
+	 * 			already
+	 */
+	public OntologyLoader openOntology(String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException;
+
+	/**
+	 * Adds statements to an already registered ontology. Only the
+	 * consequences of the new statements are computed, the fixed point of
+	 * the registered ontologies is not recomputed.
+	 *
+	 * @param statements the statements to add
+	 * @param ontologyURI the URI of the ontology the statements belong to
+	 * @throws NonStandardRDFSUseException
+	 */
+	public void addStatements(Graph statements, String ontologyURI)
+			throws ExternalToolException, NonStandardRDFSUseException;
+
 	/**
 	* Deregisters the ontology. Any further request using this ontologyID will
 	* result in an exception.
@@ -80,6 +110,69 @@ public interface Reasoner {
 	public Set<Map<Variable, Term>> executeQuery(Graph ontology,
 			LogicalExpression query) throws ExternalToolException;
 
+	/**
+	 * Method to execute a conjunctive query over the given ontology. The 
+	 * results are computed and converted while the cursor is advanced, 
+	 * instead of being collected all at once. With IRIS only a limited 
+	 * cursor is bounded in memory, see {@link QueryCursor}.
+	 * 
+	 * @param ontology
+	 * @param query
+	 * @param offset the number of results to skip
+	 * @param limit the maximal number of results, -1 if unlimited
+	 * @return a cursor over the variable bindings
+	 * @throws ExternalToolException
+	 */
+	public QueryCursor executeQuery(Graph ontology, LogicalExpression query, 
+			int offset, int limit) throws ExternalToolException;
+
+	/**
+	 * Method to prepare a query for repeated execution. The query is 
+	 * converted to Datalog only once, instead of at every execution.
+	 * 
+	 * @param query
+	 * @return the prepared query
+	 */
+	public PreparedQuery prepareQuery(LogicalExpression query);
+
+	/**
+	 * Method to execute a prepared query. The variables with a binding are 
+	 * replaced by their values before the query is evaluated, they are not 
+	 * part of the results.
+	 * 
+	 * @param query a query prepared by this reasoner
+	 * @param bindings the values of some variables of the query, may be null
+	 * @return a set with a variable binding
+	 * @throws ExternalToolException
+	 */
+	public Set<Map<Variable, Term>> executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) throws ExternalToolException;
+
+	/**
+	 * Method to execute a prepared query, the results are returned by a 
+	 * cursor.
+	 * 
+	 * @param query a query prepared by this reasoner
+	 * @param bindings the values of some variables of the query, may be null
+	 * @param offset the number of results to skip
+	 * @param limit the maximal number of results, -1 if unlimited
+	 * @return a cursor over the variable bindings
+	 * @throws ExternalToolException
+	 */
+	public QueryCursor executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings, int offset, int limit) 
+			throws ExternalToolException;
+
+	/**
+	 * Method to check whether a prepared query has any result.
+	 * 
+	 * @param query a query prepared by this reasoner
+	 * @param bindings the values of some variables of the query, may be null
+	 * @return true if the query has a result
+	 */
+	public boolean executeGroundQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings);
+
 	public boolean entails(Graph ontology, Statement expression);
 	
 	public boolean entails(Graph ontology, Set<Statement> expressions);
@@ -92,6 +185,30 @@ public interface Reasoner {
 	 */
 	public String getDefaultNS(Graph ontology);
 	
+	/**
+	 * Method to write a snapshot of the registered ontologies and their 
+	 * closure, to restore them after a restart without converting and 
+	 * evaluating them again.
+	 * 
+	 * @param out the stream to write the snapshot to
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if the built-in reasoner 
+	 * 			doesn't support snapshots
+	 */
+	public void writeSnapshot(OutputStream out) throws IOException;
+	
+	/**
+	 * Method to replace the registered ontologies by the ones of a 
+	 * snapshot, which was written by a reasoner of the same type and 
+	 * with the same parameters.
+	 * 
+	 * @param in the stream to read the snapshot from
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if the built-in reasoner 
+	 * 			doesn't support snapshots
+	 */
+	public void readSnapshot(InputStream in) throws IOException;
+	
 }
 /*
  * $Log: Reasoner.java,v $
@@ -18,6 +18,9 @@
  */
 package org.deri.rdfs.reasoner.api;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Set;
 
 import org.deri.rdfs.reasoner.api.terms.Rule;
@@ -30,6 +33,9 @@ import org.deri.rdfs.reasoner.exception.ExternalToolException;
  * For each such system a specific facade must be implemented to integrate the
  * component into the system.
  * 
+ * A facade must allow queries to be evaluated concurrently, also while 
+ * ontologies are registered or deregistered.
+ * 
  * <pre>
  *  Created on April 6th, 2007
  *  Committed by $Author: nathalie $
@@ -78,6 +84,69 @@ public interface ReasonerFacade {
     public Set evaluate(org.wsml.reasoner.ConjunctiveQuery q, String ontologyURI) 
     		throws ExternalToolException;
 
+    /**
+     * Evaluates a given query on a particular external tool, the results
+     * are computed while the returned cursor is advanced.
+     * 
+     * @param q
+     *            the query to be evaluated.
+     * @param offset
+     *            the number of results to skip
+     * @param limit
+     *            the maximal number of results, -1 if unlimited
+     * @return a cursor over the variable bindings
+     * @throws ExternalToolException
+     *             in case that some error occurs during the execution of the
+     *             query
+     */
+    public QueryCursor evaluate(org.wsml.reasoner.ConjunctiveQuery q, 
+    		String ontologyURI, int offset, int limit) 
+    		throws ExternalToolException;
+
+    /**
+     * Checks whether a query has at least one result on a particular 
+     * external tool. The ground literals are looked up directly, the 
+     * check stops at the first one, which isn't entailed. No variable 
+     * binding is converted.
+     * 
+     * @param q
+     *            the query to be checked.
+     * @return true if the query has a result
+     * @throws ExternalToolException
+     *             in case that some error occurs during the execution of the
+     *             query
+     */
+    public boolean entails(org.wsml.reasoner.ConjunctiveQuery q, 
+    		String ontologyURI) throws ExternalToolException;
+
+    /**
+     * Writes the registered knowledge bases and their closure to a stream, 
+     * so that {@link #readSnapshot(InputStream)} can restore them without 
+     * evaluating the rules again.
+     * 
+     * @param out
+     *            the stream to write the snapshot to
+     * @throws IOException
+     *             if the snapshot can't be written
+     * @throws UnsupportedOperationException
+     *             if the external tool doesn't support snapshots
+     */
+    public void writeSnapshot(OutputStream out) throws IOException;
+
+    /**
+     * Replaces the registered knowledge bases by the ones of a snapshot, 
+     * which was written by {@link #writeSnapshot(OutputStream)}.
+     * 
+     * @param in
+     *            the stream to read the snapshot from
+     * @throws IOException
+     *             if the snapshot can't be read, or was written by another 
+     *             external tool
+     * @throws UnsupportedOperationException
+     *             if the external tool doesn't support snapshots
+     */
+    public void readSnapshot(InputStream in) throws IOException;
+
 }
 /*
  * $Log: ReasonerFacade.java,v $
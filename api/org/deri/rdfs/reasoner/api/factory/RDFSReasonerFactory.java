@@ -37,8 +37,65 @@ import org.deri.rdfs.reasoner.api.Reasoner;
 public interface RDFSReasonerFactory {
 
 	public String PARAM_BUILT_IN_REASONER = "BUILT IN REASONER";
+	
+	/**
+	 * The maximal number of queries, whose results are cached (Integer). 
+	 * The cache is disabled if it is 0, or if it isn't set.
+	 */
+	public String PARAM_QUERY_CACHE_SIZE = "QUERY CACHE SIZE";
+	
+	/**
+	 * The maximal number of variable bindings in the cached query results 
+	 * (Integer). The cache is disabled if it is 0, it holds up to 100000 
+	 * bindings if it isn't set.
+	 */
+	public String PARAM_QUERY_CACHE_BINDINGS = "QUERY CACHE BINDINGS";
 
-	public enum BuiltInReasoner {IRIS};
+	/**
+	 * The reasoning engines, which can be used internally: the datalog 
+	 * engine IRIS, or a native forward chaining engine, which only 
+	 * supports the fixed rule sets of the RDF, RDFS and eRDFS entailment 
+	 * regimes.
+	 */
+	public enum BuiltInReasoner {IRIS, NATIVE};
+	
+	/**
+	 * The strategy to evaluate queries (EvaluationStrategy), see 
+	 * {@link EvaluationStrategy}.
+	 */
+	public String PARAM_EVALUATION_STRATEGY = "EVALUATION STRATEGY";
+	
+	/**
+	 * The strategies to evaluate queries: MATERIALIZE computes the closure 
+	 * of the registered ontologies before the first query is answered. 
+	 * GOAL_DIRECTED only derives the facts needed to answer a query, as 
+	 * long as the closure isn't computed and a literal of the query has a 
+	 * constant subject or object. If a query depends on every fact anyway, 
+	 * the closure is computed instead. GOAL_DIRECTED is only supported by 
+	 * the native engine.
+	 */
+	public enum EvaluationStrategy {MATERIALIZE, GOAL_DIRECTED};
+	
+	/**
+	 * Whether the rdfs:domain, rdfs:range and rdfs:subPropertyOf axioms of 
+	 * the registered ontologies are compiled to rules specialized to their 
+	 * property (Boolean), which replace the generic RDFS rules joining 
+	 * every fact with the axioms. Axioms, which are only derived through 
+	 * the vocabulary itself, e.g. through a sub property of rdfs:domain, 
+	 * are not applied to the facts then. Only supported by IRIS, false by 
+	 * default.
+	 */
+	public String PARAM_COMPILE_SCHEMA = "COMPILE SCHEMA";
+	
+	/**
+	 * Whether the trivial triples x[rdf#type ->> rdfs#Resource], 
+	 * x[rdfs#subClassOf ->> x] and x[rdfs#subPropertyOf ->> x] are kept 
+	 * virtual (Boolean): they aren't materialized, but the queries asking 
+	 * for them are rewritten to the triples they are inferred from. The 
+	 * virtual triples don't take part in the inference of any other 
+	 * triple. False by default.
+	 */
+	public String PARAM_VIRTUAL_TRIVIAL_TRIPLES = "VIRTUAL TRIVIAL TRIPLES";
 	
 	/**
      * Creates a simple RDF reasoner backed implementation. As reasoning engine 
@@ -60,14 +117,21 @@ public interface RDFSReasonerFactory {
      * Creates an RDF reasoner backed implementation
      * 
      * @param params 
-     * 		Configuration parameters. The following parameter is
+     * 		Configuration parameters. The following parameters are
      *      accepted at the moment:
      *      <ul>
      *      	<li>PARAM_BUILT_IN_REASONER: The internal reasoner
      *          	implementation to use, see @link BuiltInReasoner</li>
+     *      	<li>PARAM_QUERY_CACHE_SIZE: The maximal number of cached 
+     *          	query results</li>
+     *      	<li>PARAM_QUERY_CACHE_BINDINGS: The maximal number of 
+     *          	variable bindings in the cached query results</li>
+     *      	<li>PARAM_EVALUATION_STRATEGY: The strategy to evaluate 
+     *          	queries, see @link EvaluationStrategy</li>
      *       </ul>
      *       If no parameter is defined, the internal reasoner IRIS is used 
-     *       by default.
+     *       by default, and no query results are cached. The closure is 
+     *       materialized by default.
      * @return the reasoner
      */
     public Reasoner createRDFReasoner(Map<String, Object> params);
@@ -84,14 +148,26 @@ public interface RDFSReasonerFactory {
      * Creates an RDFS reasoner backed implementation
      * 
      * @param params 
-     * 		Configuration parameters. The following parameter is
+     * 		Configuration parameters. The following parameters are
      *      accepted at the moment:
      *      <ul>
      *      	<li>PARAM_BUILT_IN_REASONER: The internal reasoner
      *          	implementation to use, see @link BuiltInReasoner</li>
+     *      	<li>PARAM_QUERY_CACHE_SIZE: The maximal number of cached 
+     *          	query results</li>
+     *      	<li>PARAM_QUERY_CACHE_BINDINGS: The maximal number of 
+     *          	variable bindings in the cached query results</li>
+     *      	<li>PARAM_EVALUATION_STRATEGY: The strategy to evaluate 
+     *          	queries, see @link EvaluationStrategy</li>
+     *      	<li>PARAM_COMPILE_SCHEMA: Whether the schema axioms are 
+     *          	compiled to specialized rules</li>
+     *      	<li>PARAM_VIRTUAL_TRIVIAL_TRIPLES: Whether the trivial 
+     *          	triples are answered at query time instead of being 
+     *          	materialized</li>
      *       </ul>
      *       If no parameter is defined, the internal reasoner IRIS is used 
-     *       by default.
+     *       by default, and no query results are cached. The closure is 
+     *       materialized by default.
      * @return the reasoner
      */
     public Reasoner createRDFSReasoner(Map<String, Object> params);
@@ -108,14 +184,26 @@ public interface RDFSReasonerFactory {
      * Creates an eRDFS reasoner backed implementation
      * 
      * @param params 
-     * 		Configuration parameters. The following parameter is
+     * 		Configuration parameters. The following parameters are
      *      accepted at the moment:
      *      <ul>
      *      	<li>PARAM_BUILT_IN_REASONER: The internal reasoner
      *          	implementation to use, see @link BuiltInReasoner</li>
+     *      	<li>PARAM_QUERY_CACHE_SIZE: The maximal number of cached 
+     *          	query results</li>
+     *      	<li>PARAM_QUERY_CACHE_BINDINGS: The maximal number of 
+     *          	variable bindings in the cached query results</li>
+     *      	<li>PARAM_EVALUATION_STRATEGY: The strategy to evaluate 
+     *          	queries, see @link EvaluationStrategy</li>
+     *      	<li>PARAM_COMPILE_SCHEMA: Whether the schema axioms are 
+     *          	compiled to specialized rules</li>
+     *      	<li>PARAM_VIRTUAL_TRIVIAL_TRIPLES: Whether the trivial 
+     *          	triples are answered at query time instead of being 
+     *          	materialized</li>
      *       </ul>
      *       If no parameter is defined, the internal reasoner IRIS is used 
-     *       by default.
+     *       by default, and no query results are cached. The closure is 
+     *       materialized by default.
      * @return the reasoner
      */
     public Reasoner createERDFSReasoner(Map<String, Object> params);
@@ -132,14 +220,26 @@ public interface RDFSReasonerFactory {
      * Creates an iOWL reasoner backed implementation
      * 
      * @param params 
-     * 		Configuration parameters. The following parameter is
+     * 		Configuration parameters. The following parameters are
      *      accepted at the moment:
      *      <ul>
      *      	<li>PARAM_BUILT_IN_REASONER: The internal reasoner
      *          	implementation to use, see @link BuiltInReasoner</li>
+     *      	<li>PARAM_QUERY_CACHE_SIZE: The maximal number of cached 
+     *          	query results</li>
+     *      	<li>PARAM_QUERY_CACHE_BINDINGS: The maximal number of 
+     *          	variable bindings in the cached query results</li>
+     *      	<li>PARAM_EVALUATION_STRATEGY: The strategy to evaluate 
+     *          	queries, see @link EvaluationStrategy</li>
+     *      	<li>PARAM_COMPILE_SCHEMA: Whether the schema axioms are 
+     *          	compiled to specialized rules</li>
+     *      	<li>PARAM_VIRTUAL_TRIVIAL_TRIPLES: Whether the trivial 
+     *          	triples are answered at query time instead of being 
+     *          	materialized</li>
      *       </ul>
      *       If no parameter is defined, the internal reasoner IRIS is used 
-     *       by default.
+     *       by default, and no query results are cached. The closure is 
+     *       materialized by default.
      * @return the reasoner
      */
     public Reasoner createIOWLReasoner(Map<String, Object> params);
@@ -46,6 +46,8 @@ public interface FMolecule {
 	 * Method to set the left, subject, term of an FMolecule.
 	 * 
 	 * @param leftTerm Left term of the FMolecule
+	 * @throws UnsupportedOperationException if the FMolecule is 
+	 * 			immutable
 	 */
 	public void setLeftTerm(org.omwg.logicalexpression.terms.Term leftTerm);
 	
@@ -60,6 +62,8 @@ public interface FMolecule {
 	 * Method to set the predicate term of an FMolecule.
 	 * 
 	 * @param predTerm Predicate term of the FMolecule
+	 * @throws UnsupportedOperationException if the FMolecule is 
+	 * 			immutable
 	 */
 	public void setPredTerm(org.omwg.logicalexpression.terms.Term predTerm);
 	
@@ -74,6 +78,8 @@ public interface FMolecule {
 	 * Method to set the right, object, term of an FMolecule.
 	 * 
 	 * @param rightTerm Right term of the FMolecule
+	 * @throws UnsupportedOperationException if the FMolecule is 
+	 * 			immutable
 	 */
 	public void setRightTerm(org.omwg.logicalexpression.terms.Term rightTerm);
 	
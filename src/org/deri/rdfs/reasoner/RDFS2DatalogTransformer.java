@@ -18,12 +18,10 @@
  */
 package org.deri.rdfs.reasoner;
 
-import java.rmi.server.UID;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.deri.rdfs.reasoner.api.factory.EntityFactory;
@@ -66,12 +64,42 @@ public class RDFS2DatalogTransformer {
 	
 	private DataFactory dataFactory = Factory.createDataFactory(null);
 	
-	private Map<BNode, Identifier> bNodes = new HashMap<BNode, Identifier>();
+	private final static String XSD_NS = "http://www.w3.org/2001/XMLSchema#";
+	
+	// the XML Schema datatypes converted to integers
+	private final static Set<String> INTEGER_TYPES = new HashSet<String>(
+			Arrays.asList("integer", "int", "long", "short", "byte", 
+					"nonNegativeInteger", "positiveInteger", 
+					"nonPositiveInteger", "negativeInteger", "unsignedLong", 
+					"unsignedInt", "unsignedShort", "unsignedByte"));
+	
+	// the XML Schema datatypes converted to doubles
+	private final static Set<String> DOUBLE_TYPES = new HashSet<String>(
+			Arrays.asList("double", "float", "decimal"));
 	
 	private String defaultNS = "";
 	
+	// the prefix of the identifiers of the skolemized blank nodes
+	private final String bNodePrefix;
+	
 	public RDFS2DatalogTransformer(String defaultNS) {
+		this(defaultNS, "");
+	}
+	
+	/**
+	 * The blank nodes are skolemized to identifiers consisting of the 
+	 * default namespace, the document and the label of the blank node. So 
+	 * the same blank node is always skolemized to the same identifier, also 
+	 * by different transformers and in different runs, while equally 
+	 * labelled blank nodes of different documents are kept apart.
+	 * 
+	 * @param defaultNS the default namespace
+	 * @param document identifies the document the statements come from
+	 */
+	public RDFS2DatalogTransformer(String defaultNS, String document) {
 		this.defaultNS = defaultNS;
+		bNodePrefix = defaultNS + "genid-" 
+				+ (document.length() > 0 ? document + "-" : "");
 	}
 	
 	/**
@@ -97,15 +125,7 @@ public class RDFS2DatalogTransformer {
 		
 		// BNodes are skolemized
 		if (subject instanceof BNode) {
-			if (bNodes.containsKey((BNode) subject)) {
-				subj = bNodes.get((BNode) subject);
-			}
-			else {
-				UID uid = new java.rmi.server.UID();
-				Identifier uidIRI = wsmoFactory.createIRI(defaultNS + uid.toString());
-				bNodes.put((BNode) subject, uidIRI);
-				subj = uidIRI;
-			}
+			subj = skolemize((BNode) subject);
 		}
 		else {
 			subj = wsmoFactory.createIRI(subject.toString());
@@ -115,31 +135,13 @@ public class RDFS2DatalogTransformer {
 		
 		// BNodes are skolemized
 		if (object instanceof BNode) {
-			if (bNodes.containsKey((BNode) object)) {
-				obj = bNodes.get((BNode) object);
-			}
-			else {
-				UID uid = new java.rmi.server.UID();
-				Identifier uidIRI = wsmoFactory.createIRI(defaultNS + uid.toString());
-				bNodes.put((BNode) object, uidIRI);
-				obj = uidIRI;
-			}
+			obj = skolemize((BNode) object);
 		}
 		else if (object instanceof Resource) {
 			obj = wsmoFactory.createIRI(object.toString());
 		}
 		else if (object instanceof Literal) {
-			try { 
-				obj = wsmoFactory.createIRI(((Literal) object).getLabel());
-			}
-			catch (IllegalArgumentException e) {
-				try {
-					obj = dataFactory.createWsmlInteger(object.toString());
-				}
-				catch (NumberFormatException ne) {
-					obj = dataFactory.createWsmlString(object.toString());
-				}
-			}
+			obj = transform((Literal) object);
 		}
 		else {
 			obj = wsmoFactory.createIRI(object.toString());
@@ -147,6 +149,210 @@ public class RDFS2DatalogTransformer {
 		return factory.createRule(factory.createFMolecule(subj, pred, obj));
 	}
 	
+	/**
+	 * A schema axiom is compiled to a rule specialized to its property, 
+	 * which replaces the corresponding generic RDFS rule:
+	 * <ul>
+	 * <li>&lt;p,domain,c&gt; to forall u,v(u[p ->> v] IMPLIES u[type ->> c]),</li>
+	 * <li>&lt;p,range,c&gt; to forall u,v(u[p ->> v] IMPLIES v[type ->> c]),</li>
+	 * <li>&lt;p,subPropertyOf,q&gt; to forall u,v(u[p ->> v] IMPLIES 
+	 * u[q ->> v]),</li>
+	 * <li>&lt;p,type,ContainerMembershipProperty&gt; to forall u,v(u[p ->> v] 
+	 * IMPLIES u[member ->> v]).</li>
+	 * </ul>
+	 * The specialized rules of a sub property chain are applied one after 
+	 * the other, so they also cover the transitivity of subPropertyOf. 
+	 * Only asserted statements are compiled, axioms which are derived 
+	 * through the vocabulary itself, e.g. through a sub property of 
+	 * rdfs:domain, rdfs:range or rdfs:subPropertyOf, or for a property 
+	 * typed through a sub class of rdfs:ContainerMembershipProperty, are 
+	 * not applied to the facts.
+	 * 
+	 * @return the specialized rule, or null if the statement isn't a schema 
+	 * 			axiom about a property
+	 */
+	public Rule compileSchemaAxiom(Statement statement) {
+		Resource subject = statement.getSubject();
+		String predicate = statement.getPredicate().getURI();
+		Value object = statement.getObject();
+		if (!(subject instanceof URI) || !(object instanceof URI)) {
+			return null;
+		}
+		Term property = wsmoFactory.createIRI(((URI) subject).getURI());
+		Term other = wsmoFactory.createIRI(((URI) object).getURI());
+		Variable u = factory.createVariable("?u");
+		Variable v = factory.createVariable("?v");
+		FMolecule head = null;
+		if (predicate.equals(RDFS.DOMAIN)) {
+			head = factory.createFMolecule(u, factory.createIdentifier(RDF.TYPE), 
+					other);
+		}
+		else if (predicate.equals(RDFS.RANGE)) {
+			head = factory.createFMolecule(v, factory.createIdentifier(RDF.TYPE), 
+					other);
+		}
+		else if (predicate.equals(RDFS.SUBPROPERTYOF) && !property.equals(other)) {
+			head = factory.createFMolecule(u, other, v);
+		}
+		else if (predicate.equals(RDF.TYPE) 
+				&& other.toString().equals(RDFS.CONTAINERMEMBERSHIPPROPERTY)) {
+			head = factory.createFMolecule(u, 
+					factory.createIdentifier(RDFS.MEMBER), v);
+		}
+		else {
+			return null;
+		}
+		List<FMolecule> body = new LinkedList<FMolecule>();
+		body.add(factory.createFMolecule(u, property, v));
+		return factory.createRule(head, body);
+	}
+	
+	/**
+	 * A literal is classified by its datatype and its label in a single 
+	 * pass, without provoking any exception:
+	 * <ul>
+	 * <li>a literal with a language tag is a string,</li>
+	 * <li>a typed literal is an integer, a double, a boolean or a string, 
+	 * depending on its XML Schema datatype, if its label is valid for that 
+	 * datatype, otherwise it is a string,</li>
+	 * <li>a plain literal is an IRI if its label is an absolute IRI, an 
+	 * integer if its label is one, and a string otherwise.</li>
+	 * </ul>
+	 * Integers exceeding the range of an int, which the built-in reasoners 
+	 * use for integers, are kept as strings.
+	 */
+	public Term transform(Literal literal) {
+		String label = literal.getLabel();
+		if (literal.getLanguage() != null) {
+			return dataFactory.createWsmlString(label);
+		}
+		if (literal.getDatatype() != null) {
+			String type = literal.getDatatype().getURI();
+			if (!type.startsWith(XSD_NS)) {
+				return dataFactory.createWsmlString(label);
+			}
+			type = type.substring(XSD_NS.length());
+			if (INTEGER_TYPES.contains(type) && isInt(label)) {
+				return dataFactory.createWsmlInteger(label.startsWith("+") 
+						? label.substring(1) : label);
+			}
+			else if (DOUBLE_TYPES.contains(type) && isDouble(label)) {
+				return dataFactory.createWsmlDouble(Double.valueOf(
+						label.equals("INF") ? "Infinity" 
+						: label.equals("-INF") ? "-Infinity" : label));
+			}
+			else if (type.equals("boolean") && (label.equals("true") 
+					|| label.equals("false") || label.equals("1") 
+					|| label.equals("0"))) {
+				return dataFactory.createWsmlBoolean(Boolean.valueOf(
+						label.equals("true") || label.equals("1")));
+			}
+			return dataFactory.createWsmlString(label);
+		}
+		if (isAbsoluteIRI(label)) {
+			return wsmoFactory.createIRI(label);
+		}
+		else if (isInt(label) && !label.startsWith("+")) {
+			return dataFactory.createWsmlInteger(label);
+		}
+		return dataFactory.createWsmlString(label);
+	}
+	
+	/**
+	 * Checks whether a string starts with an IRI scheme, i.e. a letter 
+	 * followed by letters, digits, '+', '-' or '.', and a colon.
+	 */
+	private static boolean isAbsoluteIRI(String s) {
+		if (s.length() == 0 || !isLetter(s.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == ':') {
+				return true;
+			}
+			if (!isLetter(c) && !isDigit(c) && c != '+' && c != '-' 
+					&& c != '.') {
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether a string is an integer within the range of an int.
+	 */
+	private static boolean isInt(String s) {
+		int start = s.length() > 0 && (s.charAt(0) == '-' 
+				|| s.charAt(0) == '+') ? 1 : 0;
+		if (s.length() == start || s.length() - start > 10) {
+			return false;
+		}
+		long value = 0;
+		for (int i = start; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (!isDigit(c)) {
+				return false;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return s.charAt(0) == '-' ? -value >= Integer.MIN_VALUE 
+				: value <= Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Checks whether a string is an XML Schema double: a decimal number with 
+	 * an optional exponent, "INF", "-INF" or "NaN".
+	 */
+	private static boolean isDouble(String s) {
+		if (s.equals("INF") || s.equals("-INF") || s.equals("NaN")) {
+			return true;
+		}
+		int i = s.length() > 0 && (s.charAt(0) == '-' 
+				|| s.charAt(0) == '+') ? 1 : 0;
+		int digits = 0;
+		for (; i < s.length() && isDigit(s.charAt(i)); i++) {
+			digits++;
+		}
+		if (i < s.length() && s.charAt(i) == '.') {
+			for (i++; i < s.length() && isDigit(s.charAt(i)); i++) {
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (i < s.length() && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			i++;
+			if (i < s.length() && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+				i++;
+			}
+			int exponent = 0;
+			for (; i < s.length() && isDigit(s.charAt(i)); i++) {
+				exponent++;
+			}
+			if (exponent == 0) {
+				return false;
+			}
+		}
+		return i == s.length();
+	}
+	
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * Returns the identifier of a skolemized blank node.
+	 */
+	private Identifier skolemize(BNode node) {
+		return wsmoFactory.createIRI(bNodePrefix + node.getID());
+	}
+	
 	/**
 	 * To capture RDF entailment, one supplementary rule needs to be taken into 
 	 * account:
@@ -170,6 +376,27 @@ public class RDFS2DatalogTransformer {
 	 * account
 	 */
 	public Set<Rule> generateAuxiliaryRDFSRules() {
+		return generateAuxiliaryRDFSRules(false);
+	}
+	
+	/**
+	 * To capture RDFS entailment, supplementary rules need to be taken into 
+	 * account. If the schema axioms are compiled (see 
+	 * {@link #compileSchemaAxiom(Statement)}), the generic rules applying 
+	 * domain, range and subPropertyOf axioms to every fact are left out.
+	 */
+	public Set<Rule> generateAuxiliaryRDFSRules(boolean compiledSchema) {
+		return generateAuxiliaryRDFSRules(compiledSchema, false);
+	}
+	
+	/**
+	 * To capture RDFS entailment, supplementary rules need to be taken into 
+	 * account. If the trivial triples are virtual, the rules inferring 
+	 * x[type ->> Resource], x[subClassOf ->> x] and x[subPropertyOf ->> x] 
+	 * are left out, these triples are then answered at query time.
+	 */
+	public Set<Rule> generateAuxiliaryRDFSRules(boolean compiledSchema, 
+			boolean virtualTriples) {
 		Set<Rule> rules = new HashSet<Rule>();
 		Variable x = factory.createVariable("?x");
 		Variable y = factory.createVariable("?y");
@@ -180,16 +407,18 @@ public class RDFS2DatalogTransformer {
 		
 		// forall x,y,u(x[y ->> u] IMPLIES x[type ->> Resource] AND 
 		// u[type ->> Resource])
-		head = factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
-				factory.createIdentifier(RDFS.RESOURCE));
-		body.add(factory.createFMolecule(x, y, u));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
-		head = factory.createFMolecule(u, factory.createIdentifier(RDF.TYPE), 
-				factory.createIdentifier(RDFS.RESOURCE));
-		body.add(factory.createFMolecule(x, y, u));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
+		if (!virtualTriples) {
+			head = factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
+					factory.createIdentifier(RDFS.RESOURCE));
+			body.add(factory.createFMolecule(x, y, u));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+			head = factory.createFMolecule(u, factory.createIdentifier(RDF.TYPE), 
+					factory.createIdentifier(RDFS.RESOURCE));
+			body.add(factory.createFMolecule(x, y, u));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+		}
 		
 		/*
 		 * - for each rules x[domain ->> y] AND u[x ->> v], the rule 
@@ -200,19 +429,21 @@ public class RDFS2DatalogTransformer {
 		 * 	 x[subPropertyOf ->> member] is added.
 		 */
 
-		// forall u,v,x,y(x[domain ->> y] AND u[x ->> v] IMPLIES u[type ->> y]
-		head = factory.createFMolecule(u, factory.createIdentifier(RDF.TYPE), y);
-		body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.DOMAIN), y));
-		body.add(factory.createFMolecule(u, x, v));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
-		
-		// forall u,v,x,y(x[range ->> y] AND u[x ->> v] IMPLIES v[type ->> y]
-		head = factory.createFMolecule(v, factory.createIdentifier(RDF.TYPE), y);
-		body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.RANGE), y));
-		body.add(factory.createFMolecule(u, x, v));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
+		if (!compiledSchema) {
+			// forall u,v,x,y(x[domain ->> y] AND u[x ->> v] IMPLIES u[type ->> y]
+			head = factory.createFMolecule(u, factory.createIdentifier(RDF.TYPE), y);
+			body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.DOMAIN), y));
+			body.add(factory.createFMolecule(u, x, v));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+			
+			// forall u,v,x,y(x[range ->> y] AND u[x ->> v] IMPLIES v[type ->> y]
+			head = factory.createFMolecule(v, factory.createIdentifier(RDF.TYPE), y);
+			body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.RANGE), y));
+			body.add(factory.createFMolecule(u, x, v));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+		}
 		
 		// forall x(x[type ->> ContainerMembershipProperty] IMPLIES 
 		// x[subPropertyOf ->> member]
@@ -234,11 +465,13 @@ public class RDFS2DatalogTransformer {
 		 */
 		
 		// forall x(x[type ->> Property] IMPLIES x[subPropertyOf ->> x])
-		head = factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBPROPERTYOF), x);
-		body.add(factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
-				factory.createIdentifier(RDF.PROPERTY)));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
+		if (!virtualTriples) {
+			head = factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBPROPERTYOF), x);
+			body.add(factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
+					factory.createIdentifier(RDF.PROPERTY)));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+		}
 		
 		// forall x,y,u(x[subPropertyOf ->> y] AND y[subPropertyOf ->> u] 
 		// IMPLIES x[subPropertyOf ->> u])
@@ -260,11 +493,13 @@ public class RDFS2DatalogTransformer {
 		body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBPROPERTYOF), y));
 		rules.add(factory.createRule(head, body));
 		body = new LinkedList<FMolecule>();
-		head = factory.createFMolecule(u, y, v);
-		body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBPROPERTYOF), y));
-		body.add(factory.createFMolecule(u, x, v));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
+		if (!compiledSchema) {
+			head = factory.createFMolecule(u, y, v);
+			body.add(factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBPROPERTYOF), y));
+			body.add(factory.createFMolecule(u, x, v));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+		}
 		
 		/*
 		 * - for each rule x[type ->> Class], the rules x[subClassOf ->> Resource]
@@ -285,11 +520,13 @@ public class RDFS2DatalogTransformer {
 		body = new LinkedList<FMolecule>();
 		
 		// forall x(x[type ->> Class] IMPLIES x[subClassOf ->> x])
-		head = factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBCLASSOF), x);
-		body.add(factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
-				factory.createIdentifier(RDFS.CLASS)));
-		rules.add(factory.createRule(head, body));
-		body = new LinkedList<FMolecule>();
+		if (!virtualTriples) {
+			head = factory.createFMolecule(x, factory.createIdentifier(RDFS.SUBCLASSOF), x);
+			body.add(factory.createFMolecule(x, factory.createIdentifier(RDF.TYPE), 
+					factory.createIdentifier(RDFS.CLASS)));
+			rules.add(factory.createRule(head, body));
+			body = new LinkedList<FMolecule>();
+		}
 		
 		// forall x,y,u(x[subClassOf ->> y] AND y[subClassOf ->> u] 
 		// IMPLIES x[subClassOf ->> u])
@@ -460,7 +697,12 @@ public class RDFS2DatalogTransformer {
 	
 	/**
 	 * To capture iOWL entailment, supplementary rules need to be taken into 
-	 * account
+	 * account. Note that owl:sameAs is not captured by rules, but by 
+	 * replacing equal terms with a representative (see 
+	 * {@link org.deri.rdfs.reasoner.builtin.SameAsFacade}), and neither 
+	 * are transitive, symmetric and inverse properties, whose triples are 
+	 * closed as graphs (see 
+	 * {@link org.deri.rdfs.reasoner.builtin.PropertyClosureFacade}).
 	 */
 	public Set<Rule> generateAuxiliaryIOWLRules(Graph graph, Set<Rule> rules) {
 
@@ -21,7 +21,7 @@ package org.deri.rdfs.reasoner;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.deri.rdfs.reasoner.exception.DatalogException;
 import org.omwg.logicalexpression.Atom;
@@ -47,7 +47,6 @@ import org.omwg.logicalexpression.Visitor;
 import org.omwg.logicalexpression.terms.Term;
 import org.omwg.ontology.DataValue;
 import org.omwg.ontology.Variable;
-import org.omwg.ontology.WsmlDataType;
 import org.wsml.reasoner.Literal;
 import org.wsml.reasoner.Rule;
 
@@ -76,6 +75,9 @@ public class WSML2DatalogTransformer implements Visitor{
 	public final static String PRED_HAS_BOOL_VALUE = "has-bool-value";
 	
 	public final static String PRED_HAS_DOUBLE_VALUE = "has-double-value";
+	
+	// Matches the values of all datatypes, only used in queries.
+	public final static String PRED_HAS_ANY_VALUE = "has-any-value";
 
 	private List<Literal> datalogBody;
 
@@ -85,7 +87,8 @@ public class WSML2DatalogTransformer implements Visitor{
 
     private boolean inBodyOfRule;
     
-    private Set<org.deri.rdfs.reasoner.api.terms.Rule> rules;
+    // the datalog predicates matching the values of the predicates
+    private Map<Term, String> valuePredicates;
 	
     /**
      * Generates a WSML2Datalog converter.
@@ -96,8 +99,18 @@ public class WSML2DatalogTransformer implements Visitor{
     	inBodyOfRule = false;
     }
 	
-    public Rule transformLogExpr(LogicalExpression expr, Set<org.deri.rdfs.reasoner.api.terms.Rule> rules) {
-    	this.rules = rules;
+    /**
+     * Transforms a WSML logical expression to a datalog rule.
+     * 
+     * @param expr the logical expression
+     * @param valuePredicates the datalog predicates matching the values of 
+     * 			the predicates with values of a single kind, the variable 
+     * 			values of the other predicates match all kinds
+     * @return the datalog rule
+     */
+    public Rule transformLogExpr(LogicalExpression expr, 
+    		Map<Term, String> valuePredicates) {
+    	this.valuePredicates = valuePredicates;
     	Rule rule = null;
     	expr.accept(this);
         rule = (Rule) getSerializedRule();
@@ -164,53 +177,17 @@ public class WSML2DatalogTransformer implements Visitor{
     
 	public void visitAttributeValueMolecule(AttributeValueMolecule expr) {
 		Literal l = null;
-		String datatype = null;
-		if (expr.getRightParameter() instanceof Variable) {
-			for (org.deri.rdfs.reasoner.api.terms.Rule r : rules) {
-				if (r.getHead().getPredTerm().equals(expr.getAttribute())) {
-					if (r.getHead().getRightTerm() instanceof DataValue) {
-						datatype = ((DataValue) r.getHead().getRightTerm())
-							.getType().toString();
-					}
-				}
-			}
-		}
-		if (datatype != null) {
-			if (datatype.equals(WsmlDataType.WSML_STRING)) {
-				l = new Literal(true, PRED_HAS_STRING_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (datatype.equals(WsmlDataType.WSML_INTEGER)) {
-				l = new Literal(true, PRED_HAS_INT_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (datatype.equals(WsmlDataType.WSML_DOUBLE)) {
-				l = new Literal(true, PRED_HAS_DOUBLE_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (datatype.equals(WsmlDataType.WSML_BOOLEAN)) {
-				l = new Literal(true, PRED_HAS_BOOL_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
+		if (expr.getRightParameter() instanceof Variable 
+				&& !(expr.getAttribute() instanceof Variable)) {
+			String predicate = valuePredicates.get(expr.getAttribute());
+			l = new Literal(true, predicate != null ? predicate : 
+					PRED_HAS_ANY_VALUE, expr.getLeftParameter(), 
+					expr.getAttribute(), expr.getRightParameter());
 		} 
 		else if (expr.getRightParameter() instanceof DataValue) {
-			DataValue value = (DataValue) expr.getRightParameter();
-			if (value.getType().toString().equals(WsmlDataType.WSML_STRING)) {
-				l = new Literal(true, PRED_HAS_STRING_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (value.getType().toString().equals(WsmlDataType.WSML_INTEGER)) {
-				l = new Literal(true, PRED_HAS_INT_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (value.getType().toString().equals(WsmlDataType.WSML_DOUBLE)) {
-				l = new Literal(true, PRED_HAS_DOUBLE_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
-			if (value.getType().toString().equals(WsmlDataType.WSML_BOOLEAN)) {
-				l = new Literal(true, PRED_HAS_BOOL_VALUE, expr.getLeftParameter(), 
-						expr.getAttribute(), expr.getRightParameter());
-			}
+			// derived values may be stored under another datatype predicate
+			l = new Literal(true, PRED_HAS_ANY_VALUE, expr.getLeftParameter(), 
+					expr.getAttribute(), expr.getRightParameter());
 		} 
 		else {
 			l = new Literal(true, PRED_HAS_VALUE, expr.getLeftParameter(), 
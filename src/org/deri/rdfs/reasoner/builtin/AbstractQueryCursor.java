@@ -0,0 +1,158 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Variable;
+
+/**
+ * A cursor skipping the first results and returning at most a limited
+ * number of results. Subclasses only have to compute the next binding,
+ * the skipped results don't have to be converted.
+ */
+public abstract class AbstractQueryCursor implements QueryCursor {
+
+	// The number of results, which still have to be skipped.
+	private int offset;
+
+	// The number of results, which may still be returned, -1 if unlimited.
+	private int limit;
+
+	private Map<Variable, Term> next = null;
+
+	private boolean closed = false;
+
+	/**
+	 * @param offset the number of results to skip
+	 * @param limit the maximal number of results, -1 if unlimited
+	 */
+	protected AbstractQueryCursor(int offset, int limit) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("The offset must not be " +
+					"negative");
+		}
+		this.offset = offset;
+		this.limit = limit < 0 ? -1 : limit;
+	}
+
+	/**
+	 * Computes the next result.
+	 *
+	 * @return the variable binding of the next result, or {@code null} if
+	 * 			there are no further results
+	 * @throws ExternalToolException if the result can't be converted
+	 */
+	protected abstract Map<Variable, Term> computeNext()
+			throws ExternalToolException;
+
+	/**
+	 * Skips the next result, without converting it.
+	 *
+	 * @return false if there are no further results
+	 * @throws ExternalToolException if the result can't be computed
+	 */
+	protected boolean skipNext() throws ExternalToolException {
+		return computeNext() != null;
+	}
+
+	/**
+	 * Releases the resources of the subclass, called once when the cursor
+	 * is closed or exhausted.
+	 */
+	protected void release() {
+	}
+
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (closed) {
+			return false;
+		}
+		try {
+			for (; offset > 0; offset--) {
+				if (!skipNext()) {
+					close();
+					return false;
+				}
+			}
+			if (limit != 0) {
+				next = computeNext();
+			}
+		} catch (ExternalToolException e) {
+			close();
+			throw new IllegalStateException("The next result could not be " +
+					"computed", e);
+		}
+		if (next == null) {
+			close();
+			return false;
+		}
+		if (limit > 0) {
+			limit--;
+		}
+		return true;
+	}
+
+	public Map<Variable, Term> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Map<Variable, Term> result = next;
+		next = null;
+		return result;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() {
+		if (!closed) {
+			closed = true;
+			release();
+		}
+	}
+
+	/**
+	 * Returns all remaining results of a cursor and closes it.
+	 *
+	 * @param cursor the cursor
+	 * @return the variable bindings of the results
+	 */
+	public static Set<Map<Variable, Term>> toSet(QueryCursor cursor) {
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		try {
+			while (cursor.hasNext()) {
+				result.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Variable;
+import org.wsml.reasoner.ConjunctiveQuery;
+import org.wsml.reasoner.Literal;
+
+/**
+ * A facade caching the results of the queries evaluated by another facade.
+ * <p>
+ * The results are cached by the set of literals of the query, so the
+ * order of the literals doesn't matter. Every registration and
+ * deregistration of an ontology increments a version counter, results
+ * computed for an older version are not returned anymore, and the whole
+ * cache is dropped with the next result of a new version. The least
+ * recently used results are evicted when either the number of cached
+ * queries or the number of cached variable bindings exceeds its bound.
+ * A result with more variable bindings than the bound isn't cached at
+ * all.
+ * </p>
+ */
+public class CachingFacade implements ReasonerFacade {
+
+	public final static int DEFAULT_MAX_BINDINGS = 100000;
+
+	private final ReasonerFacade facade;
+
+	private final int maxQueries;
+
+	private final int maxBindings;
+
+	// The version of the registered knowledge base.
+	private final AtomicLong version = new AtomicLong();
+
+	// The cached results in the order of their last access.
+	private final LinkedHashMap<List<Object>, CachedResult> cache =
+			new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true);
+
+	// The number of variable bindings of all cached results.
+	private int bindings = 0;
+
+	// The version of the cached results.
+	private long cachedVersion = 0;
+
+	/**
+	 * @param facade the facade evaluating the queries
+	 * @param maxQueries the maximal number of cached queries
+	 * @param maxBindings the maximal number of cached variable bindings
+	 */
+	public CachingFacade(ReasonerFacade facade, int maxQueries,
+			int maxBindings) {
+		if (facade == null) {
+			throw new IllegalArgumentException("The facade must not be null");
+		}
+		this.facade = facade;
+		this.maxQueries = maxQueries;
+		this.maxBindings = maxBindings;
+	}
+
+	public void register(String ontologyURI, Set<Rule> kb)
+			throws ExternalToolException {
+		try {
+			facade.register(ontologyURI, kb);
+		} finally {
+			// also a failed registration might have changed the knowledge base
+			version.incrementAndGet();
+		}
+	}
+
+	public void deregister(String ontologyURI) throws ExternalToolException {
+		try {
+			facade.deregister(ontologyURI);
+		} finally {
+			version.incrementAndGet();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q,
+			String ontologyURI) throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		List<Object> key = new ArrayList<Object>(2);
+		key.add(ontologyURI);
+		key.add(new HashSet<Literal>(q.getLiterals()));
+
+		// the version must be read before the query is evaluated, a result
+		// of a changing knowledge base is then cached with an old version
+		long current = version.get();
+		synchronized (cache) {
+			CachedResult cached = cache.get(key);
+			if (cached != null && cached.version == current) {
+				return cached.result;
+			}
+		}
+
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		for (Map<Variable, Term> binding : (Set<Map<Variable, Term>>)
+				facade.evaluate(q, ontologyURI)) {
+			result.add(Collections.unmodifiableMap(
+					new HashMap<Variable, Term>(binding)));
+		}
+		result = Collections.unmodifiableSet(result);
+
+		synchronized (cache) {
+			CachedResult cached = new CachedResult(current, result);
+			if (current == version.get() && cached.weight() <= maxBindings) {
+				if (cachedVersion != current) {
+					cache.clear();
+					bindings = 0;
+					cachedVersion = current;
+				}
+				CachedResult old = cache.put(key, cached);
+				if (old != null) {
+					bindings -= old.weight();
+				}
+				bindings += cached.weight();
+				evict();
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Cursors are always opened at the underlying facade and the results 
+	 * streamed by them are not cached. Otherwise the pages of a result 
+	 * would be returned in a different order, depending on whether the 
+	 * result was cached in the meantime.
+	 */
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI, 
+			int offset, int limit) throws ExternalToolException {
+		return facade.evaluate(q, ontologyURI, offset, limit);
+	}
+
+	/*
+	 * The membership checks are cheaper than a lookup in the cache.
+	 */
+	public boolean entails(ConjunctiveQuery q, String ontologyURI) 
+			throws ExternalToolException {
+		return facade.entails(q, ontologyURI);
+	}
+
+	public void writeSnapshot(OutputStream out) throws IOException {
+		facade.writeSnapshot(out);
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		try {
+			facade.readSnapshot(in);
+		} finally {
+			version.incrementAndGet();
+		}
+	}
+
+	/*
+	 * Removes the least recently used results, until the cache is within 
+	 * its bounds.
+	 */
+	private void evict() {
+		Iterator<CachedResult> it = cache.values().iterator();
+		while (cache.size() > maxQueries || bindings > maxBindings) {
+			bindings -= it.next().weight();
+			it.remove();
+		}
+	}
+
+	/*
+	 * A cached result, together with the version of the knowledge base it
+	 * was computed for.
+	 */
+	private static class CachedResult {
+
+		private final long version;
+
+		private final Set<Map<Variable, Term>> result;
+
+		private CachedResult(long version, Set<Map<Variable, Term>> result) {
+			this.version = version;
+			this.result = result;
+		}
+
+		// an empty result takes a place in the cache as well
+		private int weight() {
+			return Math.max(1, result.size());
+		}
+
+	}
+
+}
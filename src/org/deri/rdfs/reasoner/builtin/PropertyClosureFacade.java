@@ -0,0 +1,580 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.WSML2DatalogTransformer;
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.terms.FMolecule;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.Variable;
+import org.openrdf.vocabulary.OWL;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+import org.wsml.reasoner.ConjunctiveQuery;
+import org.wsml.reasoner.Literal;
+
+/**
+ * A facade closing the owl:TransitiveProperty, owl:SymmetricProperty and
+ * owl:inverseOf properties, instead of generic rules joining the whole
+ * triple relation.
+ * <p>
+ * The triples of each such property, including the ones inferred by the
+ * other facade, are kept as a graph with the successors and predecessors
+ * of every term. A new triple of a transitive property connects all
+ * predecessors of its subject to all successors of its object, as the
+ * graph is kept closed. A triple of a symmetric property adds the reversed
+ * triple, a triple of a property with an inverse the reversed triple of
+ * the inverse, and a triple of a sub property the triple of each closed
+ * super property. The inferred triples are registered at the other facade
+ * as the ontology {@link #CLOSURE_URI}, so that its rules apply to them.
+ * </p>
+ * <p>
+ * The graphs are updated incrementally from the facts of a registered
+ * ontology. They are only built from scratch, by querying the other
+ * facade until no further triple is inferred, when the facts of a
+ * registered or deregistered ontology declare a characteristic or a sub
+ * property of a closed property, or when a deregistered ontology has
+ * triples of such a property. Triples of a closed property, which the
+ * rules of the other facade derive by other means than rdfs:subPropertyOf,
+ * are only found when the graphs are built from scratch.
+ * </p>
+ */
+public class PropertyClosureFacade implements ReasonerFacade {
+
+	/**
+	 * The URI of the ontology the inferred triples are registered as.
+	 */
+	public final static String CLOSURE_URI =
+			"urn:rdfs-reasoner:property-closure";
+
+	private final ReasonerFacade facade;
+
+	private final EntityFactory factory = new EntityFactoryImpl();
+
+	private final Term type = factory.createIdentifier(RDF.TYPE);
+
+	private final Term transitiveProperty = factory.createIdentifier(
+			OWL.TRANSITIVEPROPERTY);
+
+	private final Term symmetricProperty = factory.createIdentifier(
+			OWL.SYMMETRICPROPERTY);
+
+	private final Term inverseOf = factory.createIdentifier(OWL.INVERSEOF);
+
+	private final Term subPropertyOf = factory.createIdentifier(
+			RDFS.SUBPROPERTYOF);
+
+	private final Variable x = factory.createVariable("x");
+
+	private final Variable y = factory.createVariable("y");
+
+	// the predicates and the schema terms of the facts of each ontology
+	private final Map<String, Set<Term>> ontologies =
+			new HashMap<String, Set<Term>>();
+
+	// the triples of the closed properties, by property
+	private final Map<Term, PropertyGraph> graphs =
+			new HashMap<Term, PropertyGraph>();
+
+	// the characteristics of the properties, found by the last update
+	private Set<Term> transitives = Collections.emptySet();
+
+	private Set<Term> symmetrics = Collections.emptySet();
+
+	private Map<Term, Set<Term>> inverses = Collections.emptyMap();
+
+	// the closed super properties of the sub properties of closed ones
+	private Map<Term, Set<Term>> superProperties = Collections.emptyMap();
+
+	/**
+	 * @param facade the facade evaluating the rules and the queries
+	 */
+	public PropertyClosureFacade(ReasonerFacade facade) {
+		if (facade == null) {
+			throw new IllegalArgumentException("The facade must not be null");
+		}
+		this.facade = facade;
+	}
+
+	public synchronized void register(String ontologyURI, Set<Rule> kb)
+			throws ExternalToolException {
+		facade.register(ontologyURI, kb);
+		Set<Term> terms = ontologies.get(ontologyURI);
+		if (terms == null) {
+			terms = new HashSet<Term>();
+			ontologies.put(ontologyURI, terms);
+		}
+		for (Rule r : kb) {
+			if (r.isFact()) {
+				addTerms(r.getHead(), terms);
+			}
+		}
+		if (declares(kb)) {
+			rebuild();
+			return;
+		}
+		// without any closed property, only a declaration can change that
+		if (!hasClosedProperties()) {
+			return;
+		}
+		Set<Rule> inferred = new HashSet<Rule>();
+		for (Rule r : kb) {
+			if (isTriple(r) && isRelevant(r.getHead().getPredTerm())) {
+				FMolecule m = r.getHead();
+				add(m.getPredTerm(), m.getLeftTerm(), m.getRightTerm(), false,
+						inferred);
+			}
+		}
+		if (!inferred.isEmpty()) {
+			facade.register(CLOSURE_URI, inferred);
+		}
+	}
+
+	public synchronized void deregister(String ontologyURI)
+			throws ExternalToolException {
+		facade.deregister(ontologyURI);
+		Set<Term> terms = ontologies.remove(ontologyURI);
+		if (terms == null || !hasClosedProperties()) {
+			return;
+		}
+		// the inferred triples can't be told apart by their origin, but
+		// an ontology without triples of the closed properties or their
+		// sub properties, and without declarations, didn't add any
+		for (Term t : terms) {
+			if (isRelevant(t) || t.equals(inverseOf)
+					|| t.equals(transitiveProperty)
+					|| t.equals(symmetricProperty)) {
+				rebuild();
+				return;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q,
+			String ontologyURI) throws ExternalToolException {
+		return facade.evaluate(q, ontologyURI);
+	}
+
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI,
+			int offset, int limit) throws ExternalToolException {
+		return facade.evaluate(q, ontologyURI, offset, limit);
+	}
+
+	public boolean entails(ConjunctiveQuery q, String ontologyURI)
+			throws ExternalToolException {
+		return facade.entails(q, ontologyURI);
+	}
+
+	/**
+	 * Writes the terms of the registered ontologies, the characteristics
+	 * of the properties and the closed graphs, followed by the snapshot of
+	 * the other facade.
+	 */
+	public synchronized void writeSnapshot(OutputStream out)
+			throws IOException {
+		DataOutputStream data = SnapshotStreams.toDataOutput(out);
+		data.writeInt(ontologies.size());
+		for (Map.Entry<String, Set<Term>> entry : ontologies.entrySet()) {
+			data.writeUTF(entry.getKey());
+			SnapshotStreams.writeTerms(data, entry.getValue());
+		}
+		SnapshotStreams.writeTerms(data, transitives);
+		SnapshotStreams.writeTerms(data, symmetrics);
+		SnapshotStreams.writeTermSets(data, inverses);
+		SnapshotStreams.writeTermSets(data, superProperties);
+		data.writeInt(graphs.size());
+		for (Map.Entry<Term, PropertyGraph> entry : graphs.entrySet()) {
+			SnapshotStreams.writeTerm(data, entry.getKey());
+			SnapshotStreams.writeTermSets(data, entry.getValue().successors);
+		}
+		facade.writeSnapshot(data);
+		data.flush();
+	}
+
+	public synchronized void readSnapshot(InputStream in) throws IOException {
+		DataInputStream data = SnapshotStreams.toDataInput(in);
+		// the registered ontologies are only replaced after the whole
+		// snapshot was read
+		Map<String, Set<Term>> readOntologies = new HashMap<String, Set<Term>>();
+		int count = data.readInt();
+		for (int i = 0; i < count; i++) {
+			String ontologyURI = data.readUTF();
+			Set<Term> terms = new HashSet<Term>();
+			SnapshotStreams.readTerms(data, terms);
+			readOntologies.put(ontologyURI, terms);
+		}
+		Set<Term> readTransitives = new HashSet<Term>();
+		SnapshotStreams.readTerms(data, readTransitives);
+		Set<Term> readSymmetrics = new HashSet<Term>();
+		SnapshotStreams.readTerms(data, readSymmetrics);
+		Map<Term, Set<Term>> readInverses = SnapshotStreams.readTermSets(data);
+		Map<Term, Set<Term>> readSuperProperties =
+				SnapshotStreams.readTermSets(data);
+		Map<Term, PropertyGraph> readGraphs = new HashMap<Term, PropertyGraph>();
+		count = data.readInt();
+		for (int i = 0; i < count; i++) {
+			PropertyGraph graph = new PropertyGraph();
+			readGraphs.put(SnapshotStreams.readTerm(data), graph);
+			for (Map.Entry<Term, Set<Term>> entry
+					: SnapshotStreams.readTermSets(data).entrySet()) {
+				for (Term o : entry.getValue()) {
+					graph.add(entry.getKey(), o);
+				}
+			}
+		}
+		facade.readSnapshot(data);
+
+		ontologies.clear();
+		ontologies.putAll(readOntologies);
+		transitives = readTransitives;
+		symmetrics = readSymmetrics;
+		inverses = readInverses;
+		superProperties = readSuperProperties;
+		graphs.clear();
+		graphs.putAll(readGraphs);
+	}
+
+	/*
+	 * Builds the graphs from scratch, from the triples of the registered
+	 * ontologies.
+	 */
+	private void rebuild() throws ExternalToolException {
+		facade.deregister(CLOSURE_URI);
+		graphs.clear();
+		transitives = Collections.emptySet();
+		symmetrics = Collections.emptySet();
+		inverses = Collections.emptyMap();
+		superProperties = Collections.emptyMap();
+		if (!ontologies.isEmpty()) {
+			update();
+		}
+	}
+
+	/*
+	 * Adds the triples of the closed properties to their graphs, and
+	 * registers the inferred triples, until no further triple is inferred.
+	 */
+	private void update() throws ExternalToolException {
+		boolean changed = true;
+		while (changed) {
+			transitives = getSubjects(type, transitiveProperty);
+			symmetrics = getSubjects(type, symmetricProperty);
+			inverses = new HashMap<Term, Set<Term>>();
+			for (Term[] pair : getTriples(inverseOf)) {
+				addInverse(pair[0], pair[1]);
+				addInverse(pair[1], pair[0]);
+			}
+			Set<Term> properties = new HashSet<Term>(transitives);
+			properties.addAll(symmetrics);
+			properties.addAll(inverses.keySet());
+			superProperties = new HashMap<Term, Set<Term>>();
+			for (Term p : properties) {
+				for (Term sub : getSubjects(subPropertyOf, p)) {
+					if (!sub.equals(p)) {
+						addTo(superProperties, sub, p);
+					}
+				}
+			}
+
+			Set<Rule> inferred = new HashSet<Rule>();
+			for (Term p : properties) {
+				for (Term[] triple : getTriples(p)) {
+					add(p, triple[0], triple[1], false, inferred);
+				}
+			}
+			changed = !inferred.isEmpty();
+			if (changed) {
+				facade.register(CLOSURE_URI, inferred);
+			}
+		}
+	}
+
+	/*
+	 * Adds a triple to the graph of its property, and the triples inferred
+	 * from it to the graphs and to the inferred triples.
+	 */
+	private void add(Term p, Term s, Term o, boolean isInferred,
+			Set<Rule> inferred) {
+		LinkedList<Triple> agenda = new LinkedList<Triple>();
+		agenda.add(new Triple(p, s, o, isInferred, false));
+		while (!agenda.isEmpty()) {
+			Triple t = agenda.removeFirst();
+			// a triple of a sub property is only added to the super properties
+			if (isClosed(t.p) && !getGraph(t.p).add(t.s, t.o)) {
+				continue;
+			}
+			Set<Term> supers = superProperties.get(t.p);
+			if (supers != null) {
+				for (Term q : supers) {
+					agenda.add(new Triple(q, t.s, t.o, true, false));
+				}
+			}
+			if (!isClosed(t.p)) {
+				continue;
+			}
+			if (t.inferred) {
+				inferred.add(factory.createRule(factory.createFMolecule(
+						t.s, t.p, t.o)));
+			}
+			if (symmetrics.contains(t.p)) {
+				agenda.add(new Triple(t.p, t.o, t.s, true, false));
+			}
+			Set<Term> inverse = inverses.get(t.p);
+			if (inverse != null) {
+				for (Term q : inverse) {
+					agenda.add(new Triple(q, t.o, t.s, true, false));
+				}
+			}
+			// the graph is closed already, the triples connecting the
+			// predecessors with the successors don't have to be joined again
+			if (transitives.contains(t.p) && !t.closed) {
+				PropertyGraph graph = getGraph(t.p);
+				List<Term> sources = new ArrayList<Term>(
+						graph.getPredecessors(t.s));
+				sources.add(t.s);
+				List<Term> targets = new ArrayList<Term>(
+						graph.getSuccessors(t.o));
+				targets.add(t.o);
+				for (Term source : sources) {
+					for (Term target : targets) {
+						agenda.add(new Triple(t.p, source, target, true, true));
+					}
+				}
+			}
+		}
+	}
+
+	private void addInverse(Term p, Term q) {
+		addTo(inverses, p, q);
+	}
+
+	private static void addTo(Map<Term, Set<Term>> map, Term key, Term value) {
+		Set<Term> values = map.get(key);
+		if (values == null) {
+			values = new HashSet<Term>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	private boolean hasClosedProperties() {
+		return !transitives.isEmpty() || !symmetrics.isEmpty()
+				|| !inverses.isEmpty();
+	}
+
+	private boolean isClosed(Term p) {
+		return transitives.contains(p) || symmetrics.contains(p)
+				|| inverses.containsKey(p);
+	}
+
+	/*
+	 * Returns true if the triples of the property are added to a graph.
+	 */
+	private boolean isRelevant(Term p) {
+		return isClosed(p) || superProperties.containsKey(p);
+	}
+
+	private PropertyGraph getGraph(Term p) {
+		PropertyGraph graph = graphs.get(p);
+		if (graph == null) {
+			graph = new PropertyGraph();
+			graphs.put(p, graph);
+		}
+		return graph;
+	}
+
+	/*
+	 * Returns true if the rules declare a characteristic of a property, or
+	 * a sub property of a property whose triples are added to a graph.
+	 */
+	private boolean declares(Set<Rule> kb) {
+		for (Rule r : kb) {
+			FMolecule m = r.getHead();
+			if (m.getPredTerm().equals(inverseOf)
+					|| m.getRightTerm().equals(transitiveProperty)
+					|| m.getRightTerm().equals(symmetricProperty)) {
+				return true;
+			}
+			if (m.getPredTerm().equals(subPropertyOf)
+					&& (isRelevant(m.getLeftTerm())
+					|| isRelevant(m.getRightTerm()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Adds the terms of a fact, which decide whether its ontology adds
+	 * triples to the graphs: its predicate, and its subject and object if
+	 * it declares a characteristic or a sub property.
+	 */
+	private void addTerms(FMolecule m, Set<Term> terms) {
+		Term p = m.getPredTerm();
+		terms.add(p);
+		if (p.equals(inverseOf) || p.equals(subPropertyOf)
+				|| m.getRightTerm().equals(transitiveProperty)
+				|| m.getRightTerm().equals(symmetricProperty)) {
+			terms.add(m.getLeftTerm());
+			terms.add(m.getRightTerm());
+		}
+	}
+
+	/*
+	 * Returns true if the rule is a fact relating two resources.
+	 */
+	private static boolean isTriple(Rule r) {
+		if (!r.isFact()) {
+			return false;
+		}
+		FMolecule m = r.getHead();
+		return isResource(m.getLeftTerm()) && isResource(m.getPredTerm())
+				&& isResource(m.getRightTerm());
+	}
+
+	private static boolean isResource(Term t) {
+		return !(t instanceof Variable) && !(t instanceof DataValue);
+	}
+
+	/*
+	 * Returns the subjects of the triples with the given predicate and
+	 * object.
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<Term> getSubjects(Term p, Term o) throws ExternalToolException {
+		Set<Term> result = new HashSet<Term>();
+		for (Map<Variable, Term> binding : (Set<Map<Variable, Term>>)
+				facade.evaluate(createQuery(x, p, o), CLOSURE_URI)) {
+			result.add(binding.get(x));
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the subjects and objects of the triples with the given
+	 * predicate, whose object isn't a data value.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Term[]> getTriples(Term p) throws ExternalToolException {
+		List<Term[]> result = new ArrayList<Term[]>();
+		for (Map<Variable, Term> binding : (Set<Map<Variable, Term>>)
+				facade.evaluate(createQuery(x, p, y), CLOSURE_URI)) {
+			result.add(new Term[] {binding.get(x), binding.get(y)});
+		}
+		return result;
+	}
+
+	private static ConjunctiveQuery createQuery(Term s, Term p, Term o) {
+		List<Literal> body = new ArrayList<Literal>(1);
+		body.add(new Literal(true, WSML2DatalogTransformer.PRED_HAS_VALUE,
+				s, p, o));
+		return new ConjunctiveQuery(body);
+	}
+
+	/*
+	 * A triple on the agenda, together with whether it was inferred and
+	 * whether the graph of its property is closed under it already.
+	 */
+	private static class Triple {
+
+		private final Term p;
+
+		private final Term s;
+
+		private final Term o;
+
+		private final boolean inferred;
+
+		private final boolean closed;
+
+		private Triple(Term p, Term s, Term o, boolean inferred,
+				boolean closed) {
+			this.p = p;
+			this.s = s;
+			this.o = o;
+			this.inferred = inferred;
+			this.closed = closed;
+		}
+
+	}
+
+	/*
+	 * The triples of one property, as adjacency sets in both directions.
+	 */
+	private static class PropertyGraph {
+
+		private final Map<Term, Set<Term>> successors =
+				new HashMap<Term, Set<Term>>();
+
+		private final Map<Term, Set<Term>> predecessors =
+				new HashMap<Term, Set<Term>>();
+
+		// returns false if the triple is part of the graph already
+		private boolean add(Term s, Term o) {
+			if (!getAdjacent(successors, s).add(o)) {
+				return false;
+			}
+			getAdjacent(predecessors, o).add(s);
+			return true;
+		}
+
+		private Set<Term> getSuccessors(Term t) {
+			Set<Term> result = successors.get(t);
+			return result != null ? result : Collections.<Term>emptySet();
+		}
+
+		private Set<Term> getPredecessors(Term t) {
+			Set<Term> result = predecessors.get(t);
+			return result != null ? result : Collections.<Term>emptySet();
+		}
+
+		private static Set<Term> getAdjacent(Map<Term, Set<Term>> adjacency,
+				Term t) {
+			Set<Term> result = adjacency.get(t);
+			if (result == null) {
+				result = new HashSet<Term>();
+				adjacency.put(t, result);
+			}
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,482 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.terms.FMolecule;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.Variable;
+import org.openrdf.vocabulary.OWL;
+import org.wsml.reasoner.ConjunctiveQuery;
+import org.wsml.reasoner.Literal;
+
+/**
+ * A facade handling owl:sameAs by canonicalization, instead of the rules
+ * for its symmetry, transitivity and replacement, whose results grow
+ * quadratically with the number of equal terms.
+ * <p>
+ * The owl:sameAs facts partition the terms into equivalence classes (see
+ * {@link UnionFind}). The rules are registered at another facade with
+ * every term replaced by the representative of its class, and each
+ * owl:sameAs fact becomes c[sameAs ->> c] for its representative c. The
+ * constants of a query are replaced by their representatives as well, and
+ * every representative in a result is expanded to all terms of its class.
+ * </p>
+ * <p>
+ * Only the asserted owl:sameAs facts between two constants partition the
+ * terms. An owl:sameAs triple derived by a rule is registered as any other
+ * triple and doesn't make its terms interchangeable.
+ * </p>
+ * <p>
+ * The rules of each ontology are kept as they were registered, because a
+ * new owl:sameAs fact may change the representatives of terms already
+ * registered, and a deregistered one may split a class again. The
+ * ontologies mentioning such a term are then registered again.
+ * </p>
+ */
+public class SameAsFacade implements ReasonerFacade {
+
+	private final ReasonerFacade facade;
+
+	private final EntityFactory factory = new EntityFactoryImpl();
+
+	private final Term sameAs = factory.createIdentifier(OWL.SAMEAS);
+
+	private final UnionFind classes = new UnionFind();
+
+	// the rules of the registered ontologies, as they were registered
+	private final Map<String, Set<Rule>> ontologies =
+			new HashMap<String, Set<Rule>>();
+
+	// the owl:sameAs facts of the registered ontologies
+	private final Map<String, List<FMolecule>> equalities =
+			new HashMap<String, List<FMolecule>>();
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Lock read = lock.readLock();
+
+	private final Lock write = lock.writeLock();
+
+	/**
+	 * @param facade the facade evaluating the canonicalized rules and
+	 * 			queries
+	 */
+	public SameAsFacade(ReasonerFacade facade) {
+		if (facade == null) {
+			throw new IllegalArgumentException("The facade must not be null");
+		}
+		this.facade = facade;
+	}
+
+	public void register(String ontologyURI, Set<Rule> kb)
+			throws ExternalToolException {
+		if (ontologyURI == null) {
+			throw new ExternalToolException("The ontology URI must not be null");
+		}
+		if (kb == null) {
+			throw new ExternalToolException("The knowledge base must not be null");
+		}
+		write.lock();
+		try {
+			Set<Rule> registered = ontologies.get(ontologyURI);
+			List<FMolecule> equal = equalities.get(ontologyURI);
+			if (registered == null) {
+				registered = new LinkedHashSet<Rule>();
+				equal = new ArrayList<FMolecule>();
+				ontologies.put(ontologyURI, registered);
+				equalities.put(ontologyURI, equal);
+			}
+
+			Set<Term> moved = new HashSet<Term>();
+			for (Rule r : kb) {
+				if (isEquality(r)) {
+					FMolecule m = r.getHead();
+					equal.add(m);
+					classes.union(m.getLeftTerm(), m.getRightTerm(), moved);
+				}
+			}
+			// the rules registered so far, also of this ontology, are 
+			// updated before the new rules are added
+			reregister(moved);
+			registered.addAll(kb);
+			facade.register(ontologyURI, canonicalize(kb));
+		} finally {
+			write.unlock();
+		}
+	}
+
+	public void deregister(String ontologyURI) throws ExternalToolException {
+		write.lock();
+		try {
+			ontologies.remove(ontologyURI);
+			List<FMolecule> equal = equalities.remove(ontologyURI);
+			facade.deregister(ontologyURI);
+			if (equal == null || equal.isEmpty()) {
+				return;
+			}
+
+			// the classes are split again by building them from scratch
+			Map<Term, Term> representatives = new HashMap<Term, Term>();
+			for (Entry<Term, List<Term>> entry
+					: classes.getClasses().entrySet()) {
+				for (Term t : entry.getValue()) {
+					representatives.put(t, entry.getKey());
+				}
+			}
+			classes.clear();
+			List<Term> ignored = new ArrayList<Term>();
+			for (List<FMolecule> other : equalities.values()) {
+				for (FMolecule m : other) {
+					classes.union(m.getLeftTerm(), m.getRightTerm(), ignored);
+				}
+			}
+			Set<Term> moved = new HashSet<Term>();
+			for (Entry<Term, Term> entry : representatives.entrySet()) {
+				if (!classes.find(entry.getKey()).equals(entry.getValue())) {
+					moved.add(entry.getKey());
+				}
+			}
+			reregister(moved);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q,
+			String ontologyURI) throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		read.lock();
+		try {
+			if (classes.isTrivial()) {
+				return facade.evaluate(q, ontologyURI);
+			}
+			Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+			for (Map<Variable, Term> binding : (Set<Map<Variable, Term>>)
+					facade.evaluate(canonicalize(q), ontologyURI)) {
+				expand(binding, result);
+			}
+			return result;
+		} finally {
+			read.unlock();
+		}
+	}
+
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI,
+			int offset, int limit) throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		read.lock();
+		try {
+			if (classes.isTrivial()) {
+				return facade.evaluate(q, ontologyURI, offset, limit);
+			}
+			return new ExpandingCursor(facade.evaluate(canonicalize(q),
+					ontologyURI, 0, -1), offset, limit);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	public boolean entails(ConjunctiveQuery q, String ontologyURI)
+			throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		read.lock();
+		try {
+			return facade.entails(classes.isTrivial() ? q : canonicalize(q),
+					ontologyURI);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	/**
+	 * Writes the rules of the registered ontologies, as they were
+	 * registered, and the classes of equal terms, followed by the snapshot
+	 * of the other facade.
+	 */
+	public void writeSnapshot(OutputStream out) throws IOException {
+		DataOutputStream data = SnapshotStreams.toDataOutput(out);
+		read.lock();
+		try {
+			data.writeInt(ontologies.size());
+			for (Entry<String, Set<Rule>> entry : ontologies.entrySet()) {
+				data.writeUTF(entry.getKey());
+				SnapshotStreams.writeRules(data, entry.getValue());
+			}
+			Map<Term, List<Term>> equal = classes.getClasses();
+			data.writeInt(equal.size());
+			for (Entry<Term, List<Term>> entry : equal.entrySet()) {
+				SnapshotStreams.writeTerm(data, entry.getKey());
+				SnapshotStreams.writeTerms(data, entry.getValue());
+			}
+			facade.writeSnapshot(data);
+		} finally {
+			read.unlock();
+		}
+		data.flush();
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		DataInputStream data = SnapshotStreams.toDataInput(in);
+		write.lock();
+		try {
+			// the registered ontologies are only replaced after the whole
+			// snapshot was read
+			Map<String, Set<Rule>> readOntologies =
+					new HashMap<String, Set<Rule>>();
+			Map<String, List<FMolecule>> readEqualities =
+					new HashMap<String, List<FMolecule>>();
+			int count = data.readInt();
+			for (int i = 0; i < count; i++) {
+				String ontologyURI = data.readUTF();
+				Set<Rule> registered = new LinkedHashSet<Rule>();
+				SnapshotStreams.readRules(data, registered);
+				List<FMolecule> equal = new ArrayList<FMolecule>();
+				for (Rule r : registered) {
+					if (isEquality(r)) {
+						equal.add(r.getHead());
+					}
+				}
+				readOntologies.put(ontologyURI, registered);
+				readEqualities.put(ontologyURI, equal);
+			}
+			Map<Term, List<Term>> readClasses = new HashMap<Term, List<Term>>();
+			count = data.readInt();
+			for (int i = 0; i < count; i++) {
+				Term representative = SnapshotStreams.readTerm(data);
+				List<Term> members = new ArrayList<Term>();
+				SnapshotStreams.readTerms(data, members);
+				readClasses.put(representative, members);
+			}
+			facade.readSnapshot(data);
+
+			ontologies.clear();
+			ontologies.putAll(readOntologies);
+			equalities.clear();
+			equalities.putAll(readEqualities);
+			classes.clear();
+			for (Entry<Term, List<Term>> entry : readClasses.entrySet()) {
+				classes.addClass(entry.getKey(), entry.getValue());
+			}
+		} finally {
+			write.unlock();
+		}
+	}
+
+	/*
+	 * Registers the ontologies mentioning any of the given terms again,
+	 * whose representatives have changed. Must be called with the write
+	 * lock held.
+	 */
+	private void reregister(Set<Term> moved) throws ExternalToolException {
+		if (moved.isEmpty()) {
+			return;
+		}
+		for (Entry<String, Set<Rule>> entry : ontologies.entrySet()) {
+			if (mentions(entry.getValue(), moved)) {
+				facade.deregister(entry.getKey());
+				facade.register(entry.getKey(), canonicalize(entry.getValue()));
+			}
+		}
+	}
+
+	private boolean isEquality(Rule r) {
+		if (!r.isFact()) {
+			return false;
+		}
+		FMolecule m = r.getHead();
+		return m.getPredTerm().equals(sameAs) && isConstant(m.getLeftTerm())
+				&& isConstant(m.getRightTerm());
+	}
+
+	private static boolean isConstant(Term t) {
+		return !(t instanceof Variable) && !(t instanceof DataValue);
+	}
+
+	private static boolean mentions(Collection<Rule> rules, Set<Term> terms) {
+		for (Rule r : rules) {
+			if (mentions(r.getHead(), terms)) {
+				return true;
+			}
+			for (FMolecule m : r.getBody()) {
+				if (mentions(m, terms)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean mentions(FMolecule m, Set<Term> terms) {
+		return terms.contains(m.getLeftTerm())
+				|| terms.contains(m.getPredTerm())
+				|| terms.contains(m.getRightTerm());
+	}
+
+	/*
+	 * Replaces the terms of the rules by their representatives. Must be
+	 * called with a lock held.
+	 */
+	private Set<Rule> canonicalize(Collection<Rule> rules) {
+		Set<Rule> result = new HashSet<Rule>();
+		for (Rule r : rules) {
+			FMolecule head = canonicalize(r.getHead());
+			List<FMolecule> body = new LinkedList<FMolecule>();
+			boolean changed = head != r.getHead();
+			for (FMolecule m : r.getBody()) {
+				FMolecule canonical = canonicalize(m);
+				changed |= canonical != m;
+				body.add(canonical);
+			}
+			result.add(changed ? factory.createRule(head, body) : r);
+		}
+		return result;
+	}
+
+	private FMolecule canonicalize(FMolecule m) {
+		Term left = canonicalize(m.getLeftTerm());
+		Term pred = canonicalize(m.getPredTerm());
+		Term right = canonicalize(m.getRightTerm());
+		if (left == m.getLeftTerm() && pred == m.getPredTerm()
+				&& right == m.getRightTerm()) {
+			return m;
+		}
+		return factory.createFMolecule(left, pred, right);
+	}
+
+	/*
+	 * Replaces the constants of a query by their representatives.
+	 */
+	private ConjunctiveQuery canonicalize(ConjunctiveQuery q) {
+		List<Literal> body = new ArrayList<Literal>(q.getLiterals().size());
+		for (Literal l : q.getLiterals()) {
+			Term[] terms = l.getTerms().clone();
+			for (int i = 0; i < terms.length; i++) {
+				terms[i] = canonicalize(terms[i]);
+			}
+			body.add(new Literal(l.isPositive(), l.getPredicateUri(), terms));
+		}
+		return new ConjunctiveQuery(body);
+	}
+
+	// returns the same instance, if the term represents its class
+	private Term canonicalize(Term t) {
+		if (!isConstant(t)) {
+			return t;
+		}
+		Term representative = classes.find(t);
+		return representative.equals(t) ? t : representative;
+	}
+
+	/*
+	 * Adds the bindings with every combination of the terms equivalent to
+	 * the values of a binding. Must be called with the read lock held.
+	 */
+	private void expand(Map<Variable, Term> binding,
+			Collection<Map<Variable, Term>> result) {
+		List<Map<Variable, Term>> expanded = new ArrayList<Map<Variable, Term>>();
+		expanded.add(new HashMap<Variable, Term>(binding));
+		for (Entry<Variable, Term> entry : binding.entrySet()) {
+			List<Term> members = classes.getMembers(entry.getValue());
+			if (members.size() == 1) {
+				continue;
+			}
+			List<Map<Variable, Term>> next = new ArrayList<Map<Variable, Term>>(
+					expanded.size() * members.size());
+			for (Map<Variable, Term> partial : expanded) {
+				for (Term member : members) {
+					Map<Variable, Term> copy = new HashMap<Variable, Term>(partial);
+					copy.put(entry.getKey(), member);
+					next.add(copy);
+				}
+			}
+			expanded = next;
+		}
+		result.addAll(expanded);
+	}
+
+	/*
+	 * A cursor expanding the results of a cursor over a canonicalized query.
+	 */
+	private class ExpandingCursor extends AbstractQueryCursor {
+
+		private final QueryCursor cursor;
+
+		private final LinkedList<Map<Variable, Term>> pending =
+				new LinkedList<Map<Variable, Term>>();
+
+		private ExpandingCursor(QueryCursor cursor, int offset, int limit) {
+			super(offset, limit);
+			this.cursor = cursor;
+		}
+
+		protected Map<Variable, Term> computeNext() {
+			if (pending.isEmpty()) {
+				if (!cursor.hasNext()) {
+					return null;
+				}
+				Map<Variable, Term> binding = cursor.next();
+				read.lock();
+				try {
+					expand(binding, pending);
+				} finally {
+					read.unlock();
+				}
+			}
+			return pending.removeFirst();
+		}
+
+		protected void release() {
+			cursor.close();
+		}
+
+	}
+
+}
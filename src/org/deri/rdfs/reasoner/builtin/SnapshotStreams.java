@@ -0,0 +1,284 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.terms.FMolecule;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.Variable;
+import org.omwg.ontology.WsmlDataType;
+import org.wsmo.common.IRI;
+import org.wsmo.factory.DataFactory;
+import org.wsmo.factory.Factory;
+
+/**
+ * Writes and reads the terms and rules kept by the facades wrapping
+ * another facade, in front of the snapshot of the wrapped facade.
+ */
+class SnapshotStreams {
+
+	private final static int IRI_TERM = 0;
+
+	private final static int VARIABLE = 1;
+
+	private final static int STRING = 2;
+
+	private final static int INTEGER = 3;
+
+	private final static int BOOLEAN = 4;
+
+	private final static int DOUBLE = 5;
+
+	private final static EntityFactory factory = new EntityFactoryImpl();
+
+	private final static DataFactory dataFactory =
+			Factory.createDataFactory(null);
+
+	private SnapshotStreams() {
+	}
+
+	/**
+	 * @param out a stream
+	 * @return the stream, if it is a data stream already
+	 */
+	static DataOutputStream toDataOutput(OutputStream out) {
+		return out instanceof DataOutputStream ? (DataOutputStream) out
+				: new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * @param in a stream
+	 * @return the stream, if it is a data stream already
+	 */
+	static DataInputStream toDataInput(InputStream in) {
+		return in instanceof DataInputStream ? (DataInputStream) in
+				: new DataInputStream(new BufferedInputStream(in));
+	}
+
+	/**
+	 * Writes a term, which is an IRI, a variable or a data value.
+	 *
+	 * @param out the stream to write the term to
+	 * @param t the term
+	 * @throws IOException if the term is of another type
+	 */
+	static void writeTerm(DataOutputStream out, Term t) throws IOException {
+		if (t instanceof IRI) {
+			out.writeByte(IRI_TERM);
+			writeString(out, t.toString());
+			return;
+		}
+		if (t instanceof Variable) {
+			out.writeByte(VARIABLE);
+			writeString(out, ((Variable) t).getName());
+			return;
+		}
+		if (!(t instanceof DataValue)) {
+			throw new IOException("Can't write the term " + t);
+		}
+		Object value = ((DataValue) t).getValue();
+		String type = ((DataValue) t).getType().getIRI().toString();
+		if (type.equals(WsmlDataType.WSML_STRING)) {
+			out.writeByte(STRING);
+			writeString(out, value.toString());
+		}
+		else if (type.equals(WsmlDataType.WSML_INTEGER)) {
+			out.writeByte(INTEGER);
+			writeString(out, value.toString());
+		}
+		else if (type.equals(WsmlDataType.WSML_BOOLEAN)) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean(((Boolean) value).booleanValue());
+		}
+		else if (type.equals(WsmlDataType.WSML_DOUBLE)) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(((Number) value).doubleValue());
+		}
+		else {
+			throw new IOException("Can't write a value of type " + type);
+		}
+	}
+
+	/**
+	 * @param in the stream to read the term from
+	 * @return a term written by {@link #writeTerm(DataOutputStream, Term)}
+	 * @throws IOException if the term can't be read
+	 */
+	static Term readTerm(DataInputStream in) throws IOException {
+		switch (in.readByte()) {
+		case IRI_TERM:
+			return factory.createIdentifier(readString(in));
+		case VARIABLE:
+			return factory.createVariable(readString(in));
+		case STRING:
+			return dataFactory.createWsmlString(readString(in));
+		case INTEGER:
+			return dataFactory.createWsmlInteger(new BigInteger(readString(in)));
+		case BOOLEAN:
+			return dataFactory.createWsmlBoolean(Boolean.valueOf(
+					in.readBoolean()));
+		case DOUBLE:
+			return dataFactory.createWsmlDouble(Double.valueOf(
+					in.readDouble()));
+		default:
+			throw new IOException("Unknown type of term");
+		}
+	}
+
+	static void writeTerms(DataOutputStream out, Collection<Term> terms)
+			throws IOException {
+		out.writeInt(terms.size());
+		for (Term t : terms) {
+			writeTerm(out, t);
+		}
+	}
+
+	/**
+	 * Reads terms written by
+	 * {@link #writeTerms(DataOutputStream, Collection)}.
+	 *
+	 * @param in the stream to read the terms from
+	 * @param terms the collection where to add the terms
+	 * @throws IOException if the terms can't be read
+	 */
+	static void readTerms(DataInputStream in, Collection<Term> terms)
+			throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			terms.add(readTerm(in));
+		}
+	}
+
+	static void writeTermSets(DataOutputStream out,
+			Map<Term, Set<Term>> sets) throws IOException {
+		out.writeInt(sets.size());
+		for (Entry<Term, Set<Term>> entry : sets.entrySet()) {
+			writeTerm(out, entry.getKey());
+			writeTerms(out, entry.getValue());
+		}
+	}
+
+	/**
+	 * Reads the sets of terms written by
+	 * {@link #writeTermSets(DataOutputStream, Map)}.
+	 *
+	 * @param in the stream to read the sets from
+	 * @return the sets of terms, by term
+	 * @throws IOException if the sets can't be read
+	 */
+	static Map<Term, Set<Term>> readTermSets(DataInputStream in)
+			throws IOException {
+		Map<Term, Set<Term>> result = new HashMap<Term, Set<Term>>();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			Term key = readTerm(in);
+			Set<Term> terms = new HashSet<Term>();
+			readTerms(in, terms);
+			result.put(key, terms);
+		}
+		return result;
+	}
+
+	static void writeRules(DataOutputStream out, Collection<Rule> rules)
+			throws IOException {
+		out.writeInt(rules.size());
+		for (Rule r : rules) {
+			out.writeBoolean(r.isConstraint());
+			if (!r.isConstraint()) {
+				writeMolecule(out, r.getHead());
+			}
+			out.writeInt(r.getBody().size());
+			for (FMolecule m : r.getBody()) {
+				writeMolecule(out, m);
+			}
+		}
+	}
+
+	/**
+	 * Reads rules written by
+	 * {@link #writeRules(DataOutputStream, Collection)}.
+	 *
+	 * @param in the stream to read the rules from
+	 * @param rules the collection where to add the rules
+	 * @throws IOException if the rules can't be read
+	 */
+	static void readRules(DataInputStream in, Collection<Rule> rules)
+			throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			FMolecule head = in.readBoolean() ? null : readMolecule(in);
+			int size = in.readInt();
+			List<FMolecule> body = new ArrayList<FMolecule>(size);
+			for (int j = 0; j < size; j++) {
+				body.add(readMolecule(in));
+			}
+			rules.add(factory.createRule(head, body));
+		}
+	}
+
+	static void writeMolecule(DataOutputStream out, FMolecule m)
+			throws IOException {
+		writeTerm(out, m.getLeftTerm());
+		writeTerm(out, m.getPredTerm());
+		writeTerm(out, m.getRightTerm());
+	}
+
+	static FMolecule readMolecule(DataInputStream in) throws IOException {
+		Term left = readTerm(in);
+		Term pred = readTerm(in);
+		return factory.createFMolecule(left, pred, readTerm(in));
+	}
+
+	/*
+	 * Writes a string of any length, writeUTF is limited to 64 KB.
+	 */
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+}
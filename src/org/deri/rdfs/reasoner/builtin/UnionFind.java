@@ -0,0 +1,170 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omwg.logicalexpression.terms.Term;
+import org.openrdf.vocabulary.OWL;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+
+/**
+ * A union-find structure partitioning terms into equivalence classes,
+ * each of them represented by one of its terms.
+ * <p>
+ * The members of the smaller class are appended to the ones of the
+ * larger class, so that the paths to the representatives stay logarithmic
+ * and each term is copied a logarithmic number of times. Only
+ * {@link #union(Term, Term, Collection)} compresses the paths,
+ * {@link #find(Term)} doesn't modify the structure and may be called
+ * concurrently, as long as no union happens at the same time. A term of
+ * the RDF, RDFS or OWL vocabulary always represents its class, so that
+ * the rules referring to it stay valid.
+ * </p>
+ */
+class UnionFind {
+
+	// the parent of each term, which isn't the representative of its class
+	private final Map<Term, Term> parents = new HashMap<Term, Term>();
+
+	// the members of each class with more than one term, by representative
+	private final Map<Term, List<Term>> members = new HashMap<Term, List<Term>>();
+
+	/**
+	 * @param t a term
+	 * @return the representative of the class of the term, the term itself
+	 * 			if it isn't equivalent to any other term
+	 */
+	Term find(Term t) {
+		Term parent = parents.get(t);
+		while (parent != null) {
+			t = parent;
+			parent = parents.get(t);
+		}
+		return t;
+	}
+
+	/**
+	 * Merges the classes of two terms.
+	 *
+	 * @param a a term
+	 * @param b another term
+	 * @param moved the collection where to add the terms, whose
+	 * 			representative changed
+	 * @return false if the terms were equivalent already
+	 */
+	boolean union(Term a, Term b, Collection<Term> moved) {
+		Term ra = compress(a);
+		Term rb = compress(b);
+		if (ra.equals(rb)) {
+			return false;
+		}
+		List<Term> ma = getMembers(ra);
+		List<Term> mb = getMembers(rb);
+		boolean keepA = isVocabulary(ra) != isVocabulary(rb)
+				? isVocabulary(ra) : ma.size() >= mb.size();
+		Term root = keepA ? ra : rb;
+		Term child = keepA ? rb : ra;
+		List<Term> merged = members.get(root);
+		if (merged == null) {
+			merged = new ArrayList<Term>();
+			merged.add(root);
+			members.put(root, merged);
+		}
+		// only the members of the merged class are copied
+		List<Term> childMembers = keepA ? mb : ma;
+		merged.addAll(childMembers);
+		moved.addAll(childMembers);
+		parents.put(child, root);
+		members.remove(child);
+		return true;
+	}
+
+	/**
+	 * @param t a term
+	 * @return the terms equivalent to the term, including the term itself
+	 */
+	List<Term> getMembers(Term t) {
+		List<Term> result = members.get(find(t));
+		return result != null ? result : Collections.singletonList(t);
+	}
+
+	/**
+	 * @return true if no term is equivalent to another one
+	 */
+	boolean isTrivial() {
+		return members.isEmpty();
+	}
+
+	/**
+	 * @return the members of the classes with more than one term, by
+	 * 			representative
+	 */
+	Map<Term, List<Term>> getClasses() {
+		return Collections.unmodifiableMap(members);
+	}
+
+	/**
+	 * Adds a class with the given representative, as returned by
+	 * {@link #getClasses()}. None of its terms may belong to a class yet.
+	 *
+	 * @param representative the representative of the class
+	 * @param terms the members of the class, including the representative
+	 */
+	void addClass(Term representative, Collection<Term> terms) {
+		for (Term t : terms) {
+			if (!t.equals(representative)) {
+				parents.put(t, representative);
+			}
+		}
+		members.put(representative, new ArrayList<Term>(terms));
+	}
+
+	void clear() {
+		parents.clear();
+		members.clear();
+	}
+
+	/*
+	 * Finds the representative of a term and links the terms on the path
+	 * directly to it.
+	 */
+	private Term compress(Term t) {
+		Term root = find(t);
+		while (!t.equals(root)) {
+			Term parent = parents.get(t);
+			parents.put(t, root);
+			t = parent;
+		}
+		return root;
+	}
+
+	private static boolean isVocabulary(Term t) {
+		String iri = t.toString();
+		return iri.startsWith(RDF.NAMESPACE) || iri.startsWith(RDFS.NAMESPACE)
+				|| iri.startsWith(OWL.NAMESPACE);
+	}
+
+}
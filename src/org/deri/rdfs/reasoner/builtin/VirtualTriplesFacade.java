@@ -0,0 +1,430 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.WSML2DatalogTransformer;
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Variable;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+import org.wsml.reasoner.ConjunctiveQuery;
+import org.wsml.reasoner.Literal;
+
+/**
+ * A facade answering the trivial RDFS triples, which are not materialized
+ * by another facade, at query time.
+ * <p>
+ * The triples x[type ->> Resource], x[subClassOf ->> x] and
+ * x[subPropertyOf ->> x] are virtual: every literal of a query, which
+ * unifies with one of them, is rewritten to the triples the virtual triple
+ * is inferred from, i.e. any triple with x as subject or object,
+ * x[type ->> Class] or x[type ->> Property]. The query is evaluated as
+ * the union of all combinations of the rewritten literals, a literal
+ * which doesn't unify with a virtual triple isn't combined with anything.
+ * The variables bound by the unification are added to the results, which
+ * are projected to the variables of the original query.
+ * </p>
+ * <p>
+ * A result is only returned once: the results returned so far are kept
+ * in a hash set, and a result of a rewriting is dropped if it is already
+ * in the set.
+ * </p>
+ * <p>
+ * The virtual triples don't take part in the inference of any other
+ * triple, e.g. rdfs:Resource has no instances through a subclass of it.
+ * </p>
+ */
+public class VirtualTriplesFacade implements ReasonerFacade {
+
+	private final ReasonerFacade facade;
+
+	private final EntityFactory factory = new EntityFactoryImpl();
+
+	private final Term type = factory.createIdentifier(RDF.TYPE);
+
+	private final Term resource = factory.createIdentifier(RDFS.RESOURCE);
+
+	private final Term subClassOf = factory.createIdentifier(RDFS.SUBCLASSOF);
+
+	private final Term cls = factory.createIdentifier(RDFS.CLASS);
+
+	private final Term subPropertyOf = factory.createIdentifier(
+			RDFS.SUBPROPERTYOF);
+
+	private final Term property = factory.createIdentifier(RDF.PROPERTY);
+
+	/**
+	 * @param facade the facade evaluating the rewritten queries
+	 */
+	public VirtualTriplesFacade(ReasonerFacade facade) {
+		if (facade == null) {
+			throw new IllegalArgumentException("The facade must not be null");
+		}
+		this.facade = facade;
+	}
+
+	public void register(String ontologyURI, Set<Rule> kb)
+			throws ExternalToolException {
+		facade.register(ontologyURI, kb);
+	}
+
+	public void deregister(String ontologyURI) throws ExternalToolException {
+		facade.deregister(ontologyURI);
+	}
+
+	@SuppressWarnings("unchecked")
+	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q,
+			String ontologyURI) throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		List<Rewriting> rewritings = rewrite(q);
+		if (rewritings.size() == 1) {
+			return facade.evaluate(rewritings.get(0).query, ontologyURI);
+		}
+		// the whole result is kept anyway
+		Set<Variable> vars = getVariables(q);
+		Set<Map<Variable, Term>> results = new HashSet<Map<Variable, Term>>();
+		for (Rewriting rewriting : rewritings) {
+			if (!rewriting.ground) {
+				for (Map<Variable, Term> binding : (Set<Map<Variable, Term>>)
+						facade.evaluate(rewriting.query, ontologyURI)) {
+					results.add(rewriting.project(binding, vars));
+				}
+			}
+			else if (facade.entails(rewriting.query, ontologyURI)) {
+				results.add(rewriting.project(
+						new HashMap<Variable, Term>(), vars));
+			}
+		}
+		return results;
+	}
+
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI,
+			int offset, int limit) throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		List<Rewriting> rewritings = rewrite(q);
+		if (rewritings.size() == 1) {
+			return facade.evaluate(rewritings.get(0).query, ontologyURI,
+					offset, limit);
+		}
+		return new UnionCursor(rewritings, getVariables(q), ontologyURI,
+				offset, limit);
+	}
+
+	public boolean entails(ConjunctiveQuery q, String ontologyURI)
+			throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+		for (Rewriting rewriting : rewrite(q)) {
+			if (facade.entails(rewriting.query, ontologyURI)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void writeSnapshot(OutputStream out) throws IOException {
+		facade.writeSnapshot(out);
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		facade.readSnapshot(in);
+	}
+
+	/*
+	 * Rewrites a query to the union of queries answering its virtual
+	 * triples. The first rewriting is the original query, with its
+	 * variable values matching all datatypes.
+	 */
+	private List<Rewriting> rewrite(ConjunctiveQuery q) {
+		Set<String> names = new HashSet<String>();
+		for (Variable var : getVariables(q)) {
+			names.add(var.getName());
+		}
+		List<Rewriting> rewritings = new ArrayList<Rewriting>();
+		expand(q.getLiterals(), 0, new ArrayList<Literal>(),
+				new HashMap<Variable, Term>(), new FreshVariables(names),
+				rewritings);
+		return rewritings;
+	}
+
+	/*
+	 * Combines each alternative of the literal at the given index with the
+	 * alternatives of the following literals. The substitution collects the
+	 * variables bound by the unification with the virtual triples.
+	 */
+	private void expand(List<Literal> literals, int index, List<Literal> body,
+			Map<Variable, Term> substitution, FreshVariables fresh,
+			List<Rewriting> rewritings) {
+		if (index == literals.size()) {
+			List<Literal> rewritten = new ArrayList<Literal>(body.size());
+			for (Literal l : body) {
+				Term[] terms = l.getTerms().clone();
+				for (int i = 0; i < terms.length; i++) {
+					terms[i] = resolve(terms[i], substitution);
+				}
+				rewritten.add(new Literal(l.isPositive(), l.getPredicateUri(),
+						terms));
+			}
+			rewritings.add(new Rewriting(new ConjunctiveQuery(rewritten),
+					substitution));
+			return;
+		}
+		Literal l = literals.get(index);
+		Term[] t = l.getTerms();
+		// the virtual triples have resources as values, which are matched 
+		// by the any-value predicate as well
+		if (!l.isPositive() || t.length != 3 || !(l.getPredicateUri().equals(
+				WSML2DatalogTransformer.PRED_HAS_VALUE) || l.getPredicateUri()
+				.equals(WSML2DatalogTransformer.PRED_HAS_ANY_VALUE))) {
+			expand(literals, index + 1, with(body, l), substitution, fresh,
+					rewritings);
+			return;
+		}
+
+		expand(literals, index + 1, with(body, l), substitution, fresh,
+				rewritings);
+
+		// x[type ->> Resource] for every subject and object x of a triple
+		Map<Variable, Term> bound = new HashMap<Variable, Term>(substitution);
+		if (unify(t[1], type, bound) && unify(t[2], resource, bound)) {
+			expand(literals, index + 1, with(body, new Literal(true,
+					WSML2DatalogTransformer.PRED_HAS_ANY_VALUE, t[0],
+					fresh.next(), fresh.next())), bound, fresh, rewritings);
+			expand(literals, index + 1, with(body, new Literal(true,
+					WSML2DatalogTransformer.PRED_HAS_ANY_VALUE, fresh.next(),
+					fresh.next(), t[0])), bound, fresh, rewritings);
+		}
+
+		// x[subClassOf ->> x] for every class x
+		bound = new HashMap<Variable, Term>(substitution);
+		if (unify(t[1], subClassOf, bound) && unify(t[0], t[2], bound)) {
+			expand(literals, index + 1, with(body, new Literal(true,
+					WSML2DatalogTransformer.PRED_HAS_VALUE, t[0], type, cls)),
+					bound, fresh, rewritings);
+		}
+
+		// x[subPropertyOf ->> x] for every property x
+		bound = new HashMap<Variable, Term>(substitution);
+		if (unify(t[1], subPropertyOf, bound) && unify(t[0], t[2], bound)) {
+			expand(literals, index + 1, with(body, new Literal(true,
+					WSML2DatalogTransformer.PRED_HAS_VALUE, t[0], type,
+					property)), bound, fresh, rewritings);
+		}
+	}
+
+	private static List<Literal> with(List<Literal> body, Literal l) {
+		List<Literal> result = new ArrayList<Literal>(body.size() + 1);
+		result.addAll(body);
+		result.add(l);
+		return result;
+	}
+
+	/*
+	 * Unifies two terms under a substitution, which is extended by the
+	 * variable bound by the unification.
+	 */
+	private static boolean unify(Term a, Term b,
+			Map<Variable, Term> substitution) {
+		a = resolve(a, substitution);
+		b = resolve(b, substitution);
+		if (a.equals(b)) {
+			return true;
+		}
+		if (a instanceof Variable) {
+			substitution.put((Variable) a, b);
+			return true;
+		}
+		if (b instanceof Variable) {
+			substitution.put((Variable) b, a);
+			return true;
+		}
+		return false;
+	}
+
+	private static Term resolve(Term term, Map<Variable, Term> substitution) {
+		while (term instanceof Variable && substitution.containsKey(term)) {
+			term = substitution.get(term);
+		}
+		return term;
+	}
+
+	private static Set<Variable> getVariables(ConjunctiveQuery q) {
+		Set<Variable> vars = new LinkedHashSet<Variable>();
+		for (Literal l : q.getLiterals()) {
+			for (Term t : l.getTerms()) {
+				if (t instanceof Variable) {
+					vars.add((Variable) t);
+				}
+			}
+		}
+		return vars;
+	}
+
+	/*
+	 * A rewritten query, together with the substitution of the variables
+	 * of the original query.
+	 */
+	private static class Rewriting {
+
+		private final ConjunctiveQuery query;
+
+		private final Map<Variable, Term> substitution;
+
+		private final boolean ground;
+
+		private Rewriting(ConjunctiveQuery query,
+				Map<Variable, Term> substitution) {
+			this.query = query;
+			this.substitution = substitution;
+			this.ground = getVariables(query).isEmpty();
+		}
+
+		/*
+		 * Projects a result of the rewritten query to the variables of the
+		 * original query.
+		 */
+		private Map<Variable, Term> project(Map<Variable, Term> binding,
+				Set<Variable> vars) {
+			Map<Variable, Term> result = new HashMap<Variable, Term>();
+			for (Variable var : vars) {
+				Term value = resolve(var, substitution);
+				result.put(var, value instanceof Variable
+						? binding.get(value) : value);
+			}
+			return result;
+		}
+
+	}
+
+	/*
+	 * Creates variables not occurring in the original query.
+	 */
+	private class FreshVariables {
+
+		private final Set<String> names;
+
+		private int count = 0;
+
+		private FreshVariables(Set<String> names) {
+			this.names = names;
+		}
+
+		private Variable next() {
+			String name;
+			do {
+				name = "virtual" + count++;
+			} while (names.contains(name));
+			return factory.createVariable(name);
+		}
+
+	}
+
+	/*
+	 * A cursor over the union of the results of the rewritten queries,
+	 * the rewritings are evaluated one after the other. Results found by
+	 * several rewritings are only returned once.
+	 */
+	private class UnionCursor extends AbstractQueryCursor {
+
+		private final List<Rewriting> rewritings;
+
+		private final Set<Variable> vars;
+
+		private final String ontologyURI;
+
+		private int index = -1;
+
+		private Rewriting current = null;
+
+		private QueryCursor cursor = null;
+
+		// the results returned so far, by any of the rewritings
+		private final Set<Map<Variable, Term>> returned =
+				new HashSet<Map<Variable, Term>>();
+
+		private UnionCursor(List<Rewriting> rewritings, Set<Variable> vars,
+				String ontologyURI, int offset, int limit) {
+			super(offset, limit);
+			this.rewritings = rewritings;
+			this.vars = vars;
+			this.ontologyURI = ontologyURI;
+		}
+
+		protected Map<Variable, Term> computeNext()
+				throws ExternalToolException {
+			while (true) {
+				if (cursor != null && cursor.hasNext()) {
+					Map<Variable, Term> result = current.project(cursor.next(),
+							vars);
+					if (returned.add(result)) {
+						return result;
+					}
+					continue;
+				}
+				release();
+				if (++index == rewritings.size()) {
+					return null;
+				}
+				current = rewritings.get(index);
+				if (!current.ground) {
+					cursor = facade.evaluate(current.query, ontologyURI, 0, -1);
+				}
+				// a ground rewriting has at most the empty result
+				else if (facade.entails(current.query, ontologyURI)) {
+					Map<Variable, Term> result = current.project(
+							new HashMap<Variable, Term>(), vars);
+					if (returned.add(result)) {
+						return result;
+					}
+				}
+			}
+		}
+
+		protected void release() {
+			if (cursor != null) {
+				cursor.close();
+				cursor = null;
+			}
+		}
+
+	}
+
+}
@@ -22,16 +22,26 @@ import static org.deri.iris.factory.Factory.BASIC;
 import static org.deri.iris.factory.Factory.BUILTIN;
 import static org.deri.iris.factory.Factory.CONCRETE;
 import static org.deri.iris.factory.Factory.PROGRAM;
+import static org.deri.iris.factory.Factory.RELATION;
 import static org.deri.iris.factory.Factory.TERM;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.deri.iris.Executor;
 import org.deri.iris.api.IExecutor;
@@ -42,18 +52,37 @@ import org.deri.iris.api.basics.IPredicate;
 import org.deri.iris.api.basics.IQuery;
 import org.deri.iris.api.basics.IRule;
 import org.deri.iris.api.basics.ITuple;
+import org.deri.iris.api.builtins.IBuiltInAtom;
+import org.deri.iris.api.evaluation.algebra.IComponent;
+import org.deri.iris.api.evaluation.algebra.IExpressionEvaluator;
 import org.deri.iris.api.storage.IRelation;
 import org.deri.iris.api.terms.IConstructedTerm;
 import org.deri.iris.api.terms.ITerm;
 import org.deri.iris.api.terms.IVariable;
+import org.deri.iris.api.terms.concrete.IBooleanTerm;
+import org.deri.iris.api.terms.concrete.IDoubleTerm;
 import org.deri.iris.api.terms.concrete.IIri;
+import org.deri.iris.builtins.AddBuiltin;
+import org.deri.iris.builtins.DivideBuiltin;
+import org.deri.iris.builtins.EqualBuiltin;
+import org.deri.iris.builtins.GreaterBuiltin;
+import org.deri.iris.builtins.GreaterEqualBuiltin;
+import org.deri.iris.builtins.LessBuiltin;
+import org.deri.iris.builtins.LessEqualBuiltin;
+import org.deri.iris.builtins.MultiplyBuiltin;
+import org.deri.iris.builtins.SubtractBuiltin;
+import org.deri.iris.builtins.UnEqualBuiltin;
 import org.deri.iris.evaluation.algebra.ExpressionEvaluator;
+import org.deri.iris.evaluation.algebra.Rule2Relation;
 import org.deri.iris.terms.StringTerm;
 import org.deri.iris.terms.concrete.IntegerTerm;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.ReasonerFacade;
 import org.deri.rdfs.reasoner.api.factory.EntityFactory;
 import org.deri.rdfs.reasoner.api.terms.FMolecule;
 import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.builtin.AbstractQueryCursor;
+import org.deri.rdfs.reasoner.builtin.rdfs.IntList;
 import org.deri.rdfs.reasoner.exception.DatalogException;
 import org.deri.rdfs.reasoner.exception.ExternalToolException;
 import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
@@ -93,6 +122,30 @@ public class IrisFacade implements ReasonerFacade{
 	
 	public final static String PRED_HAS_DOUBLE_VALUE = "has-double-value";
 	
+	public final static String PRED_HAS_ANY_VALUE = "has-any-value";
+	
+	private final static String DELTA_PREFIX = "_delta_";
+	
+	private final static String REDERIVE_PREFIX = "_rederive_";
+	
+	/*
+	 * The values of all data types are kept in the single relation of 
+	 * PRED_HAS_VALUE, its first two terms tell the types of the subject 
+	 * and of the value, followed by the subject, the predicate and the 
+	 * value. The names of the data type predicates are used as types. The 
+	 * relations of iris are sorted, and terms of different types compare 
+	 * as equal, thus the types have to come first to keep the order of 
+	 * tuples mixing iris and data values consistent.
+	 */
+	private final static int VALUE_ARITY = 5;
+	
+	/*
+	 * The prefix of the variables, which stand for the type of a variable. 
+	 * It must not start with an underscore, since iris doesn't keep such 
+	 * variables in the head of a rule.
+	 */
+	private final static String TYPE_VARIABLE = "type-of-";
+	
 	// The iris program to evaluate the queries.
 	private IProgram p = PROGRAM.createProgram();
 
@@ -108,176 +161,222 @@ public class IrisFacade implements ReasonerFacade{
 	 */
 	private boolean rulesChanged = true;
 
-	// Excutor that executes the queries.
-	private IExecutor e = new Executor(p, new ExpressionEvaluator());
+	/*
+	 * Facts that were added since the last calculation of the fixed point,
+	 * grouped by their predicate. Only their consequences are computed
+	 * during an incremental evaluation.
+	 */
+	private Map<IPredicate, Set<ITuple>> delta = 
+			new HashMap<IPredicate, Set<ITuple>>();
+
+	/*
+	 * The rules of the program. Iris modifies the rules when it translates 
+	 * them, so it only gets copies of them.
+	 */
+	private Set<IRule> rules = new HashSet<IRule>();
+
+	/*
+	 * The distinct facts of the registered ontologies, indexed by their 
+	 * id. The id of a fact, which isn't registered anymore, is null until 
+	 * it is reused.
+	 */
+	@SuppressWarnings("rawtypes")
+	private final List<IAtom> facts = new ArrayList<IAtom>();
+
+	// The registrations of the facts of the registered ontologies.
+	@SuppressWarnings("rawtypes")
+	private final Map<IAtom, Registration> registrations = 
+			new HashMap<IAtom, Registration>();
+
+	// The ids of the facts, which can be reused.
+	private final IntList freeIds = new IntList();
+
+	/*
+	 * The ids of the facts of the registered ontologies, grouped by their 
+	 * URI. A fact registered twice by an ontology is listed twice.
+	 */
+	private final Map<String, IntList> ontologyFacts = 
+			new HashMap<String, IntList>();
+
+	// The rules of the registered ontologies, grouped by their URI.
+	private Map<String, Set<IRule>> ontologyRules = 
+			new HashMap<String, Set<IRule>>();
+
+	// Rules that were added since the last calculation of the fixed point.
+	private Set<IRule> newRules = new HashSet<IRule>();
+
+	/*
+	 * The rules of the program, rewritten for semi-naive evaluation and
+	 * translated to relational algebra. Null if they have to be rebuilt.
+	 */
+	private Map<IPredicate, IComponent> deltaRules = null;
+
+	private final IExpressionEvaluator evaluator = new ExpressionEvaluator();
+
+	// Excutor that computes the fixed point of programs with negation.
+	private IExecutor e = new Executor(p, evaluator);
 	
 	/*
-	 * Map to determine whether a rule for a conjunctive query was already created. 
-	 * <ul>
-	 * <li>key = the <code>ConjunctiveQuery</code> object which was substituted</li>
-	 * <li>value = the literal uesd to substitute the query</li>
-	 * </ul>
+	 * Queries are evaluated concurrently under the read lock, they only 
+	 * take the write lock to bring the fixed point up to date. Registering 
+	 * and deregistering ontologies takes the write lock.
 	 */
-	private Map<ConjunctiveQuery, IQuery> conjunctiveQueries = 
-			new HashMap<ConjunctiveQuery, IQuery>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 	
-	private EntityFactory factory = new EntityFactoryImpl();
+	private final Lock read = lock.readLock();
 	
-	private final DataFactory dataFactory = Factory.createDataFactory(null);
+	private final Lock write = lock.writeLock();
 	
-	private boolean STRING = false;
+	/*
+	 * The tuples of the relations of the fixed point in hash sets, built 
+	 * when a relation is checked for a ground literal the first time. 
+	 * Maintained while facts are added to and removed from the program, 
+	 * cleared when the program is rebuilt.
+	 */
+	private final Map<IPredicate, Set<ITuple>> indexes = 
+			new ConcurrentHashMap<IPredicate, Set<ITuple>>();
 	
-	private boolean INTEGER = false;
+	/*
+	 * The tuples of the relations of the fixed point by the terms of some 
+	 * of their columns, built when a literal with these columns bound is 
+	 * matched the first time. Extended while facts are added, dropped when 
+	 * facts are removed or the program is rebuilt.
+	 */
+	@SuppressWarnings("rawtypes")
+	private final Map<IPredicate, Map<List<Integer>, Map<List<ITerm>, 
+			List<ITuple>>>> columnIndexes = new ConcurrentHashMap<IPredicate, 
+			Map<List<Integer>, Map<List<ITerm>, List<ITuple>>>>();
 	
-	private boolean DOUBLE = false;
+	private EntityFactory factory = new EntityFactoryImpl();
 	
-	private boolean BOOLEAN = false;
+	private final DataFactory dataFactory = Factory.createDataFactory(null);
 	
+	@SuppressWarnings("rawtypes")
 	public void register(String ontologyURI, Set<Rule> kb) throws ExternalToolException {
-		// the ontologyURI is at the moment ignored, because at the moment
-		// program only supports one instance per vm
-		if (kb == null) {
-			throw new ExternalToolException("The knowlebe base must not be null");
-		}
-
-		// translating all the rules
-		for (Rule r : kb) {
-			// the rule is a fact
-			if (r.isFact()) { 
-				if (p.addFact(literal2Atom(r.getHead()))) {
-					factsChanged = true;
-				}
+		write.lock();
+		try {
+			// the ontologyURI is at the moment ignored, because at the moment
+			// program only supports one instance per vm
+			if (kb == null) {
+				throw new ExternalToolException("The knowlebe base must not be null");
 			}
-			// the rule is an ordinary rule
-			else { 
-				boolean multiple = false;
-				List<ILiteral> body = new ArrayList<ILiteral>(r.getBody()
-						.size());
-				// check whether the molecule consists of three variables
-				for (FMolecule m : r.getBody()) {
-					if (m.getLeftTerm() instanceof Variable && 
-							m.getPredTerm() instanceof Variable && 
-							m.getRightTerm() instanceof Variable) {
-						multiple = true;
-					}
+			if (!ontologyFacts.containsKey(ontologyURI)) {
+				ontologyFacts.put(ontologyURI, new IntList());
+				ontologyRules.put(ontologyURI, new HashSet<IRule>());
+			}
+
+			// translating all the rules
+			for (Rule r : kb) {
+				// the rule is a fact
+				if (r.isFact()) { 
+					addFact(ontologyURI, literal2Atom(r.getHead(), null));
 				}
-				
-				// converting the body of the rule
-				
-				// if the molecule is only composed of variables, then we 
-				// add the rule not only with PRED_HAS_VALUE in the body, but 
-				// do also add rules with the datatype predicates in the body
-				if (multiple) {		
-					for (FMolecule m : r.getBody()) {
-						if (m.getLeftTerm() instanceof Variable && 
-								m.getPredTerm() instanceof Variable && 
-								m.getRightTerm() instanceof Variable) {
-							STRING = true;
-							body.add(literal2Literal(m));
-							STRING = false;
-						}
-						else {
-							body.add(literal2Literal(m));
-						}
-					}
-					if (p.addRule(BASIC.createRule(BASIC
-							.createHead(literal2Literal(r.getHead())), BASIC
-							.createBody(body)))) {
-						rulesChanged = true;
-					}
-					body.clear();
-					for (FMolecule m : r.getBody()) {
-						if (m.getLeftTerm() instanceof Variable && 
-								m.getPredTerm() instanceof Variable && 
-								m.getRightTerm() instanceof Variable) {
-							INTEGER = true;
-							body.add(literal2Literal(m));
-							INTEGER = false;
-						}
-						else {
-							body.add(literal2Literal(m));
-						}
-					}
-					if (p.addRule(BASIC.createRule(BASIC
-							.createHead(literal2Literal(r.getHead())), BASIC
-							.createBody(body)))) {
-						rulesChanged = true;
-					}
-					body.clear();
-					for (FMolecule m : r.getBody()) {
-						if (m.getLeftTerm() instanceof Variable && 
-								m.getPredTerm() instanceof Variable && 
-								m.getRightTerm() instanceof Variable) {
-							DOUBLE = true;
-							body.add(literal2Literal(m));
-							DOUBLE = false;
-						}
-						else {
-							body.add(literal2Literal(m));
-						}
-					}
-					if (p.addRule(BASIC.createRule(BASIC
-							.createHead(literal2Literal(r.getHead())), BASIC
-							.createBody(body)))) {
-						rulesChanged = true;
-					}
-					body.clear();
+				// the rule is an ordinary rule
+				else { 
+					List<ILiteral> body = new ArrayList<ILiteral>(r.getBody()
+							.size());
+					// converting the body of the rule, the type of each 
+					// variable is left open, so that it matches the values 
+					// of all datatypes
+					Set<IVariable> typed = new HashSet<IVariable>();
 					for (FMolecule m : r.getBody()) {
-						if (m.getLeftTerm() instanceof Variable && 
-								m.getPredTerm() instanceof Variable && 
-								m.getRightTerm() instanceof Variable) {
-							BOOLEAN = true;
-							body.add(literal2Literal(m));
-							BOOLEAN = false;
-						}
-						else {
-							body.add(literal2Literal(m));
-						}
+						ILiteral l = BASIC.createLiteral(true, 
+								literal2Atom(m, null));
+						typed.addAll(getTypedVariables(l.getTuple()));
+						body.add(l);
 					}
-					if (p.addRule(BASIC.createRule(BASIC
-							.createHead(literal2Literal(r.getHead())), BASIC
-							.createBody(body)))) {
-						rulesChanged = true;
-					}
-					body.clear();
-				}
-				
-				// standard converting to PRED_HAS_VALUE
-				for (FMolecule m : r.getBody()) {
-					body.add(literal2Literal(m));
-				}
-				if (p.addRule(BASIC.createRule(BASIC
-						.createHead(literal2Literal(r.getHead())), BASIC
-						.createBody(body)))) {
-					rulesChanged = true;
+					IAtom head = renameRepeatedVariables(literal2Atom(
+							r.getHead(), typed), body);
+					addRule(ontologyURI, BASIC.createRule(BASIC.createHead(
+							BASIC.createLiteral(true, head)), 
+							BASIC.createBody(body)));
 				}
 			}
+//			Map<IPredicate, IRelation> map = p.getFacts();
+//			Set<Entry<IPredicate, IRelation>> entries = map.entrySet();
+//			for (Entry<IPredicate, IRelation> entry : entries) {
+//				System.out.println("Predicate: " + entry.getKey());
+//				IRelation relation = entry.getValue();
+//				System.out.println("  " + relation.size());
+//				Iterator it = relation.iterator();
+//				while (it.hasNext())
+//					System.out.println(it.next().toString());
+//			}
+//			Set<IRule> rulSet = p.getRules();
+//			for (IRule iR : rulSet)
+//				System.out.println("Rule: " + iR.toString());
+		} finally {
+			write.unlock();
 		}
-//		Map<IPredicate, IRelation> map = p.getFacts();
-//		Set<Entry<IPredicate, IRelation>> entries = map.entrySet();
-//		for (Entry<IPredicate, IRelation> entry : entries) {
-//			System.out.println("Predicate: " + entry.getKey());
-//			IRelation relation = entry.getValue();
-//			System.out.println("  " + relation.size());
-//			Iterator it = relation.iterator();
-//			while (it.hasNext())
-//				System.out.println(it.next().toString());
-//		}
-//		Set<IRule> rulSet = p.getRules();
-//		for (IRule iR : rulSet)
-//			System.out.println("Rule: " + iR.toString());
 	}
 	
+	@SuppressWarnings("rawtypes")
 	public void deregister(String ontologyURI) {
-		// the ontologyURI is at the moment ignored, because at the moment
-		// program only supports one instance per vm
-		rulesChanged = true;
-		factsChanged = true;
-		p.resetProgram();
+		write.lock();
+		try {
+			IntList ids = ontologyFacts.remove(ontologyURI);
+			Set<IRule> removedRules = ontologyRules.remove(ontologyURI);
+			if (ids == null) {
+				// the ontology is not registered
+				return;
+			}
+			if (ontologyFacts.isEmpty()) {
+				// no ontology left -> reset the whole program
+				rulesChanged = true;
+				factsChanged = true;
+				delta.clear();
+				rules.clear();
+				newRules.clear();
+				deltaRules = null;
+				p.resetProgram();
+				indexes.clear();
+				columnIndexes.clear();
+				facts.clear();
+				registrations.clear();
+				freeIds.clear();
+				return;
+			}
+		
+			// the rules and facts, which are not used by any other ontology
+			for (Set<IRule> other : ontologyRules.values()) {
+				removedRules.removeAll(other);
+			}
+			Map<IPredicate, Set<ITuple>> removedFacts = 
+					new HashMap<IPredicate, Set<ITuple>>();
+			for (int i = 0; i < ids.size(); i++) {
+				IAtom a = facts.get(ids.get(i));
+				Registration r = registrations.get(a);
+				if (--r.count == 0) {
+					registrations.remove(a);
+					facts.set(r.id, null);
+					freeIds.add(r.id);
+					getTuples(removedFacts, a.getPredicate()).add(a.getTuple());
+				}
+			}
+		
+			if (hasNegation(rules)) {
+				// the fixed point can't be maintained -> compute it again from 
+				// the facts of the remaining ontologies
+				rules.removeAll(removedRules);
+				recompute();
+			}
+			else if (!removedFacts.isEmpty() || !removedRules.isEmpty()) {
+				updateFixedPoint();
+				deleteFacts(removedFacts, removedRules);
+			}
+		} finally {
+			write.unlock();
+		}
 	}
 
 	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q, String ontologyURI) 
 			throws ExternalToolException {
+		return AbstractQueryCursor.toSet(evaluate(q, ontologyURI, 0, -1));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI, 
+			int offset, int limit) throws ExternalToolException {
 //		System.out.println(q.toString());
 		// the ontologyURI is at the moment ignored, because at the moment
 		// program only supports one instance per vm
@@ -286,161 +385,1180 @@ public class IrisFacade implements ReasonerFacade{
 		}
 
 		// constructing the query
-		List<ILiteral> body = new ArrayList<ILiteral>(q.getLiterals().size());
+		List<ILiteral> body = convertQuery(q);
 		
-		// converting the literals of the query
-		for (Literal l : q.getLiterals()) {
-			body.add(literal2Literal(l));
+		read.lock();
+		try {
+			prepare();
+			
+			// creating the query
+			IQuery query = BASIC.createQuery(body);
+
+			// constructing the result set, the tuples are converted while 
+			// the cursor is advanced. The relations may change after the 
+			// read lock is released, so the tuples of an unlimited query 
+			// are all collected now.
+			List<IVariable> columns = new ArrayList<IVariable>();
+			int max = limit < 0 ? Integer.MAX_VALUE 
+					: (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+			Collection<ITuple> result = evaluateQuery(body, columns, max);
+			List<IVariable> qVars = new ArrayList<IVariable>();
+			for (IVariable v : query.getQueryVariables()) {
+				if (!isTypeVariable(v)) {
+					qVars.add(v);
+				}
+			}
+			return new TupleCursor(result, qVars, columns, offset, limit);
+		} finally {
+			read.unlock();
+		}
+	}
+	
+	@SuppressWarnings("rawtypes")
+	public boolean entails(ConjunctiveQuery q, String ontologyURI) 
+			throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
 		}
+		List<ILiteral> body = convertQuery(q);
 		
-		// creating the query
-		IQuery query;
-		// we got a conjunctive query -> replace it
-		if (body.size() > 1) {
-			IQuery conjQ = conjunctiveQueries.get(q);
-			if (conjQ == null) { // this query was never replaced before
-				// getting all variables
-				final Set<IVariable> vars = new HashSet<IVariable>();
-				for (final ILiteral l : body) {
-					vars.addAll(l.getTuple().getAllVariables());
+		read.lock();
+		try {
+			prepare();
+			
+			// the ground literals are looked up in the hashed relations, the 
+			// others are evaluated until the first result
+			List<ILiteral> open = new ArrayList<ILiteral>();
+			for (ILiteral l : body) {
+				if (!l.isPositive() || l.getAtom().isBuiltin() 
+						|| !l.getTuple().isGround()) {
+					open.add(l);
 				}
-				// creating the new predicate and literal
-				final ILiteral conjL = BASIC.createLiteral(true, 
-						BASIC.createPredicate("_replacement_" + q.hashCode(), 
-								vars.size()), 
-						BASIC.createTuple(new ArrayList<ITerm>(vars)));
-				// creating and adding the new rule
-				p.addRule(BASIC.createRule(BASIC.createHead(conjL), 
-						BASIC.createBody(body)));
-				// creating and adding the query
-				conjQ = BASIC.createQuery(conjL);
-				conjunctiveQueries.put(q, conjQ);
-			}
-			query = conjQ;
-		} 
-		// this is a normal query
-		else { 
-//			System.out.println(body.toString());
-			query = BASIC.createQuery(body);
+				else if (!getIndex(l.getPredicate()).contains(l.getTuple())) {
+					return false;
+				}
+			}
+			return open.isEmpty() 
+					|| !evaluateQuery(open, new ArrayList<IVariable>(), 1).isEmpty();
+		} finally {
+			read.unlock();
 		}
+	}
 
-		
-		// update the executor, if there has been something changed
-		// if there are new rules -> translate them all
-		if (rulesChanged) { 
-			e = new Executor(p, new ExpressionEvaluator());
+	/**
+	 * Not supported, all facades share the same program. The reasoners 
+	 * reject snapshots of IRIS before they reach the facade.
+	 */
+	public void writeSnapshot(OutputStream out) throws IOException {
+		throw new UnsupportedOperationException("Snapshots are only " +
+				"supported by the native reasoner");
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		throw new UnsupportedOperationException("Snapshots are only " +
+				"supported by the native reasoner");
+	}
+	
+	/**
+	 * Brings the fixed point up to date before a query is evaluated. Must 
+	 * be called with the read lock held, which is upgraded to the write 
+	 * lock in the meantime, if necessary.
+	 */
+	private void prepare() {
+		if (factsChanged || rulesChanged) {
+			read.unlock();
+			write.lock();
+			try {
+				updateFixedPoint();
+			} finally {
+				// downgrade to the read lock
+				read.lock();
+				write.unlock();
+			}
 		}
-		// if there are new facts or rules
-		if (factsChanged || rulesChanged) { 
-			// -> compute the fixed point
-			e.execute();
+	}
+	
+	/**
+	 * Returns the tuples of a relation of the fixed point in a hash set, 
+	 * which is searched faster than the sorted relation. Must be called 
+	 * with the read or the write lock held.
+	 * 
+	 * @param pred the predicate of the relation
+	 * @return the tuples of the relation
+	 */
+	private Set<ITuple> getIndex(IPredicate pred) {
+		Set<ITuple> index = indexes.get(pred);
+		if (index == null) {
+			IRelation rel = p.getFacts(pred);
+			if (rel == null) {
+				return Collections.emptySet();
+			}
+			index = new HashSet<ITuple>(rel);
+			// concurrent queries may build the same index, that's harmless
+			indexes.put(pred, index);
 		}
-		rulesChanged = false;
-		factsChanged = false;
-
-		// constructing the result set
-		Set<ITuple> result = e.computeSubstitution(query);
+		return index;
+	}
+	
+	/**
+	 * Adds tuples, which were added to a relation of the fixed point, to 
+	 * the index of the relation, if it was built already. Must be called 
+	 * with the write lock held.
+	 * 
+	 * @param pred the predicate of the relation
+	 * @param tuples the added tuples
+	 */
+	@SuppressWarnings("rawtypes")
+	private void addToIndex(IPredicate pred, Collection<ITuple> tuples) {
+		Set<ITuple> index = indexes.get(pred);
+		if (index != null) {
+			index.addAll(tuples);
+		}
+		Map<List<Integer>, Map<List<ITerm>, List<ITuple>>> byColumns = 
+				columnIndexes.get(pred);
+		if (byColumns != null) {
+			for (Entry<List<Integer>, Map<List<ITerm>, List<ITuple>>> entry : 
+					byColumns.entrySet()) {
+				addToColumnIndex(entry.getValue(), entry.getKey(), tuples);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the tuples of a relation of the fixed point by the terms of 
+	 * some of their columns. Must be called with the read or the write 
+	 * lock held.
+	 * 
+	 * @param pred the predicate of the relation
+	 * @param columns the bound columns
+	 * @return the tuples of the relation by the terms of the columns
+	 */
+	@SuppressWarnings("rawtypes")
+	private Map<List<ITerm>, List<ITuple>> getColumnIndex(IPredicate pred, 
+			List<Integer> columns) {
+		Map<List<Integer>, Map<List<ITerm>, List<ITuple>>> byColumns = 
+				columnIndexes.get(pred);
+		if (byColumns == null) {
+			byColumns = new ConcurrentHashMap<List<Integer>, 
+					Map<List<ITerm>, List<ITuple>>>();
+			// concurrent queries may build the same index, that's harmless
+			columnIndexes.put(pred, byColumns);
+		}
+		Map<List<ITerm>, List<ITuple>> index = byColumns.get(columns);
+		if (index == null) {
+			index = new HashMap<List<ITerm>, List<ITuple>>();
+			addToColumnIndex(index, columns, getIndex(pred));
+			byColumns.put(columns, index);
+		}
+		return index;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private static void addToColumnIndex(Map<List<ITerm>, List<ITuple>> index, 
+			List<Integer> columns, Collection<ITuple> tuples) {
+		for (ITuple t : tuples) {
+			List<ITerm> key = getKey(t, columns);
+			List<ITuple> matching = index.get(key);
+			if (matching == null) {
+				matching = new ArrayList<ITuple>();
+				index.put(key, matching);
+			}
+			matching.add(t);
+		}
+	}
+	
+	/**
+	 * A cursor converting the tuples of a result to variable bindings, one 
+	 * at a time.
+	 */
+	private class TupleCursor extends AbstractQueryCursor {
 		
-		Set<Map<Variable, Term>> res = new HashSet<Map<Variable, Term>>();
+		private final Iterator<ITuple> tuples;
 		
-		List<IVariable> qVars = query.getQueryVariables();
-		for (ITuple t : result) {
-			Map<Variable, Term> varBinding = new HashMap<Variable, Term>();
-			for (IVariable v : qVars) {
+		private final Variable[] vars;
+		
+		// the index of the term of each variable in the tuples
+		private final int[] indexes;
+		
+		@SuppressWarnings("rawtypes")
+		private TupleCursor(Collection<ITuple> result, List<IVariable> qVars, 
+				List<IVariable> columns, int offset, int limit) 
+				throws ExternalToolException {
+			super(offset, limit);
+			// BEHAVIOR IMITATIED FROM THE KAON FACADE
+			// if there are no variables in the query, a non empty result is 
+			// a single empty map
+			if (qVars.isEmpty() && result.size() > 1) {
+				result = Collections.singleton(result.iterator().next());
+			}
+			tuples = result.iterator();
+			vars = new Variable[qVars.size()];
+			indexes = new int[qVars.size()];
+			for (int i = 0; i < vars.length; i++) {
 				// convert the var to an F-Logic one
-				Variable var = (Variable) irisTermConverter(v);
-
+				vars[i] = (Variable) irisTermConverter(qVars.get(i));
+				
 				// searching for the index of the term to extract from the tuple
-				int idx = qVars.indexOf(v);
-//				int[] idx = searchQueryForVar(query, v);
-//				// if the variable couldn't be found
-//				if (idx.length < 2) { 
-//					throw new IllegalArgumentException("Couldn't find the variable " +
-//							"(" + v + ") in query (" + q + ").");
-//				}
-				varBinding.put(var,irisTermConverter(getTermForTuple(t, idx)));
-			}	
-			res.add(varBinding);
+				indexes[i] = columns.indexOf(qVars.get(i));
+			}
+		}
+		
+		protected Map<Variable, Term> computeNext() 
+				throws ExternalToolException {
+			if (!tuples.hasNext()) {
+				return null;
+			}
+			ITuple t = tuples.next();
+			Map<Variable, Term> varBinding = new HashMap<Variable, Term>();
+			for (int i = 0; i < vars.length; i++) {
+				varBinding.put(vars[i], 
+						irisTermConverter(getTermForTuple(t, indexes[i])));
+			}
+			return varBinding;
+		}
+		
+		protected boolean skipNext() {
+			if (!tuples.hasNext()) {
+				return false;
+			}
+			tuples.next();
+			return true;
+		}
+		
+	}
+	
+	/**
+	 * Evaluates the literals of a query against the fixed point, without 
+	 * adding anything to the program. Each literal is matched against its 
+	 * relation, then the matches are joined on their common variables, 
+	 * starting with the smallest one.
+	 * 
+	 * @param body the literals of the query
+	 * @param columns the list where to store the variables of the columns 
+	 * 			of the result
+	 * @param max the number of tuples after which the evaluation may stop
+	 * @return the tuples of the result
+	 */
+	@SuppressWarnings("rawtypes")
+	private Collection<ITuple> evaluateQuery(List<ILiteral> body, 
+			List<IVariable> columns, int max) {
+		boolean ordinary = true;
+		for (ILiteral l : body) {
+			ordinary &= l.isPositive() && !l.getAtom().isBuiltin();
+		}
+		if (!ordinary) {
+			// builtins and negated literals have to be evaluated together 
+			// with the other literals
+			IComponent component = translateQuery(BASIC.createQuery(body));
+			IRelation result = evaluator.evaluate(component, p);
+			// a join records the variables of its columns while evaluated, 
+			// the open types of values are projected away
+			List<Integer> kept = new ArrayList<Integer>();
+			for (int i = 0; i < component.getVariables().size(); i++) {
+				IVariable v = component.getVariables().get(i);
+				if (!isTypeVariable(v)) {
+					columns.add(v);
+					kept.add(i);
+				}
+			}
+			Set<ITuple> tuples = new LinkedHashSet<ITuple>();
+			for (ITuple t : result) {
+				tuples.add(kept.size() == t.getArity() ? t 
+						: BASIC.createTuple(getKey(t, kept)));
+			}
+			return tuples;
 		}
 
-		// BEHAVIOR IMITATIED FROM THE KAON FACADE
-		// if there are no variables in the query, fill it with as many empty
-		// map objects as the result size
-		if (query.getQueryVariables().isEmpty()) {
-			for (int i = 0, max = result.size(); i < max; i++) {
-				res.add(new HashMap<Variable, Term>());
+		// match each literal on its own
+		List<Collection<ITuple>> matches = new ArrayList<Collection<ITuple>>(
+				body.size());
+		List<List<IVariable>> variables = new ArrayList<List<IVariable>>(
+				body.size());
+		for (ILiteral l : body) {
+			List<IVariable> vars = new ArrayList<IVariable>();
+			// a single literal is the result, it can stop early
+			Collection<ITuple> match = match(l, vars, 
+					body.size() == 1 ? max : Integer.MAX_VALUE);
+			if (match.isEmpty()) {
+				return match;
 			}
+			matches.add(match);
+			variables.add(vars);
 		}
 
-		return res;
+		// start with the smallest match, then join the smallest match 
+		// sharing a variable with the result so far
+		int next = 0;
+		for (int i = 1; i < matches.size(); i++) {
+			if (matches.get(i).size() < matches.get(next).size()) {
+				next = i;
+			}
+		}
+		Collection<ITuple> result = matches.remove(next);
+		columns.addAll(variables.remove(next));
+		while (!matches.isEmpty() && !result.isEmpty()) {
+			next = -1;
+			boolean nextShared = false;
+			for (int i = 0; i < matches.size(); i++) {
+				boolean shared = sharesVariable(variables.get(i), columns);
+				if (next < 0 || (shared && !nextShared) || (shared == nextShared 
+						&& matches.get(i).size() < matches.get(next).size())) {
+					next = i;
+					nextShared = shared;
+				}
+			}
+			// the last join can stop early
+			result = join(result, columns, matches.remove(next), 
+					variables.remove(next), 
+					matches.isEmpty() ? max : Integer.MAX_VALUE);
+		}
+		return result;
 	}
+	
+	/**
+	 * Matches a literal against the facts of its predicate.
+	 * 
+	 * @param l the literal to match
+	 * @param columns the list where to store the variables of the literal, 
+	 * 			in the order of the columns of the result
+	 * @param max the maximal number of bindings to return
+	 * @return the bindings of the variables of the matching facts
+	 */
+	@SuppressWarnings("rawtypes")
+	private Collection<ITuple> match(ILiteral l, List<IVariable> columns, 
+			int max) {
+		List<ITerm> pattern = l.getTuple().getTerms();
+		// the position of the first occurrence of each term
+		int[] first = new int[pattern.size()];
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < pattern.size(); i++) {
+			first[i] = pattern.indexOf(pattern.get(i));
+			// the open type of a value isn't part of the result
+			if (!pattern.get(i).isGround() && first[i] == i 
+					&& !isTypeVariable(pattern.get(i))) {
+				columns.add((IVariable) pattern.get(i));
+				positions.add(i);
+			}
+		}
 
+		// the bound columns are looked up in the hashed indexes
+		List<Integer> bound = new ArrayList<Integer>();
+		for (int i = 0; i < pattern.size(); i++) {
+			if (pattern.get(i).isGround()) {
+				bound.add(i);
+			}
+		}
+		Set<ITuple> result = new LinkedHashSet<ITuple>();
+		IRelation rel = p.getFacts(l.getPredicate());
+		if (rel == null) {
+			return result;
+		}
+		Collection<ITuple> candidates = rel;
+		if (bound.size() == pattern.size()) {
+			candidates = getIndex(l.getPredicate()).contains(l.getTuple()) 
+					? Collections.singleton(l.getTuple()) 
+					: Collections.<ITuple>emptySet();
+		}
+		else if (!bound.isEmpty()) {
+			candidates = getColumnIndex(l.getPredicate(), bound).get(
+					getKey(l.getTuple(), bound));
+			if (candidates == null) {
+				return result;
+			}
+		}
+		for (ITuple t : candidates) {
+			if (result.size() >= max) {
+				break;
+			}
+			boolean matches = true;
+			for (int i = 0; i < pattern.size() && matches; i++) {
+				if (pattern.get(i).isGround()) {
+					matches = pattern.get(i).equals(t.getTerm(i));
+				}
+				else {
+					matches = t.getTerm(first[i]).equals(t.getTerm(i));
+				}
+			}
+			if (matches) {
+				List<ITerm> terms = new ArrayList<ITerm>(positions.size());
+				for (int i : positions) {
+					terms.add(t.getTerm(i));
+				}
+				result.add(BASIC.createTuple(terms));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param vars some variables
+	 * @param columns the variables of the columns of a relation
+	 * @return true if one of the variables is a column of the relation
+	 */
+	@SuppressWarnings("rawtypes")
+	private static boolean sharesVariable(List<IVariable> vars, 
+			List<IVariable> columns) {
+		for (IVariable v : vars) {
+			if (columns.contains(v)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
-	 * Converts an F-Logic molecule to an iris atom.
+	 * Joins two relations on their common variables (hash join). The 
+	 * variables of the right relation, which are new, are appended to the 
+	 * columns.
 	 * 
-	 * @param mol the F-Logic molecule to convert
-	 * @return the iris atom
-	 * @throws ExternalToolException if the literal is {@code null}
+	 * @param left the tuples of the left relation
+	 * @param columns the variables of the columns of the left relation
+	 * @param right the tuples of the right relation
+	 * @param rightColumns the variables of the columns of the right relation
+	 * @param max the maximal number of joined tuples to return
+	 * @return the joined tuples
 	 */
-	private IAtom literal2Atom(FMolecule mol) throws ExternalToolException {
-		if (mol == null) {
-			throw new ExternalToolException("The FMolecule must not be null");
+	@SuppressWarnings("rawtypes")
+	private static Collection<ITuple> join(Collection<ITuple> left, 
+			List<IVariable> columns, Collection<ITuple> right, 
+			List<IVariable> rightColumns, int max) {
+		List<Integer> leftKey = new ArrayList<Integer>();
+		List<Integer> rightKey = new ArrayList<Integer>();
+		List<Integer> added = new ArrayList<Integer>();
+		for (int i = 0; i < rightColumns.size(); i++) {
+			IVariable v = rightColumns.get(i);
+			if (columns.contains(v)) {
+				leftKey.add(columns.indexOf(v));
+				rightKey.add(i);
+			}
+			else if (rightColumns.indexOf(v) == i) {
+				added.add(i);
+			}
+		}
+		
+		// index the right relation by the terms of the common variables
+		Map<List<ITerm>, List<ITuple>> index = 
+				new HashMap<List<ITerm>, List<ITuple>>();
+		for (ITuple t : right) {
+			List<ITerm> key = getKey(t, rightKey);
+			List<ITuple> tuples = index.get(key);
+			if (tuples == null) {
+				tuples = new ArrayList<ITuple>();
+				index.put(key, tuples);
+			}
+			tuples.add(t);
 		}
+		
+		List<ITuple> joined = new ArrayList<ITuple>();
+		for (ITuple t : left) {
+			if (joined.size() >= max) {
+				break;
+			}
+			List<ITuple> matches = index.get(getKey(t, leftKey));
+			if (matches == null) {
+				continue;
+			}
+			for (ITuple m : matches) {
+				if (joined.size() >= max) {
+					break;
+				}
+				List<ITerm> terms = new ArrayList<ITerm>(t.getTerms());
+				for (int i : added) {
+					terms.add(m.getTerm(i));
+				}
+				joined.add(BASIC.createTuple(terms));
+			}
+		}
+		for (int i : added) {
+			columns.add(rightColumns.get(i));
+		}
+		return joined;
+	}
+	
+	/**
+	 * @param t a tuple
+	 * @param indexes some indexes of the terms of the tuple
+	 * @return the terms at the given indexes
+	 */
+	@SuppressWarnings("rawtypes")
+	private static List<ITerm> getKey(ITuple t, List<Integer> indexes) {
+		List<ITerm> key = new ArrayList<ITerm>(indexes.size());
+		for (int i : indexes) {
+			key.add(t.getTerm(i));
+		}
+		return key;
+	}
 
-		List<ITerm> terms = new ArrayList<ITerm>(2);
-		// converting the terms of the literal
-		terms.add(wsmoTermConverter(mol.getLeftTerm()));
-		terms.add(wsmoTermConverter(mol.getRightTerm()));
+
+	/**
+	 * Brings the fixed point up to date with the facts and rules, which 
+	 * were registered since its last calculation.
+	 */
+	private void updateFixedPoint() {
+		if (factsChanged || rulesChanged) {
+			// if the fixed point can't be extended monotonically (negation) 
+			// -> translate all rules and compute the fixed point
+			if (hasNegation(rules)) { 
+				p = PROGRAM.createProgram(p.getFacts(), copyRules(rules), 
+						new HashSet<IQuery>());
+				e = new Executor(p, evaluator);
+				// the executor translates the rules as well
+				synchronized (Rule2Relation.class) {
+					e.execute();
+				}
+				deltaRules = null;
+				indexes.clear();
+				columnIndexes.clear();
+			}
+			// -> otherwise only compute the consequences of the new facts 
+			// and rules
+			else {
+				executeIncrementally();
+			}
+		}
+		delta.clear();
+		newRules.clear();
+		rulesChanged = false;
+		factsChanged = false;
+	}
+	
+	/**
+	 * Adds a fact of an ontology to the program and records it in the 
+	 * delta, if it wasn't known before.
+	 * 
+	 * @param ontologyURI the URI of the ontology the fact belongs to
+	 * @param a the fact to add
+	 */
+	@SuppressWarnings("rawtypes")
+	private void addFact(String ontologyURI, IAtom a) {
+		Registration r = registrations.get(a);
+		if (r == null) {
+			int id;
+			if (freeIds.size() > 0) {
+				id = freeIds.get(freeIds.size() - 1);
+				freeIds.truncate(freeIds.size() - 1);
+				facts.set(id, a);
+			}
+			else {
+				id = facts.size();
+				facts.add(a);
+			}
+			r = new Registration(id);
+			registrations.put(a, r);
+		}
+		r.count++;
+		ontologyFacts.get(ontologyURI).add(r.id);
+		if (p.addFact(a)) {
+			getTuples(delta, a.getPredicate()).add(a.getTuple());
+			addToIndex(a.getPredicate(), Collections.singleton(a.getTuple()));
+			factsChanged = true;
+		}
+	}
+	
+	/**
+	 * Adds a rule of an ontology to the program.
+	 * 
+	 * @param ontologyURI the URI of the ontology the rule belongs to
+	 * @param r the rule to add
+	 * @see #addRule(IRule)
+	 */
+	private void addRule(String ontologyURI, IRule r) {
+		ontologyRules.get(ontologyURI).add(r);
+		addRule(r);
+	}
+	
+	/**
+	 * Adds a rule to the program and records it as new rule, if it wasn't
+	 * known before.
+	 * 
+	 * @param r the rule to add
+	 */
+	private void addRule(IRule r) {
+		if (rules.add(r)) {
+			newRules.add(r);
+			rulesChanged = true;
+		}
+	}
+	
+	/**
+	 * Extends the fixed point by the consequences of the facts and rules 
+	 * that were added since its last calculation (semi-naive evaluation). 
+	 * New rules are evaluated once over all facts, afterwards only those 
+	 * rule instances are computed, where at least one body literal is 
+	 * matched by a fact that was derived in the previous round. On the 
+	 * first evaluation all facts and rules are new, so the initial fixed 
+	 * point is computed the same way.
+	 * <p>
+	 * This is only valid as long as the program contains no negation.
+	 * </p>
+	 */
+	private void executeIncrementally() {
+		if (deltaRules == null || rulesChanged) {
+			deltaRules = translateRules(createDeltaRules(rules));
+		}
+		if (!newRules.isEmpty()) {
+			for (Entry<IPredicate, IComponent> entry : 
+					translateRules(copyRules(newRules)).entrySet()) {
+				addDerivedFacts(entry.getKey(), evaluator.evaluate(
+						entry.getValue(), p), delta);
+			}
+		}
 		
-		// return an ordinary atom
-		if (STRING) {
-			terms.add(1, wsmoTermConverter(mol.getPredTerm()));
-			STRING = false;
-			return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_STRING_VALUE, terms.size()), 
-				BASIC.createTuple(terms));
-		}
-		else if (INTEGER) {
-			terms.add(1, wsmoTermConverter(mol.getPredTerm()));
-			INTEGER = false;
-			return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_INT_VALUE, terms.size()), 
-				BASIC.createTuple(terms));
-		}
-		else if (BOOLEAN) {
-			terms.add(1, wsmoTermConverter(mol.getPredTerm()));
-			BOOLEAN = false;
-			return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_BOOL_VALUE, terms.size()), 
-				BASIC.createTuple(terms));
-		}
-		else if (DOUBLE) {
-			terms.add(1, wsmoTermConverter(mol.getPredTerm()));
-			DOUBLE = false;
-			return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_DOUBLE_VALUE, terms.size()), 
-				BASIC.createTuple(terms));
+		Map<IPredicate, Set<ITuple>> current = delta;
+		while (!current.isEmpty()) {
+			Map<IPredicate, Set<ITuple>> next = 
+					new HashMap<IPredicate, Set<ITuple>>();
+			for (Entry<IPredicate, IRelation> entry : evaluateRules(deltaRules, 
+					DELTA_PREFIX, current).entrySet()) {
+				addDerivedFacts(entry.getKey(), entry.getValue(), next);
+			}
+			current = next;
 		}
-		else {
-			terms.add(1, wsmoTermConverter(mol.getPredTerm()));
-			return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_VALUE, terms.size()), 
-				BASIC.createTuple(terms));
+	}
+	
+	/**
+	 * Removes facts and rules from the fixed point and all facts that were 
+	 * derived from them and have no other derivation (DRed algorithm). 
+	 * <ol>
+	 * <li>All facts with a derivation that uses one of the removed facts 
+	 * or rules are computed by evaluating the removed rules and 
+	 * propagating the removed facts and the results through the delta 
+	 * rules. This overestimates the facts to delete.</li>
+	 * <li>These facts and the removed rules are removed from the 
+	 * program.</li>
+	 * <li>Those of the facts, which are still registered by an ontology, 
+	 * or can be derived in one step from the remaining facts and rules, 
+	 * are added again. Their consequences are computed incrementally on 
+	 * the next update of the fixed point.</li>
+	 * </ol>
+	 * The fixed point must be up to date and the program must not contain 
+	 * negation. The deleted tuples are kept in hash sets, they are only 
+	 * put into relations to evaluate the rules.
+	 * 
+	 * @param removed the facts to remove, grouped by their predicate
+	 * @param removedRules the rules to remove
+	 */
+	private void deleteFacts(Map<IPredicate, Set<ITuple>> removed, 
+			Set<IRule> removedRules) {
+		if (deltaRules == null) {
+			deltaRules = translateRules(createDeltaRules(rules));
 		}
-//		else {
-//			return BASIC.createAtom(BASIC.createPredicate(mol.getPredTerm().toString(), terms.size()), 
-//					BASIC.createTuple(terms));
-//		}
+		
+		// overestimate the facts to delete
+		Map<IPredicate, Set<ITuple>> deleted = 
+				new HashMap<IPredicate, Set<ITuple>>();
+		Map<IPredicate, Set<ITuple>> current = 
+				new HashMap<IPredicate, Set<ITuple>>();
+		for (Entry<IPredicate, Set<ITuple>> entry : removed.entrySet()) {
+			addDeleted(entry.getKey(), entry.getValue(), deleted, current);
+		}
+		if (!removedRules.isEmpty()) {
+			for (Entry<IPredicate, IComponent> entry : translateRules(
+					copyRules(removedRules)).entrySet()) {
+				addDeleted(entry.getKey(), evaluator.evaluate(
+						entry.getValue(), p), deleted, current);
+			}
+		}
+		while (!current.isEmpty()) {
+			Map<IPredicate, Set<ITuple>> next = 
+					new HashMap<IPredicate, Set<ITuple>>();
+			for (Entry<IPredicate, IRelation> entry : evaluateRules(deltaRules, 
+					DELTA_PREFIX, current).entrySet()) {
+				addDeleted(entry.getKey(), entry.getValue(), deleted, next);
+			}
+			current = next;
+		}
+		if (!removedRules.isEmpty()) {
+			rules.removeAll(removedRules);
+			deltaRules = null;
+			rulesChanged = true;
+		}
+		
+		// remove them from the program
+		for (Entry<IPredicate, Set<ITuple>> entry : deleted.entrySet()) {
+			IRelation rel = p.getFacts(entry.getKey());
+			if (rel != null) {
+				Set<ITuple> remove = entry.getValue();
+				List<ITuple> keep = new ArrayList<ITuple>();
+				for (ITuple t : rel) {
+					if (!remove.contains(t)) {
+						keep.add(t);
+					}
+				}
+				rel.clear();
+				rel.addAll(keep);
+				Set<ITuple> index = indexes.get(entry.getKey());
+				if (index != null) {
+					index.removeAll(remove);
+				}
+				columnIndexes.remove(entry.getKey());
+			}
+		}
+		
+		// rederive those, which are still registered, or have an 
+		// alternative derivation
+		Map<IPredicate, Set<ITuple>> rederived = 
+				new HashMap<IPredicate, Set<ITuple>>();
+		for (Entry<IPredicate, Set<ITuple>> entry : deleted.entrySet()) {
+			for (ITuple t : entry.getValue()) {
+				if (isRegistered(entry.getKey(), t)) {
+					getTuples(rederived, entry.getKey()).add(t);
+				}
+			}
+		}
+		for (Entry<IPredicate, IRelation> entry : evaluateRules(
+				translateRules(createRederiveRules(rules)), REDERIVE_PREFIX, 
+				deleted).entrySet()) {
+			Set<ITuple> known = deleted.get(entry.getKey());
+			if (known == null) {
+				continue;
+			}
+			for (ITuple t : entry.getValue()) {
+				if (known.contains(t)) {
+					getTuples(rederived, entry.getKey()).add(t);
+				}
+			}
+		}
+		for (Entry<IPredicate, Set<ITuple>> entry : rederived.entrySet()) {
+			IRelation rel = RELATION.getRelation(entry.getKey().getArity());
+			rel.addAll(entry.getValue());
+			p.addFacts(entry.getKey(), rel);
+			addToIndex(entry.getKey(), entry.getValue());
+			getTuples(delta, entry.getKey()).addAll(entry.getValue());
+			factsChanged = true;
+		}
+	}
+	
+	/**
+	 * Records tuples as deleted, those which weren't known to be deleted 
+	 * before are also recorded in the given delta.
+	 * 
+	 * @param pred the predicate of the tuples
+	 * @param tuples the tuples to delete
+	 * @param deleted the deleted tuples, grouped by their predicate
+	 * @param next the delta where to record the newly deleted tuples
+	 */
+	private static void addDeleted(IPredicate pred, Collection<ITuple> tuples, 
+			Map<IPredicate, Set<ITuple>> deleted, 
+			Map<IPredicate, Set<ITuple>> next) {
+		Set<ITuple> known = getTuples(deleted, pred);
+		for (ITuple t : tuples) {
+			if (known.add(t)) {
+				getTuples(next, pred).add(t);
+			}
+		}
+	}
+	
+	/**
+	 * Resets the facts of the program to the facts of the registered 
+	 * ontologies. The fixed point is computed again on its next update.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void recompute() {
+		p.resetProgram();
+		indexes.clear();
+		columnIndexes.clear();
+		delta.clear();
+		for (IAtom a : registrations.keySet()) {
+			p.addFact(a);
+			getTuples(delta, a.getPredicate()).add(a.getTuple());
+		}
+		newRules.clear();
+		newRules.addAll(rules);
+		deltaRules = null;
+		rulesChanged = true;
+		factsChanged = true;
+	}
+	
+	/**
+	 * Checks whether a fact is registered by one of the registered 
+	 * ontologies.
+	 * 
+	 * @param pred the predicate of the fact
+	 * @param t the tuple of the fact
+	 * @return true if the fact belongs to a registered ontology
+	 */
+	private boolean isRegistered(IPredicate pred, ITuple t) {
+		return registrations.containsKey(BASIC.createAtom(pred, t));
+	}
+	
+	/**
+	 * Evaluates translated rules, which refer to auxiliary relations. The 
+	 * auxiliary relations are registered at the program for the time of 
+	 * the evaluation, under the predicates with the given prefix.
+	 * 
+	 * @param components the translated rules
+	 * @param prefix the prefix of the auxiliary predicates
+	 * @param auxiliary the tuples of the auxiliary relations, grouped by 
+	 * 		the predicate from which the auxiliary predicate is created
+	 * @return the derived tuples, grouped by their predicate
+	 */
+	private Map<IPredicate, IRelation> evaluateRules(
+			Map<IPredicate, IComponent> components, String prefix, 
+			Map<IPredicate, ? extends Collection<ITuple>> auxiliary) {
+		for (Entry<IPredicate, ? extends Collection<ITuple>> entry : 
+				auxiliary.entrySet()) {
+			IRelation rel = RELATION.getRelation(entry.getKey().getArity());
+			rel.addAll(entry.getValue());
+			p.getFacts().put(createAuxiliaryPredicate(prefix, entry.getKey()), 
+					rel);
+		}
+		Map<IPredicate, IRelation> result = new HashMap<IPredicate, IRelation>();
+		try {
+			for (Entry<IPredicate, IComponent> entry : components.entrySet()) {
+				result.put(entry.getKey(), evaluator.evaluate(entry.getValue(), p));
+			}
+		} finally {
+			for (IPredicate pred : auxiliary.keySet()) {
+				p.getFacts().remove(createAuxiliaryPredicate(prefix, pred));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Adds those of the derived tuples to the program, which are not yet 
+	 * contained in it, and records them in the given delta. The tuples of 
+	 * the program are looked up in the hashed index of the relation.
+	 * 
+	 * @param pred the predicate of the derived tuples
+	 * @param derived the derived tuples
+	 * @param next the delta where to record the new tuples
+	 */
+	private void addDerivedFacts(IPredicate pred, IRelation derived, 
+			Map<IPredicate, Set<ITuple>> next) {
+		Set<ITuple> known = getIndex(pred);
+		IRelation fresh = RELATION.getRelation(pred.getArity());
+		for (ITuple t : derived) {
+			if (!known.contains(t)) {
+				fresh.add(t);
+			}
+		}
+		if (fresh.isEmpty()) {
+			return;
+		}
+		p.addFacts(pred, fresh);
+		addToIndex(pred, fresh);
+		getTuples(next, pred).addAll(fresh);
+	}
+	
+	/**
+	 * Rewrites the rules for semi-naive evaluation. For every positive 
+	 * body literal of a rule a copy of the rule is created, where this 
+	 * literal is replaced by a literal over the corresponding delta 
+	 * predicate. The delta literal is put at the first position of the 
+	 * body, so that the evaluation of the rule stops immediately, if the 
+	 * delta is empty.
+	 * 
+	 * @param rules the rules to rewrite
+	 * @return the rewritten rules
+	 */
+	@SuppressWarnings("rawtypes")
+	private Set<IRule> createDeltaRules(Set<IRule> rules) {
+		Set<IRule> result = new HashSet<IRule>();
+		for (IRule r : rules) {
+			List<ILiteral> body = r.getBodyLiterals();
+			for (int i = 0; i < body.size(); i++) {
+				ILiteral l = body.get(i);
+				if (!l.isPositive() || l.getAtom().isBuiltin()) {
+					continue;
+				}
+				List<ILiteral> deltaBody = new ArrayList<ILiteral>(body.size());
+				deltaBody.add(BASIC.createLiteral(true, createAuxiliaryPredicate(
+						DELTA_PREFIX, l.getPredicate()), BASIC.createTuple(
+								new ArrayList<ITerm>(l.getTuple().getTerms()))));
+				for (int j = 0; j < body.size(); j++) {
+					if (j != i) {
+						deltaBody.add(copyLiteral(body.get(j)));
+					}
+				}
+				result.add(BASIC.copyRule(BASIC.createHead(copyLiteral(
+						r.getHeadLiteral(0))), BASIC.createBody(deltaBody)));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Rewrites the rules for rederivation. Every rule gets an additional 
+	 * first body literal, which restricts its head to the facts in the 
+	 * corresponding rederive relation. 
+	 * 
+	 * @param rules the rules to rewrite
+	 * @return the rewritten rules
+	 */
+	@SuppressWarnings("rawtypes")
+	private Set<IRule> createRederiveRules(Set<IRule> rules) {
+		Set<IRule> result = new HashSet<IRule>();
+		for (IRule r : rules) {
+			ILiteral h = r.getHeadLiteral(0);
+			List<ILiteral> body = new ArrayList<ILiteral>(r.getBodyLenght() + 1);
+			body.add(BASIC.createLiteral(true, createAuxiliaryPredicate(
+					REDERIVE_PREFIX, h.getPredicate()), BASIC.createTuple(
+							new ArrayList<ITerm>(h.getTuple().getTerms()))));
+			for (ILiteral l : r.getBodyLiterals()) {
+				body.add(copyLiteral(l));
+			}
+			result.add(BASIC.copyRule(BASIC.createHead(copyLiteral(h)), 
+					BASIC.createBody(body)));
+		}
+		return result;
+	}
+	
+	/**
+	 * Checks whether one of the given rules contains a negative literal.
+	 * 
+	 * @param rules the rules to check
+	 * @return true if there is a negative literal in the rules
+	 */
+	@SuppressWarnings("rawtypes")
+	private boolean hasNegation(Set<IRule> rules) {
+		for (IRule r : rules) {
+			for (ILiteral l : r.getBodyLiterals()) {
+				if (!l.isPositive()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Creates deep copies of the given rules.
+	 * 
+	 * @param rules the rules to copy
+	 * @return the copied rules
+	 */
+	@SuppressWarnings("rawtypes")
+	private Set<IRule> copyRules(Set<IRule> rules) {
+		Set<IRule> result = new HashSet<IRule>();
+		for (IRule r : rules) {
+			List<ILiteral> body = new ArrayList<ILiteral>(r.getBodyLenght());
+			for (ILiteral l : r.getBodyLiterals()) {
+				body.add(copyLiteral(l));
+			}
+			result.add(BASIC.copyRule(BASIC.createHead(copyLiteral(
+					r.getHeadLiteral(0))), BASIC.createBody(body)));
+		}
+		return result;
+	}
+	
+	/**
+	 * Creates a copy of a literal, which doesn't share its terms with the 
+	 * original literal.
+	 * 
+	 * @param l the literal to copy
+	 * @return the copied literal
+	 */
+	@SuppressWarnings("rawtypes")
+	private ILiteral copyLiteral(ILiteral l) {
+		List<ITerm> terms = new ArrayList<ITerm>(l.getTuple().getTerms());
+		if (!l.getAtom().isBuiltin()) {
+			return BASIC.createLiteral(l.isPositive(), l.getPredicate(), 
+					BASIC.createTuple(terms));
+		}
+		IBuiltInAtom b = (IBuiltInAtom) l.getAtom();
+		if (b instanceof EqualBuiltin) {
+			b = BUILTIN.createEqual(terms.get(0), terms.get(1));
+		} else if (b instanceof UnEqualBuiltin) {
+			b = BUILTIN.createUnequal(terms.get(0), terms.get(1));
+		} else if (b instanceof LessBuiltin) {
+			b = BUILTIN.createLess(terms.get(0), terms.get(1));
+		} else if (b instanceof LessEqualBuiltin) {
+			b = BUILTIN.createLessEqual(terms.get(0), terms.get(1));
+		} else if (b instanceof GreaterBuiltin) {
+			b = BUILTIN.createGreater(terms.get(0), terms.get(1));
+		} else if (b instanceof GreaterEqualBuiltin) {
+			b = BUILTIN.createGreaterEqual(terms.get(0), terms.get(1));
+		} else if (b instanceof AddBuiltin) {
+			b = BUILTIN.createAddBuiltin(terms.get(0), terms.get(1), terms.get(2));
+		} else if (b instanceof SubtractBuiltin) {
+			b = BUILTIN.createSubtractBuiltin(terms.get(0), terms.get(1), terms.get(2));
+		} else if (b instanceof MultiplyBuiltin) {
+			b = BUILTIN.createMultiplyBuiltin(terms.get(0), terms.get(1), terms.get(2));
+		} else if (b instanceof DivideBuiltin) {
+			b = BUILTIN.createDivideBuiltin(terms.get(0), terms.get(1), terms.get(2));
+		}
+		return BASIC.createLiteral(l.isPositive(), b);
+	}
+	
+	/**
+	 * Creates the predicate under which an auxiliary relation of a 
+	 * predicate (e.g. its delta) is stored.
+	 * 
+	 * @param prefix the prefix of the auxiliary predicate
+	 * @param pred the predicate
+	 * @return the corresponding auxiliary predicate
+	 */
+	private IPredicate createAuxiliaryPredicate(String prefix, IPredicate pred) {
+		return BASIC.createPredicate(prefix + pred.getPredicateSymbol(), 
+				pred.getArity());
+	}
+	
+	/**
+	 * Translates rules to relational algebra. Rule2Relation numbers the 
+	 * variables it introduces with a static counter, so the translations 
+	 * of all facades are serialized.
+	 * 
+	 * @param rls the rules to translate
+	 * @return the translated rules, grouped by the predicate of their head
+	 */
+	private static Map<IPredicate, IComponent> translateRules(Set<IRule> rls) {
+		synchronized (Rule2Relation.class) {
+			return new Rule2Relation().translateRules(rls);
+		}
+	}
+	
+	/**
+	 * Translates a query to relational algebra.
+	 * 
+	 * @param query the query to translate
+	 * @return the translated query
+	 * @see #translateRules(Set)
+	 */
+	private static IComponent translateQuery(IQuery query) {
+		synchronized (Rule2Relation.class) {
+			return new Rule2Relation().translateQuery(query);
+		}
+	}
+	
+	/**
+	 * Returns the tuples of a predicate in a map of hashed tuples, the set 
+	 * is created if it doesn't exist.
+	 * 
+	 * @param tuples the tuples, grouped by their predicate
+	 * @param pred the predicate
+	 * @return the tuples of the predicate
+	 */
+	private static Set<ITuple> getTuples(Map<IPredicate, Set<ITuple>> tuples, 
+			IPredicate pred) {
+		Set<ITuple> set = tuples.get(pred);
+		if (set == null) {
+			set = new HashSet<ITuple>();
+			tuples.put(pred, set);
+		}
+		return set;
 	}
 
 	/**
-	 * Converts an F-Logic Molecule to an iris literal.
+	 * Converts an F-Logic molecule to an iris atom of the PRED_HAS_VALUE 
+	 * relation.
 	 * 
 	 * @param mol the F-Logic molecule to convert
-	 * @return the iris literal
-	 * @throws ExternalToolException if the literal is {@code null} 
+	 * @param typed the variables, which have a type variable, or 
+	 * 			{@code null} if all variables get one
+	 * @return the iris atom
+	 * @throws ExternalToolException if the literal is {@code null}
+	 * @see #getType(ITerm, Set)
 	 */
-	private ILiteral literal2Literal(FMolecule mol) throws ExternalToolException {
+	@SuppressWarnings("rawtypes")
+	private IAtom literal2Atom(FMolecule mol, Set<IVariable> typed) 
+			throws ExternalToolException {
 		if (mol == null) {
-			throw new ExternalToolException("The literal must not be null");
+			throw new ExternalToolException("The FMolecule must not be null");
 		}
-
-		return BASIC.createLiteral(true, literal2Atom(mol));
+		ITerm s = wsmoTermConverter(mol.getLeftTerm());
+		ITerm o = wsmoTermConverter(mol.getRightTerm());
+		return createValueAtom(getType(s, typed), getType(o, typed), s, 
+				wsmoTermConverter(mol.getPredTerm()), o);
+	}
+	
+	/**
+	 * Creates an atom of the PRED_HAS_VALUE relation.
+	 * 
+	 * @param sType the type of the subject
+	 * @param oType the type of the value
+	 * @param s the subject
+	 * @param pred the predicate
+	 * @param o the value
+	 * @return the iris atom
+	 */
+	@SuppressWarnings("rawtypes")
+	private static IAtom createValueAtom(ITerm sType, ITerm oType, ITerm s, 
+			ITerm pred, ITerm o) {
+		List<ITerm> terms = new ArrayList<ITerm>(VALUE_ARITY);
+		terms.add(sType);
+		terms.add(oType);
+		terms.add(s);
+		terms.add(pred);
+		terms.add(o);
+		return BASIC.createAtom(BASIC.createPredicate(PRED_HAS_VALUE, 
+				VALUE_ARITY), BASIC.createTuple(terms));
+	}
+	
+	/**
+	 * Returns the type of a subject or a value of the PRED_HAS_VALUE 
+	 * relation.
+	 * 
+	 * @param t the subject or the value
+	 * @param typed the variables, which have a type variable, or 
+	 * 			{@code null} if all variables get one
+	 * @return the name of the datatype predicate of a data value, 
+	 * 			PRED_HAS_VALUE for an iri, the type variable of a typed 
+	 * 			variable, and PRED_HAS_VALUE for another variable, which 
+	 * 			can only be bound to a predicate
+	 */
+	@SuppressWarnings("rawtypes")
+	private static ITerm getType(ITerm t, Set<IVariable> typed) {
+		if (t instanceof IVariable) {
+			if (typed == null || typed.contains(t)) {
+				return TERM.createVariable(TYPE_VARIABLE + t.getValue());
+			}
+			return TERM.createString(PRED_HAS_VALUE);
+		}
+		// iris have to be handled before the string terms
+		if (t instanceof StringTerm && !(t instanceof IIri)) {
+			return TERM.createString(PRED_HAS_STRING_VALUE);
+		} else if (t instanceof IntegerTerm) {
+			return TERM.createString(PRED_HAS_INT_VALUE);
+		} else if (t instanceof IBooleanTerm) {
+			return TERM.createString(PRED_HAS_BOOL_VALUE);
+		} else if (t instanceof IDoubleTerm) {
+			return TERM.createString(PRED_HAS_DOUBLE_VALUE);
+		}
+		return TERM.createString(PRED_HAS_VALUE);
+	}
+	
+	/**
+	 * Renames the repeated variables of the head of a rule, since iris 
+	 * only keeps the first repeated variable of a head equal. Each 
+	 * renamed variable is bound to the original one with an equality in 
+	 * the body.
+	 * 
+	 * @param head the head of the rule
+	 * @param body the body of the rule, where to add the equalities
+	 * @return the head with the renamed variables
+	 */
+	@SuppressWarnings("rawtypes")
+	private static IAtom renameRepeatedVariables(IAtom head, 
+			List<ILiteral> body) {
+		List<ITerm> terms = new ArrayList<ITerm>(head.getTuple().getTerms());
+		Set<ITerm> seen = new HashSet<ITerm>();
+		for (int i = 0; i < terms.size(); i++) {
+			ITerm t = terms.get(i);
+			if (t instanceof IVariable && !seen.add(t)) {
+				ITerm renamed = TERM.createVariable(t.getValue() + "-" + i);
+				body.add(BASIC.createLiteral(true, 
+						BUILTIN.createEqual(renamed, t)));
+				terms.set(i, renamed);
+			}
+		}
+		return BASIC.createAtom(head.getPredicate(), BASIC.createTuple(terms));
+	}
+	
+	/**
+	 * @param t a tuple of the PRED_HAS_VALUE relation
+	 * @return the variables at the positions of the subject and the value
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Set<IVariable> getTypedVariables(ITuple t) {
+		Set<IVariable> result = new HashSet<IVariable>();
+		for (int i : new int[] {VALUE_ARITY - 3, VALUE_ARITY - 1}) {
+			if (t.getTerm(i) instanceof IVariable) {
+				result.add((IVariable) t.getTerm(i));
+			}
+		}
+		return result;
 	}
 	
 	/**
@@ -466,6 +1584,10 @@ public class IrisFacade implements ReasonerFacade{
 			return dataFactory.createWsmlString((String) t.getValue());
 		} else if(t instanceof IntegerTerm) {
 			return dataFactory.createWsmlInteger(((IntegerTerm) t).toString());
+		} else if(t instanceof IDoubleTerm) {
+			return dataFactory.createWsmlDouble(((IDoubleTerm) t).getValue());
+		} else if(t instanceof IBooleanTerm) {
+			return dataFactory.createWsmlBoolean(((IBooleanTerm) t).getValue());
 		}
 		else {
 			return factory.createIdentifier((String) t.getValue());
@@ -650,6 +1772,35 @@ public class IrisFacade implements ReasonerFacade{
 		return t;
 	}
 	
+	/**
+	 * Converts the literals of a query. The types of the variables are 
+	 * left open with type variables, which aren't part of the results.
+	 * 
+	 * @param q the query to convert
+	 * @return the iris literals
+	 * @throws ExternalToolException if a literal is {@code null}
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<ILiteral> convertQuery(ConjunctiveQuery q) 
+			throws ExternalToolException {
+		List<ILiteral> body = new ArrayList<ILiteral>(q.getLiterals().size());
+		for (Literal l : q.getLiterals()) {
+			body.add(literal2Literal(l));
+		}
+		return body;
+	}
+	
+	/**
+	 * @param t an iris term
+	 * @return true if the term is a variable leaving the type of a value 
+	 * 			open
+	 */
+	@SuppressWarnings("rawtypes")
+	private static boolean isTypeVariable(ITerm t) {
+		return t instanceof IVariable 
+				&& ((String) t.getValue()).startsWith(TYPE_VARIABLE);
+	}
+	
 	/**
 	 * Converts a wsmo4j literal to an iris literal.
 	 * 
@@ -720,6 +1871,22 @@ public class IrisFacade implements ReasonerFacade{
 		} else if (sym.equals(Constants.NUMERIC_DIV)) {
 			return BUILTIN.createDivideBuiltin(terms.get(0), terms.get(1), terms.get(2));
 		}
+		// the datatype predicates are stored in the PRED_HAS_VALUE relation
+		if (terms.size() == 3 && (sym.equals(PRED_HAS_VALUE) || 
+				sym.equals(PRED_HAS_STRING_VALUE) || 
+				sym.equals(PRED_HAS_INT_VALUE) || 
+				sym.equals(PRED_HAS_BOOL_VALUE) || 
+				sym.equals(PRED_HAS_DOUBLE_VALUE))) {
+			return createValueAtom(getType(terms.get(0), null), 
+					TERM.createString(sym), terms.get(0), terms.get(1), 
+					terms.get(2));
+		}
+		// the type of the value is left open
+		if (terms.size() == 3 && sym.equals(PRED_HAS_ANY_VALUE)) {
+			return createValueAtom(getType(terms.get(0), null), 
+					getType(terms.get(2), null), terms.get(0), terms.get(1), 
+					terms.get(2));
+		}
 		// return an ordinary atom
 		return BASIC.createAtom(BASIC.createPredicate(sym, 
 				terms.size()), BASIC.createTuple(terms));
@@ -785,23 +1952,36 @@ public class IrisFacade implements ReasonerFacade{
 		}
 		final String t = v.getType().getIRI().toString();
 		if (t.equals(WsmlDataType.WSML_BOOLEAN)) {
-			BOOLEAN = true;
 			return CONCRETE.createBoolean(Boolean.valueOf(v.getValue()
 					.toString()));
 		} else if (t.equals(WsmlDataType.WSML_DOUBLE)) {
-			DOUBLE = true;
 			return CONCRETE.createDouble(Double.parseDouble(v.getValue()
 					.toString()));
 		} else if (t.equals(WsmlDataType.WSML_INTEGER)) {
-			INTEGER = true;
 			return CONCRETE.createInteger(Integer.parseInt(v.toString()));
 		} else if (t.equals(WsmlDataType.WSML_STRING)) {
-			STRING = true;
 			return TERM.createString(v.toString());
 		}
 		throw new IllegalArgumentException("Can't convert a value of type " + t);
 	}
 	
+	/**
+	 * The registration of a fact by the registered ontologies.
+	 */
+	private static class Registration {
+		
+		// the id of the fact
+		private final int id;
+		
+		// the number of times the fact is registered
+		private int count = 0;
+		
+		private Registration(int id) {
+			this.id = id;
+		}
+		
+	}
+
 }
 /*
  * $log: $
@@ -0,0 +1,379 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Derives only the triples needed to answer a query, instead of the
+ * whole closure of a triple store.
+ * <p>
+ * Each body molecule of a rule is a goal, which is restricted by the terms
+ * bound by the head and by the preceding body molecules (like the magic
+ * predicates of a magic sets rewriting). The rules are only applied to
+ * the goals, which were reached from the literals of the query. The goals
+ * are tabled, and the rules are applied to them until no new goal and no
+ * new triple are found. A ground head is derived from the facts and the
+ * answers at hand, if possible, without adding its body molecules as
+ * goals. The evaluation is given up, if a goal without any bound term is
+ * reached.
+ * </p>
+ * <p>
+ * The rules are encoded like the queries of the NativeFacade: a molecule
+ * is an array of subject, predicate, object and kind, variables are
+ * encoded as -(index + 1). A rule is an array of molecules, the first of
+ * them is the head. Like in the ForwardChainer a body molecule consisting
+ * only of variables matches triples of every kind ({@link #ANY_KIND}), all
+ * other body molecules only match triples of the kind
+ * {@link TripleStore#KIND_VALUE}. Derived triples are of the kind of
+ * their object, like in the ForwardChainer.
+ * </p>
+ */
+class BackwardChainer {
+
+	// the kind of a body molecule matching triples of every kind
+	final static int ANY_KIND = -1;
+
+	// the triples to start from, they are not modified
+	private final TripleStore facts;
+
+	// the dictionary of the facts, it tells the kinds of derived triples
+	private final TermDictionary dictionary;
+
+	private final List<int[][]> rules;
+
+	// the maximal number of variables of a rule
+	private final int ruleVariables;
+
+	// the triples matching any of the goals, and the derived triples
+	private final TripleStore answers = new TripleStore();
+
+	private final Set<Goal> goals = new HashSet<Goal>();
+
+	private final List<Goal> agenda = new ArrayList<Goal>();
+
+	// whether a goal or a triple was added in the current iteration
+	private boolean changed = false;
+
+	// whether the body molecules are matched without adding goals
+	private boolean probing = false;
+
+	// whether a goal without any bound term was reached
+	private boolean unselective = false;
+
+	/**
+	 * @param facts the triples to start from, which must not be modified
+	 * 			while the chainer is used
+	 * @param dictionary the dictionary encoding the terms of the facts
+	 * @param rules the encoded rules to apply
+	 */
+	BackwardChainer(TripleStore facts, TermDictionary dictionary,
+			Collection<int[][]> rules) {
+		this.facts = facts;
+		this.dictionary = dictionary;
+		this.rules = new ArrayList<int[][]>(rules);
+		int max = 0;
+		for (int[][] rule : rules) {
+			for (int[] molecule : rule) {
+				for (int t = 0; t < 3; t++) {
+					max = Math.max(max, -molecule[t]);
+				}
+			}
+		}
+		ruleVariables = max;
+	}
+
+	/**
+	 * Derives the triples needed to answer a query.
+	 *
+	 * @param query the encoded literals of the query
+	 * @param variables the number of variables of the query
+	 * @return a store containing every triple, which is part of an answer
+	 * 			of the query, and possibly some more, or null if the query
+	 * 			depends on a goal without any bound term, which is better
+	 * 			answered by the closure
+	 */
+	TripleStore solve(List<int[]> query, int variables) {
+		int[][] body = query.toArray(new int[query.size()][]);
+		int[] queryBinding = createBinding(variables);
+		do {
+			changed = false;
+			// the agenda grows while the rules are applied
+			for (int g = 0; g < agenda.size(); g++) {
+				Goal goal = agenda.get(g);
+				for (int[][] rule : rules) {
+					int[] binding = createBinding(ruleVariables);
+					if (!unify(rule[0], goal, binding)) {
+						continue;
+					}
+					// a single match suffices for a ground head
+					int[] head = rule[0];
+					boolean ground = true;
+					for (int t = 0; t < 3; t++) {
+						ground &= resolve(head[t], binding) >= 0;
+					}
+					int o = resolve(head[2], binding);
+					if (ground && answers.contains(resolve(head[0], binding),
+							resolve(head[1], binding), o,
+							dictionary.getKind(o))) {
+						continue;
+					}
+					// the triples at hand often suffice for a ground head,
+					// then its body molecules don't have to become goals
+					if (ground) {
+						probing = true;
+						boolean derived = evaluate(head, rule,
+								new boolean[rule.length], rule.length - 1,
+								binding, true);
+						probing = false;
+						if (derived) {
+							continue;
+						}
+					}
+					evaluate(head, rule, new boolean[rule.length],
+							rule.length - 1, binding, ground);
+					if (unselective) {
+						return null;
+					}
+				}
+			}
+			// the query reaches its goals like the body of a rule
+			evaluate(null, body, new boolean[body.length + 1], body.length,
+					queryBinding, false);
+			if (unselective) {
+				return null;
+			}
+		} while (changed);
+		return answers;
+	}
+
+	/*
+	 * Matches the body molecules, which are not done yet, against the
+	 * answers, and derives the head for every match. The molecule with the
+	 * most bound terms is matched first, a bound subject or object counts
+	 * more than a bound predicate. The molecules start at index 1 of a
+	 * rule, and at index 0 of a query. Returns true, if the head is ground
+	 * and was derived, so that no further match is needed. While probing,
+	 * the molecules are matched against the facts and the answers, without
+	 * adding them as goals.
+	 */
+	private boolean evaluate(int[] head, int[][] body, boolean[] done,
+			int remaining, int[] binding, boolean ground) {
+		if (remaining == 0) {
+			if (head != null) {
+				int o = resolve(head[2], binding);
+				if (answers.add(resolve(head[0], binding),
+						resolve(head[1], binding), o, dictionary.getKind(o))) {
+					changed = true;
+				}
+			}
+			return ground;
+		}
+		int next = -1;
+		int nextBound = -1;
+		for (int i = head == null ? 0 : 1; i < body.length; i++) {
+			if (done[i]) {
+				continue;
+			}
+			int bound = 0;
+			for (int t = 0; t < 3; t++) {
+				if (resolve(body[i][t], binding) >= 0) {
+					bound += t == 1 ? 1 : 2;
+				}
+			}
+			if (bound > nextBound) {
+				next = i;
+				nextBound = bound;
+			}
+		}
+		int[] molecule = body[next];
+		int s = resolve(molecule[0], binding);
+		int p = resolve(molecule[1], binding);
+		int o = resolve(molecule[2], binding);
+		if (!probing) {
+			if (s < 0 && p < 0 && o < 0) {
+				unselective = true;
+				return true;
+			}
+			addGoal(s, p, o);
+		}
+
+		done[next] = true;
+		TripleStore[] stores = probing ? new TripleStore[] {facts, answers}
+				: new TripleStore[] {answers};
+		int[] bound = new int[3];
+		for (TripleStore store : stores) {
+			IntList candidates = select(store, s, p, o);
+			// triples derived meanwhile are matched in the next iteration
+			int size = candidates == null ? store.size() : candidates.size();
+			for (int n = 0; n < size; n++) {
+				int j = candidates == null ? n : candidates.get(n);
+				if ((molecule[3] != ANY_KIND && store.getKind(j) != molecule[3])
+						|| !matches(store, j, s, p, o)) {
+					continue;
+				}
+				int[] values = {store.getSubject(j), store.getPredicate(j),
+						store.getObject(j)};
+				int count = 0;
+				boolean consistent = true;
+				for (int t = 0; t < 3 && consistent; t++) {
+					if (molecule[t] < 0) {
+						int var = -molecule[t] - 1;
+						if (binding[var] < 0) {
+							binding[var] = values[t];
+							bound[count++] = var;
+						}
+						else if (binding[var] != values[t]) {
+							consistent = false;
+						}
+					}
+				}
+				boolean derived = consistent && evaluate(head, body, done,
+						remaining - 1, binding, ground);
+				for (int t = 0; t < count; t++) {
+					binding[bound[t]] = -1;
+				}
+				if (derived) {
+					done[next] = false;
+					return true;
+				}
+			}
+		}
+		done[next] = false;
+		return false;
+	}
+
+	/*
+	 * Tables a goal, the given triples matching it are added to the answers.
+	 */
+	private void addGoal(int s, int p, int o) {
+		Goal goal = new Goal(s, p, o);
+		if (!goals.add(goal)) {
+			return;
+		}
+		agenda.add(goal);
+		changed = true;
+		IntList candidates = select(facts, s, p, o);
+		int size = candidates == null ? facts.size() : candidates.size();
+		for (int n = 0; n < size; n++) {
+			int j = candidates == null ? n : candidates.get(n);
+			if (matches(facts, j, s, p, o)) {
+				answers.add(facts.getSubject(j), facts.getPredicate(j),
+						facts.getObject(j), facts.getKind(j));
+			}
+		}
+	}
+
+	/*
+	 * Binds the variables of the head of a rule to the terms of a goal.
+	 */
+	private static boolean unify(int[] head, Goal goal, int[] binding) {
+		int[] terms = {goal.s, goal.p, goal.o};
+		for (int t = 0; t < 3; t++) {
+			if (terms[t] < 0) {
+				continue;
+			}
+			if (head[t] >= 0) {
+				if (head[t] != terms[t]) {
+					return false;
+				}
+			}
+			else {
+				int var = -head[t] - 1;
+				if (binding[var] >= 0 && binding[var] != terms[t]) {
+					return false;
+				}
+				binding[var] = terms[t];
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Returns the positions of the triples with the given subject, object
+	 * or predicate, or null if none of them is bound.
+	 */
+	private static IntList select(TripleStore store, int s, int p, int o) {
+		if (s >= 0) {
+			return store.withSubject(s);
+		}
+		else if (o >= 0) {
+			return store.withObject(o);
+		}
+		else if (p >= 0) {
+			return store.withPredicate(p);
+		}
+		return null;
+	}
+
+	private static boolean matches(TripleStore store, int j, int s, int p,
+			int o) {
+		return (s < 0 || store.getSubject(j) == s)
+				&& (p < 0 || store.getPredicate(j) == p)
+				&& (o < 0 || store.getObject(j) == o);
+	}
+
+	private static int resolve(int term, int[] binding) {
+		return term >= 0 ? term : binding[-term - 1];
+	}
+
+	private static int[] createBinding(int variables) {
+		int[] binding = new int[variables];
+		for (int i = 0; i < variables; i++) {
+			binding[i] = -1;
+		}
+		return binding;
+	}
+
+	/*
+	 * A goal, a triple pattern with -1 for the free terms.
+	 */
+	private static class Goal {
+
+		private final int s;
+
+		private final int p;
+
+		private final int o;
+
+		private Goal(int s, int p, int o) {
+			this.s = s;
+			this.p = p;
+			this.o = o;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Goal)) {
+				return false;
+			}
+			Goal other = (Goal) obj;
+			return s == other.s && p == other.p && o == other.o;
+		}
+
+		public int hashCode() {
+			return (31 * s + p) * 31 + o;
+		}
+
+	}
+
+}
@@ -0,0 +1,723 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.alg.StrongConnectivityInspector;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.traverse.TopologicalOrderIterator;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+
+/**
+ * Computes the closure of a triple store under the fixed (e)RDFS rules.
+ * <p>
+ * The store is used as work list: every triple, which was not processed
+ * yet, is joined with all triples of the store in each rule where it
+ * matches a body molecule. Derived triples are appended to the store and
+ * processed in turn, until no new triple is derived. Triples added after
+ * a computation of the closure are thus handled incrementally.
+ * </p>
+ * <p>
+ * The transitivity of subClassOf and subPropertyOf isn't applied by
+ * joins. Whenever the work list is empty, the hierarchies are closed as
+ * a whole: the strongly connected components of a hierarchy are condensed
+ * and the reachable components are collected in reverse topological
+ * order. Afterwards only the new edges are joined with the closed
+ * hierarchy, as long as they are few.
+ * </p>
+ * <p>
+ * The state of a closed store can be marked, e.g. after the closure of
+ * the schema triples. A rollback truncates the store to the marked
+ * state, so that other triples can be added and closed again without
+ * closing the marked ones from scratch.
+ * </p>
+ * <p>
+ * Like in the datalog translation of the IrisFacade, a body molecule
+ * consisting only of variables matches triples of every kind, all other
+ * body molecules only match triples of the kind
+ * {@link TripleStore#KIND_VALUE}. Derived triples are of the kind of
+ * their object, so that a data value keeps its kind.
+ * </p>
+ */
+class ForwardChainer {
+
+	private final static int VALUE = TripleStore.KIND_VALUE;
+
+	private final TripleStore store;
+
+	private final TermDictionary dictionary;
+
+	private final Set<RDFSRule> rules = EnumSet.noneOf(RDFSRule.class);
+
+	// the position of the first triple, which was not processed yet
+	private int processed = 0;
+
+	// the positions of the subClassOf and subPropertyOf triples, which
+	// were not closed transitively yet
+	private final IntList newSubClassOf = new IntList();
+
+	private final IntList newSubPropertyOf = new IntList();
+
+	// whether the hierarchies were closed since the last reset
+	private boolean subClassOfClosed = false;
+
+	private boolean subPropertyOfClosed = false;
+
+	// the positions of the triples derived by closing the hierarchies, 
+	// which are closed already
+	private int closedFrom = 0;
+
+	private int closedTo = 0;
+
+	// the size of the store at the mark, -1 if there is no mark
+	private int marked = -1;
+
+	private boolean markedSubClassOfClosed = false;
+
+	private boolean markedSubPropertyOfClosed = false;
+
+	private final int type;
+
+	private final int property;
+
+	private final int resource;
+
+	private final int cls;
+
+	private final int domain;
+
+	private final int range;
+
+	private final int subPropertyOf;
+
+	private final int subClassOf;
+
+	private final int member;
+
+	private final int containerMembershipProperty;
+
+	ForwardChainer(TripleStore store, TermDictionary dictionary) {
+		this.store = store;
+		this.dictionary = dictionary;
+		EntityFactory factory = new EntityFactoryImpl();
+		type = dictionary.encode(factory.createIdentifier(RDF.TYPE));
+		property = dictionary.encode(factory.createIdentifier(RDF.PROPERTY));
+		resource = dictionary.encode(factory.createIdentifier(RDFS.RESOURCE));
+		cls = dictionary.encode(factory.createIdentifier(RDFS.CLASS));
+		domain = dictionary.encode(factory.createIdentifier(RDFS.DOMAIN));
+		range = dictionary.encode(factory.createIdentifier(RDFS.RANGE));
+		subPropertyOf = dictionary.encode(factory.createIdentifier(
+				RDFS.SUBPROPERTYOF));
+		subClassOf = dictionary.encode(factory.createIdentifier(
+				RDFS.SUBCLASSOF));
+		member = dictionary.encode(factory.createIdentifier(RDFS.MEMBER));
+		containerMembershipProperty = dictionary.encode(factory
+				.createIdentifier(RDFS.CONTAINERMEMBERSHIPPROPERTY));
+	}
+
+	/**
+	 * Replaces the rules to apply. The closure must be computed again
+	 * from scratch after the rules have changed.
+	 *
+	 * @param rules the rules to apply
+	 */
+	void setRules(Set<RDFSRule> rules) {
+		this.rules.clear();
+		this.rules.addAll(rules);
+	}
+
+	/**
+	 * Marks all triples of the store as not processed, e.g. after the store
+	 * was cleared and filled again. The mark is discarded.
+	 */
+	void reset() {
+		marked = -1;
+		processed = 0;
+		newSubClassOf.clear();
+		newSubPropertyOf.clear();
+		subClassOfClosed = false;
+		subPropertyOfClosed = false;
+		closedFrom = 0;
+		closedTo = 0;
+	}
+
+	/**
+	 * @return true if all triples of the store were processed
+	 */
+	boolean isClosed() {
+		return processed == store.size();
+	}
+
+	/**
+	 * Computes the closure and marks the state of the store, to restore it
+	 * by {@link #rollback()}.
+	 */
+	void mark() {
+		closure();
+		marked = store.size();
+		markedSubClassOfClosed = subClassOfClosed;
+		markedSubPropertyOfClosed = subPropertyOfClosed;
+	}
+
+	/**
+	 * Removes the triples added to the store after the mark, and restores
+	 * the state of the chainer at the mark. The rules must not have
+	 * changed since the mark.
+	 *
+	 * @return false if there is no mark
+	 */
+	boolean rollback() {
+		if (marked < 0) {
+			return false;
+		}
+		store.truncate(marked);
+		processed = marked;
+		newSubClassOf.clear();
+		newSubPropertyOf.clear();
+		subClassOfClosed = markedSubClassOfClosed;
+		subPropertyOfClosed = markedSubPropertyOfClosed;
+		closedFrom = 0;
+		closedTo = 0;
+		return true;
+	}
+
+	/**
+	 * @return the size of the store at the mark, -1 if there is no mark
+	 */
+	int getMark() {
+		return marked;
+	}
+
+	/**
+	 * Marks all triples of the store as processed, after the store was
+	 * filled with a closure, e.g. from a snapshot.
+	 *
+	 * @param mark the size of the store at the mark of the closure, -1 if
+	 * 			there is no mark
+	 */
+	void restore(int mark) {
+		reset();
+		processed = store.size();
+		// the hierarchies of a closure are closed
+		subClassOfClosed = true;
+		subPropertyOfClosed = true;
+		marked = mark;
+		markedSubClassOfClosed = true;
+		markedSubPropertyOfClosed = true;
+	}
+
+	/**
+	 * Applies the rules to all triples, which were not processed yet, and
+	 * to all triples derived from them.
+	 */
+	void closure() {
+		while (processed < store.size()) {
+			while (processed < store.size()) {
+				int i = processed++;
+				process(i, store.getSubject(i), store.getPredicate(i),
+						store.getObject(i), store.getKind(i));
+			}
+			closeHierarchies();
+		}
+	}
+
+	private void process(int i, int s, int p, int o, int kind) {
+		// the triple as u[x ->> v] in a body molecule of only variables
+		if (rules.contains(RDFSRule.PROPERTY)) {
+			derive(p, type, property);
+		}
+		if (rules.contains(RDFSRule.SUBJECT_RESOURCE)) {
+			derive(s, type, resource);
+		}
+		if (rules.contains(RDFSRule.OBJECT_RESOURCE)) {
+			derive(o, type, resource);
+		}
+		if (rules.contains(RDFSRule.DOMAIN) || rules.contains(RDFSRule.RANGE)
+				|| rules.contains(RDFSRule.SUBPROPERTY)) {
+			IntList schema = store.withSubject(p);
+			for (int n = 0; n < schema.size(); n++) {
+				int j = schema.get(n);
+				if (store.getKind(j) != VALUE) {
+					continue;
+				}
+				int sp = store.getPredicate(j);
+				if (sp == domain && rules.contains(RDFSRule.DOMAIN)) {
+					derive(s, type, store.getObject(j));
+				}
+				else if (sp == range && rules.contains(RDFSRule.RANGE)) {
+					derive(o, type, store.getObject(j));
+				}
+				else if (sp == subPropertyOf
+						&& rules.contains(RDFSRule.SUBPROPERTY)) {
+					derive(s, store.getObject(j), o);
+				}
+			}
+		}
+
+		// all other body molecules only match plain triples
+		if (kind != VALUE) {
+			return;
+		}
+		if (p == type) {
+			processType(s, o);
+		}
+		else if (p == domain) {
+			processDomainOrRange(s, o, true);
+		}
+		else if (p == range) {
+			processDomainOrRange(s, o, false);
+		}
+		else if (p == subPropertyOf) {
+			processSubPropertyOf(i, s, o);
+		}
+		else if (p == subClassOf) {
+			processSubClassOf(i, s, o);
+		}
+	}
+
+	private void processType(int s, int o) {
+		if (o == containerMembershipProperty
+				&& rules.contains(RDFSRule.MEMBER)) {
+			derive(s, subPropertyOf, member);
+		}
+		if (o == property && rules.contains(RDFSRule.SUBPROPERTY_REFLEXIVE)) {
+			derive(s, subPropertyOf, s);
+		}
+		if (o == cls) {
+			if (rules.contains(RDFSRule.CLASS_RESOURCE)) {
+				derive(s, subClassOf, resource);
+			}
+			if (rules.contains(RDFSRule.SUBCLASS_REFLEXIVE)) {
+				derive(s, subClassOf, s);
+			}
+		}
+		// s[type ->> o] AND o[subClassOf ->> y]
+		if (rules.contains(RDFSRule.SUBCLASS)) {
+			IntList superClasses = store.withSubject(o);
+			for (int n = 0; n < superClasses.size(); n++) {
+				int j = superClasses.get(n);
+				if (store.getPredicate(j) == subClassOf
+						&& store.getKind(j) == VALUE) {
+					derive(s, type, store.getObject(j));
+				}
+			}
+		}
+	}
+
+	private void processDomainOrRange(int s, int o, boolean isDomain) {
+		// s[domain ->> o] AND u[s ->> v]
+		if (rules.contains(isDomain ? RDFSRule.DOMAIN : RDFSRule.RANGE)) {
+			IntList uses = store.withPredicate(s);
+			for (int n = 0; n < uses.size(); n++) {
+				int j = uses.get(n);
+				derive(isDomain ? store.getSubject(j) : store.getObject(j),
+						type, o);
+			}
+		}
+		int p = isDomain ? domain : range;
+		// s[domain ->> o] AND o[subClassOf ->> y]
+		if (rules.contains(isDomain ? RDFSRule.DOMAIN_SUBCLASS
+				: RDFSRule.RANGE_SUBCLASS)) {
+			IntList superClasses = store.withSubject(o);
+			for (int n = 0; n < superClasses.size(); n++) {
+				int j = superClasses.get(n);
+				if (store.getPredicate(j) == subClassOf
+						&& store.getKind(j) == VALUE) {
+					derive(s, p, store.getObject(j));
+				}
+			}
+		}
+		// s[domain ->> o] AND x[subPropertyOf ->> s]
+		if (rules.contains(isDomain ? RDFSRule.DOMAIN_SUBPROPERTY
+				: RDFSRule.RANGE_SUBPROPERTY)) {
+			IntList subProperties = store.withObject(s);
+			for (int n = 0; n < subProperties.size(); n++) {
+				int j = subProperties.get(n);
+				if (store.getPredicate(j) == subPropertyOf
+						&& store.getKind(j) == VALUE) {
+					derive(store.getSubject(j), p, o);
+				}
+			}
+		}
+	}
+
+	private void processSubPropertyOf(int i, int s, int o) {
+		if (rules.contains(RDFSRule.SUBPROPERTY_SUBJECT)) {
+			derive(s, type, property);
+		}
+		if (rules.contains(RDFSRule.SUBPROPERTY_OBJECT)) {
+			derive(o, type, property);
+		}
+		if (rules.contains(RDFSRule.SUBPROPERTY_TRANSITIVE)
+				&& (i < closedFrom || i >= closedTo)) {
+			newSubPropertyOf.add(i);
+		}
+		// s[subPropertyOf ->> o] AND u[s ->> v]
+		if (rules.contains(RDFSRule.SUBPROPERTY)) {
+			IntList uses = store.withPredicate(s);
+			for (int n = 0; n < uses.size(); n++) {
+				int j = uses.get(n);
+				derive(store.getSubject(j), o, store.getObject(j));
+			}
+		}
+		// s[subPropertyOf ->> o] AND o[domain ->> u] / o[range ->> u]
+		if (rules.contains(RDFSRule.DOMAIN_SUBPROPERTY)
+				|| rules.contains(RDFSRule.RANGE_SUBPROPERTY)) {
+			IntList schema = store.withSubject(o);
+			for (int n = 0; n < schema.size(); n++) {
+				int j = schema.get(n);
+				if (store.getKind(j) != VALUE) {
+					continue;
+				}
+				int sp = store.getPredicate(j);
+				if ((sp == domain && rules.contains(RDFSRule.DOMAIN_SUBPROPERTY))
+						|| (sp == range
+								&& rules.contains(RDFSRule.RANGE_SUBPROPERTY))) {
+					derive(s, sp, store.getObject(j));
+				}
+			}
+		}
+	}
+
+	private void processSubClassOf(int i, int s, int o) {
+		if (rules.contains(RDFSRule.SUBCLASS_SUBJECT)) {
+			derive(s, type, cls);
+		}
+		if (rules.contains(RDFSRule.SUBCLASS_OBJECT)) {
+			derive(o, type, cls);
+		}
+		if (rules.contains(RDFSRule.SUBCLASS_TRANSITIVE)
+				&& (i < closedFrom || i >= closedTo)) {
+			newSubClassOf.add(i);
+		}
+		// u[type ->> s] AND s[subClassOf ->> o]
+		if (rules.contains(RDFSRule.SUBCLASS)) {
+			IntList instances = store.withObject(s);
+			for (int n = 0; n < instances.size(); n++) {
+				int j = instances.get(n);
+				if (store.getPredicate(j) == type
+						&& store.getKind(j) == VALUE) {
+					derive(store.getSubject(j), type, o);
+				}
+			}
+		}
+		// u[domain ->> s] / u[range ->> s] AND s[subClassOf ->> o]
+		if (rules.contains(RDFSRule.DOMAIN_SUBCLASS)
+				|| rules.contains(RDFSRule.RANGE_SUBCLASS)) {
+			IntList schema = store.withObject(s);
+			for (int n = 0; n < schema.size(); n++) {
+				int j = schema.get(n);
+				if (store.getKind(j) != VALUE) {
+					continue;
+				}
+				int sp = store.getPredicate(j);
+				if ((sp == domain && rules.contains(RDFSRule.DOMAIN_SUBCLASS))
+						|| (sp == range
+								&& rules.contains(RDFSRule.RANGE_SUBCLASS))) {
+					derive(store.getSubject(j), sp, o);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Closes the hierarchies with new edges. The triples derived meanwhile
+	 * are closed already, they don't have to be closed again when they are
+	 * processed.
+	 */
+	private void closeHierarchies() {
+		int from = store.size();
+		if (newSubClassOf.size() > 0) {
+			close(subClassOf, newSubClassOf, subClassOfClosed);
+			subClassOfClosed = true;
+		}
+		if (newSubPropertyOf.size() > 0) {
+			close(subPropertyOf, newSubPropertyOf, subPropertyOfClosed);
+			subPropertyOfClosed = true;
+		}
+		closedFrom = from;
+		closedTo = store.size();
+	}
+
+	/*
+	 * Closes the hierarchy of the predicate p. If it was closed before and
+	 * has only a few new edges, they are joined with the closed hierarchy,
+	 * otherwise the whole hierarchy is closed again.
+	 */
+	private void close(int p, IntList newEdges, boolean closed) {
+		if (closed && newEdges.size() * 4 < store.withPredicate(p).size()) {
+			for (int n = 0; n < newEdges.size(); n++) {
+				int j = newEdges.get(n);
+				transitive(store.getSubject(j), p, store.getObject(j));
+			}
+		}
+		else {
+			closeHierarchy(p);
+		}
+		newEdges.clear();
+	}
+
+	/*
+	 * Joins the edge s[p ->> o] with the closed hierarchy, every node
+	 * reaching s (including s) reaches every node reachable from o
+	 * (including o) afterwards.
+	 */
+	private void transitive(int s, int p, int o) {
+		IntList sources = new IntList();
+		sources.add(s);
+		IntList predecessors = store.withObject(s);
+		for (int n = 0; n < predecessors.size(); n++) {
+			int j = predecessors.get(n);
+			if (store.getPredicate(j) == p && store.getKind(j) == VALUE) {
+				sources.add(store.getSubject(j));
+			}
+		}
+		IntList targets = new IntList();
+		targets.add(o);
+		IntList successors = store.withSubject(o);
+		for (int n = 0; n < successors.size(); n++) {
+			int j = successors.get(n);
+			if (store.getPredicate(j) == p && store.getKind(j) == VALUE) {
+				targets.add(store.getObject(j));
+			}
+		}
+		for (int x = 0; x < sources.size(); x++) {
+			for (int y = 0; y < targets.size(); y++) {
+				derive(sources.get(x), p, targets.get(y));
+			}
+		}
+	}
+
+	/*
+	 * Computes the transitive closure of all edges x[p ->> y]. The nodes of
+	 * a strongly connected component reach each other, and the nodes of
+	 * all components reachable from it. The reachable components are
+	 * collected in reverse topological order of the condensed hierarchy.
+	 * The nodes are numbered densely, the graph doesn't grow with the 
+	 * number of terms of the dictionary.
+	 */
+	private void closeHierarchy(int p) {
+		// the reflexive edges don't change the closure
+		IntList sources = new IntList();
+		IntList targets = new IntList();
+		Map<Integer, Integer> nodeOf = new HashMap<Integer, Integer>();
+		IntList terms = new IntList();
+		IntList edges = store.withPredicate(p);
+		for (int n = 0; n < edges.size(); n++) {
+			int j = edges.get(n);
+			int s = store.getSubject(j);
+			int o = store.getObject(j);
+			if (store.getKind(j) == VALUE && s != o) {
+				sources.add(node(s, nodeOf, terms));
+				targets.add(node(o, nodeOf, terms));
+			}
+		}
+		int nodes = terms.size();
+		int[][] successors = adjacency(sources, targets, nodes);
+		int[][] predecessors = adjacency(targets, sources, nodes);
+
+		int[] componentOf = new int[nodes];
+		List<int[]> components = new ArrayList<int[]>();
+		for (Set<Integer> set : cycles(successors, predecessors)) {
+			int[] component = new int[set.size()];
+			int k = 0;
+			for (int node : set) {
+				component[k++] = node;
+				componentOf[node] = components.size() + 1;
+			}
+			components.add(component);
+		}
+		for (int node = 0; node < nodes; node++) {
+			if (componentOf[node] == 0 && (successors[node].length > 0
+					|| predecessors[node].length > 0)) {
+				componentOf[node] = components.size() + 1;
+				components.add(new int[] {node});
+			}
+		}
+		// the components are numbered from 1, 0 marks the nodes without edges
+		DirectedGraph<Integer, DefaultEdge> condensed =
+				new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+		for (int c = 1; c <= components.size(); c++) {
+			condensed.addVertex(c);
+		}
+		for (int n = 0; n < sources.size(); n++) {
+			int cs = componentOf[sources.get(n)];
+			int co = componentOf[targets.get(n)];
+			if (cs != co) {
+				condensed.addEdge(cs, co);
+			}
+		}
+
+		List<Integer> order = new ArrayList<Integer>(components.size());
+		TopologicalOrderIterator<Integer, DefaultEdge> it =
+				new TopologicalOrderIterator<Integer, DefaultEdge>(condensed);
+		while (it.hasNext()) {
+			order.add(it.next());
+		}
+		IntList[] reachable = new IntList[components.size() + 1];
+		int[] marked = new int[components.size() + 1];
+		for (int n = order.size() - 1; n >= 0; n--) {
+			int c = order.get(n);
+			reachable[c] = new IntList();
+			for (DefaultEdge edge : condensed.outgoingEdgesOf(c)) {
+				int d = condensed.getEdgeTarget(edge);
+				mark(d, c, marked, reachable[c]);
+				for (int m = 0; m < reachable[d].size(); m++) {
+					mark(reachable[d].get(m), c, marked, reachable[c]);
+				}
+			}
+			// the nodes of a cycle reach themselves
+			int[] component = components.get(c - 1);
+			if (component.length > 1) {
+				reachable[c].add(c);
+			}
+			for (int x : component) {
+				for (int m = 0; m < reachable[c].size(); m++) {
+					for (int y : components.get(reachable[c].get(m) - 1)) {
+						derive(terms.get(x), p, terms.get(y));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the node of a term in a hierarchy, a new node is added if 
+	 * the term has none yet.
+	 */
+	private static int node(int term, Map<Integer, Integer> nodeOf, 
+			IntList terms) {
+		Integer node = nodeOf.get(term);
+		if (node == null) {
+			node = terms.size();
+			nodeOf.put(term, node);
+			terms.add(term);
+		}
+		return node;
+	}
+
+	/*
+	 * Returns the strongly connected components with more than one node.
+	 * The nodes without predecessors or successors can't be part of a
+	 * cycle, they are removed repeatedly, so that usually only a few nodes
+	 * remain for the StrongConnectivityInspector.
+	 */
+	private static List<Set<Integer>> cycles(int[][] successors,
+			int[][] predecessors) {
+		int nodes = successors.length;
+		int[] in = new int[nodes];
+		int[] out = new int[nodes];
+		boolean[] removed = new boolean[nodes];
+		IntList queue = new IntList();
+		for (int node = 0; node < nodes; node++) {
+			in[node] = predecessors[node].length;
+			out[node] = successors[node].length;
+			if (in[node] == 0 || out[node] == 0) {
+				removed[node] = true;
+				queue.add(node);
+			}
+		}
+		for (int n = 0; n < queue.size(); n++) {
+			int node = queue.get(n);
+			for (int succ : successors[node]) {
+				if (!removed[succ] && --in[succ] == 0) {
+					removed[succ] = true;
+					queue.add(succ);
+				}
+			}
+			for (int pred : predecessors[node]) {
+				if (!removed[pred] && --out[pred] == 0) {
+					removed[pred] = true;
+					queue.add(pred);
+				}
+			}
+		}
+
+		DirectedGraph<Integer, DefaultEdge> core =
+				new DefaultDirectedGraph<Integer, DefaultEdge>(DefaultEdge.class);
+		for (int node = 0; node < nodes; node++) {
+			if (!removed[node]) {
+				core.addVertex(node);
+			}
+		}
+		for (int node = 0; node < nodes; node++) {
+			for (int succ : successors[node]) {
+				if (!removed[node] && !removed[succ]) {
+					core.addEdge(node, succ);
+				}
+			}
+		}
+		List<Set<Integer>> cycles = new ArrayList<Set<Integer>>();
+		for (Set<Integer> set : new StrongConnectivityInspector<Integer,
+				DefaultEdge>(core).stronglyConnectedSets()) {
+			if (set.size() > 1) {
+				cycles.add(set);
+			}
+		}
+		return cycles;
+	}
+
+	/*
+	 * Returns for each node the targets of its edges.
+	 */
+	private static int[][] adjacency(IntList sources, IntList targets,
+			int nodes) {
+		int[] degree = new int[nodes];
+		for (int n = 0; n < sources.size(); n++) {
+			degree[sources.get(n)]++;
+		}
+		int[][] adjacency = new int[nodes][];
+		for (int node = 0; node < nodes; node++) {
+			adjacency[node] = new int[degree[node]];
+			degree[node] = 0;
+		}
+		for (int n = 0; n < sources.size(); n++) {
+			int s = sources.get(n);
+			adjacency[s][degree[s]++] = targets.get(n);
+		}
+		return adjacency;
+	}
+
+	/*
+	 * Adds the component d to the components reachable from c, unless it
+	 * was added already.
+	 */
+	private static void mark(int d, int c, int[] marked, IntList reachable) {
+		if (marked[d] != c) {
+			marked[d] = c;
+			reachable.add(d);
+		}
+	}
+
+	private void derive(int s, int p, int o) {
+		store.add(s, p, o, dictionary.getKind(o));
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+/**
+ * A growable list of primitive ints.
+ */
+public class IntList {
+
+	static final IntList EMPTY = new IntList(0);
+
+	private int[] elements;
+
+	private int size = 0;
+
+	public IntList() {
+		this(8);
+	}
+
+	public IntList(int capacity) {
+		elements = new int[capacity];
+	}
+
+	public void add(int i) {
+		if (size == elements.length) {
+			int[] grown = new int[Math.max(8, size * 2)];
+			System.arraycopy(elements, 0, grown, 0, size);
+			elements = grown;
+		}
+		elements[size++] = i;
+	}
+
+	public int get(int index) {
+		return elements[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Removes the elements from the given index on.
+	 *
+	 * @param size the number of elements to keep
+	 */
+	public void truncate(int size) {
+		if (size < this.size) {
+			this.size = size;
+		}
+	}
+
+}
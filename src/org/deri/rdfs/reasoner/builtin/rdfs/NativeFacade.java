@@ -0,0 +1,1099 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.deri.rdfs.reasoner.WSML2DatalogTransformer;
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.EvaluationStrategy;
+import org.deri.rdfs.reasoner.api.terms.FMolecule;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.builtin.AbstractQueryCursor;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.Variable;
+import org.omwg.ontology.WsmlDataType;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+import org.wsml.reasoner.ConjunctiveQuery;
+import org.wsml.reasoner.Literal;
+
+/**
+ * A facade to a native forward chaining engine for the RDF, RDFS and eRDFS
+ * entailment regimes.
+ * <p>
+ * The terms of the triples are encoded as int ids and the triples are kept
+ * in primitive arrays. Instead of evaluating the auxiliary rules as
+ * generic datalog rules, the engine recognizes them and applies a
+ * specialized join for each of them (see {@link RDFSRule}). Registering a
+ * knowledge base with any other rule fails.
+ * </p>
+ * <p>
+ * The closure is computed on the next query and extended incrementally
+ * when facts are added. Deregistering an ontology recomputes the closure
+ * from the facts of the remaining ontologies.
+ * </p>
+ * <p>
+ * When the closure is computed from scratch, the schema facts (the
+ * subClassOf, subPropertyOf, domain and range triples) are closed first,
+ * and the state of the store is marked. The closed schema is then
+ * indexed by subject, so that the instance facts only look up their
+ * classes and properties, and their types and super properties follow in
+ * one pass. As long as the schema facts and the rules don't change,
+ * deregistering an ontology truncates the store to the closed schema and
+ * only adds the remaining instance facts again.
+ * </p>
+ * <p>
+ * With the evaluation strategy GOAL_DIRECTED, a selective query, which
+ * arrives before the closure is computed, is answered by the
+ * {@link BackwardChainer}. It only derives the triples needed for the
+ * query, and doesn't keep them. If the query turns out to depend on
+ * every triple, the closure is computed instead.
+ * </p>
+ * <p>
+ * Queries are evaluated concurrently, registering and deregistering
+ * ontologies waits until the running queries are finished. A cursor only
+ * matches the triples, which were in the store when it was opened, so
+ * that facts registered meanwhile don't disturb it. Deregistering an
+ * ontology or registering new auxiliary rules rebuilds the store, an open
+ * cursor fails with a ConcurrentModificationException afterwards.
+ * </p>
+ * <p>
+ * A snapshot holds the dictionary, the registered facts and rules, and
+ * the closure in the order of the store, with the mark of the closed
+ * schema. Reading it fills the store again, without applying any rule.
+ * </p>
+ */
+public class NativeFacade implements ReasonerFacade {
+
+	// The auxiliary rules, which are implemented by the engine.
+	private final static Map<Rule, RDFSRule> KNOWN_RULES = createKnownRules();
+
+	// Identifies a snapshot of the engine, and the version of its format.
+	private final static int SNAPSHOT_MAGIC = 0x52444653;
+
+	private final static int SNAPSHOT_VERSION = 1;
+
+	// The kind of a query literal with a predicate, which isn't supported.
+	private final static int UNSUPPORTED = -2;
+
+	private final TermDictionary dictionary = new TermDictionary();
+
+	private final TripleStore store = new TripleStore();
+
+	private final ForwardChainer chainer = new ForwardChainer(store, dictionary);
+
+	/*
+	 * The facts of the registered ontologies, grouped by the URI of the
+	 * ontology. Each fact takes four entries: subject, predicate, object
+	 * and kind.
+	 */
+	private Map<String, IntList> ontologyFacts = new HashMap<String, IntList>();
+
+	// The auxiliary rules of the registered ontologies, grouped by their URI.
+	private Map<String, Set<RDFSRule>> ontologyRules =
+			new HashMap<String, Set<RDFSRule>>();
+
+	// The rules applied by the forward chainer.
+	private Set<RDFSRule> rules = EnumSet.noneOf(RDFSRule.class);
+
+	// Whether the store must be filled again from the registered facts.
+	private boolean rebuild = false;
+
+	// Whether the schema facts or the rules changed since the closure of
+	// the schema was marked.
+	private boolean schemaChanged = true;
+
+	// The predicates of the schema facts.
+	private final int[] schemaPredicates;
+
+	// The number of changes, after which the store is rebuilt, to detect
+	// them in open cursors. Registered facts are only appended.
+	private int modifications = 0;
+
+	// Whether selective queries are answered without the closure.
+	private final boolean goalDirected;
+
+	// The auxiliary rules encoded for the BackwardChainer.
+	private final Map<RDFSRule, int[][]> encodedRules =
+			new EnumMap<RDFSRule, int[][]>(RDFSRule.class);
+
+	/*
+	 * Queries are matched concurrently under the read lock, they only take
+	 * the write lock to bring the closure up to date. Registering and
+	 * deregistering ontologies takes the write lock.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Lock read = lock.readLock();
+
+	private final Lock write = lock.writeLock();
+
+	public NativeFacade() {
+		this(EvaluationStrategy.MATERIALIZE);
+	}
+
+	/**
+	 * @param strategy the strategy to evaluate queries, with the strategy
+	 * 			GOAL_DIRECTED selective queries are answered by the
+	 * 			BackwardChainer, as long as the closure isn't computed
+	 */
+	public NativeFacade(EvaluationStrategy strategy) {
+		goalDirected = strategy == EvaluationStrategy.GOAL_DIRECTED;
+		EntityFactory factory = new EntityFactoryImpl();
+		schemaPredicates = new int[] {
+				dictionary.encode(factory.createIdentifier(RDFS.SUBCLASSOF)),
+				dictionary.encode(factory.createIdentifier(RDFS.SUBPROPERTYOF)),
+				dictionary.encode(factory.createIdentifier(RDFS.DOMAIN)),
+				dictionary.encode(factory.createIdentifier(RDFS.RANGE))};
+		for (Entry<Rule, RDFSRule> entry : KNOWN_RULES.entrySet()) {
+			encodedRules.put(entry.getValue(), encodeRule(entry.getKey()));
+		}
+	}
+
+	public void register(String ontologyURI, Set<Rule> kb)
+			throws ExternalToolException {
+		if (ontologyURI == null) {
+			throw new ExternalToolException("The ontology URI must not be null");
+		}
+		if (kb == null) {
+			throw new ExternalToolException("The knowledge base must not be null");
+		}
+		// the knowledge base is checked before anything is registered
+		List<FMolecule> newFacts = new ArrayList<FMolecule>();
+		IntList kinds = new IntList();
+		Set<RDFSRule> newRules = EnumSet.noneOf(RDFSRule.class);
+		for (Rule r : kb) {
+			if (r.isFact()) {
+				newFacts.add(r.getHead());
+				kinds.add(getKind(r.getHead()));
+			}
+			else {
+				RDFSRule known = KNOWN_RULES.get(r);
+				if (known == null) {
+					throw new ExternalToolException("The rule " + r + " is not " +
+							"supported by the native reasoner");
+				}
+				newRules.add(known);
+			}
+		}
+
+		write.lock();
+		try {
+			IntList facts = ontologyFacts.get(ontologyURI);
+			Set<RDFSRule> auxiliary = ontologyRules.get(ontologyURI);
+			if (facts == null) {
+				facts = new IntList();
+				auxiliary = EnumSet.noneOf(RDFSRule.class);
+				ontologyFacts.put(ontologyURI, facts);
+				ontologyRules.put(ontologyURI, auxiliary);
+			}
+			auxiliary.addAll(newRules);
+
+			for (int i = 0; i < newFacts.size(); i++) {
+				FMolecule m = newFacts.get(i);
+				int s = dictionary.encode(m.getLeftTerm());
+				int p = dictionary.encode(m.getPredTerm());
+				int o = dictionary.encode(m.getRightTerm());
+				int kind = kinds.get(i);
+				facts.add(s);
+				facts.add(p);
+				facts.add(o);
+				facts.add(kind);
+				if (isSchema(p, kind)) {
+					schemaChanged = true;
+				}
+				if (!rebuild) {
+					store.add(s, p, o, kind);
+				}
+			}
+
+			// new rules must be applied to all triples, the closure is
+			// computed again with the schema first
+			if (!rules.containsAll(auxiliary)) {
+				rules.addAll(auxiliary);
+				chainer.setRules(rules);
+				rebuild = true;
+				schemaChanged = true;
+				modifications++;
+			}
+		} finally {
+			write.unlock();
+		}
+	}
+
+	public void deregister(String ontologyURI) throws ExternalToolException {
+		write.lock();
+		try {
+			IntList facts = ontologyFacts.remove(ontologyURI);
+			if (facts == null) {
+				// the ontology is not registered
+				return;
+			}
+			modifications++;
+			for (int i = 0; i < facts.size() && !schemaChanged; i += 4) {
+				schemaChanged = isSchema(facts.get(i + 1), facts.get(i + 3));
+			}
+			ontologyRules.remove(ontologyURI);
+			Set<RDFSRule> remaining = EnumSet.noneOf(RDFSRule.class);
+			for (Set<RDFSRule> auxiliary : ontologyRules.values()) {
+				remaining.addAll(auxiliary);
+			}
+			if (!remaining.equals(rules)) {
+				rules = remaining;
+				chainer.setRules(rules);
+				schemaChanged = true;
+			}
+			rebuild = true;
+		} finally {
+			write.unlock();
+		}
+	}
+
+	public Set<Map<Variable, Term>> evaluate(ConjunctiveQuery q,
+			String ontologyURI) throws ExternalToolException {
+		return AbstractQueryCursor.toSet(evaluate(q, ontologyURI, 0, -1));
+	}
+
+	public QueryCursor evaluate(ConjunctiveQuery q, String ontologyURI,
+			int offset, int limit) throws ExternalToolException {
+		// the ontologyURI is ignored, like in the IrisFacade
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+
+		read.lock();
+		try {
+			List<Variable> vars = new ArrayList<Variable>();
+			List<int[]> patterns = encode(q, vars);
+
+			TripleStore source = prepare(patterns, vars.size());
+			return new MatchCursor(vars, patterns, source, offset, limit);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	public boolean entails(ConjunctiveQuery q, String ontologyURI)
+			throws ExternalToolException {
+		if (q == null) {
+			throw new ExternalToolException("The query must not be null");
+		}
+
+		read.lock();
+		try {
+			List<Variable> vars = new ArrayList<Variable>();
+			List<int[]> patterns = encode(q, vars);
+			if (patterns == null) {
+				// an unknown term isn't part of any triple
+				return false;
+			}
+			TripleStore source = prepare(patterns, vars.size());
+			List<int[]> open = new ArrayList<int[]>();
+			for (int[] pattern : patterns) {
+				if (pattern[0] < 0 || pattern[1] < 0 || pattern[2] < 0
+						|| pattern[3] == BackwardChainer.ANY_KIND) {
+					open.add(pattern);
+				}
+				else if (!source.contains(pattern[0], pattern[1], pattern[2],
+						pattern[3])) {
+					return false;
+				}
+			}
+			return open.isEmpty() 
+					|| new MatchCursor(vars, open, source, 0, 1).advance();
+		} finally {
+			read.unlock();
+		}
+	}
+
+	public void writeSnapshot(OutputStream out) throws IOException {
+		DataOutputStream data = out instanceof DataOutputStream
+				? (DataOutputStream) out
+				: new DataOutputStream(new BufferedOutputStream(out));
+		write.lock();
+		try {
+			// the closure is written, so that it isn't computed again
+			updateClosure();
+			data.writeInt(SNAPSHOT_MAGIC);
+			data.writeInt(SNAPSHOT_VERSION);
+			dictionary.write(data);
+			data.writeInt(ontologyFacts.size());
+			for (Entry<String, IntList> entry : ontologyFacts.entrySet()) {
+				data.writeUTF(entry.getKey());
+				Set<RDFSRule> auxiliary = ontologyRules.get(entry.getKey());
+				data.writeInt(auxiliary.size());
+				for (RDFSRule r : auxiliary) {
+					data.writeUTF(r.name());
+				}
+				IntList facts = entry.getValue();
+				data.writeInt(facts.size());
+				for (int i = 0; i < facts.size(); i++) {
+					data.writeInt(facts.get(i));
+				}
+			}
+			data.writeInt(schemaChanged ? -1 : chainer.getMark());
+			data.writeInt(store.size());
+			for (int i = 0; i < store.size(); i++) {
+				data.writeInt(store.getSubject(i));
+				data.writeInt(store.getPredicate(i));
+				data.writeInt(store.getObject(i));
+				data.writeByte(store.getKind(i));
+			}
+		} finally {
+			write.unlock();
+		}
+		data.flush();
+	}
+
+	public void readSnapshot(InputStream in) throws IOException {
+		DataInputStream data = in instanceof DataInputStream
+				? (DataInputStream) in
+				: new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("The stream doesn't contain a snapshot " +
+					"of the native reasoner");
+		}
+		if (data.readInt() != SNAPSHOT_VERSION) {
+			throw new IOException("The snapshot was written by another " +
+					"version of the native reasoner");
+		}
+		write.lock();
+		try {
+			// the registered ontologies are only replaced after the whole
+			// snapshot was read, the ids of the snapshot are mapped to the
+			// ids of the dictionary
+			int[] ids = dictionary.read(data);
+			Map<String, IntList> readFacts = new HashMap<String, IntList>();
+			Map<String, Set<RDFSRule>> readRules =
+					new HashMap<String, Set<RDFSRule>>();
+			Set<RDFSRule> allRules = EnumSet.noneOf(RDFSRule.class);
+			int ontologies = data.readInt();
+			for (int n = 0; n < ontologies; n++) {
+				String ontologyURI = data.readUTF();
+				Set<RDFSRule> auxiliary = EnumSet.noneOf(RDFSRule.class);
+				int count = data.readInt();
+				for (int i = 0; i < count; i++) {
+					auxiliary.add(toRule(data.readUTF()));
+				}
+				count = data.readInt();
+				IntList facts = new IntList(count);
+				for (int i = 0; i < count; i++) {
+					// every fourth entry is a kind, not a term
+					int entry = data.readInt();
+					facts.add(i % 4 == 3 ? entry : ids[entry]);
+				}
+				readFacts.put(ontologyURI, facts);
+				readRules.put(ontologyURI, auxiliary);
+				allRules.addAll(auxiliary);
+			}
+			int mark = data.readInt();
+			int size = data.readInt();
+			IntList triples = new IntList(size * 4);
+			for (int i = 0; i < size; i++) {
+				triples.add(ids[data.readInt()]);
+				triples.add(ids[data.readInt()]);
+				triples.add(ids[data.readInt()]);
+				triples.add(data.readByte());
+			}
+
+			modifications++;
+			ontologyFacts = readFacts;
+			ontologyRules = readRules;
+			rules = allRules;
+			chainer.setRules(rules);
+			store.clear();
+			for (int i = 0; i < triples.size(); i += 4) {
+				store.add(triples.get(i), triples.get(i + 1),
+						triples.get(i + 2), triples.get(i + 3));
+			}
+			chainer.restore(mark);
+			schemaChanged = mark < 0;
+			rebuild = false;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("The snapshot refers to an unknown term");
+		} finally {
+			write.unlock();
+		}
+	}
+
+	/**
+	 * Brings the store up to date for a query. Must be called with the 
+	 * read lock held.
+	 *
+	 * @param patterns the encoded literals of the query, null if it 
+	 * 			contains an unknown term
+	 * @param variables the number of variables of the query
+	 * @return the store, or the triples derived for the query, if it is 
+	 * 			answered goal directed
+	 */
+	private TripleStore prepare(List<int[]> patterns, int variables) {
+		// a selective query is answered without the closure, as long as 
+		// it isn't computed anyway
+		boolean topDown = goalDirected && patterns != null 
+				&& (rebuild || !chainer.isClosed()) && isSelective(patterns);
+
+		// the closure must be updated before the query can be evaluated
+		if (topDown ? rebuild : rebuild || !chainer.isClosed()) {
+			update(!topDown);
+		}
+
+		TripleStore source = store;
+		if (topDown) {
+			BackwardChainer backward = new BackwardChainer(store, 
+					dictionary, getEncodedRules());
+			source = backward.solve(patterns, variables);
+			if (source == null) {
+				// the query needs about the whole closure anyway
+				update(true);
+				source = store;
+			}
+		}
+		return source;
+	}
+
+	/**
+	 * Encodes the literals of a query, variables are encoded as
+	 * -(index + 1). Must be called with the read lock held.
+	 *
+	 * @param q the query
+	 * @param vars the list where to store the variables of the query
+	 * @return the encoded literals, or null if the query contains an
+	 * 			unknown term, which can't be matched
+	 * @throws ExternalToolException if the query contains a literal, which
+	 * 			isn't supported
+	 */
+	private List<int[]> encode(ConjunctiveQuery q, List<Variable> vars)
+			throws ExternalToolException {
+		List<int[]> patterns = new ArrayList<int[]>();
+		boolean unknown = false;
+		for (Literal l : q.getLiterals()) {
+			Term[] terms = l.getTerms();
+			int kind = getKind(l.getPredicateUri());
+			if (!l.isPositive() || kind == UNSUPPORTED || terms.length != 3) {
+				throw new ExternalToolException("The literal " + l + " is not " +
+						"supported by the native reasoner");
+			}
+			int[] pattern = new int[4];
+			for (int i = 0; i < 3; i++) {
+				if (terms[i] instanceof Variable) {
+					if (!vars.contains(terms[i])) {
+						vars.add((Variable) terms[i]);
+					}
+					pattern[i] = -(vars.indexOf(terms[i]) + 1);
+				}
+				else {
+					pattern[i] = dictionary.lookup(terms[i]);
+					unknown |= pattern[i] < 0;
+				}
+			}
+			pattern[3] = kind;
+			patterns.add(pattern);
+		}
+		return unknown ? null : patterns;
+	}
+
+	/*
+	 * A query is selective, if one of its literals has a constant subject 
+	 * or object. The bindings of that literal are passed on to the other 
+	 * literals.
+	 */
+	private static boolean isSelective(List<int[]> patterns) {
+		for (int[] pattern : patterns) {
+			if (pattern[0] >= 0 || pattern[2] >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Returns the encoded rules applied at the moment. Must be called with
+	 * the read lock held.
+	 */
+	private List<int[][]> getEncodedRules() {
+		List<int[][]> encoded = new ArrayList<int[][]>(rules.size());
+		for (RDFSRule rule : rules) {
+			encoded.add(encodedRules.get(rule));
+		}
+		return encoded;
+	}
+
+	/**
+	 * Upgrades the read lock to the write lock, to update the store or
+	 * the closure, and downgrades it again. Other threads may modify the
+	 * knowledge base in between.
+	 *
+	 * @param closure whether the closure must be computed, or only the
+	 * 			facts of the store
+	 */
+	private void update(boolean closure) {
+		read.unlock();
+		write.lock();
+		try {
+			if (closure) {
+				updateClosure();
+			}
+			else {
+				rebuildStore();
+			}
+		} finally {
+			// downgrade to the read lock
+			read.lock();
+			write.unlock();
+		}
+	}
+
+	/**
+	 * Brings the closure up to date with the registered facts and rules.
+	 * Must be called with the write lock held.
+	 */
+	private void updateClosure() {
+		rebuildStore();
+		chainer.closure();
+	}
+
+	/**
+	 * Fills the store again with the registered facts, after an ontology
+	 * was deregistered or the rules changed. The closed schema is kept, if
+	 * it didn't change. Must be called with the write lock held.
+	 */
+	private void rebuildStore() {
+		if (rebuild) {
+			if (schemaChanged || !chainer.rollback()) {
+				store.clear();
+				chainer.reset();
+				addFacts(true);
+				chainer.mark();
+				schemaChanged = false;
+			}
+			addFacts(false);
+			rebuild = false;
+		}
+	}
+
+	/*
+	 * Adds either the schema facts or the instance facts of all
+	 * registered ontologies to the store.
+	 */
+	private void addFacts(boolean schema) {
+		for (IntList facts : ontologyFacts.values()) {
+			for (int i = 0; i < facts.size(); i += 4) {
+				if (isSchema(facts.get(i + 1), facts.get(i + 3)) == schema) {
+					store.add(facts.get(i), facts.get(i + 1),
+							facts.get(i + 2), facts.get(i + 3));
+				}
+			}
+		}
+	}
+
+	private static RDFSRule toRule(String name) throws IOException {
+		try {
+			return RDFSRule.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("The snapshot contains the unknown rule "
+					+ name);
+		}
+	}
+
+	private boolean isSchema(int p, int kind) {
+		if (kind != TripleStore.KIND_VALUE) {
+			return false;
+		}
+		for (int schemaPredicate : schemaPredicates) {
+			if (p == schemaPredicate) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Orders the literals of a query, so that each literal has as many
+	 * terms bound by the preceding literals as possible.
+	 */
+	private List<int[]> order(List<int[]> patterns) {
+		List<int[]> ordered = new ArrayList<int[]>(patterns.size());
+		List<int[]> remaining = new LinkedList<int[]>(patterns);
+		Set<Integer> bound = new HashSet<Integer>();
+		while (!remaining.isEmpty()) {
+			int[] best = null;
+			int bestCount = -1;
+			for (int[] pattern : remaining) {
+				int count = 0;
+				for (int i = 0; i < 3; i++) {
+					if (pattern[i] >= 0 || bound.contains(pattern[i])) {
+						count++;
+					}
+				}
+				if (count > bestCount) {
+					best = pattern;
+					bestCount = count;
+				}
+			}
+			remaining.remove(best);
+			ordered.add(best);
+			for (int i = 0; i < 3; i++) {
+				bound.add(best[i]);
+			}
+		}
+		return ordered;
+	}
+
+	private static int resolve(int term, int[] binding) {
+		return term >= 0 ? term : binding[-term - 1];
+	}
+
+	/**
+	 * A cursor matching the literals of a query against the closure. The
+	 * literals are matched by backtracking, one variable binding at a time,
+	 * so the results are neither collected nor decoded in advance.
+	 * <p>
+	 * The cursor takes the read lock while it is advanced, it fails if an
+	 * ontology was registered or deregistered since it was opened.
+	 * </p>
+	 */
+	private class MatchCursor extends AbstractQueryCursor {
+
+		private final List<Variable> vars;
+
+		// the encoded literals, variables are encoded as -(index + 1)
+		private final List<int[]> patterns;
+
+		// the triples to match, the store or the triples derived for the
+		// query
+		private final TripleStore source;
+
+		private final int[] binding;
+
+		// the number of modifications when the cursor was opened
+		private final int expectedModifications;
+
+		// the size of the source when the cursor was opened, the triples
+		// appended afterwards aren't matched
+		private final int end;
+
+		// the literal matched at the moment, patterns.size() after a result
+		private int level = 0;
+
+		// the state of the matching of each literal
+		private final IntList[] candidates;
+
+		private final int[] sizes;
+
+		private final int[] positions;
+
+		private final int[][] terms;
+
+		// the variables bound by the current candidate of each literal
+		private final int[][] bound;
+
+		private final int[] boundCount;
+
+		/*
+		 * Must be called with the read lock held.
+		 */
+		private MatchCursor(List<Variable> vars, List<int[]> encoded,
+				TripleStore source, int offset, int limit) {
+			super(offset, limit);
+			expectedModifications = modifications;
+			this.vars = vars;
+			this.source = source;
+			end = source.size();
+			boolean unknown = encoded == null;
+			if (unknown) {
+				encoded = new ArrayList<int[]>();
+			}
+			patterns = order(encoded);
+
+			int n = patterns.size();
+			binding = new int[vars.size()];
+			for (int i = 0; i < binding.length; i++) {
+				binding[i] = -1;
+			}
+			candidates = new IntList[n];
+			sizes = new int[n];
+			positions = new int[n];
+			terms = new int[n][3];
+			bound = new int[n][3];
+			boundCount = new int[n];
+			if (unknown || n == 0) {
+				level = -1;
+			}
+			else {
+				open(0);
+			}
+		}
+
+		protected Map<Variable, Term> computeNext() {
+			read.lock();
+			try {
+				if (!advance()) {
+					return null;
+				}
+				Map<Variable, Term> varBinding = new HashMap<Variable, Term>();
+				for (int i = 0; i < binding.length; i++) {
+					varBinding.put(vars.get(i), dictionary.decode(binding[i]));
+				}
+				return varBinding;
+			} finally {
+				read.unlock();
+			}
+		}
+
+		protected boolean skipNext() {
+			read.lock();
+			try {
+				return advance();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		/*
+		 * Advances to the next complete binding of the variables. Must be
+		 * called with the read lock held.
+		 */
+		private boolean advance() {
+			if (modifications != expectedModifications) {
+				throw new ConcurrentModificationException("An ontology was " +
+						"deregistered or new rules were registered while " +
+						"iterating the results");
+			}
+			if (level == patterns.size()) {
+				// continue with the next candidate of the last literal
+				level--;
+			}
+			while (level >= 0) {
+				unbind(level);
+				if (!nextCandidate(level)) {
+					level--;
+					continue;
+				}
+				level++;
+				if (level == patterns.size()) {
+					return true;
+				}
+				open(level);
+			}
+			return false;
+		}
+
+		/*
+		 * Starts matching a literal, with the variables bound by the
+		 * preceding literals.
+		 */
+		private void open(int index) {
+			int[] pattern = patterns.get(index);
+			int s = resolve(pattern[0], binding);
+			int p = resolve(pattern[1], binding);
+			int o = resolve(pattern[2], binding);
+			terms[index][0] = s;
+			terms[index][1] = p;
+			terms[index][2] = o;
+
+			IntList c = null;
+			if (s >= 0) {
+				c = source.withSubject(s);
+			}
+			else if (o >= 0) {
+				c = source.withObject(o);
+			}
+			else if (p >= 0) {
+				c = source.withPredicate(p);
+			}
+			candidates[index] = c;
+			sizes[index] = c == null ? end : c.size();
+			positions[index] = 0;
+			boundCount[index] = 0;
+		}
+
+		/*
+		 * Moves to the next triple matching a literal and binds its
+		 * variables.
+		 */
+		private boolean nextCandidate(int index) {
+			int[] pattern = patterns.get(index);
+			int s = terms[index][0];
+			int p = terms[index][1];
+			int o = terms[index][2];
+			while (positions[index] < sizes[index]) {
+				int n = positions[index]++;
+				int j = candidates[index] == null ? n : candidates[index].get(n);
+				if (j >= end) {
+					// the positions are indexed in ascending order
+					positions[index] = sizes[index];
+					break;
+				}
+				if ((pattern[3] != BackwardChainer.ANY_KIND
+						&& source.getKind(j) != pattern[3])
+						|| (s >= 0 && source.getSubject(j) != s)
+						|| (p >= 0 && source.getPredicate(j) != p)
+						|| (o >= 0 && source.getObject(j) != o)) {
+					continue;
+				}
+				// bind the variables, a variable occuring twice in the
+				// literal must match the same term
+				int[] values = {source.getSubject(j), source.getPredicate(j),
+						source.getObject(j)};
+				boolean consistent = true;
+				for (int i = 0; i < 3 && consistent; i++) {
+					if (pattern[i] < 0) {
+						int var = -pattern[i] - 1;
+						if (binding[var] < 0) {
+							binding[var] = values[i];
+							bound[index][boundCount[index]++] = var;
+						}
+						else if (binding[var] != values[i]) {
+							consistent = false;
+						}
+					}
+				}
+				if (consistent) {
+					return true;
+				}
+				unbind(index);
+			}
+			return false;
+		}
+
+		private void unbind(int index) {
+			for (int i = 0; i < boundCount[index]; i++) {
+				binding[bound[index][i]] = -1;
+			}
+			boundCount[index] = 0;
+		}
+
+	}
+
+	/*
+	 * Returns the kind of a fact, which depends on the type of its data
+	 * value, analogous to the predicate chosen by the IrisFacade.
+	 */
+	private static int getKind(FMolecule m) throws ExternalToolException {
+		for (Term t : new Term[] {m.getLeftTerm(), m.getRightTerm(),
+				m.getPredTerm()}) {
+			if (t instanceof DataValue) {
+				String type = ((DataValue) t).getType().getIRI().toString();
+				if (type.equals(WsmlDataType.WSML_STRING)) {
+					return TripleStore.KIND_STRING;
+				}
+				else if (type.equals(WsmlDataType.WSML_INTEGER)) {
+					return TripleStore.KIND_INT;
+				}
+				else if (type.equals(WsmlDataType.WSML_BOOLEAN)) {
+					return TripleStore.KIND_BOOL;
+				}
+				else if (type.equals(WsmlDataType.WSML_DOUBLE)) {
+					return TripleStore.KIND_DOUBLE;
+				}
+				throw new ExternalToolException("Can't convert a value of " +
+						"type " + type);
+			}
+		}
+		return TripleStore.KIND_VALUE;
+	}
+
+	/*
+	 * Returns the kind of triples matched by a query literal with the
+	 * given predicate, or UNSUPPORTED if the predicate is not supported.
+	 */
+	private static int getKind(String predicateUri) {
+		if (predicateUri.equals(WSML2DatalogTransformer.PRED_HAS_ANY_VALUE)) {
+			return BackwardChainer.ANY_KIND;
+		}
+		else if (predicateUri.equals(WSML2DatalogTransformer.PRED_HAS_VALUE)) {
+			return TripleStore.KIND_VALUE;
+		}
+		else if (predicateUri.equals(
+				WSML2DatalogTransformer.PRED_HAS_STRING_VALUE)) {
+			return TripleStore.KIND_STRING;
+		}
+		else if (predicateUri.equals(WSML2DatalogTransformer.PRED_HAS_INT_VALUE)) {
+			return TripleStore.KIND_INT;
+		}
+		else if (predicateUri.equals(
+				WSML2DatalogTransformer.PRED_HAS_BOOL_VALUE)) {
+			return TripleStore.KIND_BOOL;
+		}
+		else if (predicateUri.equals(
+				WSML2DatalogTransformer.PRED_HAS_DOUBLE_VALUE)) {
+			return TripleStore.KIND_DOUBLE;
+		}
+		return UNSUPPORTED;
+	}
+
+	/*
+	 * Creates the auxiliary rules in the same form as the
+	 * RDFS2DatalogTransformer does, mapped to the corresponding join of the
+	 * forward chainer.
+	 */
+	private static Map<Rule, RDFSRule> createKnownRules() {
+		EntityFactory f = new EntityFactoryImpl();
+		Term x = f.createVariable("?x");
+		Term y = f.createVariable("?y");
+		Term u = f.createVariable("?u");
+		Term v = f.createVariable("?v");
+		Term type = f.createIdentifier(RDF.TYPE);
+		Term property = f.createIdentifier(RDF.PROPERTY);
+		Term resource = f.createIdentifier(RDFS.RESOURCE);
+		Term cls = f.createIdentifier(RDFS.CLASS);
+		Term domain = f.createIdentifier(RDFS.DOMAIN);
+		Term range = f.createIdentifier(RDFS.RANGE);
+		Term subPropertyOf = f.createIdentifier(RDFS.SUBPROPERTYOF);
+		Term subClassOf = f.createIdentifier(RDFS.SUBCLASSOF);
+
+		Map<Rule, RDFSRule> rules = new HashMap<Rule, RDFSRule>();
+		rules.put(createRule(f, f.createFMolecule(x, type, property),
+				f.createFMolecule(y, x, u)), RDFSRule.PROPERTY);
+		rules.put(createRule(f, f.createFMolecule(x, type, resource),
+				f.createFMolecule(x, y, u)), RDFSRule.SUBJECT_RESOURCE);
+		rules.put(createRule(f, f.createFMolecule(u, type, resource),
+				f.createFMolecule(x, y, u)), RDFSRule.OBJECT_RESOURCE);
+		rules.put(createRule(f, f.createFMolecule(u, type, y),
+				f.createFMolecule(x, domain, y), f.createFMolecule(u, x, v)),
+				RDFSRule.DOMAIN);
+		rules.put(createRule(f, f.createFMolecule(v, type, y),
+				f.createFMolecule(x, range, y), f.createFMolecule(u, x, v)),
+				RDFSRule.RANGE);
+		rules.put(createRule(f, f.createFMolecule(x, subPropertyOf,
+				f.createIdentifier(RDFS.MEMBER)), f.createFMolecule(x, type,
+				f.createIdentifier(RDFS.CONTAINERMEMBERSHIPPROPERTY))),
+				RDFSRule.MEMBER);
+		rules.put(createRule(f, f.createFMolecule(x, subPropertyOf, x),
+				f.createFMolecule(x, type, property)),
+				RDFSRule.SUBPROPERTY_REFLEXIVE);
+		rules.put(createRule(f, f.createFMolecule(x, subPropertyOf, u),
+				f.createFMolecule(x, subPropertyOf, y),
+				f.createFMolecule(y, subPropertyOf, u)),
+				RDFSRule.SUBPROPERTY_TRANSITIVE);
+		rules.put(createRule(f, f.createFMolecule(x, type, property),
+				f.createFMolecule(x, subPropertyOf, y)),
+				RDFSRule.SUBPROPERTY_SUBJECT);
+		rules.put(createRule(f, f.createFMolecule(y, type, property),
+				f.createFMolecule(x, subPropertyOf, y)),
+				RDFSRule.SUBPROPERTY_OBJECT);
+		rules.put(createRule(f, f.createFMolecule(u, y, v),
+				f.createFMolecule(x, subPropertyOf, y),
+				f.createFMolecule(u, x, v)), RDFSRule.SUBPROPERTY);
+		rules.put(createRule(f, f.createFMolecule(x, subClassOf, resource),
+				f.createFMolecule(x, type, cls)), RDFSRule.CLASS_RESOURCE);
+		rules.put(createRule(f, f.createFMolecule(x, subClassOf, x),
+				f.createFMolecule(x, type, cls)), RDFSRule.SUBCLASS_REFLEXIVE);
+		rules.put(createRule(f, f.createFMolecule(x, subClassOf, u),
+				f.createFMolecule(x, subClassOf, y),
+				f.createFMolecule(y, subClassOf, u)),
+				RDFSRule.SUBCLASS_TRANSITIVE);
+		rules.put(createRule(f, f.createFMolecule(x, type, cls),
+				f.createFMolecule(x, subClassOf, y)),
+				RDFSRule.SUBCLASS_SUBJECT);
+		rules.put(createRule(f, f.createFMolecule(y, type, cls),
+				f.createFMolecule(x, subClassOf, y)),
+				RDFSRule.SUBCLASS_OBJECT);
+		rules.put(createRule(f, f.createFMolecule(u, type, y),
+				f.createFMolecule(x, subClassOf, y),
+				f.createFMolecule(u, type, x)), RDFSRule.SUBCLASS);
+		rules.put(createRule(f, f.createFMolecule(u, domain, y),
+				f.createFMolecule(u, domain, x),
+				f.createFMolecule(x, subClassOf, y)),
+				RDFSRule.DOMAIN_SUBCLASS);
+		rules.put(createRule(f, f.createFMolecule(u, range, y),
+				f.createFMolecule(u, range, x),
+				f.createFMolecule(x, subClassOf, y)),
+				RDFSRule.RANGE_SUBCLASS);
+		rules.put(createRule(f, f.createFMolecule(x, domain, u),
+				f.createFMolecule(y, domain, u),
+				f.createFMolecule(x, subPropertyOf, y)),
+				RDFSRule.DOMAIN_SUBPROPERTY);
+		rules.put(createRule(f, f.createFMolecule(x, range, u),
+				f.createFMolecule(y, range, u),
+				f.createFMolecule(x, subPropertyOf, y)),
+				RDFSRule.RANGE_SUBPROPERTY);
+		return rules;
+	}
+
+	/*
+	 * Encodes a rule for the BackwardChainer, the head is the first
+	 * molecule.
+	 */
+	private int[][] encodeRule(Rule r) {
+		List<FMolecule> molecules = new ArrayList<FMolecule>();
+		molecules.add(r.getHead());
+		molecules.addAll(r.getBody());
+		List<Term> vars = new ArrayList<Term>();
+		int[][] encoded = new int[molecules.size()][];
+		for (int i = 0; i < encoded.length; i++) {
+			FMolecule m = molecules.get(i);
+			Term[] terms = {m.getLeftTerm(), m.getPredTerm(),
+					m.getRightTerm()};
+			int[] molecule = new int[4];
+			boolean onlyVariables = true;
+			for (int t = 0; t < 3; t++) {
+				if (terms[t] instanceof Variable) {
+					if (!vars.contains(terms[t])) {
+						vars.add(terms[t]);
+					}
+					molecule[t] = -(vars.indexOf(terms[t]) + 1);
+				}
+				else {
+					molecule[t] = dictionary.encode(terms[t]);
+					onlyVariables = false;
+				}
+			}
+			molecule[3] = onlyVariables ? BackwardChainer.ANY_KIND
+					: TripleStore.KIND_VALUE;
+			encoded[i] = molecule;
+		}
+		return encoded;
+	}
+
+	private static Rule createRule(EntityFactory f, FMolecule head,
+			FMolecule... body) {
+		List<FMolecule> list = new LinkedList<FMolecule>();
+		for (FMolecule m : body) {
+			list.add(m);
+		}
+		return f.createRule(head, list);
+	}
+
+}
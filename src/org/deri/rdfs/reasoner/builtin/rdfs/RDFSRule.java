@@ -0,0 +1,91 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+/**
+ * The auxiliary rules of the RDF, RDFS and eRDFS entailment regimes, as
+ * they are generated by the RDFS2DatalogTransformer. Each of them is
+ * implemented by a specialized join in the ForwardChainer.
+ */
+enum RDFSRule {
+
+	// y[x ->> u] IMPLIES x[type ->> Property]
+	PROPERTY,
+
+	// x[y ->> u] IMPLIES x[type ->> Resource]
+	SUBJECT_RESOURCE,
+
+	// x[y ->> u] IMPLIES u[type ->> Resource]
+	OBJECT_RESOURCE,
+
+	// x[domain ->> y] AND u[x ->> v] IMPLIES u[type ->> y]
+	DOMAIN,
+
+	// x[range ->> y] AND u[x ->> v] IMPLIES v[type ->> y]
+	RANGE,
+
+	// x[type ->> ContainerMembershipProperty] IMPLIES x[subPropertyOf ->> member]
+	MEMBER,
+
+	// x[type ->> Property] IMPLIES x[subPropertyOf ->> x]
+	SUBPROPERTY_REFLEXIVE,
+
+	// x[subPropertyOf ->> y] AND y[subPropertyOf ->> u] IMPLIES x[subPropertyOf ->> u]
+	SUBPROPERTY_TRANSITIVE,
+
+	// x[subPropertyOf ->> y] IMPLIES x[type ->> Property]
+	SUBPROPERTY_SUBJECT,
+
+	// x[subPropertyOf ->> y] IMPLIES y[type ->> Property]
+	SUBPROPERTY_OBJECT,
+
+	// x[subPropertyOf ->> y] AND u[x ->> v] IMPLIES u[y ->> v]
+	SUBPROPERTY,
+
+	// x[type ->> Class] IMPLIES x[subClassOf ->> Resource]
+	CLASS_RESOURCE,
+
+	// x[type ->> Class] IMPLIES x[subClassOf ->> x]
+	SUBCLASS_REFLEXIVE,
+
+	// x[subClassOf ->> y] AND y[subClassOf ->> u] IMPLIES x[subClassOf ->> u]
+	SUBCLASS_TRANSITIVE,
+
+	// x[subClassOf ->> y] IMPLIES x[type ->> Class]
+	SUBCLASS_SUBJECT,
+
+	// x[subClassOf ->> y] IMPLIES y[type ->> Class]
+	SUBCLASS_OBJECT,
+
+	// x[subClassOf ->> y] AND u[type ->> x] IMPLIES u[type ->> y]
+	SUBCLASS,
+
+	// u[domain ->> x] AND x[subClassOf ->> y] IMPLIES u[domain ->> y]
+	DOMAIN_SUBCLASS,
+
+	// u[range ->> x] AND x[subClassOf ->> y] IMPLIES u[range ->> y]
+	RANGE_SUBCLASS,
+
+	// y[domain ->> u] AND x[subPropertyOf ->> y] IMPLIES x[domain ->> u]
+	DOMAIN_SUBPROPERTY,
+
+	// y[range ->> u] AND x[subPropertyOf ->> y] IMPLIES x[range ->> u]
+	RANGE_SUBPROPERTY
+
+}
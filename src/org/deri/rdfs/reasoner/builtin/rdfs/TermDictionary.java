@@ -0,0 +1,225 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.WsmlDataType;
+import org.wsmo.common.IRI;
+import org.wsmo.factory.DataFactory;
+import org.wsmo.factory.Factory;
+import org.wsmo.factory.WsmoFactory;
+
+/**
+ * Dictionary encoding the terms of the triples as dense int ids,
+ * starting with 0.
+ */
+class TermDictionary {
+
+	private Map<Term, Integer> ids = new HashMap<Term, Integer>();
+
+	private List<Term> terms = new ArrayList<Term>();
+
+	// the kind of the triples each term is the object of
+	private IntList kinds = new IntList();
+
+	/**
+	 * Returns the id of a term, a new id is assigned if the term
+	 * isn't known yet.
+	 *
+	 * @param t the term to encode
+	 * @return the id of the term
+	 */
+	int encode(Term t) {
+		Integer id = ids.get(t);
+		if (id == null) {
+			id = terms.size();
+			ids.put(t, id);
+			terms.add(t);
+			kinds.add(kindOf(t));
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of a term without assigning a new one.
+	 *
+	 * @param t the term to look up
+	 * @return the id of the term, or -1 if the term isn't known
+	 */
+	int lookup(Term t) {
+		Integer id = ids.get(t);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id the id of a term
+	 * @return the term with the given id
+	 */
+	Term decode(int id) {
+		return terms.get(id);
+	}
+
+	/**
+	 * Returns the kind of the triples with the given term as object, i.e.
+	 * the kind of a data value, or {@link TripleStore#KIND_VALUE} for
+	 * all other terms.
+	 *
+	 * @param id the id of a term
+	 * @return the kind of the triples with the term as object
+	 */
+	int getKind(int id) {
+		return kinds.get(id);
+	}
+
+	/**
+	 * @return the number of encoded terms
+	 */
+	int size() {
+		return terms.size();
+	}
+
+	/**
+	 * Writes the terms in the order of their ids. Each term is tagged with
+	 * the kind of the triples it is the object of.
+	 *
+	 * @param out the stream to write the terms to
+	 * @throws IOException if a term is neither an IRI nor a data value
+	 */
+	void write(DataOutputStream out) throws IOException {
+		out.writeInt(terms.size());
+		for (Term t : terms) {
+			if (t instanceof IRI) {
+				out.writeByte(TripleStore.KIND_VALUE);
+				writeString(out, t.toString());
+				continue;
+			}
+			if (!(t instanceof DataValue)) {
+				throw new IOException("Can't write the term " + t);
+			}
+			Object value = ((DataValue) t).getValue();
+			String type = ((DataValue) t).getType().getIRI().toString();
+			if (type.equals(WsmlDataType.WSML_STRING)) {
+				out.writeByte(TripleStore.KIND_STRING);
+				writeString(out, value.toString());
+			}
+			else if (type.equals(WsmlDataType.WSML_INTEGER)) {
+				out.writeByte(TripleStore.KIND_INT);
+				writeString(out, value.toString());
+			}
+			else if (type.equals(WsmlDataType.WSML_BOOLEAN)) {
+				out.writeByte(TripleStore.KIND_BOOL);
+				out.writeBoolean(((Boolean) value).booleanValue());
+			}
+			else if (type.equals(WsmlDataType.WSML_DOUBLE)) {
+				out.writeByte(TripleStore.KIND_DOUBLE);
+				out.writeDouble(((Number) value).doubleValue());
+			}
+			else {
+				throw new IOException("Can't write a value of type " + type);
+			}
+		}
+	}
+
+	/**
+	 * Reads terms written by {@link #write(DataOutputStream)} and encodes
+	 * them, the terms keep the ids they have already.
+	 *
+	 * @param in the stream to read the terms from
+	 * @return the ids of the terms read, indexed by their written ids
+	 * @throws IOException if the terms can't be read
+	 */
+	int[] read(DataInputStream in) throws IOException {
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		DataFactory dataFactory = Factory.createDataFactory(null);
+		int[] result = new int[in.readInt()];
+		for (int i = 0; i < result.length; i++) {
+			Term t;
+			switch (in.readByte()) {
+			case TripleStore.KIND_VALUE:
+				t = wsmoFactory.createIRI(readString(in));
+				break;
+			case TripleStore.KIND_STRING:
+				t = dataFactory.createWsmlString(readString(in));
+				break;
+			case TripleStore.KIND_INT:
+				t = dataFactory.createWsmlInteger(new BigInteger(readString(in)));
+				break;
+			case TripleStore.KIND_BOOL:
+				t = dataFactory.createWsmlBoolean(Boolean.valueOf(
+						in.readBoolean()));
+				break;
+			case TripleStore.KIND_DOUBLE:
+				t = dataFactory.createWsmlDouble(Double.valueOf(
+						in.readDouble()));
+				break;
+			default:
+				throw new IOException("Unknown kind of term");
+			}
+			result[i] = encode(t);
+		}
+		return result;
+	}
+
+	private static int kindOf(Term t) {
+		if (!(t instanceof DataValue)) {
+			return TripleStore.KIND_VALUE;
+		}
+		String type = ((DataValue) t).getType().getIRI().toString();
+		if (type.equals(WsmlDataType.WSML_STRING)) {
+			return TripleStore.KIND_STRING;
+		}
+		else if (type.equals(WsmlDataType.WSML_INTEGER)) {
+			return TripleStore.KIND_INT;
+		}
+		else if (type.equals(WsmlDataType.WSML_BOOLEAN)) {
+			return TripleStore.KIND_BOOL;
+		}
+		else if (type.equals(WsmlDataType.WSML_DOUBLE)) {
+			return TripleStore.KIND_DOUBLE;
+		}
+		return TripleStore.KIND_VALUE;
+	}
+
+	/*
+	 * Writes a string of any length, writeUTF is limited to 64 KB.
+	 */
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+}
@@ -0,0 +1,258 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.builtin.rdfs;
+
+/**
+ * An append-only store of dictionary encoded triples. The triples are
+ * kept in primitive arrays and are addressed by their position, which
+ * never changes. The store can only be truncated to an earlier size.
+ * Every triple carries a kind, which tells whether its object is a plain
+ * term or a data value of a certain type.
+ * <p>
+ * The store keeps the positions of the triples indexed by subject, by
+ * predicate and by object, and a hash table to reject duplicates.
+ * </p>
+ */
+class TripleStore {
+
+	// the object is an IRI, or the triple was derived
+	final static int KIND_VALUE = 0;
+
+	final static int KIND_STRING = 1;
+
+	final static int KIND_INT = 2;
+
+	final static int KIND_BOOL = 3;
+
+	final static int KIND_DOUBLE = 4;
+
+	private int[] subjects = new int[64];
+
+	private int[] predicates = new int[64];
+
+	private int[] objects = new int[64];
+
+	private byte[] kinds = new byte[64];
+
+	private int size = 0;
+
+	/*
+	 * Open addressing hash table holding the position + 1 of every
+	 * triple, 0 marks a free slot.
+	 */
+	private int[] table = new int[128];
+
+	private IntList[] bySubject = new IntList[64];
+
+	private IntList[] byPredicate = new IntList[64];
+
+	private IntList[] byObject = new IntList[64];
+
+	/**
+	 * Adds a triple to the store.
+	 *
+	 * @param s the id of the subject
+	 * @param p the id of the predicate
+	 * @param o the id of the object
+	 * @param kind the kind of the triple
+	 * @return true if the triple wasn't contained before
+	 */
+	boolean add(int s, int p, int o, int kind) {
+		int slot = find(s, p, o, kind);
+		if (table[slot] != 0) {
+			return false;
+		}
+		if (size == subjects.length) {
+			int capacity = size * 2;
+			subjects = grow(subjects, capacity);
+			predicates = grow(predicates, capacity);
+			objects = grow(objects, capacity);
+			byte[] grownKinds = new byte[capacity];
+			System.arraycopy(kinds, 0, grownKinds, 0, size);
+			kinds = grownKinds;
+		}
+		subjects[size] = s;
+		predicates[size] = p;
+		objects[size] = o;
+		kinds[size] = (byte) kind;
+		table[slot] = size + 1;
+		bySubject = index(bySubject, s, size);
+		byPredicate = index(byPredicate, p, size);
+		byObject = index(byObject, o, size);
+		size++;
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the store contains the triple
+	 */
+	boolean contains(int s, int p, int o, int kind) {
+		return table[find(s, p, o, kind)] != 0;
+	}
+
+	/**
+	 * @return the number of triples in the store
+	 */
+	int size() {
+		return size;
+	}
+
+	int getSubject(int i) {
+		return subjects[i];
+	}
+
+	int getPredicate(int i) {
+		return predicates[i];
+	}
+
+	int getObject(int i) {
+		return objects[i];
+	}
+
+	int getKind(int i) {
+		return kinds[i];
+	}
+
+	/**
+	 * @param s the id of a subject
+	 * @return the positions of the triples with the given subject
+	 */
+	IntList withSubject(int s) {
+		return lookup(bySubject, s);
+	}
+
+	/**
+	 * @param p the id of a predicate
+	 * @return the positions of the triples with the given predicate
+	 */
+	IntList withPredicate(int p) {
+		return lookup(byPredicate, p);
+	}
+
+	/**
+	 * @param o the id of an object
+	 * @return the positions of the triples with the given object
+	 */
+	IntList withObject(int o) {
+		return lookup(byObject, o);
+	}
+
+	/**
+	 * Removes all triples from the store.
+	 */
+	void clear() {
+		size = 0;
+		table = new int[128];
+		bySubject = new IntList[64];
+		byPredicate = new IntList[64];
+		byObject = new IntList[64];
+	}
+
+	/**
+	 * Removes the triples added after the store had the given size.
+	 *
+	 * @param size the number of triples to keep
+	 */
+	void truncate(int size) {
+		if (size >= this.size) {
+			return;
+		}
+		// the positions are indexed in ascending order
+		for (int i = this.size - 1; i >= size; i--) {
+			removeLast(bySubject[subjects[i]]);
+			removeLast(byPredicate[predicates[i]]);
+			removeLast(byObject[objects[i]]);
+		}
+		this.size = size;
+		rehash(table.length);
+	}
+
+	private int find(int s, int p, int o, int kind) {
+		int mask = table.length - 1;
+		int slot = hash(s, p, o, kind) & mask;
+		while (table[slot] != 0) {
+			int i = table[slot] - 1;
+			if (subjects[i] == s && predicates[i] == p && objects[i] == o
+					&& kinds[i] == kind) {
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(subjects[i], predicates[i], objects[i], kinds[i])
+					& mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	private static int hash(int s, int p, int o, int kind) {
+		int h = s;
+		h = 31 * h + p;
+		h = 31 * h + o;
+		h = 31 * h + kind;
+		// spread the bits, the ids are small and dense
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private static int[] grow(int[] a, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(a, 0, grown, 0, a.length);
+		return grown;
+	}
+
+	private static IntList[] index(IntList[] index, int id, int position) {
+		if (id >= index.length) {
+			IntList[] grown = new IntList[Math.max(index.length * 2, id + 1)];
+			System.arraycopy(index, 0, grown, 0, index.length);
+			index = grown;
+		}
+		if (index[id] == null) {
+			index[id] = new IntList(4);
+		}
+		index[id].add(position);
+		return index;
+	}
+
+	private static void removeLast(IntList positions) {
+		positions.truncate(positions.size() - 1);
+	}
+
+	private static IntList lookup(IntList[] index, int id) {
+		if (id < 0 || id >= index.length || index[id] == null) {
+			return IntList.EMPTY;
+		}
+		return index[id];
+	}
+
+}
@@ -67,6 +67,26 @@ public class NonStandardRDFSUseException extends Exception {
     	throw new NonStandardRDFSUseException(error);
     }
     
+    /**
+     * Creates an NonStandardRDFSUseException listing only some of the 
+     * statements causing it.
+     * 
+     * @param usages - string forms of the statements listed
+     * @param count - the number of all statements causing the exception
+     * @throws NonStandardRDFSUseException 
+     */
+    public NonStandardRDFSUseException(List<String> usages, int count) 
+    		throws NonStandardRDFSUseException {
+    	NonStandardRDFSUseException.nonStandardUsages = usages;
+    	String error = "Extensional RDFS entailment not possible: " +
+    			"non-standard use of RDFS vocabulary occured " +
+    			"in " + count + " statements, among them: ";
+    	for (String s : usages) {
+    		error = error + "\n" + s;
+    	}
+    	throw new NonStandardRDFSUseException(error);
+    }
+    
     /**
      * 
      * @return List containing string forms of the statements causing 
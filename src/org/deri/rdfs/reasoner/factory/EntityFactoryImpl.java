@@ -33,7 +33,8 @@ import org.wsmo.factory.LogicalExpressionFactory;
 import org.wsmo.factory.WsmoFactory;
 
 /**
- * Implementation of a Factory for creating F-Logic entities.
+ * Implementation of a Factory for creating F-Logic entities. The 
+ * molecules and rules are interned, equal ones are the same instance.
  *
  * <pre>
  *  Created on May 17, 2007
@@ -52,7 +53,7 @@ public class EntityFactoryImpl implements EntityFactory {
 	
 	public FMolecule createFMolecule(Term leftTerm, Term predTerm,
 			Term rightTerm) {
-		return new FMoleculeImpl(leftTerm, predTerm, rightTerm);
+		return FMoleculeImpl.create(leftTerm, predTerm, rightTerm);
 	}
 
 	public Identifier createIdentifier(String name) {
@@ -60,11 +61,11 @@ public class EntityFactoryImpl implements EntityFactory {
 	}
 
 	public Rule createRule(FMolecule head) {
-		return new RuleImpl(head);
+		return RuleImpl.create(head, null);
 	}
 
 	public Rule createRule(FMolecule head, List<FMolecule> body) {
-		return new RuleImpl(head, body);
+		return RuleImpl.create(head, body);
 	}
 
 	public Variable createVariable(String name) {
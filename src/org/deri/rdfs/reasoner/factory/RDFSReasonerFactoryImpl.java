@@ -61,7 +61,7 @@ public class RDFSReasonerFactoryImpl implements RDFSReasonerFactory{
                     .containsKey(PARAM_BUILT_IN_REASONER) ? (BuiltInReasoner) params
                     .get(PARAM_BUILT_IN_REASONER)
                     : BuiltInReasoner.IRIS;
-            return new SimpleReasonerImpl(builtin);
+            return new SimpleReasonerImpl(builtin, params);
         }
 	}
     
@@ -78,7 +78,7 @@ public class RDFSReasonerFactoryImpl implements RDFSReasonerFactory{
                     .containsKey(PARAM_BUILT_IN_REASONER) ? (BuiltInReasoner) params
                     .get(PARAM_BUILT_IN_REASONER)
                     : BuiltInReasoner.IRIS;
-            return new RDFReasonerImpl(builtin);
+            return new RDFReasonerImpl(builtin, params);
         }
 	}
     
@@ -95,7 +95,7 @@ public class RDFSReasonerFactoryImpl implements RDFSReasonerFactory{
                     .containsKey(PARAM_BUILT_IN_REASONER) ? (BuiltInReasoner) params
                     .get(PARAM_BUILT_IN_REASONER)
                     : BuiltInReasoner.IRIS;
-            return new RDFSReasonerImpl(builtin);
+            return new RDFSReasonerImpl(builtin, params);
         }
 	}
     
@@ -112,7 +112,7 @@ public class RDFSReasonerFactoryImpl implements RDFSReasonerFactory{
                     .containsKey(PARAM_BUILT_IN_REASONER) ? (BuiltInReasoner) params
                     .get(PARAM_BUILT_IN_REASONER)
                     : BuiltInReasoner.IRIS;
-            return new ERDFSReasonerImpl(builtin);
+            return new ERDFSReasonerImpl(builtin, params);
         }
 	}
 
@@ -129,7 +129,7 @@ public class RDFSReasonerFactoryImpl implements RDFSReasonerFactory{
                     .containsKey(PARAM_BUILT_IN_REASONER) ? (BuiltInReasoner) params
                     .get(PARAM_BUILT_IN_REASONER)
                     : BuiltInReasoner.IRIS;
-            return new IOWLReasonerImpl(builtin);
+            return new IOWLReasonerImpl(builtin, params);
         }
 	}
    
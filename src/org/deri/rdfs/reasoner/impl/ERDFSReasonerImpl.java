@@ -18,30 +18,36 @@
  */
 package org.deri.rdfs.reasoner.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 import java.util.Map.Entry;
 
 import org.deri.rdfs.reasoner.RDFS2DatalogTransformer;
 import org.deri.rdfs.reasoner.api.ERDFSReasoner;
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.ReasonerFacade;
 import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
 import org.deri.rdfs.reasoner.api.terms.Rule;
-import org.deri.rdfs.reasoner.builtin.iris.IrisFacade;
 import org.deri.rdfs.reasoner.exception.ExternalToolException;
 import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
 import org.omwg.logicalexpression.LogicalExpression;
 import org.omwg.logicalexpression.terms.Term;
 import org.omwg.ontology.Variable;
 import org.openrdf.model.Graph;
-import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
-import org.openrdf.sesame.sail.StatementIterator;
+import org.openrdf.model.impl.GraphImpl;
 import org.openrdf.vocabulary.RDF;
 import org.openrdf.vocabulary.RDFS;
 import org.wsml.reasoner.ConjunctiveQuery;
@@ -82,17 +88,28 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 	
 	private String defaultNS = "";
 	
-	private Vector<String> usages = new Vector<String>();
+	/**
+	 * The maximal number of statements listed in a 
+	 * NonStandardRDFSUseException.
+	 */
+	public final static int MAX_REPORTED_USAGES = 100;
+	
+	// the statements listed in the next report, guarded by themselves
+	private final List<String> usages = new ArrayList<String>();
+	
+	// the number of non-standard uses found since the last report
+	private int usageCount = 0;
 	
 	public ERDFSReasonerImpl(BuiltInReasoner builtInType) {
-		switch (builtInType) {
-		case IRIS:
-			builtInFacade = new IrisFacade();
-			break;
-		default:
-			throw new UnsupportedOperationException("Reasoning with "
-					+ builtInType.toString() + " is not supported!");
-		}
+		this(builtInType, null);
+	}
+	
+	public ERDFSReasonerImpl(BuiltInReasoner builtInType, 
+			Map<String, Object> params) {
+		configureVirtualTriples(params);
+		builtInFacade = createFacade(builtInType, params, isVirtualTriples());
+		configureSchemaCompilation(builtInType, params);
+		configureSnapshots(builtInType);
 	}
 
 	public void registerOntologies(Map<String, Graph> ontologies) 
@@ -108,7 +125,7 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 			
 			// Register the program at the built-in reasoner:
 			try {
-				builtInFacade.register(defaultNS, kb);
+				register(builtInFacade, defaultNS, kb);
 			} catch (ExternalToolException e) {
 				e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -125,6 +142,19 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 		registerOntologies(ontologies);
 	}
 	
+	public OntologyLoader openOntology(String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		defaultNS = ontologyURI;
+		// An empty graph is converted to the auxiliary rules only:
+		return openOntology(builtInFacade, ontologyURI, 
+				convertOntology(new GraphImpl(), ontologyURI));
+	}
+
+	public void addStatements(Graph statements, String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		addStatements(builtInFacade, statements, ontologyURI);
+	}
+
 	public void deRegisterOntology(Graph ontology, String ontologyURI) {
 		Map<String, Graph> ontologies = new HashMap<String, Graph>();
         ontologies.put(ontologyURI, ontology);
@@ -136,7 +166,7 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 		for (Entry<String, Graph> entry : entrySet) {
 			String ontologyURI = entry.getKey();
             try {
-                builtInFacade.deregister(ontologyURI);
+                deregister(builtInFacade, ontologyURI);
             } catch (ExternalToolException e) {
                 e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -154,14 +184,13 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 	 */
 	protected Set<Rule> convertOntology(Graph ontology, String defaultNS) 
 			throws NonStandardRDFSUseException {
-		if (checkForNonStandardRDFSUse(ontology)) {
-			throw new NonStandardRDFSUseException(usages);
-		}
+		// The statements are checked while they are converted:
 		Set<Rule> rules = super.convertOntology(ontology, defaultNS); 
 		RDFS2DatalogTransformer rdfs2datalog = new RDFS2DatalogTransformer(defaultNS);
         
         rules.add(rdfs2datalog.generateAuxiliaryRDFRule());
-        rules.addAll(rdfs2datalog.generateAuxiliaryRDFSRules());
+        rules.addAll(rdfs2datalog.generateAuxiliaryRDFSRules(
+        		isCompiledSchema(), isVirtualTriples()));
         rules.addAll(rdfs2datalog.generateAuxiliaryERDFSRules(ontology));
 //        System.out.println("f-logic rules:");
 //        for (Rule r : rules)
@@ -173,6 +202,14 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
 	public String getDefaultNS(Graph ontology) {
 		return defaultNS;
 	}
+	
+	public void writeSnapshot(OutputStream out) throws IOException {
+		writeSnapshot(builtInFacade, out);
+	}
+	
+	public void readSnapshot(InputStream in) throws IOException {
+		readSnapshot(builtInFacade, in);
+	}
 
 	@SuppressWarnings("unchecked")
 	public Set<Map<Variable, Term>> executeQuery(Graph ontology, 
@@ -185,110 +222,174 @@ public class ERDFSReasonerImpl extends ReasonerImpl implements ERDFSReasoner {
         }
         return result;
 	}
+	
+	public QueryCursor executeQuery(Graph ontology, LogicalExpression query, 
+			int offset, int limit) throws ExternalToolException {
+		return createCursor(builtInFacade, query, offset, limit);
+	}
+	
+	public Set<Map<Variable, Term>> executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) throws ExternalToolException {
+		return evaluate(builtInFacade, convertQuery(query, bindings));
+	}
+	
+	public QueryCursor executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings, int offset, int limit) 
+			throws ExternalToolException {
+		return createCursor(builtInFacade, convertQuery(query, bindings), 
+				offset, limit);
+	}
+	
+	public boolean executeGroundQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) {
+		return executeGroundQuery(builtInFacade, 
+				convertQuery(query, bindings));
+	}
+    
+    /*
+     * The statements are checked chunk by chunk, possibly concurrently.
+     */
+    protected void checkStatement(Statement statement) {
+    	if (isNonStandardRDFSUse(statement)) {
+    		synchronized (usages) {
+    			if (usages.size() < MAX_REPORTED_USAGES) {
+    				usages.add(statement.toString());
+    			}
+    			usageCount++;
+    		}
+    	}
+    }
     
     /**
-     * Checks for a non-standard use of the RDFS vocabulary in the given RDF 
-     * graph. Non-standard use of the RDFS vocabulary corresponds to using the 
-     * vocabulary in locations where it has not been intended 
+     * Reports the non-standard uses of the RDFS vocabulary found while the 
+     * statements were checked, at most {@link #MAX_REPORTED_USAGES} of them 
+     * are listed. Non-standard use of the RDFS vocabulary corresponds to 
+     * using the vocabulary in locations where it has not been intended 
      * (e.g. 	&lt;type, subPropertyOf, a&gt;, an occurrence of 
-     * <tt>Class<tt> in an RDFS graph, ...).
+     * <tt>Class<tt> in an RDFS graph, ...). The usages are reset afterwards, 
+     * so that the next registration is checked on its own.
      * 
-     * @param graph - the RDF graph to check for non-standard use of RDFS vocabulary
-     * @return true if the graph includes non-standard use of the RDFS 
-     * 		   vocabulary and false otherwise
+     * @throws NonStandardRDFSUseException if the statements include 
+     * 		   non-standard use of the RDFS vocabulary
      */
-    private boolean checkForNonStandardRDFSUse(Graph graph) {
-    	StatementIterator it = graph.getStatements();
-    	while (it.hasNext()) {
-    		checkForNonStandardRDFSUse(it.next());
-    	}
-    	if (usages.size() > 0) {
-    		return true;
+    protected void checkStatements() throws NonStandardRDFSUseException {
+    	List<String> reported;
+    	int count;
+    	synchronized (usages) {
+    		if (usageCount == 0) {
+    			return;
+    		}
+    		reported = new ArrayList<String>(usages);
+    		count = usageCount;
+    		usages.clear();
+    		usageCount = 0;
     	}
-    	else {
-    		return false;
+    	if (count > reported.size()) {
+    		throw new NonStandardRDFSUseException(reported, count);
     	}
+    	throw new NonStandardRDFSUseException(reported);
     }
     
     /**
-     * Check RDF statement for a non-standard usage of the RDFS vocabulary
+     * Check RDF statement for a non-standard usage of the RDFS vocabulary. 
+     * The terms are looked up once in the table of the RDFS vocabulary, 
+     * most statements don't contain any of it.
      */
-    private void checkForNonStandardRDFSUse(Statement statement) {
-    	Resource subject = statement.getSubject();
-    	URI predicate = statement.getPredicate();
-    	Value object = statement.getObject();
+    private static boolean isNonStandardRDFSUse(Statement statement) {
+    	Vocabulary subject = Vocabulary.lookup(statement.getSubject());
+    	Vocabulary predicate = Vocabulary.lookup(statement.getPredicate());
+    	Vocabulary object = Vocabulary.lookup(statement.getObject());
+    	if (subject == null && predicate == null && object == null) {
+    		return false;
+    	}
     	/*
     	 * check whether type, subClassOf, domain, range or subPropertyOf occur 
     	 * in a non-property position in the graph.
     	 */ 
-    	if (subject.toString().equals(RDF.TYPE) || 
-    			subject.toString().equals(RDFS.SUBCLASSOF) ||
-    			subject.toString().equals(RDFS.DOMAIN) || 
-    			subject.toString().equals(RDFS.RANGE) || 
-    			subject.toString().equals(RDFS.SUBPROPERTYOF)) {
-    		
-    		if (!isInPropertyPosition(subject, predicate, object)) {
-    			usages.add(statement.toString());
-    		}
+    	if (subject != null && subject.property 
+    			&& !isInPropertyPosition(predicate, object)) {
+    		return true;
     	}
-    	if (object.toString().equals(RDF.TYPE) || 
-    			object.toString().equals(RDFS.SUBCLASSOF) ||
-    			object.toString().equals(RDFS.DOMAIN) || 
-    			object.toString().equals(RDFS.RANGE) || 
-    			object.toString().equals(RDFS.SUBPROPERTYOF)) {
-    		if (!isInPropertyPosition(object, predicate)) {
-    			usages.add(statement.toString());
-    		}
+    	if (object != null && object.property 
+    			&& predicate != Vocabulary.SUBPROPERTYOF) {
+    		return true;
     	}
-    	
     	/*
     	 * check whether ContainerMembershipProperty, Resource, Class or Property 
     	 * occur in the graph.
     	 */
-    	if (subject.toString().equals(RDFS.CONTAINERMEMBERSHIPPROPERTY) || 
-    			predicate.toString().equals(RDFS.CONTAINERMEMBERSHIPPROPERTY) ||
-    			object.toString().equals(RDFS.CONTAINERMEMBERSHIPPROPERTY) ||
-    			subject.toString().equals(RDFS.RESOURCE) ||
-    			predicate.toString().equals(RDFS.RESOURCE) ||
-    			object.toString().equals(RDFS.RESOURCE) ||
-    			subject.toString().equals(RDFS.CLASS) ||
-    			predicate.toString().equals(RDFS.CLASS) ||
-    			object.toString().equals(RDFS.CLASS) ||
-    			subject.toString().equals(RDF.PROPERTY) ||
-    			predicate.toString().equals(RDF.PROPERTY) ||
-    			object.toString().equals(RDF.PROPERTY)) {
-    		usages.add(statement.toString());
-    	}
+    	return (subject != null && !subject.property) 
+    			|| (predicate != null && !predicate.property)
+    			|| (object != null && !object.property);
     }
 	
-    private boolean isInPropertyPosition(Resource subject, URI predicate, Value object) {
-    	if (predicate.toString().equals(RDFS.SUBPROPERTYOF) || 
-    			predicate.toString().equals(RDFS.DOMAIN) || 
-    			predicate.toString().equals(RDFS.RANGE)) {
+    private static boolean isInPropertyPosition(Vocabulary predicate, 
+    		Vocabulary object) {
+    	if (predicate == Vocabulary.SUBPROPERTYOF || 
+    			predicate == Vocabulary.DOMAIN || 
+    			predicate == Vocabulary.RANGE) {
     		return true;
     	}
-    	else if (predicate.toString().equals(RDF.TYPE) && 
-    			(object.toString().equals(RDF.PROPERTY) || 
-    			 object.toString().equals(RDFS.CONTAINERMEMBERSHIPPROPERTY))) {
+    	else if (predicate == Vocabulary.TYPE && 
+    			(object == Vocabulary.PROPERTY || 
+    			 object == Vocabulary.CONTAINERMEMBERSHIPPROPERTY)) {
     		return true;
     	}
     	return false;
     }
     
-    private boolean isInPropertyPosition(Value object, URI predicate) {
-    	return predicate.toString().equals(RDFS.SUBPROPERTYOF);
+    /*
+     * The RDFS vocabulary checked for a non-standard use. The properties 
+     * may only occur in a property position, the other terms must not 
+     * occur at all.
+     */
+    private static enum Vocabulary {
+    	
+    	TYPE(RDF.TYPE, true), 
+    	SUBCLASSOF(RDFS.SUBCLASSOF, true), 
+    	DOMAIN(RDFS.DOMAIN, true), 
+    	RANGE(RDFS.RANGE, true), 
+    	SUBPROPERTYOF(RDFS.SUBPROPERTYOF, true), 
+    	CONTAINERMEMBERSHIPPROPERTY(RDFS.CONTAINERMEMBERSHIPPROPERTY, false), 
+    	RESOURCE(RDFS.RESOURCE, false), 
+    	CLASS(RDFS.CLASS, false), 
+    	PROPERTY(RDF.PROPERTY, false);
+    	
+    	private final static Map<String, Vocabulary> byURI = 
+    			new HashMap<String, Vocabulary>();
+    	
+    	static {
+    		for (Vocabulary v : values()) {
+    			byURI.put(v.uri, v);
+    		}
+    	}
+    	
+    	private final String uri;
+    	
+    	private final boolean property;
+    	
+    	private Vocabulary(String uri, boolean property) {
+    		this.uri = uri;
+    		this.property = property;
+    	}
+    	
+    	private static Vocabulary lookup(Value value) {
+    		return value instanceof URI ? byURI.get(((URI) value).getURI()) 
+    				: null;
+    	}
+    	
     }
     
 	public boolean entails(Graph ontology, Statement expression) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, Collections.singleton(expression), defaultNS);
 	}
 
 	public boolean entails(Graph ontology, Set<Statement> expressions) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, expressions, defaultNS);
 	}
 
 	public boolean executeGroundQuery(Graph ontology, LogicalExpression query) {
-		throw new UnsupportedOperationException();
+		return executeGroundQuery(builtInFacade, query);
 	}
 	
 }
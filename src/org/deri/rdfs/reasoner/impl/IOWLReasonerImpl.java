@@ -18,6 +18,10 @@
  */
 package org.deri.rdfs.reasoner.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -26,10 +30,14 @@ import java.util.Map.Entry;
 
 import org.deri.rdfs.reasoner.RDFS2DatalogTransformer;
 import org.deri.rdfs.reasoner.api.IOWLReasoner;
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.ReasonerFacade;
 import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
 import org.deri.rdfs.reasoner.api.terms.Rule;
-import org.deri.rdfs.reasoner.builtin.iris.IrisFacade;
+import org.deri.rdfs.reasoner.builtin.PropertyClosureFacade;
+import org.deri.rdfs.reasoner.builtin.SameAsFacade;
 import org.deri.rdfs.reasoner.exception.ExternalToolException;
 import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
 import org.omwg.logicalexpression.LogicalExpression;
@@ -37,6 +45,7 @@ import org.omwg.logicalexpression.terms.Term;
 import org.omwg.ontology.Variable;
 import org.openrdf.model.Graph;
 import org.openrdf.model.Statement;
+import org.openrdf.model.impl.GraphImpl;
 import org.wsml.reasoner.ConjunctiveQuery;
 
 /**
@@ -58,14 +67,18 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 	private String defaultNS = "";
 	
 	public IOWLReasonerImpl(BuiltInReasoner builtInType) {
-		switch (builtInType) {
-		case IRIS:
-			builtInFacade = new IrisFacade();
-			break;
-		default:
-			throw new UnsupportedOperationException("Reasoning with "
-					+ builtInType.toString() + " is not supported!");
-		}
+		this(builtInType, null);
+	}
+	
+	public IOWLReasonerImpl(BuiltInReasoner builtInType, 
+			Map<String, Object> params) {
+		configureVirtualTriples(params);
+		// owl:sameAs is handled by canonicalization, transitive, symmetric 
+		// and inverse properties by closing their graphs, not by rules:
+		builtInFacade = new SameAsFacade(new PropertyClosureFacade(
+				createFacade(builtInType, params, isVirtualTriples())));
+		configureSchemaCompilation(builtInType, params);
+		configureSnapshots(builtInType);
 	}
 
 	public void registerOntologies(Map<String, Graph> ontologies) 
@@ -81,7 +94,7 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 			
 			// Register the program at the built-in reasoner:
 			try {
-				builtInFacade.register(defaultNS, kb);
+				register(builtInFacade, defaultNS, kb);
 			} catch (ExternalToolException e) {
 				e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -98,6 +111,19 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 		registerOntologies(ontologies);
 	}
 	
+	public OntologyLoader openOntology(String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		defaultNS = ontologyURI;
+		// An empty graph is converted to the auxiliary rules only:
+		return openOntology(builtInFacade, ontologyURI, 
+				convertOntology(new GraphImpl(), ontologyURI));
+	}
+
+	public void addStatements(Graph statements, String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		addStatements(builtInFacade, statements, ontologyURI);
+	}
+
 	public void deRegisterOntology(Graph ontology, String ontologyURI) {
 		Map<String, Graph> ontologies = new HashMap<String, Graph>();
         ontologies.put(ontologyURI, ontology);
@@ -109,7 +135,7 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 		for (Entry<String, Graph> entry : entrySet) {
 			String ontologyURI = entry.getKey();
             try {
-                builtInFacade.deregister(ontologyURI);
+                deregister(builtInFacade, ontologyURI);
             } catch (ExternalToolException e) {
                 e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -130,7 +156,8 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 		Set<Rule> rules = super.convertOntology(ontology, defaultNS); 
 		RDFS2DatalogTransformer rdfs2datalog = new RDFS2DatalogTransformer(defaultNS);
         rules.add(rdfs2datalog.generateAuxiliaryRDFRule());
-        rules.addAll(rdfs2datalog.generateAuxiliaryRDFSRules());
+        rules.addAll(rdfs2datalog.generateAuxiliaryRDFSRules(
+        		isCompiledSchema(), isVirtualTriples()));
         rules.addAll(rdfs2datalog.generateAuxiliaryERDFSRules(ontology));
         rules.addAll(rdfs2datalog.generateAuxiliaryIOWLRules(ontology, rules));
 //         System.out.println("f-logic rules:");
@@ -144,16 +171,24 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
 		return defaultNS;
 	}
 	
+	public void writeSnapshot(OutputStream out) throws IOException {
+		writeSnapshot(builtInFacade, out);
+	}
+	
+	public void readSnapshot(InputStream in) throws IOException {
+		readSnapshot(builtInFacade, in);
+	}
+	
 	public boolean entails(Graph ontology, Statement expression) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, Collections.singleton(expression), defaultNS);
 	}
 
 	public boolean entails(Graph ontology, Set<Statement> expressions) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, expressions, defaultNS);
 	}
 
 	public boolean executeGroundQuery(Graph ontology, LogicalExpression query) {
-		throw new UnsupportedOperationException();
+		return executeGroundQuery(builtInFacade, query);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -167,6 +202,29 @@ public class IOWLReasonerImpl extends ReasonerImpl implements IOWLReasoner {
         }
         return result;
 	}
+	
+	public QueryCursor executeQuery(Graph ontology, LogicalExpression query, 
+			int offset, int limit) throws ExternalToolException {
+		return createCursor(builtInFacade, query, offset, limit);
+	}
+	
+	public Set<Map<Variable, Term>> executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) throws ExternalToolException {
+		return evaluate(builtInFacade, convertQuery(query, bindings));
+	}
+	
+	public QueryCursor executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings, int offset, int limit) 
+			throws ExternalToolException {
+		return createCursor(builtInFacade, convertQuery(query, bindings), 
+				offset, limit);
+	}
+	
+	public boolean executeGroundQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) {
+		return executeGroundQuery(builtInFacade, 
+				convertQuery(query, bindings));
+	}
 
 }
 /*
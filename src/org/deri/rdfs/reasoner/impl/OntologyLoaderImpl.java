@@ -0,0 +1,133 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.RDFS2DatalogTransformer;
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
+import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.rio.StatementHandlerException;
+
+/**
+ * A loader collecting the statements, and checking, converting and 
+ * registering them at the built-in reasoner whenever a batch is complete. 
+ * The statements of a batch are converted in parallel chunks. A single 
+ * transformer converts all statements, the blank nodes of all batches 
+ * belong to the same document.
+ */
+class OntologyLoaderImpl implements OntologyLoader {
+
+	// the number of statements converted and registered at once
+	final static int BATCH_SIZE = 8 * ReasonerImpl.CHUNK_SIZE;
+
+	private final ReasonerImpl reasoner;
+
+	private final ReasonerFacade facade;
+
+	private final String ontologyURI;
+
+	private final RDFS2DatalogTransformer rdfs2datalog;
+
+	private List<Statement> batch = new ArrayList<Statement>(BATCH_SIZE);
+
+	private boolean closed = false;
+
+	OntologyLoaderImpl(ReasonerImpl reasoner, ReasonerFacade facade, 
+			String ontologyURI, RDFS2DatalogTransformer rdfs2datalog) {
+		this.reasoner = reasoner;
+		this.facade = facade;
+		this.ontologyURI = ontologyURI;
+		this.rdfs2datalog = rdfs2datalog;
+	}
+
+	public void handleStatement(Resource subject, URI predicate, Value object)
+			throws StatementHandlerException {
+		if (closed) {
+			throw new StatementHandlerException("The loader is closed");
+		}
+		try {
+			batch.add(new StatementImpl(subject, predicate, object));
+			if (batch.size() >= BATCH_SIZE) {
+				flush();
+			}
+		} catch (NonStandardRDFSUseException e) {
+			throw new StatementHandlerException(e);
+		} catch (ExternalToolException e) {
+			throw new StatementHandlerException(e);
+		}
+	}
+
+	public void close() 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		if (!closed) {
+			closed = true;
+			flush();
+		}
+	}
+
+	/*
+	 * Converts and registers the current batch, the facade may keep the 
+	 * set of rules. If the batch fails, the ontology is deregistered and 
+	 * the loader closed.
+	 */
+	private void flush() 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			Set<Rule> rules = reasoner.convertStatements(batch, rdfs2datalog);
+			batch.clear();
+			reasoner.addDatatypes(ontologyURI, rules);
+			reasoner.register(facade, ontologyURI, rules);
+		} catch (NonStandardRDFSUseException e) {
+			abort();
+			throw e;
+		} catch (ExternalToolException e) {
+			abort();
+			throw e;
+		}
+	}
+
+	/*
+	 * Removes the batches registered so far, the ontology wasn't 
+	 * registered before the loader was opened.
+	 */
+	private void abort() {
+		closed = true;
+		batch.clear();
+		try {
+			reasoner.deregister(facade, ontologyURI);
+		} catch (ExternalToolException e) {
+			// the failure of the batch is reported instead
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.omwg.logicalexpression.LogicalExpression;
+import org.omwg.ontology.Variable;
+import org.wsml.reasoner.ConjunctiveQuery;
+
+/**
+ * A query split into conjunctive queries by the Lloyd-Topor rules, and 
+ * converted to Datalog. The datatypes of the Datalog literals depend on 
+ * the facts known to the reasoner, the conversion is repeated when the 
+ * datatypes of further predicates became known since.
+ */
+class PreparedQueryImpl implements PreparedQuery {
+
+	// the reasoner which prepared the query
+	private final ReasonerImpl reasoner;
+
+	private final LogicalExpression query;
+
+	private final Set<Variable> variables;
+
+	// the conjunctive queries, with the result predicate as head
+	private final Set<LogicalExpression> rules;
+
+	// the Datalog queries, and the version of the datatypes they were built for
+	private Set<ConjunctiveQuery> datalogQueries = null;
+
+	private long version = -1;
+
+	PreparedQueryImpl(ReasonerImpl reasoner, LogicalExpression query, 
+			Set<Variable> variables, Set<LogicalExpression> rules) {
+		this.reasoner = reasoner;
+		this.query = query;
+		this.variables = Collections.unmodifiableSet(variables);
+		this.rules = rules;
+	}
+
+	public LogicalExpression getQuery() {
+		return query;
+	}
+
+	public Set<Variable> getVariables() {
+		return variables;
+	}
+
+	ReasonerImpl getReasoner() {
+		return reasoner;
+	}
+
+	Set<LogicalExpression> getRules() {
+		return rules;
+	}
+
+	/*
+	 * Returns the Datalog queries, or null if they were not converted for 
+	 * the given version of the datatypes.
+	 */
+	synchronized Set<ConjunctiveQuery> getDatalogQueries(long version) {
+		return this.version == version ? datalogQueries : null;
+	}
+
+	synchronized void setDatalogQueries(long version, 
+			Set<ConjunctiveQuery> datalogQueries) {
+		if (version > this.version) {
+			this.version = version;
+			this.datalogQueries = datalogQueries;
+		}
+	}
+
+	public String toString() {
+		return query.toString();
+	}
+
+}
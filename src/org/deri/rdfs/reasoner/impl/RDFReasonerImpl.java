@@ -18,6 +18,10 @@
  */
 package org.deri.rdfs.reasoner.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -26,10 +30,12 @@ import java.util.Map.Entry;
 
 import org.deri.rdfs.reasoner.RDFS2DatalogTransformer;
 import org.deri.rdfs.reasoner.api.RDFReasoner;
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.ReasonerFacade;
 import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
 import org.deri.rdfs.reasoner.api.terms.Rule;
-import org.deri.rdfs.reasoner.builtin.iris.IrisFacade;
 import org.deri.rdfs.reasoner.exception.ExternalToolException;
 import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
 import org.omwg.logicalexpression.LogicalExpression;
@@ -37,6 +43,7 @@ import org.omwg.logicalexpression.terms.Term;
 import org.omwg.ontology.Variable;
 import org.openrdf.model.Graph;
 import org.openrdf.model.Statement;
+import org.openrdf.model.impl.GraphImpl;
 import org.wsml.reasoner.ConjunctiveQuery;
 
 /**
@@ -58,14 +65,13 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
 	private String defaultNS = "";
 	
 	public RDFReasonerImpl(BuiltInReasoner builtInType) {
-		switch (builtInType) {
-		case IRIS:
-			builtInFacade = new IrisFacade();
-			break;
-		default:
-			throw new UnsupportedOperationException("Reasoning with "
-					+ builtInType.toString() + " is not supported!");
-		}
+		this(builtInType, null);
+	}
+	
+	public RDFReasonerImpl(BuiltInReasoner builtInType, 
+			Map<String, Object> params) {
+		builtInFacade = createFacade(builtInType, params);
+		configureSnapshots(builtInType);
 	}
 	
 	public void registerOntologies(Map<String, Graph> ontologies) 
@@ -81,7 +87,7 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
 			
 			// Register the program at the built-in reasoner:
 			try {
-				builtInFacade.register(defaultNS, kb);
+				register(builtInFacade, defaultNS, kb);
 			} catch (ExternalToolException e) {
 				e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -98,6 +104,19 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
 		registerOntologies(ontologies);
 	}
 
+	public OntologyLoader openOntology(String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		defaultNS = ontologyURI;
+		// An empty graph is converted to the auxiliary rules only:
+		return openOntology(builtInFacade, ontologyURI, 
+				convertOntology(new GraphImpl(), ontologyURI));
+	}
+
+	public void addStatements(Graph statements, String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		addStatements(builtInFacade, statements, ontologyURI);
+	}
+
 	public void deRegisterOntology(Graph ontology, String ontologyURI) {
 		Map<String, Graph> ontologies = new HashMap<String, Graph>();
         ontologies.put(ontologyURI, ontology);
@@ -109,7 +128,7 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
 		for (Entry<String, Graph> entry : entrySet) {
 			String ontologyURI = entry.getKey();
             try {
-                builtInFacade.deregister(ontologyURI);
+                deregister(builtInFacade, ontologyURI);
             } catch (ExternalToolException e) {
                 e.printStackTrace();
                 throw new IllegalArgumentException(
@@ -131,6 +150,29 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
         return result;
 	}
 	
+	public QueryCursor executeQuery(Graph ontology, LogicalExpression query, 
+			int offset, int limit) throws ExternalToolException {
+		return createCursor(builtInFacade, query, offset, limit);
+	}
+	
+	public Set<Map<Variable, Term>> executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) throws ExternalToolException {
+		return evaluate(builtInFacade, convertQuery(query, bindings));
+	}
+	
+	public QueryCursor executeQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings, int offset, int limit) 
+			throws ExternalToolException {
+		return createCursor(builtInFacade, convertQuery(query, bindings), 
+				offset, limit);
+	}
+	
+	public boolean executeGroundQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) {
+		return executeGroundQuery(builtInFacade, 
+				convertQuery(query, bindings));
+	}
+	
 	/*
 	 * Method to convert an RDF ontology to Datalog rules.
 	 * 
@@ -153,16 +195,24 @@ public class RDFReasonerImpl extends ReasonerImpl implements RDFReasoner {
 		return defaultNS;
 	}
 	
+	public void writeSnapshot(OutputStream out) throws IOException {
+		writeSnapshot(builtInFacade, out);
+	}
+	
+	public void readSnapshot(InputStream in) throws IOException {
+		readSnapshot(builtInFacade, in);
+	}
+	
 	public boolean entails(Graph ontology, Statement statement) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, Collections.singleton(statement), defaultNS);
 	}
 
 	public boolean entails(Graph ontology, Set<Statement> statement) {
-		throw new UnsupportedOperationException();
+		return entails(builtInFacade, statement, defaultNS);
 	}
 
 	public boolean executeGroundQuery(Graph ontology, LogicalExpression query) {
-		throw new UnsupportedOperationException();
+		return executeGroundQuery(builtInFacade, query);
 	}
 
 }
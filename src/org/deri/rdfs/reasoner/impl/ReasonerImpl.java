@@ -18,19 +18,60 @@
  */
 package org.deri.rdfs.reasoner.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.deri.rdfs.reasoner.RDFS2DatalogTransformer;
 import org.deri.rdfs.reasoner.WSML2DatalogTransformer;
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.Reasoner;
+import org.deri.rdfs.reasoner.api.ReasonerFacade;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.EvaluationStrategy;
+import org.deri.rdfs.reasoner.api.terms.FMolecule;
 import org.deri.rdfs.reasoner.api.terms.Rule;
+import org.deri.rdfs.reasoner.builtin.AbstractQueryCursor;
+import org.deri.rdfs.reasoner.builtin.CachingFacade;
+import org.deri.rdfs.reasoner.builtin.VirtualTriplesFacade;
+import org.deri.rdfs.reasoner.builtin.iris.IrisFacade;
+import org.deri.rdfs.reasoner.builtin.rdfs.NativeFacade;
+import org.deri.rdfs.reasoner.exception.ExternalToolException;
 import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
 import org.omwg.logicalexpression.Atom;
 import org.omwg.logicalexpression.LogicalExpression;
 import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.DataValue;
+import org.omwg.ontology.Variable;
+import org.omwg.ontology.WsmlDataType;
+import org.openrdf.model.BNode;
 import org.openrdf.model.Graph;
 import org.openrdf.model.Statement;
 import org.openrdf.sesame.sail.StatementIterator;
@@ -67,7 +108,199 @@ public abstract class ReasonerImpl implements Reasoner {
 	protected final static String WSML_RESULT_PREDICATE = "http://www.wsmo.org/reasoner/"
         + "wsml_query_result";
 	
-	private Set<Rule> ruleSet = null;
+	/*
+	 * The kinds of the values of each predicate in the facts converted for 
+	 * each ontology, also in those added after its registration. A kind is 
+	 * the datalog predicate matching the values.
+	 */
+	private Map<String, Map<Term, Set<String>>> ontologyKinds = 
+			new HashMap<String, Map<Term, Set<String>>>();
+	
+	// Counts the ontologies with values of each kind for each predicate.
+	private Map<Term, Map<String, Integer>> kindCounts = 
+			new HashMap<Term, Map<String, Integer>>();
+	
+	/*
+	 * The datalog predicate matching the values of each predicate with 
+	 * values of a single kind, used to convert the queries. Queries on the 
+	 * other predicates match the values of all kinds.
+	 */
+	private Map<Term, String> datatypes = new HashMap<Term, String>();
+	
+	// Guards the kinds of the values, queries are converted concurrently.
+	private final ReadWriteLock datatypesLock = new ReentrantReadWriteLock();
+	
+	// Counts the changes of the datatypes, guarded by the datatypesLock.
+	private long datatypesVersion = 0;
+	
+	// The URIs of the registered ontologies.
+	private final Set<String> registered = 
+			Collections.synchronizedSet(new HashSet<String>());
+	
+	// Counts the documents converted, their blank nodes are kept apart.
+	private final AtomicInteger documents = new AtomicInteger();
+	
+	// The version of the format of the snapshots.
+	private final static int SNAPSHOT_VERSION = 2;
+	
+	// the number of statements checked and converted by one task
+	final static int CHUNK_SIZE = 10000;
+	
+	// Converts the chunks of large documents on all available processors.
+	private final static ExecutorService converters = 
+			Executors.newFixedThreadPool(
+					Runtime.getRuntime().availableProcessors(), 
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "rdfs-converter");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+	
+	// Whether the schema axioms are compiled to specialized rules.
+	private boolean compiledSchema = false;
+	
+	// Whether the trivial triples are answered at query time.
+	private boolean virtualTriples = false;
+	
+	// The built-in reasoner, if it doesn't support snapshots.
+	private BuiltInReasoner withoutSnapshots = null;
+	
+	private final WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+	
+	private final LogicalExpressionFactory leFactory = 
+			Factory.createLogicalExpressionFactory(null);
+	
+	/*
+	 * Method to create the facade to the built-in reasoner. The results of 
+	 * the queries are cached, unless the cache is disabled by the 
+	 * parameters.
+	 * 
+	 * @param builtInType the built-in reasoner to use
+	 * @param params the configuration parameters, may be null
+	 * @return facade the facade to the built-in reasoner
+	 */
+	protected static ReasonerFacade createFacade(BuiltInReasoner builtInType, 
+			Map<String, Object> params) {
+		return createFacade(builtInType, params, false);
+	}
+	
+	/*
+	 * Method to create the facade to the built-in reasoner. The results of 
+	 * the queries are cached, unless the cache is disabled by the 
+	 * parameters. The queries are rewritten to answer the trivial triples, 
+	 * if they are virtual.
+	 * 
+	 * @param builtInType the built-in reasoner to use
+	 * @param params the configuration parameters, may be null
+	 * @param virtualTriples whether the trivial triples are virtual
+	 * @return facade the facade to the built-in reasoner
+	 */
+	protected static ReasonerFacade createFacade(BuiltInReasoner builtInType, 
+			Map<String, Object> params, boolean virtualTriples) {
+		EvaluationStrategy strategy = EvaluationStrategy.MATERIALIZE;
+		if (params != null && params.containsKey(
+				RDFSReasonerFactory.PARAM_EVALUATION_STRATEGY)) {
+			strategy = (EvaluationStrategy) params.get(
+					RDFSReasonerFactory.PARAM_EVALUATION_STRATEGY);
+		}
+		ReasonerFacade facade = null;
+		switch (builtInType) {
+		case IRIS:
+			if (strategy != EvaluationStrategy.MATERIALIZE) {
+				throw new UnsupportedOperationException("The evaluation " +
+						"strategy " + strategy + " is not supported by IRIS!");
+			}
+			facade = new IrisFacade();
+			break;
+		case NATIVE:
+			facade = new NativeFacade(strategy);
+			break;
+		default:
+			throw new UnsupportedOperationException("Reasoning with "
+					+ builtInType.toString() + " is not supported!");
+		}
+		if (virtualTriples) {
+			facade = new VirtualTriplesFacade(facade);
+		}
+		int maxQueries = 0;
+		int maxBindings = CachingFacade.DEFAULT_MAX_BINDINGS;
+		if (params != null && params.containsKey(
+				RDFSReasonerFactory.PARAM_QUERY_CACHE_SIZE)) {
+			maxQueries = (Integer) params.get(
+					RDFSReasonerFactory.PARAM_QUERY_CACHE_SIZE);
+		}
+		if (params != null && params.containsKey(
+				RDFSReasonerFactory.PARAM_QUERY_CACHE_BINDINGS)) {
+			maxBindings = (Integer) params.get(
+					RDFSReasonerFactory.PARAM_QUERY_CACHE_BINDINGS);
+		}
+		if (maxQueries > 0 && maxBindings > 0) {
+			facade = new CachingFacade(facade, maxQueries, maxBindings);
+		}
+		return facade;
+	}
+	
+	/*
+	 * Method to enable the compilation of the schema axioms to specialized 
+	 * rules, if the parameters ask for it. Only IRIS evaluates these rules, 
+	 * the native engine specializes its joins anyway.
+	 * 
+	 * @param builtInType the built-in reasoner to use
+	 * @param params the configuration parameters, may be null
+	 */
+	protected void configureSchemaCompilation(BuiltInReasoner builtInType, 
+			Map<String, Object> params) {
+		if (params == null || !Boolean.TRUE.equals(params.get(
+				RDFSReasonerFactory.PARAM_COMPILE_SCHEMA))) {
+			return;
+		}
+		if (builtInType != BuiltInReasoner.IRIS) {
+			throw new UnsupportedOperationException("Compiling the schema " +
+					"is not supported by " + builtInType + "!");
+		}
+		compiledSchema = true;
+	}
+	
+	/*
+	 * Method to record whether the built-in reasoner supports snapshots. 
+	 * Only the native engine does, IRIS shares its program between all 
+	 * reasoners of the virtual machine.
+	 * 
+	 * @param builtInType the built-in reasoner to use
+	 */
+	protected void configureSnapshots(BuiltInReasoner builtInType) {
+		withoutSnapshots = builtInType == BuiltInReasoner.NATIVE 
+				? null : builtInType;
+	}
+	
+	/*
+	 * @return true if the schema axioms are compiled to specialized rules, 
+	 * 			which replace the generic RDFS rules
+	 */
+	protected boolean isCompiledSchema() {
+		return compiledSchema;
+	}
+	
+	/*
+	 * Method to keep the trivial triples virtual, if the parameters ask 
+	 * for it. Must be called before the facade is created.
+	 * 
+	 * @param params the configuration parameters, may be null
+	 */
+	protected void configureVirtualTriples(Map<String, Object> params) {
+		virtualTriples = params != null && Boolean.TRUE.equals(params.get(
+				RDFSReasonerFactory.PARAM_VIRTUAL_TRIVIAL_TRIPLES));
+	}
+	
+	/*
+	 * @return true if the trivial triples aren't materialized, but answered 
+	 * 			at query time
+	 */
+	protected boolean isVirtualTriples() {
+		return virtualTriples;
+	}
 	
 	/*
 	 * Method to convert an RDFS ontology to Datalog rules.
@@ -77,19 +310,406 @@ public abstract class ReasonerImpl implements Reasoner {
 	 */
 	protected Set<Rule> convertOntology(Graph ontology, String defaultNS) 
 			throws NonStandardRDFSUseException {
-		Set<Rule> rules = new HashSet<Rule>();
-		ruleSet = new HashSet<Rule>();
-		RDFS2DatalogTransformer rdfs2datalog = new RDFS2DatalogTransformer(defaultNS);
+		return convertGraph(ontology, defaultNS);
+	}
+	
+	/*
+	 * Method to convert the statements of a graph to facts, without the 
+	 * auxiliary rules the subclasses add in convertOntology.
+	 */
+	private Set<Rule> convertGraph(Graph ontology, String defaultNS) 
+			throws NonStandardRDFSUseException {
+		List<Statement> statements = new ArrayList<Statement>();
         StatementIterator it = ontology.getStatements();
         while (it.hasNext()) {
-        	Statement statement = it.next();
-        	Rule rule = rdfs2datalog.transform(statement);
-        	rules.add(rule);
-        	ruleSet.add(rule);
+        	statements.add(it.next());
         }
+        Set<Rule> rules = convertStatements(statements, 
+        		createTransformer(defaultNS));
+        addDatatypes(defaultNS, rules);
+		return rules;
+	}
+	
+	/*
+	 * Method to check and convert a list of statements. Large lists are 
+	 * split into chunks, which are checked and converted in parallel. The 
+	 * transformer is shared by the chunks, so that the blank nodes of all 
+	 * chunks belong to the same document.
+	 * 
+	 * @param statements the statements to convert
+	 * @param rdfs2datalog the transformer of the document
+	 * @return rules Set of F-Logic rules
+	 */
+	Set<Rule> convertStatements(List<Statement> statements, 
+			final RDFS2DatalogTransformer rdfs2datalog) 
+			throws NonStandardRDFSUseException {
+		Set<Rule> rules = new HashSet<Rule>();
+		if (statements.size() <= CHUNK_SIZE) {
+			rules.addAll(convertChunk(statements, rdfs2datalog));
+		}
+		else {
+			List<Callable<List<Rule>>> tasks = new ArrayList<Callable<List<Rule>>>();
+			for (int i = 0; i < statements.size(); i += CHUNK_SIZE) {
+				final List<Statement> chunk = statements.subList(i, 
+						Math.min(statements.size(), i + CHUNK_SIZE));
+				tasks.add(new Callable<List<Rule>>() {
+					public List<Rule> call() {
+						return convertChunk(chunk, rdfs2datalog);
+					}
+				});
+			}
+			try {
+				for (Future<List<Rule>> result : converters.invokeAll(tasks)) {
+					rules.addAll(result.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("The conversion of the " +
+						"statements was interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new IllegalStateException("The statements could not " +
+						"be converted", e.getCause());
+			}
+		}
+		checkStatements();
+		return rules;
+	}
+	
+	/*
+	 * Checks and converts the statements of one chunk, and compiles the 
+	 * schema axioms among them if asked for.
+	 */
+	private List<Rule> convertChunk(List<Statement> chunk, 
+			RDFS2DatalogTransformer rdfs2datalog) {
+		List<Rule> rules = new ArrayList<Rule>(chunk.size());
+		for (Statement statement : chunk) {
+			checkStatement(statement);
+			rules.add(rdfs2datalog.transform(statement));
+			if (compiledSchema) {
+				Rule specialized = rdfs2datalog.compileSchemaAxiom(statement);
+				if (specialized != null) {
+					rules.add(specialized);
+				}
+			}
+		}
 		return rules;
 	}
 	
+	/*
+	 * Method to record the kinds of the values of the predicates of newly 
+	 * converted facts.
+	 * 
+	 * @param ontologyURI the URI of the ontology of the facts
+	 * @param rules the converted facts
+	 */
+	void addDatatypes(String ontologyURI, Collection<Rule> rules) {
+        datatypesLock.writeLock().lock();
+        try {
+        	Map<Term, Set<String>> kinds = ontologyKinds.get(ontologyURI);
+        	if (kinds == null) {
+        		kinds = new HashMap<Term, Set<String>>();
+        		ontologyKinds.put(ontologyURI, kinds);
+        	}
+        	for (Rule rule : rules) {
+        		FMolecule head = rule.getHead();
+        		String kind = getValueKind(head.getRightTerm());
+        		if (kind == null || head.getPredTerm() instanceof Variable) {
+        			continue;
+        		}
+        		Set<String> seen = kinds.get(head.getPredTerm());
+        		if (seen == null) {
+        			seen = new HashSet<String>();
+        			kinds.put(head.getPredTerm(), seen);
+        		}
+        		if (seen.add(kind)) {
+        			countKind(head.getPredTerm(), kind, 1);
+        		}
+        	}
+        } finally {
+        	datatypesLock.writeLock().unlock();
+        }
+	}
+	
+	/*
+	 * Method to drop the kinds of the values recorded for the facts of an 
+	 * ontology.
+	 * 
+	 * @param ontologyURI the URI of the ontology
+	 */
+	void removeDatatypes(String ontologyURI) {
+		datatypesLock.writeLock().lock();
+		try {
+			Map<Term, Set<String>> kinds = ontologyKinds.remove(ontologyURI);
+			if (kinds == null) {
+				return;
+			}
+			for (Map.Entry<Term, Set<String>> entry : kinds.entrySet()) {
+				for (String kind : entry.getValue()) {
+					countKind(entry.getKey(), kind, -1);
+				}
+			}
+		} finally {
+			datatypesLock.writeLock().unlock();
+		}
+	}
+	
+	/*
+	 * Changes the number of ontologies with values of a kind for a 
+	 * predicate, and the predicate matching its values in queries. Must be 
+	 * called with the write lock of the datatypes held.
+	 */
+	private void countKind(Term predicate, String kind, int delta) {
+		Map<String, Integer> counts = kindCounts.get(predicate);
+		if (counts == null) {
+			counts = new HashMap<String, Integer>();
+			kindCounts.put(predicate, counts);
+		}
+		Integer count = counts.get(kind);
+		int n = (count == null ? 0 : count.intValue()) + delta;
+		if (n > 0) {
+			counts.put(kind, n);
+		}
+		else {
+			counts.remove(kind);
+		}
+		String old = datatypes.get(predicate);
+		if (counts.size() == 1) {
+			datatypes.put(predicate, counts.keySet().iterator().next());
+		}
+		else {
+			datatypes.remove(predicate);
+			if (counts.isEmpty()) {
+				kindCounts.remove(predicate);
+			}
+		}
+		String current = datatypes.get(predicate);
+		if (old == null ? current != null : !old.equals(current)) {
+			datatypesVersion++;
+		}
+	}
+	
+	/*
+	 * Method to register the rules of an ontology at the built-in 
+	 * reasoner, they are added to the rules registered already.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param ontologyURI the URI of the ontology
+	 * @param rules the rules of the ontology
+	 */
+	protected void register(ReasonerFacade facade, String ontologyURI, 
+			Set<Rule> rules) throws ExternalToolException {
+		facade.register(ontologyURI, rules);
+		registered.add(ontologyURI);
+	}
+	
+	/*
+	 * Method to deregister an ontology, together with the kinds of the 
+	 * values of its facts.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param ontologyURI the URI of the ontology
+	 */
+	protected void deregister(ReasonerFacade facade, String ontologyURI) 
+			throws ExternalToolException {
+		facade.deregister(ontologyURI);
+		registered.remove(ontologyURI);
+		removeDatatypes(ontologyURI);
+	}
+	
+	/*
+	 * Method to add statements to an already registered ontology. Only 
+	 * the statements are converted, the auxiliary rules have already been 
+	 * registered together with the ontology.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param statements the statements to add
+	 * @param ontologyURI the URI of the ontology
+	 */
+	protected void addStatements(ReasonerFacade facade, Graph statements, 
+			String ontologyURI) 
+			throws ExternalToolException, NonStandardRDFSUseException {
+		register(facade, ontologyURI, convertGraph(statements, ontologyURI));
+	}
+	
+	/*
+	 * Method to open a loader, which registers the statements of an 
+	 * ontology in batches. The auxiliary rules are registered right away. 
+	 * A failed batch deregisters the ontology, so it must not have been 
+	 * registered before.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param ontologyURI the URI of the ontology
+	 * @param auxiliary the auxiliary rules of the ontology
+	 * @return loader Loader for the statements of the ontology
+	 */
+	protected OntologyLoader openOntology(ReasonerFacade facade, 
+			String ontologyURI, Set<Rule> auxiliary) 
+			throws ExternalToolException {
+		if (registered.contains(ontologyURI)) {
+			throw new IllegalArgumentException("The ontology " + ontologyURI 
+					+ " is registered already, statements are added to it " 
+					+ "by addStatements");
+		}
+		register(facade, ontologyURI, auxiliary);
+		return new OntologyLoaderImpl(this, facade, ontologyURI, 
+				createTransformer(ontologyURI));
+	}
+	
+	/*
+	 * Method to write a snapshot of the registered ontologies: the type 
+	 * and the parameters of the reasoner, the number of converted 
+	 * documents and the kinds of the values of the predicates of each 
+	 * ontology, followed by the snapshot of the facade.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param out the stream to write the snapshot to
+	 */
+	protected void writeSnapshot(ReasonerFacade facade, OutputStream out) 
+			throws IOException {
+		checkSnapshots();
+		DataOutputStream data = new DataOutputStream(
+				new BufferedOutputStream(out));
+		data.writeUTF(getClass().getName());
+		data.writeInt(SNAPSHOT_VERSION);
+		data.writeBoolean(compiledSchema);
+		data.writeBoolean(virtualTriples);
+		data.writeInt(documents.get());
+		datatypesLock.readLock().lock();
+		try {
+			data.writeInt(ontologyKinds.size());
+			for (Map.Entry<String, Map<Term, Set<String>>> ontology : 
+					ontologyKinds.entrySet()) {
+				data.writeUTF(ontology.getKey());
+				data.writeInt(ontology.getValue().size());
+				for (Map.Entry<Term, Set<String>> entry : 
+						ontology.getValue().entrySet()) {
+					data.writeUTF(entry.getKey().toString());
+					data.writeInt(entry.getValue().size());
+					for (String kind : entry.getValue()) {
+						data.writeUTF(kind);
+					}
+				}
+			}
+		} finally {
+			datatypesLock.readLock().unlock();
+		}
+		facade.writeSnapshot(data);
+		data.flush();
+	}
+	
+	/*
+	 * Method to replace the registered ontologies by the ones of a 
+	 * snapshot written by writeSnapshot(ReasonerFacade, OutputStream).
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param in the stream to read the snapshot from
+	 */
+	protected void readSnapshot(ReasonerFacade facade, InputStream in) 
+			throws IOException {
+		checkSnapshots();
+		DataInputStream data = new DataInputStream(
+				new BufferedInputStream(in));
+		if (!data.readUTF().equals(getClass().getName())) {
+			throw new IOException("The snapshot was written by another " +
+					"type of reasoner");
+		}
+		if (data.readInt() != SNAPSHOT_VERSION) {
+			throw new IOException("The snapshot was written by another " +
+					"version of the reasoner");
+		}
+		if (data.readBoolean() != compiledSchema 
+				|| data.readBoolean() != virtualTriples) {
+			throw new IOException("The snapshot was written by a reasoner " +
+					"with other parameters");
+		}
+		int converted = data.readInt();
+		Map<String, Map<Term, Set<String>>> restored = 
+				new HashMap<String, Map<Term, Set<String>>>();
+		int ontologies = data.readInt();
+		for (int i = 0; i < ontologies; i++) {
+			Map<Term, Set<String>> kinds = new HashMap<Term, Set<String>>();
+			restored.put(data.readUTF(), kinds);
+			int predicates = data.readInt();
+			for (int j = 0; j < predicates; j++) {
+				Set<String> seen = new HashSet<String>();
+				kinds.put(wsmoFactory.createIRI(data.readUTF()), seen);
+				int count = data.readInt();
+				for (int k = 0; k < count; k++) {
+					seen.add(data.readUTF());
+				}
+			}
+		}
+		facade.readSnapshot(data);
+		
+		documents.set(converted);
+		datatypesLock.writeLock().lock();
+		try {
+			ontologyKinds = restored;
+			// every registered ontology has kinds, also without any fact
+			registered.clear();
+			registered.addAll(restored.keySet());
+			kindCounts = new HashMap<Term, Map<String, Integer>>();
+			datatypes = new HashMap<Term, String>();
+			for (Map<Term, Set<String>> kinds : restored.values()) {
+				for (Map.Entry<Term, Set<String>> entry : kinds.entrySet()) {
+					for (String kind : entry.getValue()) {
+						countKind(entry.getKey(), kind, 1);
+					}
+				}
+			}
+			datatypesVersion++;
+		} finally {
+			datatypesLock.writeLock().unlock();
+		}
+	}
+	
+	/*
+	 * Rejects a snapshot before anything is written or read, if the 
+	 * built-in reasoner doesn't support snapshots.
+	 */
+	private void checkSnapshots() {
+		if (withoutSnapshots != null) {
+			throw new UnsupportedOperationException("Snapshots are not " +
+					"supported by " + withoutSnapshots + "!");
+		}
+	}
+	
+	/*
+	 * Method to check a statement before it is converted. The problems 
+	 * found are only recorded, as the chunks of a document are checked 
+	 * concurrently. Every statement is accepted by default.
+	 * 
+	 * @param statement the statement to check
+	 */
+	protected void checkStatement(Statement statement) {
+	}
+	
+	/*
+	 * Method to report the problems recorded while the statements of a 
+	 * document were checked. Nothing is reported by default.
+	 */
+	protected void checkStatements() throws NonStandardRDFSUseException {
+	}
+	
+	/*
+	 * Method to create a transformer for the statements of a new document. 
+	 * The documents are numbered in the order of their conversion, so that 
+	 * the blank nodes are skolemized in the same way in every run.
+	 * 
+	 * @param defaultNS the default namespace
+	 * @return transformer Transformer for the statements of the document
+	 */
+	protected RDFS2DatalogTransformer createTransformer(String defaultNS) {
+		return new RDFS2DatalogTransformer(defaultNS, 
+				String.valueOf(documents.incrementAndGet()));
+	}
+	
 	/*
 	 * Method to convert an RDFS statement to an F-Logic rule.
 	 * 
@@ -98,27 +718,25 @@ public abstract class ReasonerImpl implements Reasoner {
 	 */
 	protected Rule convertStatement(Statement statement, String defaultNS) 
 			throws Exception {
-		RDFS2DatalogTransformer rdfs2datalog = new RDFS2DatalogTransformer(defaultNS);
+		RDFS2DatalogTransformer rdfs2datalog = createTransformer(defaultNS);
 		return rdfs2datalog.transform(statement);
 	}
 	
 	/*
-	 * Method to convert a WSML query to an datalog conjunctive query.
+	 * Method to prepare a WSML query: its free variables are determined 
+	 * and it is split into conjunctive queries by the Lloyd-Topor rules. 
+	 * The conversion to Datalog is done at the first execution.
 	 * 
 	 * @param query WSML query
-	 * @return query Conjunctive query
+	 * @return query Prepared query
 	 */
 	@SuppressWarnings("unchecked")
-	protected Set<ConjunctiveQuery> convertQuery(LogicalExpression q) {
-//System.out.println(q.toString());
-		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
-	    LogicalExpressionFactory leFactory = Factory.createLogicalExpressionFactory(null);
-        WSML2DatalogTransformer wsml2datalog = new WSML2DatalogTransformer();
-        
-        List<Term> params = new LinkedList<Term>();
+	public PreparedQuery prepareQuery(LogicalExpression q) {
+		Set<Variable> variables = new HashSet<Variable>();
         LogicalExpressionVariableVisitor varVisitor = new LogicalExpressionVariableVisitor();
         q.accept(varVisitor);
-        params.addAll(varVisitor.getFreeVariables(q));
+        variables.addAll(varVisitor.getFreeVariables(q));
+        List<Term> params = new LinkedList<Term>(variables);
         Atom rHead = leFactory.createAtom((Identifier) wsmoFactory
                 .createIRI(WSML_RESULT_PREDICATE), params);
 
@@ -129,28 +747,362 @@ public abstract class ReasonerImpl implements Reasoner {
                 lloydToporRules);
         Set<LogicalExpression> conjunctiveQueries = lloydToporNormalizer
                 .transform(resultDefRule);
-
-        Set<org.wsml.reasoner.Rule> rules = new HashSet<org.wsml.reasoner.Rule>();
-
-        for (LogicalExpression query : conjunctiveQueries) {
-        	rules.add(wsml2datalog.transformLogExpr(query, ruleSet));
+        return new PreparedQueryImpl(this, q, variables, conjunctiveQueries);
+	}
+	
+	/*
+	 * Method to convert a WSML query to an datalog conjunctive query.
+	 * 
+	 * @param query WSML query
+	 * @return query Conjunctive query
+	 */
+	protected Set<ConjunctiveQuery> convertQuery(LogicalExpression q) {
+		return convertQuery(prepareQuery(q), null);
+	}
+	
+	/*
+	 * Method to get the datalog conjunctive queries of a prepared query. 
+	 * The queries are converted again, if the datatypes of further 
+	 * predicates became known since their last conversion. The variables 
+	 * with a binding are replaced by their values.
+	 * 
+	 * @param query Prepared query
+	 * @param bindings the values of some variables, may be null
+	 * @return query Conjunctive query
+	 */
+	protected Set<ConjunctiveQuery> convertQuery(PreparedQuery query, 
+			Map<Variable, Term> bindings) {
+		if (!(query instanceof PreparedQueryImpl) 
+				|| ((PreparedQueryImpl) query).getReasoner() != this) {
+			throw new IllegalArgumentException("The query " + query 
+					+ " was not prepared by this reasoner");
+		}
+		PreparedQueryImpl prepared = (PreparedQueryImpl) query;
+		Set<ConjunctiveQuery> result = null;
+        datatypesLock.readLock().lock();
+        try {
+        	result = prepared.getDatalogQueries(datatypesVersion);
+        	if (result == null) {
+        		result = new HashSet<ConjunctiveQuery>();
+        		for (LogicalExpression rule : prepared.getRules()) {
+        			result.add(convertRule(rule, query.getQuery()));
+        		}
+        		result = Collections.unmodifiableSet(result);
+        		prepared.setDatalogQueries(datatypesVersion, result);
+        	}
+        } finally {
+        	datatypesLock.readLock().unlock();
         }
+        if (bindings == null || bindings.isEmpty()) {
+        	return result;
+        }
+        Set<ConjunctiveQuery> bound = new HashSet<ConjunctiveQuery>();
+        for (ConjunctiveQuery q : result) {
+        	bound.add(bind(q, bindings));
+        }
+        return bound;
+    }
+	
+	/*
+	 * Converts a conjunctive query with the result predicate as head to 
+	 * datalog. Must be called with the read lock of the datatypes held.
+	 */
+	private ConjunctiveQuery convertRule(LogicalExpression rule, 
+			LogicalExpression q) {
+		// the transformer collects the literals of a single rule
+        WSML2DatalogTransformer wsml2datalog = new WSML2DatalogTransformer();
+        org.wsml.reasoner.Rule datalogRule = wsml2datalog.transformLogExpr(
+        		rule, datatypes);
+        if (!datalogRule.getHead().getPredicateUri().equals(WSML_RESULT_PREDICATE))
+            throw new IllegalArgumentException("Could not transform query " + q);
 
-        Set<ConjunctiveQuery> result = new HashSet<ConjunctiveQuery>();
-
-        for (org.wsml.reasoner.Rule rule : rules) {
-            if (!rule.getHead().getPredicateUri().equals(WSML_RESULT_PREDICATE))
-                throw new IllegalArgumentException("Could not transform query " + q);
-
-            List<Literal> body = new LinkedList<Literal>();
-            for (Literal l : rule.getBody()) {
-                body.add(l);
-            }
-            result.add(new ConjunctiveQuery(body));
-//            System.out.println(new ConjunctiveQuery(body).toString());
+        List<Literal> body = new LinkedList<Literal>();
+        for (Literal l : datalogRule.getBody()) {
+            body.add(l);
+        }
+        return new ConjunctiveQuery(body);
+	}
+	
+	/*
+	 * Replaces the variables of a conjunctive query by their values. A 
+	 * value in the place of the object of a molecule determines the 
+	 * datatype of the molecule, like a constant of the query would.
+	 */
+	private static ConjunctiveQuery bind(ConjunctiveQuery q, 
+			Map<Variable, Term> bindings) {
+		List<Literal> body = new LinkedList<Literal>();
+		for (Literal l : q.getLiterals()) {
+			Term[] terms = l.getTerms().clone();
+			boolean changed = false;
+			for (int i = 0; i < terms.length; i++) {
+				Term value = bindings.get(terms[i]);
+				if (terms[i] instanceof Variable && value != null) {
+					terms[i] = value;
+					changed = true;
+				}
+			}
+			if (!changed) {
+				body.add(l);
+				continue;
+			}
+			String predicate = l.getPredicateUri();
+			if (terms.length == 3 && terms[2] != l.getTerms()[2] 
+					&& isValuePredicate(predicate)) {
+				predicate = getValuePredicate(terms[2]);
+			}
+			body.add(new Literal(l.isPositive(), predicate, terms));
+		}
+		return new ConjunctiveQuery(body);
+	}
+	
+	/*
+	 * Method to evaluate conjunctive queries, the results of all of them 
+	 * are collected.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param queries Conjunctive queries
+	 * @return result Set of variable bindings
+	 */
+	@SuppressWarnings("unchecked")
+	protected Set<Map<Variable, Term>> evaluate(ReasonerFacade facade, 
+			Set<ConjunctiveQuery> queries) throws ExternalToolException {
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		for (ConjunctiveQuery datalogQuery : queries) {
+            result.addAll(facade.evaluate(datalogQuery, ""));
         }
         return result;
-    }
+	}
+	
+	/*
+	 * Method to check whether a set of statements is entailed. The 
+	 * statements are checked together as one conjunctive query: the ground 
+	 * statements are looked up in the built-in reasoner one by one, until 
+	 * the first one which isn't entailed. The blank nodes are existentially 
+	 * quantified, they become variables of the query.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param statements the statements to check
+	 * @param defaultNS the default namespace
+	 * @return true if all statements are entailed
+	 */
+	protected boolean entails(ReasonerFacade facade, 
+			Collection<Statement> statements, String defaultNS) {
+		RDFS2DatalogTransformer rdfs2datalog = new RDFS2DatalogTransformer(defaultNS);
+		Map<Term, Variable> blankNodes = new HashMap<Term, Variable>();
+		List<Literal> literals = new LinkedList<Literal>();
+		for (Statement statement : statements) {
+			FMolecule molecule = rdfs2datalog.transform(statement).getHead();
+			Term subject = molecule.getLeftTerm();
+			Term object = molecule.getRightTerm();
+			if (statement.getSubject() instanceof BNode) {
+				subject = getVariable(blankNodes, subject);
+			}
+			if (statement.getObject() instanceof BNode) {
+				object = getVariable(blankNodes, object);
+			}
+			literals.add(new Literal(true, getValuePredicate(object), subject, 
+					molecule.getPredTerm(), object));
+		}
+		try {
+			return facade.entails(new ConjunctiveQuery(literals), "");
+		} catch (ExternalToolException e) {
+			throw new IllegalArgumentException(
+					"These statements could not be checked at the " +
+					"built-in reasoner", e);
+		}
+	}
+	
+	/*
+	 * Method to check whether a WSML query has any result.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param query WSML query
+	 * @return true if the query has a result
+	 */
+	protected boolean executeGroundQuery(ReasonerFacade facade, 
+			LogicalExpression query) {
+		return executeGroundQuery(facade, convertQuery(query));
+	}
+	
+	/*
+	 * Method to check whether any of several conjunctive queries has a 
+	 * result. The check stops at the first one which is entailed.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param queries Conjunctive queries
+	 * @return true if a query has a result
+	 */
+	protected boolean executeGroundQuery(ReasonerFacade facade, 
+			Set<ConjunctiveQuery> queries) {
+		try {
+			for (ConjunctiveQuery q : queries) {
+				if (facade.entails(q, "")) {
+					return true;
+				}
+			}
+		} catch (ExternalToolException e) {
+			throw new IllegalArgumentException(
+					"This query could not be checked at the built-in " +
+					"reasoner", e);
+		}
+		return false;
+	}
+	
+	/*
+	 * Returns the variable standing for a skolemized blank node.
+	 */
+	private Variable getVariable(Map<Term, Variable> blankNodes, Term skolem) {
+		Variable variable = blankNodes.get(skolem);
+		if (variable == null) {
+			variable = leFactory.createVariable("b" + blankNodes.size());
+			blankNodes.put(skolem, variable);
+		}
+		return variable;
+	}
+	
+	/*
+	 * Returns the predicate probing the value of a statement. A data value 
+	 * matches all datatype predicates, since a triple derived through the 
+	 * rules may be stored under another one than an asserted triple.
+	 */
+	private static String getValuePredicate(Term t) {
+		if (t instanceof DataValue) {
+			return WSML2DatalogTransformer.PRED_HAS_ANY_VALUE;
+		}
+		return WSML2DatalogTransformer.PRED_HAS_VALUE;
+	}
+	
+	/*
+	 * Returns the datatype predicate storing a value, the any-value 
+	 * predicate for an unknown datatype, or null for a variable.
+	 */
+	private static String getValueKind(Term t) {
+		if (t instanceof Variable) {
+			return null;
+		}
+		if (t instanceof DataValue) {
+			String type = ((DataValue) t).getType().getIRI().toString();
+			if (type.equals(WsmlDataType.WSML_STRING)) {
+				return WSML2DatalogTransformer.PRED_HAS_STRING_VALUE;
+			} else if (type.equals(WsmlDataType.WSML_INTEGER)) {
+				return WSML2DatalogTransformer.PRED_HAS_INT_VALUE;
+			} else if (type.equals(WsmlDataType.WSML_BOOLEAN)) {
+				return WSML2DatalogTransformer.PRED_HAS_BOOL_VALUE;
+			} else if (type.equals(WsmlDataType.WSML_DOUBLE)) {
+				return WSML2DatalogTransformer.PRED_HAS_DOUBLE_VALUE;
+			}
+			return WSML2DatalogTransformer.PRED_HAS_ANY_VALUE;
+		}
+		return WSML2DatalogTransformer.PRED_HAS_VALUE;
+	}
+	
+	private static boolean isValuePredicate(String predicate) {
+		return predicate.equals(WSML2DatalogTransformer.PRED_HAS_VALUE)
+				|| predicate.equals(WSML2DatalogTransformer.PRED_HAS_STRING_VALUE)
+				|| predicate.equals(WSML2DatalogTransformer.PRED_HAS_INT_VALUE)
+				|| predicate.equals(WSML2DatalogTransformer.PRED_HAS_BOOL_VALUE)
+				|| predicate.equals(WSML2DatalogTransformer.PRED_HAS_DOUBLE_VALUE)
+				|| predicate.equals(WSML2DatalogTransformer.PRED_HAS_ANY_VALUE);
+	}
+	
+	/*
+	 * Method to open a cursor over the results of a WSML query. If the 
+	 * query is split into several conjunctive queries, their results are 
+	 * returned one after the other, without duplicates. The conjunctive 
+	 * queries are evaluated in the order of their string representation, 
+	 * so that the pages of a result are returned in the same order.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param query WSML query
+	 * @param offset the number of results to skip
+	 * @param limit the maximal number of results, -1 if unlimited
+	 * @return cursor Cursor over the variable bindings
+	 */
+	protected QueryCursor createCursor(ReasonerFacade facade, 
+			LogicalExpression query, int offset, int limit) 
+			throws ExternalToolException {
+		return createCursor(facade, convertQuery(query), offset, limit);
+	}
+	
+	/*
+	 * Method to open a cursor over the results of conjunctive queries.
+	 * 
+	 * @param facade the facade to the built-in reasoner
+	 * @param queries Conjunctive queries
+	 * @param offset the number of results to skip
+	 * @param limit the maximal number of results, -1 if unlimited
+	 * @return cursor Cursor over the variable bindings
+	 */
+	protected QueryCursor createCursor(ReasonerFacade facade, 
+			Set<ConjunctiveQuery> queries, int offset, int limit) 
+			throws ExternalToolException {
+		if (queries.size() == 1) {
+			return facade.evaluate(queries.iterator().next(), "", offset, 
+					limit);
+		}
+		Map<String, ConjunctiveQuery> ordered = 
+				new TreeMap<String, ConjunctiveQuery>();
+		for (ConjunctiveQuery q : queries) {
+			ordered.put(q.toString(), q);
+		}
+		return new UnionCursor(facade, ordered.values(), offset, limit);
+	}
+	
+	/*
+	 * A cursor over the results of several conjunctive queries. The queries 
+	 * are evaluated one after the other, the results returned so far are 
+	 * remembered to skip duplicates.
+	 */
+	private static class UnionCursor extends AbstractQueryCursor {
+		
+		private final ReasonerFacade facade;
+		
+		private final Iterator<ConjunctiveQuery> queries;
+		
+		// a single query doesn't contribute more than offset + limit results
+		private final int max;
+		
+		private final Set<Map<Variable, Term>> seen = 
+				new HashSet<Map<Variable, Term>>();
+		
+		private QueryCursor current = null;
+		
+		private UnionCursor(ReasonerFacade facade, 
+				Collection<ConjunctiveQuery> queries, int offset, int limit) {
+			super(offset, limit);
+			this.facade = facade;
+			this.queries = queries.iterator();
+			this.max = limit < 0 ? -1 : offset + limit;
+		}
+		
+		protected Map<Variable, Term> computeNext() 
+				throws ExternalToolException {
+			while (true) {
+				if (current != null && current.hasNext()) {
+					Map<Variable, Term> result = current.next();
+					if (seen.add(result)) {
+						return result;
+					}
+				}
+				else if (queries.hasNext()) {
+					if (current != null) {
+						current.close();
+					}
+					current = facade.evaluate(queries.next(), "", 0, max);
+				}
+				else {
+					return null;
+				}
+			}
+		}
+		
+		protected void release() {
+			if (current != null) {
+				current.close();
+			}
+		}
+		
+	}
 
 }
 /*
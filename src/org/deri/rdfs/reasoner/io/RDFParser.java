@@ -31,6 +31,7 @@ import org.openrdf.model.Graph;
 import org.openrdf.model.impl.GraphImpl;
 import org.openrdf.rio.ParseException;
 import org.openrdf.rio.Parser;
+import org.openrdf.rio.StatementHandler;
 import org.openrdf.rio.StatementHandlerException;
 import org.openrdf.rio.ntriples.NTriplesParser;
 import org.openrdf.rio.rdfxml.RdfXmlParser;
@@ -153,6 +154,35 @@ public class RDFParser {
 		return result;
 	}
 	
+	/**
+	 * This method parses an RDFS ontology and hands the statements over to 
+	 * the given handler, while they are parsed. No graph is built.
+	 * @param reader InputStreamReader	
+	 * @param uri Default namespace
+	 * @param statementHandler the handler receiving the statements
+	 * @return String the default namespace of the ontology
+	 * @throws IOException
+	 * @throws ParseException
+	 * @throws StatementHandlerException
+	 */
+	public String parse(Reader reader, String uri, 
+			StatementHandler statementHandler) 
+			throws IOException, ParseException, StatementHandlerException {
+		parser.setStatementHandler(statementHandler);
+		try {
+			parser.parse(reader, uri);
+		} finally {
+			parser.setStatementHandler(handler);
+		}
+		
+		// set the default namespace
+        namespaceListener.setDefaultNS(uri);
+        namespaces = namespaceListener.getNamespaces();
+        defaultNS = namespaceListener.getDefaultNS();
+        defaultNSPrefix = namespaceListener.getDefaultNSPrefix();
+		return defaultNS;
+	}
+	
 	public Map<String, Graph> parse(InputStream input, String uri) 
 			throws IOException, ParseException, StatementHandlerException {
 		return this.parse(new InputStreamReader(input), uri);
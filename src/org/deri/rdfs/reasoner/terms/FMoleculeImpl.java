@@ -11,6 +11,11 @@ import org.omwg.ontology.Variable;
 /**
  * Implementation of an F-Logic Attribute Molecule of the 
  * form a[b->>c].
+ * <p>
+ * Molecules are immutable, their hash code is computed once. Molecules 
+ * created by {@link #create(Term, Term, Term)} are interned, equal 
+ * interned molecules are the same instance.
+ * </p>
  * 
  *  <pre>
  *  Created on April 27th, 2007
@@ -23,16 +28,40 @@ import org.omwg.ontology.Variable;
  */
 public class FMoleculeImpl implements FMolecule{
 
-    private Term leftTerm = null;
+	private final static Interner<FMolecule> molecules = 
+			new Interner<FMolecule>();
+	
+    private final Term leftTerm;
     
-    private Term predTerm = null;
+    private final Term predTerm;
     
-    private Term rightTerm = null;
+    private final Term rightTerm;
+    
+    private final int hash;
 
     public FMoleculeImpl(Term leftTerm, Term predTerm, Term rightTerm) {
     	this.leftTerm = leftTerm;
     	this.predTerm = predTerm;
     	this.rightTerm = rightTerm;
+    	int hash = 7;
+        hash = 31 * hash + (null == leftTerm ? 0 : leftTerm.hashCode());
+        hash = 31 * hash + (null == predTerm ? 0 : predTerm.hashCode());
+        hash = 31 * hash + (null == rightTerm ? 0 : rightTerm.hashCode());
+        this.hash = hash;
+    }
+    
+    /**
+     * Returns the interned molecule with the given terms.
+     * 
+     * @param leftTerm Left term of the FMolecule
+     * @param predTerm Predicate term of the FMolecule
+     * @param rightTerm Right term of the FMolecule
+     * @return the canonical FMolecule
+     */
+    public static FMolecule create(Term leftTerm, Term predTerm, 
+    		Term rightTerm) {
+    	return molecules.intern(new FMoleculeImpl(leftTerm, predTerm, 
+    			rightTerm));
     }
 
     public Term getLeftTerm() {
@@ -40,7 +69,7 @@ public class FMoleculeImpl implements FMolecule{
     }
 
     public void setLeftTerm(Term leftTerm) {
-        this.leftTerm = leftTerm;
+        throw new UnsupportedOperationException("FMolecules are immutable");
     }
     
     public Term getPredTerm() {
@@ -48,7 +77,7 @@ public class FMoleculeImpl implements FMolecule{
     }
 
     public void setPredTerm(Term predTerm) {
-        this.predTerm = predTerm;
+    	throw new UnsupportedOperationException("FMolecules are immutable");
     }
     
     public Term getRightTerm() {
@@ -56,7 +85,7 @@ public class FMoleculeImpl implements FMolecule{
     }
 
     public void setRightTerm(Term rightTerm) {
-        this.rightTerm = rightTerm;
+    	throw new UnsupportedOperationException("FMolecules are immutable");
     }
 
     public List<Variable> getVariables() {
@@ -74,12 +103,9 @@ public class FMoleculeImpl implements FMolecule{
     }
 
     public boolean isGround() {
-    	if (getVariables().size() == 0) {
-    		return true;
-    	}
-    	else {
-    		return false;
-    	}
+    	return !(leftTerm instanceof Variable) 
+    			&& !(predTerm instanceof Variable)
+    			&& !(rightTerm instanceof Variable);
     }
     
     public String toString() {
@@ -91,7 +117,8 @@ public class FMoleculeImpl implements FMolecule{
      * <p>
      * The <code>equals</code> method implements an equivalence relation
      * on non-null object references. FMolecules are equal if their 
-     * terms are equal.
+     * terms are equal. Interned molecules are mostly told apart by 
+     * reference or by their hash codes, without comparing the terms.
      * </p>
      * <p>
      * It is generally necessary to override the <code>hashCode</code> method 
@@ -104,11 +131,14 @@ public class FMoleculeImpl implements FMolecule{
      * @see java.lang.Object#hashCode()
      */
     public boolean equals(Object obj) {
+    	if (this == obj) {
+    		return true;
+    	}
         if (obj instanceof FMoleculeImpl) {
         	FMoleculeImpl f = (FMoleculeImpl) obj;
-        	return f.leftTerm.toString().equals(this.leftTerm.toString()) && 
-        		f.predTerm.toString().equals(this.predTerm.toString()) && 
-        		f.rightTerm.toString().equals(this.rightTerm.toString());
+        	return f.hash == hash && equal(f.leftTerm, leftTerm) 
+        			&& equal(f.predTerm, predTerm) 
+        			&& equal(f.rightTerm, rightTerm);
         }
         return false;
     }
@@ -129,11 +159,11 @@ public class FMoleculeImpl implements FMolecule{
      * @see java.lang.Object#equals(Object)
      */
     public int hashCode() {
-    	int hash = 7;
-        hash = 31 * hash + (null == leftTerm ? 0 : leftTerm.hashCode());
-        hash = 31 * hash + (null == predTerm ? 0 : predTerm.hashCode());
-        hash = 31 * hash + (null == rightTerm ? 0 : rightTerm.hashCode());
         return hash;
     }
+    
+    private static boolean equal(Term t1, Term t2) {
+    	return t1 == t2 || (t1 != null && t1.equals(t2));
+    }
 
 }
@@ -0,0 +1,70 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package org.deri.rdfs.reasoner.terms;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A table of canonical instances, equal values are replaced by a single 
+ * instance, so that they can mostly be compared by reference. The 
+ * instances are only weakly referenced, they are dropped from the table 
+ * once they aren't used anymore. The table is split into stripes, which 
+ * are locked separately, so that values can be interned concurrently.
+ */
+class Interner<T> {
+
+	// the number of stripes, a power of two
+	private final static int STRIPES = 16;
+
+	private final List<Map<T, WeakReference<T>>> stripes = 
+			new ArrayList<Map<T, WeakReference<T>>>(STRIPES);
+
+	Interner() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes.add(new WeakHashMap<T, WeakReference<T>>());
+		}
+	}
+
+	/**
+	 * Returns the canonical instance of a value.
+	 *
+	 * @param value the value, which must be immutable
+	 * @return the instance equal to the value, which was interned first 
+	 * 			and is still in use, or the value itself
+	 */
+	T intern(T value) {
+		int hash = value.hashCode();
+		Map<T, WeakReference<T>> stripe = 
+				stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+		synchronized (stripe) {
+			WeakReference<T> ref = stripe.get(value);
+			T canonical = ref == null ? null : ref.get();
+			if (canonical == null) {
+				canonical = value;
+				stripe.put(value, new WeakReference<T>(value));
+			}
+			return canonical;
+		}
+	}
+
+}
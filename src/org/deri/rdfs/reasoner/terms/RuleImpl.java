@@ -18,7 +18,8 @@
  */
 package org.deri.rdfs.reasoner.terms;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.deri.rdfs.reasoner.api.terms.FMolecule;
@@ -31,6 +32,11 @@ import org.deri.rdfs.reasoner.api.terms.Rule;
  * 
  * A rule with only a head literal and an empty body is called a fact. 
  * A rule with only body literals and an empty head is called a constraint.
+ * <p>
+ * Rules are immutable, the body is copied and their hash code is computed 
+ * once. Rules created by {@link #create(FMolecule, List)} are interned, 
+ * equal interned rules are the same instance.
+ * </p>
  * 
  * <pre>
  *  Created on April 27th, 2007
@@ -42,10 +48,14 @@ import org.deri.rdfs.reasoner.api.terms.Rule;
  * @version $Revision: 1.1 $ $Date: 2007-05-24 07:02:21 $
  */
 public class RuleImpl implements Rule{
+	
+	private final static Interner<Rule> rules = new Interner<Rule>();
     
-    private List<FMolecule> body = null;
+    private final List<FMolecule> body;
     
-    private FMolecule head = null;
+    private final FMolecule head;
+    
+    private final int hash;
     
     /**
      * Creates a rule with the given head and body.
@@ -55,8 +65,14 @@ public class RuleImpl implements Rule{
      */
     public RuleImpl(FMolecule head, List<FMolecule> body) {
         super();
-        this.body = body;
+        this.body = body == null || body.isEmpty() 
+        		? Collections.<FMolecule>emptyList() 
+        		: Collections.unmodifiableList(new ArrayList<FMolecule>(body));
         this.head = head;
+    	int hash = 7;
+    	hash = 31 * hash + (null == head ? 0 : head.hashCode());
+    	hash = 31 * hash + this.body.hashCode();
+    	this.hash = hash;
     } 
     
     /**
@@ -64,7 +80,7 @@ public class RuleImpl implements Rule{
      * @param head
      */
     public RuleImpl(FMolecule head){
-        this(head, new LinkedList<FMolecule>());
+        this(head, null);
     }
     
     /**
@@ -76,7 +92,18 @@ public class RuleImpl implements Rule{
     }
     
     /**
-     * @return Returns the body.
+     * Returns the interned rule with the given head and body.
+     * 
+     * @param head the head, null for a constraint
+     * @param body the body, null or empty for a fact
+     * @return the canonical rule
+     */
+    public static Rule create(FMolecule head, List<FMolecule> body) {
+    	return rules.intern(new RuleImpl(head, body));
+    }
+    
+    /**
+     * @return Returns the body, which can't be modified.
      */
     public List<FMolecule> getBody() {
         return body;
@@ -90,10 +117,7 @@ public class RuleImpl implements Rule{
     }
    
     public boolean isFact(){
-        if (body == null || body.size() == 0){
-            return true;
-        }
-        return false;
+        return body.isEmpty();
     }
     
     public boolean isConstraint(){
@@ -146,8 +170,9 @@ public class RuleImpl implements Rule{
         if ((obj == null) || (obj.getClass() != this.getClass()))
             return false;
         RuleImpl r = (RuleImpl) obj;
-        return (head == r.head || (head != null && head.equals(r.head))) 
-        		&& (body == r.body || (body != null && body.equals(r.body)));
+        return hash == r.hash 
+        		&& (head == r.head || (head != null && head.equals(r.head))) 
+        		&& body.equals(r.body);
     }
 
     /**
@@ -166,9 +191,6 @@ public class RuleImpl implements Rule{
      * @see java.lang.Object#equals(Object)
      */
     public int hashCode() {
-    	int hash = 7;
-    	hash = 31 * hash + (null == head ? 0 : head.hashCode());
-    	hash = 31 * hash + (null == body ? 0 : body.hashCode());
     	return hash;
     }
     
@@ -0,0 +1,163 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package test.rdfs.reasoner;
+
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+import org.deri.rdfs.reasoner.api.Reasoner;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
+import org.deri.rdfs.reasoner.factory.RDFSReasonerFactoryImpl;
+import org.deri.rdfs.reasoner.io.RDFParser;
+import org.omwg.logicalexpression.LogicalExpression;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Ontology;
+import org.omwg.ontology.Variable;
+import org.openrdf.model.Graph;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+import org.wsmo.factory.Factory;
+import org.wsmo.factory.WsmoFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Base class of the tests running the parsed example file through both 
+ * reasoning engines, IRIS and the native engine.
+ */
+public abstract class EngineTestCase extends TestCase {
+
+	protected RDFSReasonerFactory reasonerFactory = null;
+
+	protected Map<String, Object> irisParams = null;
+
+	protected Map<String, Object> nativeParams = null;
+
+	protected Graph example = null;
+
+	protected String defaultNS = null;
+
+	protected Ontology ontology = null;
+
+	protected String[] queries = null;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		reasonerFactory = new RDFSReasonerFactoryImpl();
+		irisParams = new HashMap<String, Object>();
+		irisParams.put(RDFSReasonerFactory.PARAM_BUILT_IN_REASONER,
+				BuiltInReasoner.IRIS);
+		nativeParams = new HashMap<String, Object>();
+		nativeParams.put(RDFSReasonerFactory.PARAM_BUILT_IN_REASONER,
+				BuiltInReasoner.NATIVE);
+
+		// parse the example file
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put(RDFParser.RDF_SYNTAX, RDFParser.RDF_XML_SYNTAX);
+		RDFParser parser = new RDFParser(properties);
+		InputStreamReader reader = new InputStreamReader(ClassLoader
+                .getSystemResourceAsStream("test/rdfs/reasoner/entailment/test.rdfs"));
+		Map<String, Graph> parsedResult = parser.parse(reader, "");
+		Entry<String, Graph> entry = parsedResult.entrySet().iterator().next();
+		example = entry.getValue();
+		defaultNS = parser.getDefaultNS();
+
+		// create dummy wsml ontology to add namespaces
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		ontology = wsmoFactory.createOntology(
+				wsmoFactory.createIRI(defaultNS + "dummy"));
+		ontology.setDefaultNamespace(wsmoFactory.createIRI(defaultNS));
+		for (Entry<String, String> entryNS : parser.getNamespaces().entrySet()) {
+			ontology.addNamespace(wsmoFactory.createNamespace(entryNS.getKey(),
+					wsmoFactory.createIRI(entryNS.getValue())));
+		}
+
+		queries = new String[] {
+				"?x[?p hasValue ?y]",
+				"?x[_\"" + RDF.TYPE + "\" hasValue ?y]",
+				"?x[_\"" + RDFS.SUBCLASSOF + "\" hasValue ?y]",
+				"?x[_\"" + RDFS.SUBPROPERTYOF + "\" hasValue ?y]",
+				"?x[_\"" + RDFS.DOMAIN + "\" hasValue ?y]",
+				"?x[_\"" + RDFS.RANGE + "\" hasValue ?y]",
+				"?x[hasRelative hasValue ?y]",
+				"?x[hasName hasValue ?y]",
+				"?x[hasName hasValue \"John\"] and " +
+						"?x[_\"" + RDF.TYPE + "\" hasValue ?class]",
+				"?x[hasParent hasValue ?y] and ?y[hasName hasValue ?name]"};
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		reasonerFactory = null;
+		example = null;
+		ontology = null;
+		System.gc();
+	}
+
+	/**
+	 * @return the parameters of the engines to run a test with, IRIS 
+	 * first
+	 */
+	protected List<Map<String, Object>> getEngineParams() {
+		List<Map<String, Object>> params = new ArrayList<Map<String, Object>>();
+		params.add(irisParams);
+		params.add(nativeParams);
+		return params;
+	}
+
+	/**
+	 * @return the results of the queries for the example, in the order of 
+	 * the queries
+	 */
+	protected List<Set<Map<Variable, Term>>> getResults(Reasoner reasoner, 
+			String[] queries) throws Exception {
+		List<Set<Map<Variable, Term>>> results = 
+				new ArrayList<Set<Map<Variable, Term>>>();
+		for (String q : queries) {
+			results.add(reasoner.executeQuery(example, Factory
+					.createLogicalExpressionFactory(null)
+					.createLogicalExpression(q, ontology)));
+		}
+		return results;
+	}
+
+	protected void assertEqualResults(Reasoner expected, Reasoner actual)
+			throws Exception {
+		assertEqualResults(expected, actual, queries);
+	}
+
+	protected void assertEqualResults(Reasoner expected, Reasoner actual, 
+			String[] queries) throws Exception {
+		for (String q : queries) {
+			LogicalExpression query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(q, ontology);
+			assertEquals(q, expected.executeQuery(example, query), 
+					actual.executeQuery(example, query));
+		}
+	}
+
+}
@@ -19,6 +19,7 @@
 package test.rdfs.reasoner;
 
 import test.rdfs.reasoner.entailment.ERDFSEntailmentTest;
+import test.rdfs.reasoner.entailment.NativeEntailmentTest;
 import test.rdfs.reasoner.entailment.RDFEntailmentTest;
 import test.rdfs.reasoner.entailment.RDFSEntailmentTest;
 import test.rdfs.reasoner.io.RDFSParserTest;
@@ -56,6 +57,7 @@ public class ReasonerTests {
 	        suite.addTestSuite(RDFEntailmentTest.class);
 	        suite.addTestSuite(RDFSEntailmentTest.class);
 	        suite.addTestSuite(ERDFSEntailmentTest.class);
+	        suite.addTestSuite(NativeEntailmentTest.class);
 	        // $JUnit-END$
 	        return suite;
 	    }
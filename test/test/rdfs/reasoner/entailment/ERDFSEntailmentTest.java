@@ -26,11 +26,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import org.deri.rdfs.reasoner.api.OntologyLoader;
 import org.deri.rdfs.reasoner.api.Reasoner;
 import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.BuiltInReasoner;
 import org.deri.rdfs.reasoner.exception.NonStandardRDFSUseException;
 import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
 import org.deri.rdfs.reasoner.factory.RDFSReasonerFactoryImpl;
+import org.deri.rdfs.reasoner.impl.ERDFSReasonerImpl;
 import org.deri.rdfs.reasoner.io.RDFParser;
 import org.omwg.logicalexpression.LogicalExpression;
 import org.omwg.logicalexpression.terms.Term;
@@ -45,6 +49,7 @@ import org.openrdf.model.impl.GraphImpl;
 import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.StatementHandlerException;
 import org.openrdf.sesame.sail.StatementIterator;
 import org.openrdf.vocabulary.RDF;
 import org.openrdf.vocabulary.RDFS;
@@ -152,6 +157,136 @@ public class ERDFSEntailmentTest extends TestCase {
 		
 	}
 	
+	/**
+	 * Test that the non-standard uses are reported in a bounded way, and 
+	 * that they aren't reported again by the next registration.
+	 */
+	public void testBoundedNonStandardRDFSUse() throws Exception {
+		int size = 2 * ERDFSReasonerImpl.MAX_REPORTED_USAGES;
+		for (int i = 0; i < size; i++) {
+			graph.add(new StatementImpl(new URIImpl(namespace + "class" + i), 
+					new URIImpl(RDF.TYPE), new URIImpl(RDFS.CLASS)));
+		}
+		try {
+			reasoner.registerOntology(graph, namespace);
+			fail("Should fail because the given graph has non-standard use " +
+					"of the RDFS vocabulary.");
+		} catch (NonStandardRDFSUseException e) {
+			assertTrue(e.getMessage().indexOf(size + " statements") >= 0);
+			assertEquals(ERDFSReasonerImpl.MAX_REPORTED_USAGES, 
+					NonStandardRDFSUseException.getNonStandardRDFSUsages().size());
+		}
+		
+		Graph other = new GraphImpl();
+		other.add(new StatementImpl(new URIImpl(namespace + "Man"), 
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(RDFS.RESOURCE)));
+		try {
+			reasoner.registerOntology(other, namespace);
+			fail("Should fail because the given graph has non-standard use " +
+					"of the RDFS vocabulary.");
+		} catch (NonStandardRDFSUseException e) {
+			assertEquals(1, NonStandardRDFSUseException
+					.getNonStandardRDFSUsages().size());
+		}
+	}
+	
+	/**
+	 * Test that a loader deregisters the batches, which it registered 
+	 * already, when a later batch has non-standard use of the RDFS 
+	 * vocabulary.
+	 */
+	public void testFailedStreamingLoad() throws Exception {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(RDFSReasonerFactory.PARAM_BUILT_IN_REASONER, 
+				BuiltInReasoner.NATIVE);
+		reasoner = new RDFSReasonerFactoryImpl().createERDFSReasoner(params);
+		OntologyLoader loader = reasoner.openOntology(namespace);
+		URI knows = new URIImpl(namespace + "knows");
+		for (int i = 0; i < 100000; i++) {
+			loader.handleStatement(new URIImpl(namespace + "person" + i), 
+					knows, new URIImpl(namespace + "person" + (i + 1)));
+		}
+		loader.handleStatement(new URIImpl(namespace + "Man"), 
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(RDFS.RESOURCE));
+		try {
+			loader.close();
+			fail("Should fail because the given statements have non-standard " +
+					"use of the RDFS vocabulary.");
+		} catch (NonStandardRDFSUseException e) {
+			// expected
+		}
+		
+		// create dummy wsml ontology to add namespace
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		Ontology ontology = wsmoFactory.createOntology(
+				wsmoFactory.createIRI(namespace + "dummy"));
+		ontology.setDefaultNamespace(wsmoFactory.createIRI(namespace));
+		LogicalExpression query = Factory.createLogicalExpressionFactory(null).
+				createLogicalExpression("?x[knows hasValue ?y]", ontology);
+		assertTrue(reasoner.executeQuery(graph, query).isEmpty());
+		
+		try {
+			loader.handleStatement(new URIImpl(namespace + "anna"), knows, 
+					new URIImpl(namespace + "john"));
+			fail("The loader should be closed");
+		} catch (StatementHandlerException e) {
+			// expected
+		}
+	}
+	
+	/**
+	 * Test that a loader can't be opened for a registered ontology, and 
+	 * that a failed loader doesn't remove the statements registered for 
+	 * another ontology.
+	 */
+	public void testFailedStreamingLoadKeepsRegistered() throws Exception {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(RDFSReasonerFactory.PARAM_BUILT_IN_REASONER, 
+				BuiltInReasoner.NATIVE);
+		reasoner = new RDFSReasonerFactoryImpl().createERDFSReasoner(params);
+		URI knows = new URIImpl(namespace + "knows");
+		graph.add(new StatementImpl(new URIImpl(namespace + "anna"), knows, 
+				new URIImpl(namespace + "john")));
+		reasoner.registerOntology(graph, namespace);
+		try {
+			reasoner.openOntology(namespace);
+			fail("The ontology is registered already");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		
+		OntologyLoader loader = reasoner.openOntology(namespace + "other");
+		loader.handleStatement(new URIImpl(namespace + "mary"), knows, 
+				new URIImpl(namespace + "john"));
+		loader.handleStatement(new URIImpl(namespace + "Man"), 
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(RDFS.RESOURCE));
+		try {
+			loader.close();
+			fail("Should fail because the given statements have non-standard " +
+					"use of the RDFS vocabulary.");
+		} catch (NonStandardRDFSUseException e) {
+			// expected
+		}
+		
+		// create dummy wsml ontology to add namespace
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		Ontology ontology = wsmoFactory.createOntology(
+				wsmoFactory.createIRI(namespace + "dummy"));
+		ontology.setDefaultNamespace(wsmoFactory.createIRI(namespace));
+		LogicalExpression query = Factory.createLogicalExpressionFactory(null).
+				createLogicalExpression("?x[knows hasValue ?y]", ontology);
+		Set<Map<Variable, Term>> result = reasoner.executeQuery(graph, query);
+		assertEquals(1, result.size());
+		Map<Variable, Term> binding = result.iterator().next();
+		assertEquals(wsmoFactory.createIRI(namespace + "anna"), 
+				binding.get(factory.createVariable("x")));
+		
+		// once deregistered, a loader can be opened for the ontology again
+		reasoner.deRegisterOntology(graph, namespace);
+		loader = reasoner.openOntology(namespace);
+		loader.close();
+	}
+	
 	/**
 	 * Test the eRDFS entailment with simple queries.
 	 */	
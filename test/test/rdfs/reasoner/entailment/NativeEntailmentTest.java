@@ -0,0 +1,386 @@
+/*
+ * RDFS Reasoner Implementation.
+ *
+ * Copyright (c) 2007, University of Innsbruck, Austria.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * You should have received a copy of the GNU Lesser General Public License along
+ * with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package test.rdfs.reasoner.entailment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.deri.rdfs.reasoner.api.QueryCursor;
+import org.deri.rdfs.reasoner.api.Reasoner;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory.EvaluationStrategy;
+import org.omwg.logicalexpression.LogicalExpression;
+import org.omwg.logicalexpression.terms.Term;
+import org.omwg.ontology.Variable;
+import org.openrdf.model.Graph;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.GraphImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.vocabulary.RDF;
+import org.openrdf.vocabulary.RDFS;
+import org.wsmo.factory.Factory;
+
+import test.rdfs.reasoner.EngineTestCase;
+
+/**
+ * Test comparing the native reasoning engine with IRIS.
+ */
+public class NativeEntailmentTest extends EngineTestCase {
+
+	/**
+	 * Test the RDF entailment of both engines.
+	 */
+	public void testRDFEntailment() throws Exception {
+		compare(reasonerFactory.createRDFReasoner(irisParams),
+				reasonerFactory.createRDFReasoner(nativeParams));
+	}
+
+	/**
+	 * Test the RDFS entailment of both engines.
+	 */
+	public void testRDFSEntailment() throws Exception {
+		compare(reasonerFactory.createRDFSReasoner(irisParams),
+				reasonerFactory.createRDFSReasoner(nativeParams));
+	}
+
+	/**
+	 * Test the eRDFS entailment of both engines.
+	 */
+	public void testERDFSEntailment() throws Exception {
+		compare(reasonerFactory.createERDFSReasoner(irisParams),
+				reasonerFactory.createERDFSReasoner(nativeParams));
+	}
+
+	/**
+	 * Test adding statements and deregistering ontologies with the native
+	 * engine.
+	 */
+	public void testAddAndDeRegister() throws Exception {
+		Reasoner iris = reasonerFactory.createRDFSReasoner(irisParams);
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		Graph graph2 = new GraphImpl();
+		graph2.add(new StatementImpl(new URIImpl(defaultNS + "mary"),
+				new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(defaultNS + "john")));
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.registerOntology(example, defaultNS);
+			reasoner.registerOntology(graph2, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(RDFS.SUBPROPERTYOF),
+				new URIImpl(defaultNS + "hasAncestor")));
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.addStatements(statements, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.deRegisterOntology(graph2, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test closing deep and cyclic class and property hierarchies with the 
+	 * native engine, when they are registered and when they are extended.
+	 */
+	public void testHierarchies() throws Exception {
+		Reasoner iris = reasonerFactory.createRDFSReasoner(irisParams);
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		Graph hierarchies = new GraphImpl();
+		for (int i = 1; i < 30; i++) {
+			hierarchies.add(new StatementImpl(new URIImpl(defaultNS + "C" + i),
+					new URIImpl(RDFS.SUBCLASSOF),
+					new URIImpl(defaultNS + "C" + (i - 1))));
+		}
+		hierarchies.add(new StatementImpl(new URIImpl(defaultNS + "C10"),
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(defaultNS + "C20")));
+		hierarchies.add(new StatementImpl(new URIImpl(defaultNS + "C0"),
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(defaultNS + "Person")));
+		hierarchies.add(new StatementImpl(new URIImpl(defaultNS + "anna"),
+				new URIImpl(RDF.TYPE), new URIImpl(defaultNS + "C29")));
+		hierarchies.add(new StatementImpl(new URIImpl(defaultNS + "hasRelative"),
+				new URIImpl(RDFS.SUBPROPERTYOF),
+				new URIImpl(defaultNS + "hasParent")));
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.registerOntology(example, defaultNS);
+			reasoner.registerOntology(hierarchies, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		// a single new edge closes a cycle through the whole chain
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(defaultNS + "C0"),
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(defaultNS + "C29")));
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.addStatements(statements, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.deRegisterOntology(hierarchies, defaultNS + "2");
+		}
+		assertEqualResults(iris, nativ);
+
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test replacing instance data under an unchanged schema with the 
+	 * native engine, which keeps the closure of the schema, against a 
+	 * reasoner computing the closure from scratch.
+	 */
+	public void testInstanceChanges() throws Exception {
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		nativ.registerOntology(example, defaultNS);
+		for (int i = 0; i < 3; i++) {
+			Graph instances = new GraphImpl();
+			instances.add(new StatementImpl(new URIImpl(defaultNS + "mary" + i),
+					new URIImpl(defaultNS + "hasFather"),
+					new URIImpl(defaultNS + "john")));
+			instances.add(new StatementImpl(new URIImpl(defaultNS + "anna"),
+					new URIImpl(defaultNS + "hasMother"),
+					new URIImpl(defaultNS + "mary" + i)));
+			nativ.registerOntology(instances, defaultNS + i);
+			Reasoner reference = reasonerFactory.createRDFSReasoner(
+					nativeParams);
+			reference.registerOntology(example, defaultNS);
+			reference.registerOntology(instances, defaultNS + i);
+			assertEqualResults(reference, nativ);
+			reference.deRegisterOntology(instances, defaultNS + i);
+
+			nativ.deRegisterOntology(instances, defaultNS + i);
+			assertEqualResults(reference, nativ);
+			reference.deRegisterOntology(example, defaultNS);
+		}
+		nativ.deRegisterOntology(example, defaultNS);
+	}
+
+	/**
+	 * Test restoring the registered ontologies and their closure from a 
+	 * snapshot of the native engine.
+	 */
+	public void testSnapshot() throws Exception {
+		String xsd = "http://www.w3.org/2001/XMLSchema#";
+		Reasoner original = reasonerFactory.createERDFSReasoner(nativeParams);
+		Graph graph2 = new GraphImpl();
+		URIImpl mary = new URIImpl(defaultNS + "mary");
+		graph2.add(new StatementImpl(mary, new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(defaultNS + "john")));
+		graph2.add(new StatementImpl(mary, new URIImpl(defaultNS + "hasAge"), 
+				new LiteralImpl("42", new URIImpl(xsd + "int"))));
+		graph2.add(new StatementImpl(mary, new URIImpl(defaultNS + "hasHeight"), 
+				new LiteralImpl("1.75", new URIImpl(xsd + "double"))));
+		graph2.add(new StatementImpl(mary, new URIImpl(defaultNS + "isMarried"), 
+				new LiteralImpl("true", new URIImpl(xsd + "boolean"))));
+		String[] typed = new String[] {
+				"?x[hasAge hasValue 42]",
+				"?x[hasHeight hasValue ?y]",
+				"?x[isMarried hasValue ?y]"};
+		original.registerOntology(example, defaultNS);
+		original.registerOntology(graph2, defaultNS + "2");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		original.writeSnapshot(out);
+
+		Reasoner restored = reasonerFactory.createERDFSReasoner(nativeParams);
+		restored.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+		assertEqualResults(original, restored);
+		for (String q : typed) {
+			LogicalExpression query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(q, ontology);
+			assertEquals(q, 1, restored.executeQuery(example, query).size());
+		}
+
+		// the registered facts are restored as well
+		original.deRegisterOntology(graph2, defaultNS + "2");
+		restored.deRegisterOntology(graph2, defaultNS + "2");
+		assertEqualResults(original, restored);
+
+		try {
+			reasonerFactory.createRDFSReasoner(nativeParams).readSnapshot(
+					new ByteArrayInputStream(out.toByteArray()));
+			fail("A snapshot of another type of reasoner was read");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			reasonerFactory.createERDFSReasoner(irisParams).writeSnapshot(
+					new ByteArrayOutputStream());
+			fail("IRIS wrote a snapshot");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		original.deRegisterOntology(example, defaultNS);
+		restored.deRegisterOntology(example, defaultNS);
+	}
+
+	/**
+	 * Test that a cursor of the native engine keeps its results, while 
+	 * statements are added, and fails after an ontology was deregistered.
+	 */
+	public void testCursorModification() throws Exception {
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		nativ.registerOntology(example, defaultNS);
+
+		// the cursor keeps its results, while new statements are added
+		LogicalExpression query = Factory.createLogicalExpressionFactory(
+				null).createLogicalExpression(queries[0], ontology);
+		Set<Map<Variable, Term>> expected = nativ.executeQuery(example, query);
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		QueryCursor cursor = nativ.executeQuery(example, query, 0, -1);
+		assertTrue(cursor.hasNext());
+		result.add(cursor.next());
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(defaultNS + "anna"), 
+				new URIImpl(defaultNS + "hasChild"), 
+				new URIImpl(defaultNS + "tom")));
+		nativ.addStatements(statements, defaultNS);
+		while (cursor.hasNext()) {
+			result.add(cursor.next());
+		}
+		assertEquals(expected, result);
+		
+		// the cursor fails, after an ontology was deregistered
+		cursor = nativ.executeQuery(example, query, 0, -1);
+		assertTrue(cursor.hasNext());
+		cursor.next();
+		nativ.deRegisterOntology(example, defaultNS);
+		try {
+			cursor.next();
+			fail("The cursor should have failed");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Test answering selective queries goal directed, without computing 
+	 * the closure.
+	 */
+	public void testGoalDirected() throws Exception {
+		Map<String, Object> goalParams = 
+				new HashMap<String, Object>(nativeParams);
+		goalParams.put(RDFSReasonerFactory.PARAM_EVALUATION_STRATEGY, 
+				EvaluationStrategy.GOAL_DIRECTED);
+		String[] selective = new String[] {
+				"hasMother[_\"" + RDFS.SUBPROPERTYOF + "\" hasValue ?y]",
+				"?x[_\"" + RDFS.SUBCLASSOF + "\" hasValue Person]",
+				"?x[_\"" + RDF.TYPE + "\" hasValue Person]",
+				"anna[_\"" + RDF.TYPE + "\" hasValue ?y]",
+				"john[?p hasValue ?y]",
+				"?x[?p hasValue mary]",
+				"?x[hasName hasValue \"John\"] and " +
+						"?x[_\"" + RDF.TYPE + "\" hasValue ?class]",
+				// needs every triple, so the closure is computed
+				"?x[_\"" + RDF.TYPE + "\" hasValue _\"" + RDF.PROPERTY + "\"]"};
+		Graph graph2 = new GraphImpl();
+		graph2.add(new StatementImpl(new URIImpl(defaultNS + "mary"),
+				new URIImpl(defaultNS + "hasMother"),
+				new URIImpl(defaultNS + "anna")));
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(defaultNS + "mary"),
+				new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(defaultNS + "john")));
+
+		for (int i = 0; i < 3; i++) {
+			Reasoner[] reasoners = new Reasoner[2];
+			for (int j = 0; j < 2; j++) {
+				Map<String, Object> params = j == 0 ? nativeParams : goalParams;
+				reasoners[j] = i == 0 ? reasonerFactory.createRDFReasoner(params)
+						: i == 1 ? reasonerFactory.createRDFSReasoner(params)
+						: reasonerFactory.createERDFSReasoner(params);
+				reasoners[j].registerOntology(example, defaultNS);
+				reasoners[j].registerOntology(graph2, defaultNS + "2");
+			}
+			assertEqualResults(reasoners[0], reasoners[1], selective);
+
+			for (Reasoner reasoner : reasoners) {
+				reasoner.addStatements(statements, defaultNS + "2");
+			}
+			assertEqualResults(reasoners[0], reasoners[1], selective);
+
+			for (Reasoner reasoner : reasoners) {
+				reasoner.deRegisterOntology(graph2, defaultNS + "2");
+			}
+			assertEqualResults(reasoners[0], reasoners[1], selective);
+
+			for (Reasoner reasoner : reasoners) {
+				reasoner.deRegisterOntology(example, defaultNS);
+			}
+		}
+	}
+
+	/**
+	 * Test registering a example, which is converted in several chunks, and 
+	 * whose blank node occurs in all of them.
+	 */
+	public void testParallelConversion() throws Exception {
+		int size = 25000;
+		Graph large = new GraphImpl();
+		BNodeImpl box = new BNodeImpl("box");
+		URIImpl contains = new URIImpl(defaultNS + "contains");
+		for (int i = 0; i < size; i++) {
+			large.add(new StatementImpl(box, contains, 
+					new URIImpl(defaultNS + "item" + i)));
+		}
+		Reasoner reasoner = reasonerFactory.createRDFSReasoner(nativeParams);
+		reasoner.registerOntology(large, defaultNS);
+		LogicalExpression query = Factory.createLogicalExpressionFactory(
+				null).createLogicalExpression("?x[contains hasValue ?y]", 
+				ontology);
+		Set<Map<Variable, Term>> result = reasoner.executeQuery(large, query);
+		assertEquals(size, result.size());
+		Set<Term> boxes = new HashSet<Term>();
+		for (Map<Variable, Term> binding : result) {
+			boxes.addAll(binding.values());
+		}
+		assertEquals(size + 1, boxes.size());
+		reasoner.deRegisterOntology(large, defaultNS);
+	}
+
+	private void compare(Reasoner iris, Reasoner nativ) throws Exception {
+		iris.registerOntology(example, defaultNS);
+		nativ.registerOntology(example, defaultNS);
+
+		assertEqualResults(iris, nativ);
+
+		iris.deRegisterOntology(example, defaultNS);
+		nativ.deRegisterOntology(example, defaultNS);
+	}
+
+}
@@ -48,7 +48,7 @@ import org.openrdf.vocabulary.RDFS;
 import org.wsmo.factory.Factory;
 import org.wsmo.factory.WsmoFactory;
 
-import junit.framework.TestCase;
+import test.rdfs.reasoner.EngineTestCase;
 
 /**
  * Test for RDFS entailment.
@@ -62,7 +62,7 @@ import junit.framework.TestCase;
  * @author Nathalie Steinmetz, DERI Innsbruck
  * @version $Revision: 1.1 $ $Date: 2007-05-24 07:02:22 $
  */
-public class RDFEntailmentTest extends TestCase {
+public class RDFEntailmentTest extends EngineTestCase {
 	
 	private EntityFactory factory = null;
 	
@@ -547,7 +547,110 @@ public class RDFEntailmentTest extends TestCase {
         assertTrue(in);
         in = false;
 	}
-	
+
+	/**
+	 * Test the RDF entailment with statements added after the registration.
+	 */
+	public void testAddStatements() throws Exception {
+		// setup test ontology
+		setupTestOntology();
+
+		// create dummy wsml ontology to add namespace
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		Ontology ontology = wsmoFactory.createOntology(
+				wsmoFactory.createIRI(namespace + "dummy"));
+		ontology.setDefaultNamespace(wsmoFactory.createIRI(namespace));
+
+		// create queries
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		LogicalExpression query = Factory.createLogicalExpressionFactory(null).
+				createLogicalExpression("?x[_\"" + RDF.TYPE +
+						"\" hasValue _\"" + RDF.PROPERTY + "\"]", ontology);
+		LogicalExpression conjQuery = Factory.createLogicalExpressionFactory(null).
+				createLogicalExpression("?x[hasFriend hasValue ?y] and " +
+						"?y[hasName hasValue ?name]", ontology);
+
+		reasoner.registerOntology(graph, "");
+		result = reasoner.executeQuery(graph, query);
+		assertEquals(result.size(), 8);
+		result = reasoner.executeQuery(graph, conjQuery);
+		assertEquals(result.size(), 0);
+
+		// add a statement with a new property
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(namespace + "john"),
+				new URIImpl(namespace + "hasFriend"),
+				new URIImpl(namespace + "anna")));
+		reasoner.addStatements(statements, "");
+
+		result = reasoner.executeQuery(graph, query);
+		assertEquals(result.size(), 9);
+		boolean in = false;
+        for (Map<Variable, Term> vBinding : result) {
+        	if (vBinding.containsValue(factory.createIdentifier(namespace + "hasFriend"))) {
+        		in = true;
+        	}
+        }
+        assertTrue(in);
+
+		result = reasoner.executeQuery(graph, conjQuery);
+
+        reasoner.deRegisterOntology(graph, "");
+
+        assertEquals(result.size(), 1);
+        in = false;
+        for (Map<Variable, Term> vBinding : result) {
+        	if (vBinding.containsKey(factory.createVariable("name")) && vBinding.containsValue(
+        			Factory.createDataFactory(null).createWsmlString("Anna"))) {
+        		in = true;
+        	}
+        }
+        assertTrue(in);
+	}
+
+	/**
+	 * Test converting literals by their datatypes and language tags with 
+	 * both engines.
+	 */
+	public void testTypedLiterals() throws Exception {
+		String xsd = "http://www.w3.org/2001/XMLSchema#";
+		Graph literals = new GraphImpl();
+		URIImpl anna = new URIImpl(defaultNS + "anna");
+		literals.add(new StatementImpl(anna, new URIImpl(defaultNS + "hasAge"), 
+				new LiteralImpl("42", new URIImpl(xsd + "int"))));
+		literals.add(new StatementImpl(anna, new URIImpl(defaultNS + "hasHeight"), 
+				new LiteralImpl("1.75", new URIImpl(xsd + "double"))));
+		literals.add(new StatementImpl(anna, new URIImpl(defaultNS + "isMarried"), 
+				new LiteralImpl("true", new URIImpl(xsd + "boolean"))));
+		literals.add(new StatementImpl(anna, new URIImpl(defaultNS + "hasNick"), 
+				new LiteralImpl("42", "en")));
+		literals.add(new StatementImpl(anna, new URIImpl(defaultNS + "hasCode"), 
+				new LiteralImpl("abc", new URIImpl(xsd + "int"))));
+		String[] typed = new String[] {
+				"?x[hasAge hasValue ?y]",
+				"?x[hasAge hasValue 42]",
+				"?x[hasHeight hasValue ?y]",
+				"?x[isMarried hasValue ?y]",
+				"?x[hasNick hasValue ?y]",
+				"?x[hasNick hasValue \"42\"]",
+				"?x[hasCode hasValue \"abc\"]"};
+
+		Reasoner iris = reasonerFactory.createRDFSReasoner(irisParams);
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.registerOntology(literals, defaultNS);
+			for (String q : typed) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(q, ontology);
+				assertEquals(q, 1, reasoner.executeQuery(example, query).size());
+			}
+		}
+		assertEqualResults(iris, nativ, typed);
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.deRegisterOntology(literals, defaultNS);
+		}
+	}
+
 	/*
 	 * The following statements are taken as RDFS test statements.
 	 */
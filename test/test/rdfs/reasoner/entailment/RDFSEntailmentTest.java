@@ -19,14 +19,23 @@
 package test.rdfs.reasoner.entailment;
 
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import org.deri.rdfs.reasoner.api.OntologyLoader;
+import org.deri.rdfs.reasoner.api.PreparedQuery;
+import org.deri.rdfs.reasoner.api.QueryCursor;
 import org.deri.rdfs.reasoner.api.Reasoner;
 import org.deri.rdfs.reasoner.api.factory.EntityFactory;
+import org.deri.rdfs.reasoner.api.factory.RDFSReasonerFactory;
+import org.deri.rdfs.reasoner.builtin.AbstractQueryCursor;
 import org.deri.rdfs.reasoner.factory.EntityFactoryImpl;
 import org.deri.rdfs.reasoner.factory.RDFSReasonerFactoryImpl;
 import org.deri.rdfs.reasoner.io.RDFParser;
@@ -39,16 +48,18 @@ import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.impl.BNodeImpl;
 import org.openrdf.model.impl.GraphImpl;
 import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.sesame.sail.StatementIterator;
 import org.openrdf.vocabulary.RDF;
 import org.openrdf.vocabulary.RDFS;
 import org.wsmo.factory.Factory;
 import org.wsmo.factory.WsmoFactory;
 
-import junit.framework.TestCase;
+import test.rdfs.reasoner.EngineTestCase;
 
 /**
  * Test for RDFS entailment.
@@ -62,7 +73,7 @@ import junit.framework.TestCase;
  * @author Nathalie Steinmetz, DERI Innsbruck
  * @version $Revision: 1.1 $ $Date: 2007-05-24 07:02:22 $
  */
-public class RDFSEntailmentTest extends TestCase {
+public class RDFSEntailmentTest extends EngineTestCase {
 	
 	private EntityFactory factory = null;
 	
@@ -708,6 +719,596 @@ public class RDFSEntailmentTest extends TestCase {
         in = false;
 	}
 	
+	/**
+	 * Test the deregistration of one of several registered ontologies.
+	 */	
+	public void testDeRegisterOneOntology() throws Exception {	
+		// setup test ontologies
+		setupTestOntology();
+		Graph graph2 = new GraphImpl();
+		graph2.add(new StatementImpl(new URIImpl(namespace + "mary"), 
+				new URIImpl(RDF.TYPE), new URIImpl(namespace + "Person")));
+		graph2.add(new StatementImpl(new URIImpl(namespace + "Person"), 
+				new URIImpl(RDFS.SUBCLASSOF), new URIImpl(namespace + "Animal")));
+		
+		// create dummy wsml ontology to add namespace
+		WsmoFactory wsmoFactory = Factory.createWsmoFactory(null);
+		Ontology ontology = wsmoFactory.createOntology(
+				wsmoFactory.createIRI(namespace + "dummy"));
+		ontology.setDefaultNamespace(wsmoFactory.createIRI(namespace));
+		
+		// create query
+		Set<Map<Variable, Term>> result = new HashSet<Map<Variable, Term>>();
+		LogicalExpression query = Factory.createLogicalExpressionFactory(null).
+			createLogicalExpression("?x[_\"" + RDF.TYPE + "\" hasValue Animal]", 
+					ontology);
+		Map<Variable, Term> john = new HashMap<Variable, Term>();
+		john.put(factory.createVariable("x"), 
+				factory.createIdentifier(namespace + "john"));
+		Map<Variable, Term> mary = new HashMap<Variable, Term>();
+		mary.put(factory.createVariable("x"), 
+				factory.createIdentifier(namespace + "mary"));
+		
+		reasoner.registerOntology(graph, namespace + "a");
+		reasoner.registerOntology(graph2, namespace + "b");
+		result = reasoner.executeQuery(graph, query);
+		assertTrue(result.contains(john));
+		assertTrue(result.contains(mary));
+		
+		// mary is only described in the second ontology
+		reasoner.deRegisterOntology(graph2, namespace + "b");
+		result = reasoner.executeQuery(graph, query);
+		assertTrue(result.contains(john));
+		assertFalse(result.contains(mary));
+		
+		// the subclass statement is still asserted by the second ontology
+		reasoner.registerOntology(graph2, namespace + "b");
+		reasoner.deRegisterOntology(graph, namespace + "a");
+		result = reasoner.executeQuery(graph2, query);
+		
+		reasoner.deRegisterOntology(graph2, namespace + "b");
+		
+		assertFalse(result.contains(john));
+		assertTrue(result.contains(mary));
+	}
+	
+	/**
+	 * Test evaluating queries from several threads at the same time with 
+	 * both engines.
+	 */
+	public void testConcurrentQueries() throws Exception {
+		Reasoner iris = reasonerFactory.createRDFSReasoner(irisParams);
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		for (final Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.registerOntology(example, defaultNS);
+			final List<LogicalExpression> expressions = 
+					new ArrayList<LogicalExpression>();
+			final List<Set<Map<Variable, Term>>> expected = 
+					new ArrayList<Set<Map<Variable, Term>>>();
+			for (String q : queries) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(q, ontology);
+				expressions.add(query);
+				expected.add(reasoner.executeQuery(example, query));
+			}
+			
+			final List<Throwable> failures = 
+					Collections.synchronizedList(new ArrayList<Throwable>());
+			Thread[] threads = new Thread[8];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread() {
+					public void run() {
+						try {
+							for (int j = 0; j < 5; j++) {
+								for (int k = 0; k < expressions.size(); k++) {
+									assertEquals(expected.get(k), reasoner
+											.executeQuery(example, expressions.get(k)));
+								}
+							}
+						} catch (Throwable t) {
+							failures.add(t);
+						}
+					}
+				};
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertTrue(failures.toString(), failures.isEmpty());
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test that cached query results are the same as uncached ones, also 
+	 * after the knowledge base changed.
+	 */
+	public void testCachedQueries() throws Exception {
+		Map<String, Object> cachedParams = 
+				new HashMap<String, Object>(nativeParams);
+		cachedParams.put(RDFSReasonerFactory.PARAM_QUERY_CACHE_SIZE, 1000);
+		Map<String, Object> smallParams = 
+				new HashMap<String, Object>(cachedParams);
+		smallParams.put(RDFSReasonerFactory.PARAM_QUERY_CACHE_BINDINGS, 5);
+		Reasoner cached = reasonerFactory.createRDFSReasoner(cachedParams);
+		Reasoner small = reasonerFactory.createRDFSReasoner(smallParams);
+		Reasoner uncached = reasonerFactory.createRDFSReasoner(nativeParams);
+		Graph graph2 = new GraphImpl();
+		graph2.add(new StatementImpl(new URIImpl(defaultNS + "mary"),
+				new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(defaultNS + "john")));
+		Graph statements = new GraphImpl();
+		statements.add(new StatementImpl(new URIImpl(defaultNS + "hasFather"),
+				new URIImpl(RDFS.SUBPROPERTYOF),
+				new URIImpl(defaultNS + "hasParent")));
+
+		for (Reasoner reasoner : new Reasoner[] {cached, small, uncached}) {
+			reasoner.registerOntology(example, defaultNS);
+			reasoner.registerOntology(graph2, defaultNS + "2");
+		}
+		assertEqualResults(cached, uncached);
+		assertEqualResults(cached, uncached);
+		// only the results with up to five bindings are cached
+		assertEqualResults(small, uncached);
+		assertEqualResults(small, uncached);
+
+		for (Reasoner reasoner : new Reasoner[] {cached, small, uncached}) {
+			reasoner.addStatements(statements, defaultNS + "2");
+		}
+		assertEqualResults(cached, uncached);
+		assertEqualResults(small, uncached);
+
+		for (Reasoner reasoner : new Reasoner[] {cached, small, uncached}) {
+			reasoner.deRegisterOntology(graph2, defaultNS + "2");
+		}
+		assertEqualResults(cached, uncached);
+		assertEqualResults(small, uncached);
+
+		for (Reasoner reasoner : new Reasoner[] {cached, small, uncached}) {
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test reading the results of the queries through cursors, page by 
+	 * page, with both engines.
+	 */
+	public void testQueryCursor() throws Exception {
+		Reasoner iris = reasonerFactory.createRDFSReasoner(irisParams);
+		Reasoner nativ = reasonerFactory.createRDFSReasoner(nativeParams);
+		for (Reasoner reasoner : new Reasoner[] {iris, nativ}) {
+			reasoner.registerOntology(example, defaultNS);
+			for (String q : queries) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(q, ontology);
+				Set<Map<Variable, Term>> expected = 
+						reasoner.executeQuery(example, query);
+
+				// all results at once
+				Set<Map<Variable, Term>> result = 
+						new HashSet<Map<Variable, Term>>();
+				QueryCursor cursor = reasoner.executeQuery(example, query, 0, -1);
+				while (cursor.hasNext()) {
+					assertTrue(q, result.add(cursor.next()));
+				}
+				assertEquals(q, expected, result);
+
+				// page by page
+				result.clear();
+				for (int offset = 0; offset <= expected.size(); offset += 7) {
+					cursor = reasoner.executeQuery(example, query, offset, 7);
+					int count = 0;
+					while (cursor.hasNext()) {
+						assertTrue(q, result.add(cursor.next()));
+						count++;
+					}
+					assertEquals(q, Math.min(7, expected.size() - offset), 
+							count);
+				}
+				assertEquals(q, expected, result);
+				
+				assertFalse(q, reasoner.executeQuery(example, query, 0, 0)
+						.hasNext());
+			}
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test checking the entailment of statements and ground queries with 
+	 * both engines.
+	 */
+	public void testEntails() throws Exception {
+		Statement relative = new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(defaultNS + "hasRelative"), 
+				new URIImpl(defaultNS + "anna"));
+		Statement name = new StatementImpl(new URIImpl(defaultNS + "anna"),
+				new URIImpl(defaultNS + "hasName"), new LiteralImpl("Anna"));
+		Statement person = new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(RDF.TYPE), new URIImpl(defaultNS + "Person"));
+		Statement woman = new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(RDF.TYPE), new URIImpl(defaultNS + "Woman"));
+		BNodeImpl blank = new BNodeImpl("b");
+		Statement blankMother = new StatementImpl(blank,
+				new URIImpl(defaultNS + "hasMother"), 
+				new URIImpl(defaultNS + "anna"));
+		Statement blankName = new StatementImpl(blank,
+				new URIImpl(defaultNS + "hasName"), new LiteralImpl("John"));
+		Statement blankSelf = new StatementImpl(blank,
+				new URIImpl(defaultNS + "hasMother"), blank);
+
+		for (Reasoner reasoner : new Reasoner[] {
+				reasonerFactory.createRDFSReasoner(irisParams), 
+				reasonerFactory.createRDFSReasoner(nativeParams)}) {
+			reasoner.registerOntology(example, defaultNS);
+			assertTrue(reasoner.entails(example, relative));
+			assertTrue(reasoner.entails(example, name));
+			assertTrue(reasoner.entails(example, person));
+			assertFalse(reasoner.entails(example, woman));
+			assertTrue(reasoner.entails(example, new HashSet<Statement>(
+					Arrays.asList(relative, name, person))));
+			assertFalse(reasoner.entails(example, new HashSet<Statement>(
+					Arrays.asList(relative, woman, person))));
+			assertTrue(reasoner.entails(example, new HashSet<Statement>(
+					Arrays.asList(blankMother, blankName))));
+			assertFalse(reasoner.entails(example, blankSelf));
+
+			assertTrue(reasoner.executeGroundQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("john[hasRelative hasValue anna]", 
+					ontology)));
+			assertFalse(reasoner.executeGroundQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("anna[hasRelative hasValue john]", 
+					ontology)));
+
+			// the checked relations follow the changes of the facts
+			Graph women = new GraphImpl();
+			women.add(woman);
+			reasoner.registerOntology(women, defaultNS + "2");
+			assertTrue(reasoner.entails(example, woman));
+			reasoner.deRegisterOntology(women, defaultNS + "2");
+			assertFalse(reasoner.entails(example, woman));
+			assertTrue(reasoner.entails(example, person));
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test that a statement with a data value, which is derived through a 
+	 * sub property, is entailed and answers a ground query with both 
+	 * engines.
+	 */
+	public void testEntailsDerivedValue() throws Exception {
+		Graph names = new GraphImpl();
+		names.add(new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(defaultNS + "hasName"), new LiteralImpl("John")));
+		names.add(new StatementImpl(new URIImpl(defaultNS + "hasName"),
+				new URIImpl(RDFS.SUBPROPERTYOF), new URIImpl(RDFS.LABEL)));
+		Statement label = new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(RDFS.LABEL), new LiteralImpl("John"));
+
+		for (Reasoner reasoner : new Reasoner[] {
+				reasonerFactory.createRDFSReasoner(irisParams), 
+				reasonerFactory.createRDFSReasoner(nativeParams)}) {
+			reasoner.registerOntology(names, defaultNS);
+			assertTrue(reasoner.entails(names, label));
+			assertTrue(reasoner.executeGroundQuery(names, Factory
+					.createLogicalExpressionFactory(null)
+					.createLogicalExpression("john[_\"" + RDFS.LABEL 
+					+ "\" hasValue \"John\"]", ontology)));
+			reasoner.deRegisterOntology(names, defaultNS);
+		}
+	}
+
+	/**
+	 * Test that variable values match the values of all datatypes of a 
+	 * predicate, also derived ones, and that the datatypes of a 
+	 * deregistered ontology are dropped, with both engines.
+	 */
+	public void testDeregisteredDatatypes() throws Exception {
+		String other = "http://www.example.org/other#";
+		Graph names = new GraphImpl();
+		names.add(new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(defaultNS + "knows"), new LiteralImpl("Mary")));
+		names.add(new StatementImpl(new URIImpl(defaultNS + "knows"),
+				new URIImpl(RDFS.SUBPROPERTYOF), new URIImpl(RDFS.LABEL)));
+		Graph persons = new GraphImpl();
+		persons.add(new StatementImpl(new URIImpl(defaultNS + "john"),
+				new URIImpl(defaultNS + "knows"), 
+				new URIImpl(defaultNS + "mary")));
+		LogicalExpression knows = Factory.createLogicalExpressionFactory(null)
+				.createLogicalExpression("john[_\"" + defaultNS 
+				+ "knows\" hasValue ?y]", ontology);
+		LogicalExpression label = Factory.createLogicalExpressionFactory(null)
+				.createLogicalExpression("john[_\"" + RDFS.LABEL 
+				+ "\" hasValue ?y]", ontology);
+
+		for (Reasoner reasoner : new Reasoner[] {
+				reasonerFactory.createRDFSReasoner(irisParams), 
+				reasonerFactory.createRDFSReasoner(nativeParams)}) {
+			reasoner.registerOntology(names, defaultNS);
+			assertEquals(1, reasoner.executeQuery(names, label).size());
+			reasoner.registerOntology(persons, other);
+			assertEquals(2, reasoner.executeQuery(persons, knows).size());
+			reasoner.deRegisterOntology(names, defaultNS);
+			Set<Map<Variable, Term>> result = reasoner.executeQuery(persons, 
+					knows);
+			assertEquals(1, result.size());
+			assertEquals(defaultNS + "mary", result.iterator().next().get(
+					factory.createVariable("y")).toString());
+			reasoner.deRegisterOntology(persons, other);
+		}
+	}
+
+	/**
+	 * Test executing prepared queries repeatedly and with bound variables 
+	 * with both engines.
+	 */
+	public void testPreparedQueries() throws Exception {
+		Graph ages = new GraphImpl();
+		ages.add(new StatementImpl(new URIImpl(defaultNS + "anna"),
+				new URIImpl(defaultNS + "hasAge"), new LiteralImpl("42")));
+		Variable name = Factory.createLogicalExpressionFactory(null)
+				.createVariable("name");
+		Variable y = Factory.createLogicalExpressionFactory(null)
+				.createVariable("y");
+		Map<Variable, Term> john = new HashMap<Variable, Term>();
+		john.put(name, Factory.createDataFactory(null)
+				.createWsmlString("John"));
+		Map<Variable, Term> anna = new HashMap<Variable, Term>();
+		anna.put(y, Factory.createWsmoFactory(null).createIRI(
+				defaultNS + "anna"));
+
+		for (Reasoner reasoner : new Reasoner[] {
+				reasonerFactory.createRDFSReasoner(irisParams), 
+				reasonerFactory.createRDFSReasoner(nativeParams)}) {
+			// prepared before the facts about the ages are known
+			PreparedQuery age = reasoner.prepareQuery(
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("?x[hasAge hasValue ?age]", 
+					ontology));
+			reasoner.registerOntology(example, defaultNS);
+			for (String q : queries) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(q, ontology);
+				PreparedQuery prepared = reasoner.prepareQuery(query);
+				Set<Map<Variable, Term>> expected = reasoner.executeQuery(example, 
+						query);
+				assertEquals(q, expected, reasoner.executeQuery(prepared, null));
+				assertEquals(q, expected, reasoner.executeQuery(prepared, null));
+				assertEquals(q, expected, AbstractQueryCursor.toSet(
+						reasoner.executeQuery(prepared, null, 0, -1)));
+			}
+
+			PreparedQuery named = reasoner.prepareQuery(
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("?x[hasName hasValue ?name]", 
+					ontology));
+			assertEquals(reasoner.executeQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("?x[hasName hasValue \"John\"]", 
+					ontology)), reasoner.executeQuery(named, john));
+			assertEquals(1, reasoner.executeQuery(named, john).size());
+			assertTrue(reasoner.executeGroundQuery(named, john));
+
+			PreparedQuery parents = reasoner.prepareQuery(
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("?x[hasParent hasValue ?y]", 
+					ontology));
+			assertEquals(reasoner.executeQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("?x[hasParent hasValue anna]", 
+					ontology)), reasoner.executeQuery(parents, anna));
+			assertFalse(reasoner.executeQuery(parents, anna).isEmpty());
+
+			reasoner.registerOntology(ages, defaultNS + "2");
+			assertEquals(reasoner.executeQuery(example, age.getQuery()), 
+					reasoner.executeQuery(age, null));
+			assertEquals(1, reasoner.executeQuery(age, null).size());
+			reasoner.deRegisterOntology(ages, defaultNS + "2");
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+
+		Reasoner other = reasonerFactory.createRDFSReasoner(nativeParams);
+		try {
+			other.executeQuery(reasonerFactory.createRDFSReasoner(nativeParams)
+					.prepareQuery(Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression(queries[0], ontology)), null);
+			fail("A query prepared by another reasoner was executed");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Test registering an ontology while it is parsed with both engines.
+	 */
+	public void testStreamingLoad() throws Exception {
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put(RDFParser.RDF_SYNTAX, RDFParser.RDF_XML_SYNTAX);
+		for (Map<String, Object> params : getEngineParams()) {
+			Reasoner expected = reasonerFactory.createRDFSReasoner(params);
+			expected.registerOntology(example, defaultNS);
+			Reasoner streamed = reasonerFactory.createRDFSReasoner(params);
+			OntologyLoader loader = streamed.openOntology(defaultNS);
+			new RDFParser(properties).parse(new InputStreamReader(ClassLoader
+	                .getSystemResourceAsStream("test/rdfs/reasoner/entailment/test.rdfs")), 
+	                "", loader);
+			loader.close();
+			assertEqualResults(expected, streamed);
+
+			streamed.deRegisterOntology(example, defaultNS);
+			LogicalExpression query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(queries[0], ontology);
+			assertTrue(streamed.executeQuery(example, query).isEmpty());
+			expected.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test that registering half of an ontology and adding the rest in 
+	 * small batches gives the same results as registering it at once, with 
+	 * both engines. The results are queried after each batch, so that the 
+	 * closure is extended incrementally.
+	 */
+	public void testIncrementalRegistration() throws Exception {
+		List<Statement> statements = new ArrayList<Statement>();
+		StatementIterator it = example.getStatements();
+		while (it.hasNext()) {
+			statements.add(it.next());
+		}
+		for (Map<String, Object> params : getEngineParams()) {
+			Reasoner oneShot = reasonerFactory.createRDFSReasoner(params);
+			oneShot.registerOntology(example, defaultNS);
+			List<Set<Map<Variable, Term>>> expected = 
+					getResults(oneShot, queries);
+			oneShot.deRegisterOntology(example, defaultNS);
+
+			Reasoner incremental = reasonerFactory.createRDFSReasoner(params);
+			Graph half = new GraphImpl();
+			for (Statement st : statements.subList(0, statements.size() / 2)) {
+				half.add(st);
+			}
+			incremental.registerOntology(half, defaultNS);
+			for (int i = statements.size() / 2; i < statements.size(); i += 4) {
+				Graph batch = new GraphImpl();
+				for (Statement st : statements.subList(i, 
+						Math.min(i + 4, statements.size()))) {
+					batch.add(st);
+				}
+				getResults(incremental, queries);
+				incremental.addStatements(batch, defaultNS);
+			}
+			assertEquals(expected, getResults(incremental, queries));
+			incremental.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test that compiling the schema axioms to specialized rules finds the 
+	 * results of the generic IRIS rules for asserted axioms, also after an 
+	 * ontology with rules of its own was deregistered, that it loses the 
+	 * axioms derived through the vocabulary, and that it's rejected by the 
+	 * native engine.
+	 */
+	public void testCompiledSchema() throws Exception {
+		// the domain of hasPet is derived through a sub property of 
+		// rdfs:domain, hasItem is typed through a sub class of 
+		// rdfs:ContainerMembershipProperty
+		Graph derived = new GraphImpl();
+		URIImpl petDomain = new URIImpl(defaultNS + "petDomain");
+		URIImpl hasPet = new URIImpl(defaultNS + "hasPet");
+		URIImpl itemProperty = new URIImpl(defaultNS + "ItemProperty");
+		URIImpl hasItem = new URIImpl(defaultNS + "hasItem");
+		derived.add(new StatementImpl(petDomain, 
+				new URIImpl(RDFS.SUBPROPERTYOF), new URIImpl(RDFS.DOMAIN)));
+		derived.add(new StatementImpl(hasPet, petDomain, 
+				new URIImpl(defaultNS + "Owner")));
+		derived.add(new StatementImpl(new URIImpl(defaultNS + "anna"), hasPet, 
+				new URIImpl(defaultNS + "rex")));
+		derived.add(new StatementImpl(itemProperty, 
+				new URIImpl(RDFS.SUBCLASSOF), 
+				new URIImpl(RDFS.CONTAINERMEMBERSHIPPROPERTY)));
+		derived.add(new StatementImpl(hasItem, new URIImpl(RDF.TYPE), 
+				itemProperty));
+		derived.add(new StatementImpl(new URIImpl(defaultNS + "box"), hasItem, 
+				new URIImpl(defaultNS + "ball")));
+		String[] derivedQueries = new String[] {
+				"anna[_\"" + RDF.TYPE + "\" hasValue Owner]", 
+				"box[_\"" + RDFS.MEMBER + "\" hasValue ball]"};
+
+		// the IRIS reasoners share one program, thus they are used one 
+		// after the other
+		Reasoner generic = reasonerFactory.createRDFSReasoner(irisParams);
+		generic.registerOntology(example, defaultNS);
+		List<Set<Map<Variable, Term>>> expected = getResults(generic, queries);
+		generic.deRegisterOntology(example, defaultNS);
+		generic.registerOntology(derived, defaultNS);
+		for (String q : derivedQueries) {
+			assertTrue(q, generic.executeGroundQuery(derived, Factory
+					.createLogicalExpressionFactory(null)
+					.createLogicalExpression(q, ontology)));
+		}
+		generic.deRegisterOntology(derived, defaultNS);
+
+		Map<String, Object> compiledParams = 
+				new HashMap<String, Object>(irisParams);
+		compiledParams.put(RDFSReasonerFactory.PARAM_COMPILE_SCHEMA, true);
+		Reasoner compiled = reasonerFactory.createRDFSReasoner(compiledParams);
+		compiled.registerOntology(example, defaultNS);
+		assertEquals(expected, getResults(compiled, queries));
+		compiled.registerOntology(derived, defaultNS + "2");
+		compiled.deRegisterOntology(derived, defaultNS + "2");
+		assertEquals(expected, getResults(compiled, queries));
+		compiled.deRegisterOntology(example, defaultNS);
+		compiled.registerOntology(derived, defaultNS);
+		for (String q : derivedQueries) {
+			assertFalse(q, compiled.executeGroundQuery(derived, Factory
+					.createLogicalExpressionFactory(null)
+					.createLogicalExpression(q, ontology)));
+		}
+		compiled.deRegisterOntology(derived, defaultNS);
+
+		compiledParams.putAll(nativeParams);
+		try {
+			reasonerFactory.createRDFSReasoner(compiledParams);
+			fail("The native engine doesn't compile the schema.");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	/**
+	 * Test that answering the trivial triples at query time finds exactly 
+	 * the triples materialized by the native engine, with both engines, 
+	 * and that the cursor returns each result once.
+	 */
+	public void testVirtualTrivialTriples() throws Exception {
+		String[] trivial = new String[queries.length + 3];
+		System.arraycopy(queries, 0, trivial, 0, queries.length);
+		trivial[queries.length] = "?x[_\"" + RDF.TYPE + "\" hasValue _\"" 
+				+ RDFS.RESOURCE + "\"]";
+		trivial[queries.length + 1] = "?x[?p hasValue ?x]";
+		trivial[queries.length + 2] = "?x[_\"" + RDFS.SUBCLASSOF 
+				+ "\" hasValue ?x] and ?y[_\"" + RDF.TYPE + "\" hasValue ?x]";
+		Reasoner materialized = reasonerFactory.createRDFSReasoner(
+				nativeParams);
+		materialized.registerOntology(example, defaultNS);
+		List<Set<Map<Variable, Term>>> expected = 
+				getResults(materialized, trivial);
+		materialized.deRegisterOntology(example, defaultNS);
+		for (Map<String, Object> params : getEngineParams()) {
+			Map<String, Object> virtualParams = 
+					new HashMap<String, Object>(params);
+			virtualParams.put(
+					RDFSReasonerFactory.PARAM_VIRTUAL_TRIVIAL_TRIPLES, true);
+			Reasoner virtual = reasonerFactory.createRDFSReasoner(
+					virtualParams);
+			virtual.registerOntology(example, defaultNS);
+			assertEquals(expected, getResults(virtual, trivial));
+			for (int i = 0; i < trivial.length; i++) {
+				Set<Map<Variable, Term>> result = 
+						new HashSet<Map<Variable, Term>>();
+				QueryCursor cursor = virtual.executeQuery(example, 
+						Factory.createLogicalExpressionFactory(null)
+						.createLogicalExpression(trivial[i], ontology), 0, -1);
+				while (cursor.hasNext()) {
+					assertTrue(trivial[i], result.add(cursor.next()));
+				}
+				assertEquals(trivial[i], expected.get(i), result);
+			}
+			assertTrue(virtual.executeGroundQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("anna[_\"" + RDF.TYPE 
+					+ "\" hasValue _\"" + RDFS.RESOURCE + "\"]", ontology)));
+			assertTrue(virtual.executeGroundQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("Person[_\"" + RDFS.SUBCLASSOF 
+					+ "\" hasValue Person]", ontology)));
+			virtual.deRegisterOntology(example, defaultNS);
+		}
+	}
+
 	/*
 	 * The following statements are taken as RDFS test statements.
 	 */
@@ -18,6 +18,8 @@
  */
 package test.rdfs.reasoner.open;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,7 +54,7 @@ import org.wsml.reasoner.api.inconsistency.InconsistencyException;
 import org.wsmo.factory.Factory;
 import org.wsmo.factory.WsmoFactory;
 
-import junit.framework.TestCase;
+import test.rdfs.reasoner.EngineTestCase;
 
 /**
  * Test for eRDFS entailment.
@@ -66,7 +68,7 @@ import junit.framework.TestCase;
  * @author Nathalie Steinmetz, DERI Innsbruck
  * @version $Revision: 1.1 $ $Date: 2007-08-24 14:04:31 $
  */
-public class IOWLEntailmentTest extends TestCase {
+public class IOWLEntailmentTest extends EngineTestCase {
 	
 	private EntityFactory factory = null;
 	
@@ -332,6 +334,169 @@ public class IOWLEntailmentTest extends TestCase {
         reasoner.deRegisterOntology(graph, defaultNS);
 	}
 	
+	/**
+	 * Test that the iOWL reasoners of both engines replace terms equal by 
+	 * owl:sameAs with each other, also after the equalities have been 
+	 * deregistered.
+	 */
+	public void testSameAs() throws Exception {
+		String sameAs = "http://www.w3.org/2002/07/owl#sameAs";
+		String equalNS = defaultNS + "equal";
+		Graph equal = new GraphImpl();
+		URIImpl john = new URIImpl(defaultNS + "john");
+		URIImpl johnny = new URIImpl(defaultNS + "johnny");
+		URIImpl jon = new URIImpl(defaultNS + "jon");
+		equal.add(new StatementImpl(johnny, new URIImpl(sameAs), john));
+		equal.add(new StatementImpl(jon, new URIImpl(sameAs), johnny));
+		equal.add(new StatementImpl(jon, new URIImpl(defaultNS + "hasName"), 
+				new LiteralImpl("Jon")));
+		String[] equalities = new String[] {
+				"?x[hasParent hasValue anna]",
+				"jon[hasName hasValue ?y]",
+				"?x[_\"" + sameAs + "\" hasValue johnny]",
+				"?x[hasParent hasValue ?y] and ?x[hasName hasValue \"Jon\"]"};
+		int[] sizes = new int[] {3, 2, 3, 3};
+
+		for (Map<String, Object> params : getEngineParams()) {
+			Reasoner reasoner = reasonerFactory.createIOWLReasoner(params);
+			reasoner.registerOntology(example, defaultNS);
+			reasoner.registerOntology(equal, equalNS);
+			for (int i = 0; i < equalities.length; i++) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(equalities[i], ontology);
+				assertEquals(equalities[i], sizes[i], 
+						reasoner.executeQuery(example, query).size());
+			}
+			assertTrue(reasoner.executeGroundQuery(example, 
+					Factory.createLogicalExpressionFactory(null)
+					.createLogicalExpression("johnny[hasMother hasValue anna]", 
+					ontology)));
+
+			reasoner.deRegisterOntology(equal, equalNS);
+			LogicalExpression query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(equalities[0], ontology);
+			assertEquals(1, reasoner.executeQuery(example, query).size());
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	public void testPropertyCharacteristics() throws Exception {
+		String owl = "http://www.w3.org/2002/07/owl#";
+		String propertiesNS = defaultNS + "properties";
+		Graph properties = new GraphImpl();
+		URIImpl partOf = new URIImpl(defaultNS + "partOf");
+		URIImpl knows = new URIImpl(defaultNS + "knows");
+		URIImpl hasParent = new URIImpl(defaultNS + "hasParent");
+		URIImpl hasChild = new URIImpl(defaultNS + "hasChild");
+		URIImpl locatedIn = new URIImpl(defaultNS + "locatedIn");
+		URIImpl type = new URIImpl(RDF.TYPE);
+		properties.add(new StatementImpl(partOf, type, 
+				new URIImpl(owl + "TransitiveProperty")));
+		properties.add(new StatementImpl(knows, type, 
+				new URIImpl(owl + "SymmetricProperty")));
+		properties.add(new StatementImpl(hasChild, 
+				new URIImpl(owl + "inverseOf"), hasParent));
+		properties.add(new StatementImpl(locatedIn, 
+				new URIImpl(RDFS.SUBPROPERTYOF), partOf));
+		for (String[] t : new String[][] {{"room", "floor"}, 
+				{"floor", "building"}, {"building", "campus"}}) {
+			properties.add(new StatementImpl(new URIImpl(defaultNS + t[0]), 
+					partOf, new URIImpl(defaultNS + t[1])));
+		}
+		properties.add(new StatementImpl(new URIImpl(defaultNS + "john"), 
+				knows, new URIImpl(defaultNS + "mary")));
+		String[] closures = new String[] {
+				"room[partOf hasValue ?y]",
+				"?x[partOf hasValue campus]",
+				"mary[knows hasValue ?y]",
+				"anna[hasChild hasValue ?y]"};
+		int[] sizes = new int[] {3, 3, 1, 1};
+
+		for (Map<String, Object> params : getEngineParams()) {
+			Reasoner reasoner = reasonerFactory.createIOWLReasoner(params);
+			reasoner.registerOntology(example, defaultNS);
+			reasoner.registerOntology(properties, propertiesNS);
+			for (int i = 0; i < closures.length; i++) {
+				LogicalExpression query = Factory.createLogicalExpressionFactory(
+						null).createLogicalExpression(closures[i], ontology);
+				assertEquals(closures[i], sizes[i], 
+						reasoner.executeQuery(example, query).size());
+			}
+
+			// the closure is extended by further triples, also of a sub 
+			// property
+			Graph more = new GraphImpl();
+			more.add(new StatementImpl(new URIImpl(defaultNS + "campus"), 
+					partOf, new URIImpl(defaultNS + "city")));
+			more.add(new StatementImpl(new URIImpl(defaultNS + "city"), 
+					locatedIn, new URIImpl(defaultNS + "country")));
+			reasoner.addStatements(more, propertiesNS);
+			LogicalExpression query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(closures[0], ontology);
+			assertEquals(5, reasoner.executeQuery(example, query).size());
+
+			reasoner.deRegisterOntology(properties, propertiesNS);
+			query = Factory.createLogicalExpressionFactory(
+					null).createLogicalExpression(closures[3], ontology);
+			assertEquals(0, reasoner.executeQuery(example, query).size());
+			reasoner.deRegisterOntology(example, defaultNS);
+		}
+	}
+
+	/**
+	 * Test restoring the equal terms and the closed properties of an iOWL 
+	 * reasoner of the native engine from a snapshot.
+	 */
+	public void testSnapshot() throws Exception {
+		String owl = "http://www.w3.org/2002/07/owl#";
+		String otherNS = defaultNS + "other";
+		URIImpl partOf = new URIImpl(defaultNS + "partOf");
+		Graph other = new GraphImpl();
+		other.add(new StatementImpl(new URIImpl(defaultNS + "johnny"), 
+				new URIImpl(owl + "sameAs"), new URIImpl(defaultNS + "john")));
+		other.add(new StatementImpl(partOf, new URIImpl(RDF.TYPE), 
+				new URIImpl(owl + "TransitiveProperty")));
+		other.add(new StatementImpl(new URIImpl(defaultNS + "room"), 
+				partOf, new URIImpl(defaultNS + "floor")));
+		other.add(new StatementImpl(new URIImpl(defaultNS + "floor"), 
+				partOf, new URIImpl(defaultNS + "building")));
+		String[] closures = new String[] {
+				"?x[hasParent hasValue anna]",
+				"room[partOf hasValue ?y]",
+				"?x[?p hasValue ?y]"};
+
+		Reasoner original = reasonerFactory.createIOWLReasoner(nativeParams);
+		original.registerOntology(example, defaultNS);
+		original.registerOntology(other, otherNS);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		original.writeSnapshot(out);
+		Reasoner restored = reasonerFactory.createIOWLReasoner(nativeParams);
+		restored.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+		assertEqualResults(original, restored, closures);
+
+		// the restored graphs are extended, and the classes split again
+		Graph more = new GraphImpl();
+		more.add(new StatementImpl(new URIImpl(defaultNS + "building"), 
+				partOf, new URIImpl(defaultNS + "campus")));
+		original.addStatements(more, otherNS);
+		restored.addStatements(more, otherNS);
+		assertEqualResults(original, restored, closures);
+		original.deRegisterOntology(other, otherNS);
+		restored.deRegisterOntology(other, otherNS);
+		assertEqualResults(original, restored, closures);
+		original.deRegisterOntology(example, defaultNS);
+		restored.deRegisterOntology(example, defaultNS);
+
+		// IRIS rejects a snapshot before anything is written
+		out = new ByteArrayOutputStream();
+		try {
+			reasonerFactory.createIOWLReasoner(irisParams).writeSnapshot(out);
+			fail("IRIS wrote a snapshot");
+		} catch (UnsupportedOperationException e) {
+			assertEquals(0, out.size());
+		}
+	}
+
 	/*
 	 * The following statements are taken as RDFS test statements.
 	 */
@@ -134,6 +134,40 @@ public class RDFRulesTest extends TestCase {
 //			System.out.println(rul.toString());
 	}
 	
+	/**
+	 * Test that equal molecules and rules are interned, and that they 
+	 * can't be modified.
+	 */
+	public void testInterning() throws Exception {
+		Term subject = factory.createIdentifier(namespace + "john");
+		Term predicate = factory.createIdentifier(RDF.TYPE);
+		Term object = factory.createIdentifier(namespace + "Person");
+		Rule rule = factory.createRule(factory.createFMolecule(subject, 
+				predicate, object));
+		Rule transformed = transformer.transform(new StatementImpl(
+				new URIImpl(namespace + "john"), new URIImpl(RDF.TYPE), 
+				new URIImpl(namespace + "Person")));
+		assertSame(rule, transformed);
+		assertSame(rule.getHead(), transformed.getHead());
+		
+		List<FMolecule> body = new LinkedList<FMolecule>();
+		body.add(rule.getHead());
+		Rule derived = factory.createRule(factory.createFMolecule(subject, 
+				predicate, factory.createIdentifier(namespace + "Animal")), body);
+		body.clear();
+		assertEquals(1, derived.getBody().size());
+		try {
+			derived.getBody().clear();
+			fail("The body of a rule must not be modifiable.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			rule.getHead().setRightTerm(subject);
+			fail("A molecule must not be modifiable.");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+	
 	/**
 	 * Test if the transformation from RDFS to F-Logic molecules 
 	 * is complete and whether the RDF entailment can be 